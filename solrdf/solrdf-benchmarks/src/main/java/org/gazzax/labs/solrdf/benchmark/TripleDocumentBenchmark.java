@@ -0,0 +1,128 @@
+package org.gazzax.labs.solrdf.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.solr.common.SolrInputDocument;
+import org.gazzax.labs.solrdf.graph.SolRDFGraph;
+import org.gazzax.labs.solrdf.graph.standalone.TripleDocumentFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.hp.hpl.jena.datatypes.xsd.XSDDatatype;
+import com.hp.hpl.jena.graph.Node;
+import com.hp.hpl.jena.graph.NodeFactory;
+import com.hp.hpl.jena.graph.Triple;
+
+/**
+ * Cost (time and allocation) of building the document of a triple, i.e. the write hot path of
+ * LocalGraph and CloudGraph.performAdd.
+ *
+ * Allocation per triple is the gc.alloc.rate.norm metric of the GC profiler:
+ *
+ * <pre>
+ * java -jar target/solrdf-benchmarks-1.1-jar-with-dependencies.jar TripleDocumentBenchmark -prof gc
+ * </pre>
+ *
+ * {@link #legacyDocumentId()} is the document identifier as it was computed before the 128 bits streamed hash
+ * (MD5 over the concatenated, platform-encoded members), so the before / after comparison of identifiers is in the
+ * same run. The before / after of the whole document is obtained by running {@link #document()} on both revisions.
+ *
+ * @author Andrea Gazzarini
+ * @since 1.1
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TripleDocumentBenchmark {
+	static final String GRAPH = "<http://example.org/graph>";
+
+	final TripleDocumentFactory factory = new TripleDocumentFactory();
+	final List<Triple> triples = new ArrayList<Triple>();
+	int index;
+
+	/**
+	 * Builds a mix of triples with resource, plain, language tagged and typed objects.
+	 */
+	@Setup
+	public void setUp() {
+		for (int i = 0; i < 1024; i++) {
+			final Node subject = NodeFactory.createURI("http://example.org/resource/" + i);
+			triples.add(Triple.create(
+					subject,
+					NodeFactory.createURI("http://www.w3.org/1999/02/22-rdf-syntax-ns#type"),
+					NodeFactory.createURI("http://example.org/Class" + (i % 16))));
+			triples.add(Triple.create(
+					subject,
+					NodeFactory.createURI("http://www.w3.org/2000/01/rdf-schema#label"),
+					NodeFactory.createLiteral("Resource number " + i, "en", false)));
+			triples.add(Triple.create(
+					subject,
+					NodeFactory.createURI("http://example.org/price"),
+					NodeFactory.createLiteral(String.valueOf(i * 1.5), XSDDatatype.XSDdouble)));
+			triples.add(Triple.create(
+					subject,
+					NodeFactory.createURI("http://example.org/related"),
+					NodeFactory.createAnon()));
+		}
+	}
+
+	/**
+	 * The whole document of a triple.
+	 *
+	 * @return the document.
+	 */
+	@Benchmark
+	public SolrInputDocument document() {
+		return factory.document(GRAPH, next());
+	}
+
+	/**
+	 * The (streamed hash) identifier of a triple.
+	 *
+	 * @return the identifier.
+	 */
+	@Benchmark
+	public String documentId() {
+		return SolRDFGraph.documentId(GRAPH, next(), false);
+	}
+
+	/**
+	 * The identifier of a triple, as it was computed before.
+	 *
+	 * @return the identifier.
+	 */
+	@Benchmark
+	public String legacyDocumentId() {
+		final Triple triple = next();
+		return UUID.nameUUIDFromBytes(
+				new StringBuilder()
+					.append(GRAPH)
+					.append(triple.getSubject())
+					.append(triple.getPredicate())
+					.append(triple.getObject())
+					.toString().getBytes()).toString();
+	}
+
+	/**
+	 * Returns the next triple.
+	 *
+	 * @return the next triple.
+	 */
+	Triple next() {
+		return triples.get(index++ & (triples.size() - 1));
+	}
+}
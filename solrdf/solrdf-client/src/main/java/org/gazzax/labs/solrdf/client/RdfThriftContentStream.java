@@ -0,0 +1,209 @@
+package org.gazzax.labs.solrdf.client;
+
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import org.apache.jena.riot.WebContent;
+import org.apache.jena.riot.system.StreamRDF;
+import org.apache.jena.riot.thrift.BinRDF;
+import org.apache.jena.riot.thrift.TRDF;
+import org.apache.solr.common.util.ContentStream;
+import org.apache.solr.common.util.ContentStreamBase;
+import org.apache.thrift.protocol.TProtocol;
+
+import com.hp.hpl.jena.graph.Triple;
+import com.hp.hpl.jena.sparql.core.Quad;
+
+/**
+ * A {@link ContentStream} that carries triples or quads encoded in RDF Thrift, a length-prefixed binary format.
+ * On the server side, nodes are decoded without any text tokenisation.
+ *
+ * Triples and quads are encoded while the stream is read, a chunk at a time, so the payload is never held in memory
+ * (and its size is unknown). As a consequence, the stream can be read just once.
+ *
+ * @see http://jena.apache.org/documentation/io/rdf-binary.html
+ * @author Andrea Gazzarini
+ * @since 1.1
+ */
+class RdfThriftContentStream extends ContentStreamBase {
+	static final int CHUNK_SIZE = 1000;
+
+	private final List<Iterator<?>> sources = new ArrayList<Iterator<?>>();
+	private boolean consumed;
+
+	/**
+	 * Builds a new empty stream.
+	 */
+	RdfThriftContentStream() {
+		setContentType(WebContent.contentTypeRDFThrift);
+	}
+
+	/**
+	 * Adds the given triples to this stream.
+	 *
+	 * @param triples the triples.
+	 * @return this stream.
+	 */
+	RdfThriftContentStream triples(final Iterator<Triple> triples) {
+		sources.add(triples);
+		return this;
+	}
+
+	/**
+	 * Adds the given quads to this stream.
+	 *
+	 * @param quads the quads.
+	 * @return this stream.
+	 */
+	RdfThriftContentStream quads(final Iterator<Quad> quads) {
+		sources.add(quads);
+		return this;
+	}
+
+	@Override
+	public synchronized InputStream getStream() {
+		if (consumed) {
+			throw new IllegalStateException("RDF Thrift content streams can be read just once.");
+		}
+		consumed = true;
+		return new Encoder(sources.iterator());
+	}
+
+	/**
+	 * An {@link InputStream} that encodes the next chunk of triples or quads once the previous one has been read.
+	 *
+	 * @author Andrea Gazzarini
+	 * @since 1.1
+	 */
+	static class Encoder extends InputStream {
+		private final Iterator<Iterator<?>> sources;
+		private final Chunk chunk = new Chunk();
+		private final TProtocol protocol = TRDF.protocol(chunk);
+		private final StreamRDF writer = BinRDF.streamToTProtocol(protocol);
+
+		private Iterator<?> source;
+		private int position;
+		private boolean finished;
+
+		/**
+		 * Builds a new encoder.
+		 *
+		 * @param sources the iterators of the triples or quads that will be encoded.
+		 */
+		Encoder(final Iterator<Iterator<?>> sources) {
+			this.sources = sources;
+			writer.start();
+		}
+
+		@Override
+		public int read() {
+			return fill() ? chunk.byteAt(position++) & 0xFF : -1;
+		}
+
+		@Override
+		public int read(final byte[] bytes, final int offset, final int length) {
+			if (length == 0) {
+				return 0;
+			}
+
+			if (!fill()) {
+				return -1;
+			}
+
+			final int count = chunk.copy(position, bytes, offset, length);
+			position += count;
+			return count;
+		}
+
+		/**
+		 * Encodes the next chunk, if the current one has been entirely read.
+		 *
+		 * @return true if there's something to read, false at the end of the stream.
+		 */
+		boolean fill() {
+			while (position == chunk.size()) {
+				if (finished) {
+					return false;
+				}
+
+				chunk.reset();
+				position = 0;
+				encode();
+			}
+			return true;
+		}
+
+		/**
+		 * Encodes (at most) {@link RdfThriftContentStream#CHUNK_SIZE} triples or quads.
+		 */
+		void encode() {
+			int count = 0;
+			while (count < CHUNK_SIZE && hasNext()) {
+				final Object tuple = source.next();
+				if (tuple instanceof Triple) {
+					writer.triple((Triple) tuple);
+				} else {
+					writer.quad((Quad) tuple);
+				}
+				count++;
+			}
+
+			if (count < CHUNK_SIZE) {
+				writer.finish();
+				finished = true;
+			}
+			TRDF.flush(protocol);
+		}
+
+		/**
+		 * Returns true if there's another triple or quad to encode.
+		 *
+		 * @return true if there's another triple or quad to encode.
+		 */
+		boolean hasNext() {
+			while (source == null || !source.hasNext()) {
+				if (!sources.hasNext()) {
+					return false;
+				}
+				source = sources.next();
+			}
+			return true;
+		}
+	}
+
+	/**
+	 * The buffer of an encoded chunk.
+	 *
+	 * @author Andrea Gazzarini
+	 * @since 1.1
+	 */
+	static class Chunk extends ByteArrayOutputStream {
+		/**
+		 * Returns the byte at a given position.
+		 *
+		 * @param position the position.
+		 * @return the byte at the given position.
+		 */
+		byte byteAt(final int position) {
+			return buf[position];
+		}
+
+		/**
+		 * Copies the bytes from a given position.
+		 *
+		 * @param position the position of the first byte.
+		 * @param bytes the target array.
+		 * @param offset the offset in the target array.
+		 * @param length the maximum number of bytes to copy.
+		 * @return the number of copied bytes.
+		 */
+		int copy(final int position, final byte[] bytes, final int offset, final int length) {
+			final int count = Math.min(length, this.count - position);
+			System.arraycopy(buf, position, bytes, offset, count);
+			return count;
+		}
+	}
+}
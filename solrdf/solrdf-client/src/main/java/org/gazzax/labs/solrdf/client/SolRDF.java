@@ -4,6 +4,7 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.Reader;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Set;
 
@@ -12,7 +13,9 @@ import org.apache.solr.client.solrj.SolrClient;
 import org.apache.solr.client.solrj.impl.CloudSolrClient;
 import org.apache.solr.client.solrj.impl.HttpSolrClient;
 import org.apache.solr.client.solrj.impl.LBHttpSolrClient;
+import org.apache.solr.client.solrj.request.ContentStreamUpdateRequest;
 
+import com.hp.hpl.jena.graph.Triple;
 import com.hp.hpl.jena.query.Dataset;
 import com.hp.hpl.jena.query.DatasetAccessor;
 import com.hp.hpl.jena.query.DatasetAccessorFactory;
@@ -29,6 +32,7 @@ import com.hp.hpl.jena.rdf.model.RDFNode;
 import com.hp.hpl.jena.rdf.model.Resource;
 import com.hp.hpl.jena.rdf.model.Statement;
 import com.hp.hpl.jena.rdf.model.StmtIterator;
+import com.hp.hpl.jena.sparql.core.Quad;
 import com.hp.hpl.jena.sparql.engine.binding.Binding;
 
 /**
@@ -41,8 +45,12 @@ public class SolRDF {
 	final DatasetAccessor remoteDataset;
 	final Dataset localDataset;
 	final String sparqlEndpoint;
+	final String bulkEndpointPath;
 	final SolrClient solr;
 
+	static final String DEFAULT_BULK_ENDPOINT_PATH = "/update/bulk";
+	static final String GRAPH_URI_ATTRIBUTE_NAME = "graph.uri";
+	
 	static class CloseableResultSet implements ResultSet {
 		
 		private final ResultSet resultset;
@@ -117,6 +125,7 @@ public class SolRDF {
 		private final static String DEFAULT_ENDPOINT = "http://127.0.0.1:8080/solr/store";
 		private String graphStoreProtocolEndpointPath = "/rdf-graph-store";
 		private String sparqlEndpointPath = "/sparql";
+		private String bulkEndpointPath = DEFAULT_BULK_ENDPOINT_PATH;
 		private HttpClient httpClient;
 		private String zkHost;
 		
@@ -170,6 +179,17 @@ public class SolRDF {
 			return this;
 		}		
 		
+		/**
+		 * Sets the bulk update Handler url path (defaults to /update/bulk)
+		 * 
+		 * @param path the bulk update Handler url path (defaults to /update/bulk)
+		 * @return this builder.
+		 */
+		public Builder withBulkEndpointPath(final String path) {
+			this.bulkEndpointPath = path;
+			return this;
+		}		
+		
 		public Builder withHttpClient(final HttpClient httpClient) {
 			this.httpClient = httpClient;
 			return this;
@@ -194,6 +214,7 @@ public class SolRDF {
 								firstEndpointAddress +
 								graphStoreProtocolEndpointPath),
 						firstEndpointAddress + sparqlEndpointPath,		
+						bulkEndpointPath,
 						zkHost != null
 							? new CloudSolrClient(zkHost)
 							: (endpoints.size() == 1)
@@ -224,10 +245,27 @@ public class SolRDF {
 			final DatasetAccessor dataset, 
 			final String sparqlEndpointAddress,
 			final SolrClient solr) {
+		this(dataset, sparqlEndpointAddress, DEFAULT_BULK_ENDPOINT_PATH, solr);
+	}
+	
+	/**
+	 * Builds a new SolRDF proxy with the given {@link DatasetAccessor}.
+	 * 
+	 * @param dataset the {@link DatasetAccessor} representing the remote endpoint.
+	 * @param sparqlEndpointAddress the SPARQL endpoint address.
+	 * @param bulkEndpointPath the bulk update handler path.
+	 * @param solr the (remote) Solr proxy.
+	 */
+	SolRDF(
+			final DatasetAccessor dataset, 
+			final String sparqlEndpointAddress,
+			final String bulkEndpointPath,
+			final SolrClient solr) {
 		this.remoteDataset = dataset;
 		this.localDataset = DatasetFactory.createMem();
 		this.solr = solr;
 		this.sparqlEndpoint = sparqlEndpointAddress;
+		this.bulkEndpointPath = bulkEndpointPath;
 	}
 	
 	/**
@@ -513,6 +551,61 @@ public class SolRDF {
 		}
 	}		
 	
+	/**
+	 * Adds the given triples to the default graph.
+	 * Triples are sent in a binary format (RDF Thrift), so they don't need to be serialised and parsed as text. 
+	 * 
+	 * @param triples the triples.
+	 * @throws UnableToAddException in case of add failure.
+	 */
+	public void addTriples(final Iterator<Triple> triples) throws UnableToAddException {
+		addTriples(null, triples);
+	}
+
+	/**
+	 * Adds the given triples to a named graph.
+	 * Triples are sent in a binary format (RDF Thrift), so they don't need to be serialised and parsed as text. 
+	 * 
+	 * @param uri the graph URI, null in case of default graph.
+	 * @param triples the triples.
+	 * @throws UnableToAddException in case of add failure.
+	 */
+	public void addTriples(final String uri, final Iterator<Triple> triples) throws UnableToAddException {
+		final ContentStreamUpdateRequest request = new ContentStreamUpdateRequest(bulkEndpointPath);
+		request.addContentStream(new RdfThriftContentStream().triples(triples));
+		if (uri != null) {
+			request.setParam(GRAPH_URI_ATTRIBUTE_NAME, uri);
+		}
+		bulk(request);
+	}
+
+	/**
+	 * Adds the given quads.
+	 * Quads are sent in a binary format (RDF Thrift), so they don't need to be serialised and parsed as text. 
+	 * 
+	 * @param quads the quads.
+	 * @throws UnableToAddException in case of add failure.
+	 */
+	public void addQuads(final Iterator<Quad> quads) throws UnableToAddException {
+		final ContentStreamUpdateRequest request = new ContentStreamUpdateRequest(bulkEndpointPath);
+		request.addContentStream(new RdfThriftContentStream().quads(quads));
+		bulk(request);
+	}
+	
+	/**
+	 * Executes the given bulk update request.
+	 * 
+	 * @param request the bulk update request.
+	 * @throws UnableToAddException in case of add failure.
+	 */
+	void bulk(final ContentStreamUpdateRequest request) throws UnableToAddException {
+		try {
+			solr.request(request);
+		} catch (final Exception exception) {
+			throw new UnableToAddException(exception);
+		}
+	}
+	
 	/**
 	 * Executes a SPARQL ASK.
 	 * 
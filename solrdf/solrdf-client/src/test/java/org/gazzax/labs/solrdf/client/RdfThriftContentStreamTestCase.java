@@ -0,0 +1,90 @@
+package org.gazzax.labs.solrdf.client;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.jena.riot.WebContent;
+import org.apache.jena.riot.lang.CollectorStreamQuads;
+import org.apache.jena.riot.lang.CollectorStreamTriples;
+import org.apache.jena.riot.thrift.BinRDF;
+import org.junit.Test;
+
+import com.hp.hpl.jena.graph.NodeFactory;
+import com.hp.hpl.jena.graph.Triple;
+import com.hp.hpl.jena.sparql.core.Quad;
+
+/**
+ * Test case for {@link RdfThriftContentStream}.
+ * 
+ * @author Andrea Gazzarini
+ * @since 1.1
+ */
+public class RdfThriftContentStreamTestCase {
+	
+	private final Triple triple = Triple.create(
+			NodeFactory.createURI("http://example.org/s"), 
+			NodeFactory.createURI("http://example.org/p"), 
+			NodeFactory.createLiteral("Rome", "it", false));
+	
+	/**
+	 * The stream must carry the encoded triples.
+	 */
+	@Test
+	public void triples() {
+		final RdfThriftContentStream cut = new RdfThriftContentStream().triples(Arrays.asList(triple).iterator());
+		
+		final CollectorStreamTriples collector = new CollectorStreamTriples();
+		BinRDF.inputStreamToStream(cut.getStream(), collector);
+
+		assertEquals(WebContent.contentTypeRDFThrift, cut.getContentType());
+		assertEquals(Arrays.asList(triple), collector.getCollected());
+	}
+	
+	/**
+	 * The stream must carry the encoded quads.
+	 */
+	@Test
+	public void quads() {
+		final Quad quad = new Quad(NodeFactory.createURI("http://example.org/g"), triple);
+		final RdfThriftContentStream cut = new RdfThriftContentStream().quads(Arrays.asList(quad).iterator());
+		
+		final CollectorStreamQuads collector = new CollectorStreamQuads();
+		BinRDF.inputStreamToStream(cut.getStream(), collector);
+		assertEquals(Arrays.asList(quad), collector.getCollected());
+	}
+	
+	/**
+	 * Triples are encoded in chunks while the stream is read, so they are all there, whatever the chunk boundaries are.
+	 */
+	@Test
+	public void chunks() {
+		final List<Triple> triples = new ArrayList<Triple>();
+		for (int i = 0; i < RdfThriftContentStream.CHUNK_SIZE * 2 + 1; i++) {
+			triples.add(Triple.create(
+					NodeFactory.createURI("http://example.org/s" + i), 
+					triple.getPredicate(), 
+					NodeFactory.createLiteral(String.valueOf(i))));
+		}
+		
+		final RdfThriftContentStream cut = new RdfThriftContentStream().triples(triples.iterator());
+		
+		final CollectorStreamTriples collector = new CollectorStreamTriples();
+		BinRDF.inputStreamToStream(cut.getStream(), collector);
+		assertEquals(triples, collector.getCollected());
+		assertNull(cut.getSize());
+	}
+	
+	/**
+	 * The content is encoded from the source iterators, so it can be read just once.
+	 */
+	@Test(expected = IllegalStateException.class)
+	public void readJustOnce() {
+		final RdfThriftContentStream cut = new RdfThriftContentStream().triples(Arrays.asList(triple).iterator());
+		cut.getStream();
+		cut.getStream();
+	}
+}
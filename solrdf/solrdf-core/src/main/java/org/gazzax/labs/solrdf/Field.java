@@ -18,4 +18,17 @@ public interface Field {
 	String BOOLEAN_OBJECT = "o_b";
 	String DATE_OBJECT = "o_d";
 	String TEXT_OBJECT = "o_s";
+
+	// Optional term identifiers (see TermIds)
+	String S_ID = "s_id";
+	String P_ID = "p_id";
+	String O_ID = "o_id";
+
+	// DocValues copies of the triple members, used for decoding triples (see TripleReader)
+	String S_DV = "s_dv";
+	String P_DV = "p_dv";
+	String O_DV = "o_dv";
+
+	// Optional (SolrCloud): its declaration routes documents by subject (see SolRDFGraph#hasSubjectRouting)
+	String S_ROUTE = "s_route";
 }
\ No newline at end of file
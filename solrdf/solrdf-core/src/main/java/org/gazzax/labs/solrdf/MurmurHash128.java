@@ -0,0 +1,209 @@
+package org.gazzax.labs.solrdf;
+
+/**
+ * A reusable, streaming MurmurHash3 (x64, 128 bits, seed 0) over UTF-16 characters.
+ *
+ * Characters are hashed as they are fed (two little-endian bytes each), so values don't need to be concatenated
+ * or encoded first; the result is the same of Guava's <code>Hashing.murmur3_128().hashString(value)</code> on the
+ * concatenation of all the fed values.
+ * Nothing is allocated but the final string (see {@link #asId()} and {@link #asLong()}).
+ *
+ * Instances are not thread-safe and they are meant to be reused (e.g. one per thread, see {@link #reset()}).
+ *
+ * @see <a href="https://github.com/aappleby/smhasher/blob/master/src/MurmurHash3.cpp">MurmurHash3</a>
+ * @author Andrea Gazzarini
+ * @since 1.1
+ */
+public final class MurmurHash128 {
+	private static final long C1 = 0x87c37b91114253d5L;
+	private static final long C2 = 0x4cf5ad432745937fL;
+	private static final char [] DIGITS = "0123456789abcdef".toCharArray();
+
+	private long h1;
+	private long h2;
+	private long k1;
+	private long k2;
+	private long length;
+	private long r1;
+	private long r2;
+
+	private final char [] id = new char[36];
+
+	/**
+	 * Resets this hash, so that it can be reused.
+	 *
+	 * @return this hash.
+	 */
+	public MurmurHash128 reset() {
+		h1 = h2 = k1 = k2 = length = 0;
+		return this;
+	}
+
+	/**
+	 * Feeds a character.
+	 *
+	 * @param value the character.
+	 * @return this hash.
+	 */
+	public MurmurHash128 put(final char value) {
+		final int position = (int) (length & 7);
+		if (position < 4) {
+			k1 |= (value & 0xFFFFL) << (position << 4);
+		} else {
+			k2 |= (value & 0xFFFFL) << ((position - 4) << 4);
+		}
+
+		if (position == 7) {
+			block();
+		}
+		length++;
+		return this;
+	}
+
+	/**
+	 * Feeds all the characters of a given value.
+	 *
+	 * @param value the value, null is ignored.
+	 * @return this hash.
+	 */
+	public MurmurHash128 put(final CharSequence value) {
+		if (value != null) {
+			final int valueLength = value.length();
+			for (int i = 0; i < valueLength; i++) {
+				put(value.charAt(i));
+			}
+		}
+		return this;
+	}
+
+	/**
+	 * Returns the hash of the characters fed so far, formatted as a UUID (i.e. 8-4-4-4-12 hex digits).
+	 *
+	 * @return the hash of the characters fed so far, formatted as a UUID.
+	 */
+	public String asId() {
+		finish();
+		return format(r1, r2);
+	}
+
+	/**
+	 * Returns the hash of the characters fed so far, as a (RFC 4122) UUID of a given version.
+	 * Like in {@link java.util.UUID}, 6 bits of the hash are replaced by the version and the (IETF) variant,
+	 * so that the version tells how the identifier has been built.
+	 *
+	 * @param version the UUID version (0-15).
+	 * @return the hash of the characters fed so far, as a UUID of the given version.
+	 */
+	public String asUuid(final int version) {
+		finish();
+		return format(
+				(r1 & ~0xF000L) | ((version & 0xFL) << 12),
+				(r2 & 0x3FFFFFFFFFFFFFFFL) | 0x8000000000000000L);
+	}
+
+	/**
+	 * Returns the first 64 bits of the hash of the characters fed so far.
+	 * That is the same of Guava's <code>HashCode.asLong()</code>.
+	 *
+	 * @return the first 64 bits of the hash of the characters fed so far.
+	 */
+	public long asLong() {
+		finish();
+		return r1;
+	}
+
+	/**
+	 * Computes the (128 bits) hash of the characters fed so far.
+	 * Fed characters are left untouched, so more characters can be still fed.
+	 */
+	private void finish() {
+		r1 = h1;
+		r2 = h2;
+
+		if ((length & 7) != 0) {
+			r1 ^= mixK1(k1);
+			r2 ^= mixK2(k2);
+		}
+
+		final long bytes = length << 1;
+		r1 ^= bytes;
+		r2 ^= bytes;
+
+		r1 += r2;
+		r2 += r1;
+
+		r1 = fmix(r1);
+		r2 = fmix(r2);
+
+		r1 += r2;
+		r2 += r1;
+	}
+
+	/**
+	 * Formats a given 128 bits value as a UUID (i.e. like {@link java.util.UUID#toString()}).
+	 *
+	 * @param msb the most significant bits.
+	 * @param lsb the least significant bits.
+	 * @return the given value, formatted as a UUID.
+	 */
+	String format(final long msb, final long lsb) {
+		digits(msb >>> 32, 0, 8);
+		id[8] = '-';
+		digits(msb >>> 16, 9, 4);
+		id[13] = '-';
+		digits(msb, 14, 4);
+		id[18] = '-';
+		digits(lsb >>> 48, 19, 4);
+		id[23] = '-';
+		digits(lsb, 24, 12);
+		return new String(id);
+	}
+
+	/**
+	 * Writes the lowest hex digits of a given value in the identifier buffer.
+	 *
+	 * @param value the value.
+	 * @param offset the first position in the buffer.
+	 * @param count how many digits have to be written.
+	 */
+	private void digits(final long value, final int offset, final int count) {
+		for (int i = 0; i < count; i++) {
+			id[offset + i] = DIGITS[(int) (value >>> ((count - 1 - i) << 2)) & 0xF];
+		}
+	}
+
+	/**
+	 * Mixes the current (full) 16 bytes block into the hash.
+	 */
+	private void block() {
+		h1 ^= mixK1(k1);
+		h1 = Long.rotateLeft(h1, 27);
+		h1 += h2;
+		h1 = h1 * 5 + 0x52dce729;
+
+		h2 ^= mixK2(k2);
+		h2 = Long.rotateLeft(h2, 31);
+		h2 += h1;
+		h2 = h2 * 5 + 0x38495ab5;
+
+		k1 = k2 = 0;
+	}
+
+	private static long mixK1(final long k) {
+		return Long.rotateLeft(k * C1, 31) * C2;
+	}
+
+	private static long mixK2(final long k) {
+		return Long.rotateLeft(k * C2, 33) * C1;
+	}
+
+	private static long fmix(final long value) {
+		long k = value;
+		k ^= k >>> 33;
+		k *= 0xff51afd7ed558ccdL;
+		k ^= k >>> 33;
+		k *= 0xc4ceb9fe1a85ec53L;
+		k ^= k >>> 33;
+		return k;
+	}
+}
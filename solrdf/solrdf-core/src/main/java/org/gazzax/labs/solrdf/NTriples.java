@@ -20,6 +20,15 @@ public abstract class NTriples {
 	private static final String LANGUAGE_MARKER = "@";
 	private static final String DATATYPE_MARKER = "^^";
 	
+	// Serializations are built in a per-thread buffer, which is replaced when it grows too much (e.g. after a huge literal) 
+	private static final int MAX_BUFFER_CAPACITY = 64 * 1024;
+	private static final ThreadLocal<StringBuilder> BUFFER = new ThreadLocal<StringBuilder>() {
+		@Override
+		protected StringBuilder initialValue() {
+			return new StringBuilder(256);
+		}
+	};
+	
 	/**
 	 * Returns true if the given NT value denotes a URI.
 	 * 
@@ -195,7 +204,7 @@ public abstract class NTriples {
 	 * @return a {@link String} representation of the given URI.
 	 */
 	public static String asNtURI(final Node uri) {
-		final StringBuilder buffer = new StringBuilder("<");
+		final StringBuilder buffer = buffer().append('<');
 		escapeAndAppend(uri.getURI(), buffer);
 		return buffer.append(">").toString();
 	}
@@ -207,7 +216,8 @@ public abstract class NTriples {
 	 * @return a {@link String} representation of the given blank node.
 	 */
 	public static String asNtBlankNode(final Node blankNode) {
-		return new StringBuilder("_:")
+		return buffer()
+			.append(START_BNODE_CHARS)
 			.append(blankNode.getBlankNodeLabel())
 			.toString();
 	}
@@ -219,7 +229,7 @@ public abstract class NTriples {
 	 * @return a {@link String} representation of the given literal.
 	 */
 	public static String asNtLiteral(final Node literal) {
-		final StringBuilder buffer = new StringBuilder("\"");
+		final StringBuilder buffer = buffer().append('"');
 		escapeAndAppend(String.valueOf(literal.getLiteral().getLexicalForm()), buffer);
 		buffer.append("\"");
 		final String language = literal.getLiteralLanguage();
@@ -235,6 +245,47 @@ public abstract class NTriples {
 		return buffer.toString();
 	}
 
+	/**
+	 * Escapes the given value using the same rules applied to URIs and literal lexical forms.
+	 * 
+	 * @param value the value to be escaped.
+	 * @return the escaped value.
+	 */
+	public static String escape(final String value) {
+		final StringBuilder buffer = buffer();
+		escapeAndAppend(value, buffer);
+		return buffer.toString();
+	}
+	
+	/**
+	 * Returns the (empty) serialization buffer of the current thread.
+	 * 
+	 * @return the (empty) serialization buffer of the current thread.
+	 */
+	private static StringBuilder buffer() {
+		StringBuilder buffer = BUFFER.get();
+		if (buffer.capacity() > MAX_BUFFER_CAPACITY) {
+			buffer = new StringBuilder(256);
+			BUFFER.set(buffer);
+		}
+		buffer.setLength(0);
+		return buffer;
+	}
+	
+	/**
+	 * Appends the (uppercase, zero padded) hex representation of a given number to the given buffer.
+	 * Same as {@link #hex(int, int)}, without intermediate strings.
+	 * 
+	 * @param decimal the input number.
+	 * @param length the overall length of the appended representation.
+	 * @param buffer the accumulator char buffer.
+	 */
+	private static void appendHex(final int decimal, final int length, final StringBuilder buffer) {
+		for (int shift = (length - 1) << 2; shift >= 0; shift -= 4) {
+			buffer.append(Character.toUpperCase(Character.forDigit((decimal >>> shift) & 0xF, 16)));
+		}
+	}
+	
 	/**
 	 * Escapes the given value by appending the result in the given buffer.
 	 * 
@@ -267,10 +318,10 @@ public abstract class NTriples {
 				if (cInt >= 0x0 && cInt <= 0x8 || cInt == 0xB || cInt == 0xC || cInt >= 0xE && cInt <= 0x1F
 				|| cInt >= 0x7F && cInt <= 0xFFFF) {
 					buffer.append("\\u");
-					buffer.append(hex(cInt, 4));
+					appendHex(cInt, 4, buffer);
 				} else if (cInt >= 0x10000 && cInt <= 0x10FFFF) {
 					buffer.append("\\U");
-					buffer.append(hex(cInt, 8));
+					appendHex(cInt, 8, buffer);
 				} else {
 					buffer.append(c);
 				}
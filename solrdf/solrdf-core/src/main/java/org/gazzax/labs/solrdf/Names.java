@@ -16,6 +16,8 @@ public interface Names {
 	String SOLR_RESPONSE = "solr.response";
 	String HYBRID_MODE = "hybrid.mode";
 	String NUM_FOUND = "num.found";
+	String INDEX_OFFSET = "index.offset";
+	String INDEX_LIMIT = "index.limit";
 	String GRAPH_URI_PARAMETER_NAME = "graph";
 	String GRAPH_URI_ATTRIBUTE_NAME = "graph.uri";
 	String DEFAULT_GRAPH_PARAMETER_NAME = "default";
@@ -24,4 +26,22 @@ public interface Names {
 	String UPDATE_PARAMETER_NAME = "update";
 	String USING_NAMED_GRAPH_URI_PARAMETER_NAME = "using-named-graph-uri";
 	String USING_GRAPH_URI_PARAMETER_NAME = "using-graph-uri";
+	String UPDATE_BATCH_SIZE_PARAMETER_NAME = "update.batch.size";
+	String CLOUD_PREFETCH_PAGES_PARAMETER_NAME = "cloud.prefetch.pages";
+	String CLOUD_PREFETCH_THREADS_PARAMETER_NAME = "cloud.prefetch.threads";
+	String CLOUD_STATISTICS_TTL_PARAMETER_NAME = "cloud.statistics.ttl";
+	String PAGE_MEMORY_BUDGET_PARAMETER_NAME = "page.memory.budget";
+	String BIND_JOIN_BATCH_SIZE_PARAMETER_NAME = "bind.join.batch.size";
+	String MAX_INTERMEDIATE_SOLUTIONS_PARAMETER_NAME = "bgp.max.intermediate.solutions";
+	String BULK_WORKERS_PARAMETER_NAME = "bulk.workers";
+	String BULK_BATCH_SIZE_PARAMETER_NAME = "bulk.batch.size";
+	String BULK_QUEUE_CAPACITY_PARAMETER_NAME = "bulk.queue.capacity";
+	String BULK_FILE_PARAMETER_NAME = "bulk.file";
+	String BULK_CHUNK_SIZE_PARAMETER_NAME = "bulk.chunk.size";
+	String BULK_BLOOM_PERSISTENT_PARAMETER_NAME = "bulk.bloom.persistent";
+	String BULK_BLOOM_EXPECTED_TRIPLES_PARAMETER_NAME = "bulk.bloom.expected.triples";
+	String BULK_BLOOM_FALSE_POSITIVE_PROBABILITY_PARAMETER_NAME = "bulk.bloom.fpp";
+	String INGEST_THREADS_PARAMETER_NAME = "ingest.threads";
+	String INGEST_MAX_QUEUED_LOADS_PARAMETER_NAME = "ingest.max.queued.loads";
+	String INGEST_ADMISSION_TIMEOUT_PARAMETER_NAME = "ingest.admission.timeout";
 }
\ No newline at end of file
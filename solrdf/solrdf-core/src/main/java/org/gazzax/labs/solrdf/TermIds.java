@@ -0,0 +1,32 @@
+package org.gazzax.labs.solrdf;
+
+/**
+ * Booch utility for computing the (64 bits) identifier of an RDF term.
+ * 
+ * The identifier is a hash of the N-Triples form of the term, so it is stable (the same term has always the same 
+ * identifier, on every node and across restarts) and it doesn't need any coordination or persistent mapping.
+ * Different terms could (very rarely) share the same identifier: identifiers can be used for discarding 
+ * candidates (e.g. in joins) but equality must be always confirmed on terms.
+ * The characters of the term are streamed in the hash (see {@link MurmurHash128}), so nothing is allocated.
+ * 
+ * @author Andrea Gazzarini
+ * @since 1.1
+ */
+public abstract class TermIds {
+	private static final ThreadLocal<MurmurHash128> HASH = new ThreadLocal<MurmurHash128>() {
+		@Override
+		protected MurmurHash128 initialValue() {
+			return new MurmurHash128();
+		}
+	};
+	
+	/**
+	 * Returns the identifier of the given term.
+	 * 
+	 * @param nt the N-Triples form of the term.
+	 * @return the identifier of the given term.
+	 */
+	public static long id(final CharSequence nt) {
+		return HASH.get().reset().put(nt).asLong();
+	}
+}
@@ -67,6 +67,15 @@ public abstract class DatasetGraphSupertypeLayer extends DatasetGraphCaching {
 	@Override
 	protected abstract boolean _containsGraph(final Node graphNode);
 
+	/**
+	 * Returns the cardinality statistics of this dataset.
+	 * 
+	 * @return the cardinality statistics of this dataset, null if they are not available.
+	 */
+	public GraphStatistics statistics() {
+		return null;
+	}
+
 	@Override
 	protected void _close() {
 		// Nothing to be done here...
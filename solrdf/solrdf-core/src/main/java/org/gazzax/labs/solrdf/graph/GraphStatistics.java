@@ -0,0 +1,203 @@
+package org.gazzax.labs.solrdf.graph;
+
+import static org.gazzax.labs.solrdf.NTriples.asNtURI;
+
+import java.util.Collections;
+import java.util.Map;
+
+import com.hp.hpl.jena.graph.GraphStatisticsHandler;
+import com.hp.hpl.jena.graph.Node;
+
+/**
+ * Cardinality statistics of the triples managed by SolRDF (i.e. across all graphs).
+ * Statistics are kept per predicate (triples, distinct subjects and distinct objects) and per graph (triples).
+ *
+ * @author Andrea Gazzarini
+ * @since 1.1
+ */
+public class GraphStatistics {
+
+	/**
+	 * Statistics of a single predicate.
+	 *
+	 * @author Andrea Gazzarini
+	 * @since 1.1
+	 */
+	public static class PredicateStatistics {
+		final long triples;
+		final long distinctSubjects;
+		final long distinctObjects;
+
+		/**
+		 * Builds a new {@link PredicateStatistics} with the given data.
+		 *
+		 * @param triples the number of triples with this predicate.
+		 * @param distinctSubjects the number of distinct subjects of this predicate.
+		 * @param distinctObjects the number of distinct objects of this predicate.
+		 */
+		public PredicateStatistics(final long triples, final long distinctSubjects, final long distinctObjects) {
+			this.triples = triples;
+			this.distinctSubjects = distinctSubjects;
+			this.distinctObjects = distinctObjects;
+		}
+
+		/**
+		 * Returns the number of triples with this predicate.
+		 *
+		 * @return the number of triples with this predicate.
+		 */
+		public long triples() {
+			return triples;
+		}
+
+		/**
+		 * Returns the number of distinct subjects of this predicate.
+		 *
+		 * @return the number of distinct subjects of this predicate.
+		 */
+		public long distinctSubjects() {
+			return distinctSubjects;
+		}
+
+		/**
+		 * Returns the number of distinct objects of this predicate.
+		 *
+		 * @return the number of distinct objects of this predicate.
+		 */
+		public long distinctObjects() {
+			return distinctObjects;
+		}
+	}
+
+	final long triples;
+	final long distinctSubjects;
+	final long distinctObjects;
+	final Map<String, Long> graphs;
+	final Map<String, PredicateStatistics> predicates;
+
+	/**
+	 * Builds a new {@link GraphStatistics} with the given data.
+	 *
+	 * @param triples the total number of triples.
+	 * @param distinctSubjects the total number of distinct subjects.
+	 * @param distinctObjects the total number of distinct objects.
+	 * @param graphs the number of triples of each graph (graph names are in N-Triples format, "_" denotes the default graph).
+	 * @param predicates the statistics of each predicate (predicates are in N-Triples format).
+	 */
+	public GraphStatistics(
+			final long triples,
+			final long distinctSubjects,
+			final long distinctObjects,
+			final Map<String, Long> graphs,
+			final Map<String, PredicateStatistics> predicates) {
+		this.triples = triples;
+		this.distinctSubjects = distinctSubjects;
+		this.distinctObjects = distinctObjects;
+		this.graphs = Collections.unmodifiableMap(graphs);
+		this.predicates = Collections.unmodifiableMap(predicates);
+	}
+
+	/**
+	 * Estimates the number of triples matching a pattern.
+	 * Bound members whose value is unknown (e.g. a variable bound by a previous pattern) are estimated using the
+	 * average selectivity of that member.
+	 *
+	 * @param subjectIsBound true if the subject is bound.
+	 * @param predicate the predicate (N-Triples format), null in case of unbound predicate.
+	 * @param predicateIsBound true if the predicate is bound (to a concrete or unknown value).
+	 * @param objectIsBound true if the object is bound.
+	 * @return the estimated number of triples matching the given pattern.
+	 */
+	public long estimate(final boolean subjectIsBound, final String predicate, final boolean predicateIsBound, final boolean objectIsBound) {
+		double result = triples;
+		double subjects = distinctSubjects;
+		double objects = distinctObjects;
+
+		if (predicate != null) {
+			final PredicateStatistics statistics = predicates.get(predicate);
+			if (statistics == null) {
+				return 0;
+			}
+			result = statistics.triples;
+			subjects = statistics.distinctSubjects;
+			objects = statistics.distinctObjects;
+		} else if (predicateIsBound) {
+			result /= Math.max(1, predicates.size());
+		}
+
+		if (subjectIsBound) {
+			result /= Math.max(1, subjects);
+		}
+
+		if (objectIsBound) {
+			result /= Math.max(1, objects);
+		}
+
+		return result > 0 ? (long) Math.ceil(result) : 0;
+	}
+
+	/**
+	 * Returns the total number of triples.
+	 *
+	 * @return the total number of triples.
+	 */
+	public long triples() {
+		return triples;
+	}
+
+	/**
+	 * Returns the total number of distinct subjects.
+	 *
+	 * @return the total number of distinct subjects.
+	 */
+	public long distinctSubjects() {
+		return distinctSubjects;
+	}
+
+	/**
+	 * Returns the total number of distinct objects.
+	 *
+	 * @return the total number of distinct objects.
+	 */
+	public long distinctObjects() {
+		return distinctObjects;
+	}
+
+	/**
+	 * Returns the number of triples of each graph.
+	 *
+	 * @return the number of triples of each graph.
+	 */
+	public Map<String, Long> graphs() {
+		return graphs;
+	}
+
+	/**
+	 * Returns the statistics of each predicate.
+	 *
+	 * @return the statistics of each predicate.
+	 */
+	public Map<String, PredicateStatistics> predicates() {
+		return predicates;
+	}
+
+	/**
+	 * Returns a {@link GraphStatisticsHandler} view of these statistics.
+	 * Note that statistics are not partitioned by graph, so the estimates apply to the whole dataset.
+	 *
+	 * @return a {@link GraphStatisticsHandler} view of these statistics.
+	 */
+	public GraphStatisticsHandler asStatisticsHandler() {
+		return new GraphStatisticsHandler() {
+			@Override
+			public long getStatistic(final Node s, final Node p, final Node o) {
+				final boolean predicateIsConcrete = p != null && p.isConcrete();
+				return estimate(
+						s != null && s.isConcrete(),
+						predicateIsConcrete ? asNtURI(p) : null,
+						predicateIsConcrete,
+						o != null && o.isConcrete());
+			}
+		};
+	}
+}
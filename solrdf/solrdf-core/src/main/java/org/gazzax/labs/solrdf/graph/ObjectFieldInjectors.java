@@ -0,0 +1,45 @@
+package org.gazzax.labs.solrdf.graph;
+
+import org.apache.solr.common.SolrInputDocument;
+
+/**
+ * Maps the datatype of a literal object to the (typed) field where its value is indexed.
+ *
+ * Local and cloud graphs have their own registries, which differ in how they query those fields,
+ * while documents are always built by {@link org.gazzax.labs.solrdf.graph.standalone.TripleDocumentFactory}.
+ *
+ * @author Andrea Gazzarini
+ * @since 1.1
+ */
+public interface ObjectFieldInjectors {
+	/**
+	 * Injects the value of an object into a triple document.
+	 *
+	 * @author Andrea Gazzarini
+	 * @since 1.1
+	 */
+	interface Injector {
+		/**
+		 * Injects a given value into a document.
+		 *
+		 * @param triple the {@link SolrInputDocument} representing a triple.
+		 * @param value the value of the object member.
+		 */
+		void inject(SolrInputDocument triple, Object value);
+	}
+
+	/**
+	 * Returns the injector that is in charge to handle the given (datatype) URI.
+	 *
+	 * @param uri the datatype URI, null for plain literals.
+	 * @return the injector that is in charge to handle the given (datatype) URI.
+	 */
+	Injector get(String uri);
+
+	/**
+	 * Returns the injector used for storing plain strings (and resources).
+	 *
+	 * @return the injector used for storing plain strings.
+	 */
+	Injector catchAllInjector();
+}
@@ -0,0 +1,134 @@
+package org.gazzax.labs.solrdf.graph;
+
+/**
+ * Chooses the length of the result pages of a pattern scan.
+ *
+ * The first page is small, so point lookups don't pay for rows they don't need. Then the length adapts to:
+ *
+ * <ul>
+ * 	<li>the consumption rate: if a page is consumed faster than it was fetched, round-trips are the bottleneck and the length doubles;
+ * 	if it is consumed much slower, larger pages would only hold memory, and the length halves;</li>
+ * 	<li>the estimated result size (i.e. the number of matches reported by the first page): a page never exceeds the remaining results;</li>
+ * 	<li>the memory budget: a page never exceeds the number of triples that fit in the budget.</li>
+ * </ul>
+ *
+ * Instances are not thread-safe: each scan has its own sizer.
+ *
+ * @author Andrea Gazzarini
+ * @since 1.1
+ */
+public class PageSizer {
+	public static final int INITIAL_PAGE_SIZE = 100;
+	public static final int MIN_PAGE_SIZE = 10;
+	public static final long ESTIMATED_TRIPLE_SIZE = 256;
+	public static final long DEFAULT_MEMORY_BUDGET = 16 * 1024 * 1024;
+
+	static final int SLOW_CONSUMER_FACTOR = 4;
+
+	final int maxPageSize;
+
+	int pageSize;
+	long matches = -1;
+	long fetched;
+
+	long fetchStartedAt;
+	long fetchTime;
+	long pageReadyAt;
+
+	int pages;
+	int smallestPageSize = Integer.MAX_VALUE;
+	int largestPageSize;
+
+	/**
+	 * Builds a new sizer.
+	 *
+	 * @param initialPageSize the length of the first page (capped by {@link #INITIAL_PAGE_SIZE}).
+	 * @param memoryBudget the maximum amount of memory (in bytes) a page can take.
+	 */
+	public PageSizer(final int initialPageSize, final long memoryBudget) {
+		this.maxPageSize = (int) Math.max(MIN_PAGE_SIZE, Math.min(Integer.MAX_VALUE, memoryBudget / ESTIMATED_TRIPLE_SIZE));
+		this.pageSize = clamp(Math.min(initialPageSize, INITIAL_PAGE_SIZE));
+	}
+
+	/**
+	 * Returns the length of the page that is going to be fetched.
+	 *
+	 * @return the length of the page that is going to be fetched.
+	 */
+	public int pageSize() {
+		return pageSize;
+	}
+
+	/**
+	 * Signals that a page is going to be fetched.
+	 */
+	public void fetchStarted() {
+		fetchStartedAt = System.nanoTime();
+	}
+
+	/**
+	 * Signals that a page has been fetched.
+	 *
+	 * @param length the number of results in the fetched page.
+	 * @param matches the total number of results, as reported by the index.
+	 */
+	public void fetchCompleted(final int length, final long matches) {
+		pageReadyAt = System.nanoTime();
+		fetchTime = pageReadyAt - fetchStartedAt;
+
+		this.matches = matches;
+		fetched += length;
+		pages++;
+		smallestPageSize = Math.min(smallestPageSize, pageSize);
+		largestPageSize = Math.max(largestPageSize, pageSize);
+	}
+
+	/**
+	 * Signals that the current page has been consumed and computes the length of the next page.
+	 *
+	 * @return the length of the next page.
+	 */
+	public int nextPageSize() {
+		final long consumptionTime = System.nanoTime() - pageReadyAt;
+
+		int size = pageSize;
+		if (consumptionTime < fetchTime) {
+			size = pageSize <= Integer.MAX_VALUE / 2 ? pageSize * 2 : Integer.MAX_VALUE;
+		} else if (consumptionTime > SLOW_CONSUMER_FACTOR * fetchTime) {
+			size = pageSize / 2;
+		}
+
+		if (matches >= 0) {
+			size = (int) Math.min(size, Math.max(MIN_PAGE_SIZE, matches - fetched));
+		}
+
+		pageSize = clamp(size);
+		return pageSize;
+	}
+
+	/**
+	 * Returns a short summary of the page lengths chosen so far.
+	 *
+	 * @return a short summary of the page lengths chosen so far.
+	 */
+	public String summary() {
+		return new StringBuilder()
+			.append("pages=").append(pages)
+			.append(", fetched=").append(fetched)
+			.append(", matches=").append(matches)
+			.append(", smallest=").append(pages > 0 ? smallestPageSize : 0)
+			.append(", largest=").append(largestPageSize)
+			.append(", max=").append(maxPageSize)
+			.toString();
+	}
+
+	/**
+	 * Bounds a given page length between the minimum and the maximum allowed lengths.
+	 *
+	 * @param size the page length.
+	 * @return the bounded page length.
+	 */
+	int clamp(final int size) {
+		return Math.max(MIN_PAGE_SIZE, Math.min(size, maxPageSize));
+	}
+}
@@ -1,15 +1,32 @@
 package org.gazzax.labs.solrdf.graph;
 
+import static org.gazzax.labs.solrdf.NTriples.asNt;
 import static org.gazzax.labs.solrdf.NTriples.asNtURI;
 
+import java.io.IOException;
+import java.util.Collections;
 import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.WeakHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
 
+import org.apache.lucene.index.LeafReader;
+import org.apache.lucene.index.LeafReaderContext;
 import org.apache.lucene.index.Term;
 import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.util.Bits;
+import org.apache.solr.common.SolrException;
+import org.apache.solr.common.SolrException.ErrorCode;
+import org.apache.solr.schema.IndexSchema;
+import org.apache.solr.search.SolrIndexSearcher;
 import org.apache.solr.search.SyntaxError;
 import org.gazzax.labs.solrdf.Field;
+import org.gazzax.labs.solrdf.MurmurHash128;
 import org.gazzax.labs.solrdf.log.Log;
 import org.gazzax.labs.solrdf.log.MessageCatalog;
+import org.slf4j.LoggerFactory;
 
 import com.hp.hpl.jena.graph.Graph;
 import com.hp.hpl.jena.graph.Node;
@@ -28,8 +45,26 @@ import com.hp.hpl.jena.util.iterator.WrappedIterator;
 public abstract class SolRDFGraph extends GraphBase {
 	public static final int DEFAULT_QUERY_FETCH_SIZE = 1000;
 	public static final String UNNAMED_GRAPH_PLACEHOLDER = "_";
-	protected static final String NULL_LANGUAGE = "_";
+	public static final String NULL_LANGUAGE = "_";
 	protected static final TermQuery NULL_LANGUAGE_TERM_QUERY = new TermQuery(new Term(Field.LANG, NULL_LANGUAGE));
+	
+	private static final char SEPARATOR = '\u0000';
+	private static final Log LOGGER = new Log(LoggerFactory.getLogger(SolRDFGraph.class));
+	private static final Set<String> ID_FIELD = Collections.singleton(Field.ID);
+	private static final AtomicBoolean LEGACY_IDS_REPORTED = new AtomicBoolean();
+	
+	// The identifiers format of each (open) searcher: a searcher never changes, so its index is probed once
+	private static final Map<SolrIndexSearcher, Boolean> LEGACY_IDS = Collections.synchronizedMap(new WeakHashMap<SolrIndexSearcher, Boolean>());
+	
+	// The UUID version of document identifiers; legacy identifiers (see legacyDocumentId) are name-based UUIDs (version 3)
+	static final int ID_VERSION = 8;
+	static final char LEGACY_ID_VERSION = '3';
+	private static final ThreadLocal<MurmurHash128> ID_HASH = new ThreadLocal<MurmurHash128>() {
+		@Override
+		protected MurmurHash128 initialValue() {
+			return new MurmurHash128();
+		}
+	};
 
 	protected final String graphNodeStringified;
 	protected final GraphEventConsumer consumer;
@@ -48,6 +83,170 @@ public abstract class SolRDFGraph extends GraphBase {
 		this.queryFetchSize = queryFetchSize;
 	}
 	
+	/**
+	 * Returns true if documents are routed by subject (in SolrCloud), that is, if the schema declares the 
+	 * {@link Field#S_ROUTE} field.
+	 * Routing changes the identifiers (and therefore the placement) of documents, so it is a setting of the collection 
+	 * (i.e. of its schema), shared by all its writers. It must be chosen before loading any data.
+	 * 
+	 * @param schema the Solr schema.
+	 * @return true if documents are routed by subject.
+	 */
+	public static boolean hasSubjectRouting(final IndexSchema schema) {
+		return schema.getFieldOrNull(Field.S_ROUTE) != null;
+	}
+	
+	/**
+	 * Returns the shard key of a given subject.
+	 * The key is an hex string, so it never contains the compositeId separator, even when the subject does.
+	 * 
+	 * @param subject the subject.
+	 * @return the shard key of the given subject, as a compositeId prefix (i.e. including the trailing separator).
+	 */
+	public static String shardKey(final Node subject) {
+		return Integer.toHexString(asNt(subject).hashCode()) + "!";
+	}
+	
+	/**
+	 * Returns the identifier of the document that holds a given (concrete) triple within a given graph.
+	 * 
+	 * The identifier is a 128 bits (non cryptographic) hash, streamed from the lexical forms of the triple members: 
+	 * nothing is concatenated or encoded on the way.
+	 * The hash is formatted as a UUID whose version ({@link #ID_VERSION}) marks the identifier format, so that 
+	 * indexes built with the legacy identifiers can be detected (see {@link #hasLegacyIds(SolrIndexSearcher)}).
+	 * With subject routing, the identifier is prefixed by the shard key of the subject (i.e. <code>key!hash</code>), 
+	 * so the compositeId router places all triples of a subject on the same shard.
+	 * All writers (graphs, bulk loads and the offline index builder) must build identifiers here.
+	 * 
+	 * @param graphNodeStringified the stringified graph node.
+	 * @param triple the triple.
+	 * @param subjectRouting true if documents are routed by subject (see {@link #hasSubjectRouting(IndexSchema)}).
+	 * @return the identifier of the document that holds the given triple.
+	 */
+	public static String documentId(final String graphNodeStringified, final Triple triple, final boolean subjectRouting) {
+		final MurmurHash128 hash = ID_HASH.get().reset();
+		hash.put(graphNodeStringified).put(SEPARATOR);
+		member(hash, triple.getSubject());
+		member(hash, triple.getPredicate());
+		member(hash, triple.getObject());
+		return subjectRouting ? shardKey(triple.getSubject()) + hash.asUuid(ID_VERSION) : hash.asUuid(ID_VERSION);
+	}
+	
+	/**
+	 * Returns the legacy (i.e. SolRDF 1.0) identifier of the document that holds a given triple within a given graph.
+	 * Indexes built with these identifiers keep using them, until they are rebuilt: otherwise a re-added triple would 
+	 * be duplicated.
+	 * 
+	 * @param graphNodeStringified the stringified graph node.
+	 * @param triple the triple.
+	 * @return the legacy identifier of the document that holds the given triple.
+	 */
+	public static String legacyDocumentId(final String graphNodeStringified, final Triple triple) {
+		return UUID.nameUUIDFromBytes(
+				new StringBuilder()
+					.append(graphNodeStringified)
+					.append(triple.getSubject())
+					.append(triple.getPredicate())
+					.append(triple.getObject())
+					.toString().getBytes()).toString();
+	}
+	
+	/**
+	 * Returns true if a given document identifier is a legacy identifier (see {@link #legacyDocumentId(String, Triple)}).
+	 * 
+	 * @param id the document identifier, optionally prefixed by a shard key.
+	 * @return true if the given document identifier is a legacy identifier.
+	 */
+	public static boolean isLegacyId(final String id) {
+		final int start = id.lastIndexOf('!') + 1;
+		return id.length() - start == 36 && id.charAt(start + 14) == LEGACY_ID_VERSION;
+	}
+	
+	/**
+	 * Returns true if the index of a given searcher has been built with legacy identifiers.
+	 * All documents of an index have identifiers in the same format, so the (first) live document tells it.
+	 * Writers of such index must keep using legacy identifiers and delete concrete triples by query.
+	 * 
+	 * The answer is cached per searcher, so the stored identifier is read once for each opened searcher, and not 
+	 * by every graph and bulk load that uses it.
+	 * 
+	 * @param searcher the Solr index searcher.
+	 * @return true if the index of the given searcher has been built with legacy identifiers, false if it is empty.
+	 */
+	public static boolean hasLegacyIds(final SolrIndexSearcher searcher) {
+		final Boolean cached = LEGACY_IDS.get(searcher);
+		if (cached != null) {
+			return cached;
+		}
+		
+		final boolean legacy = probeLegacyIds(searcher);
+		LEGACY_IDS.put(searcher, legacy);
+		return legacy;
+	}
+	
+	/**
+	 * Reads the identifier of the first live document of a given searcher (see {@link #hasLegacyIds(SolrIndexSearcher)}).
+	 * 
+	 * @param searcher the Solr index searcher.
+	 * @return true if the index of the given searcher has been built with legacy identifiers, false if it is empty.
+	 */
+	static boolean probeLegacyIds(final SolrIndexSearcher searcher) {
+		try {
+			for (final LeafReaderContext leaf : searcher.getTopReaderContext().leaves()) {
+				final LeafReader reader = leaf.reader();
+				final Bits liveDocs = reader.getLiveDocs();
+				for (int docId = 0; docId < reader.maxDoc(); docId++) {
+					if (liveDocs == null || liveDocs.get(docId)) {
+						final String id = reader.document(docId, ID_FIELD).get(Field.ID);
+						final boolean legacy = id != null && isLegacyId(id);
+						if (legacy) {
+							reportLegacyIds(searcher.getName());
+						}
+						return legacy;
+					}
+				}
+			}
+			return false;
+		} catch (final IOException exception) {
+			LOGGER.error(MessageCatalog._00113_NWS_FAILURE, exception);
+			throw new SolrException(ErrorCode.SERVER_ERROR, exception);
+		}
+	}
+	
+	/**
+	 * Warns (once) that an index has been built with legacy identifiers.
+	 * 
+	 * @param index the index (searcher or collection) name.
+	 */
+	public static void reportLegacyIds(final String index) {
+		if (LEGACY_IDS_REPORTED.compareAndSet(false, true)) {
+			LOGGER.warning(MessageCatalog._00140_LEGACY_DOCUMENT_IDS, index);
+		}
+	}
+	
+	/**
+	 * Feeds a triple member into a given hash.
+	 * Each member starts with a marker of its kind, and each part ends with a separator, so that different 
+	 * sequences of members never feed the same characters.
+	 * 
+	 * @param hash the hash.
+	 * @param member the triple member.
+	 */
+	static void member(final MurmurHash128 hash, final Node member) {
+		if (member.isURI()) {
+			hash.put('<').put(member.getURI());
+		} else if (member.isBlank()) {
+			hash.put('_').put(member.getBlankNodeLabel());
+		} else if (member.isLiteral()) {
+			hash.put('"').put(member.getLiteralLexicalForm())
+				.put(SEPARATOR).put(member.getLiteralLanguage())
+				.put(SEPARATOR).put(member.getLiteralDatatypeURI());
+		} else {
+			hash.put('?').put(member.toString());
+		}
+		hash.put(SEPARATOR);
+	}
+	
 	@Override
 	public ExtendedIterator<Triple> graphBaseFind(final Triple pattern) {	
 		try {
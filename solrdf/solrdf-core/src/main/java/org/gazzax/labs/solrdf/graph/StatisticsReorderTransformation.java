@@ -0,0 +1,40 @@
+package org.gazzax.labs.solrdf.graph;
+
+import static org.gazzax.labs.solrdf.NTriples.asNtURI;
+
+import com.hp.hpl.jena.sparql.engine.optimizer.reorder.PatternElements;
+import com.hp.hpl.jena.sparql.engine.optimizer.reorder.PatternTriple;
+import com.hp.hpl.jena.sparql.engine.optimizer.reorder.ReorderTransformationSubstitution;
+import com.hp.hpl.jena.sparql.sse.Item;
+
+/**
+ * A cost-based reorder transformation for Basic Graph Patterns.
+ * Each triple pattern is weighted with the estimated number of matching triples, computed from the {@link GraphStatistics}.
+ * Variables bound by the patterns that have been already chosen are considered as bound members.
+ *
+ * @author Andrea Gazzarini
+ * @since 1.1
+ */
+public class StatisticsReorderTransformation extends ReorderTransformationSubstitution {
+
+	final GraphStatistics statistics;
+
+	/**
+	 * Builds a new reorder transformation with the given statistics.
+	 *
+	 * @param statistics the {@link GraphStatistics}.
+	 */
+	public StatisticsReorderTransformation(final GraphStatistics statistics) {
+		this.statistics = statistics;
+	}
+
+	@Override
+	protected double weight(final PatternTriple pattern) {
+		final Item predicate = pattern.predicate;
+		return statistics.estimate(
+				PatternElements.isSet(pattern.subject),
+				predicate.isNodeURI() ? asNtURI(predicate.getNode()) : null,
+				PatternElements.isSet(predicate),
+				PatternElements.isSet(pattern.object));
+	}
+}
@@ -0,0 +1,62 @@
+package org.gazzax.labs.solrdf.graph;
+
+import com.hp.hpl.jena.sparql.core.BasicPattern;
+import com.hp.hpl.jena.sparql.core.DatasetGraph;
+import com.hp.hpl.jena.sparql.core.Substitute;
+import com.hp.hpl.jena.sparql.engine.ExecutionContext;
+import com.hp.hpl.jena.sparql.engine.QueryIterator;
+import com.hp.hpl.jena.sparql.engine.iterator.QueryIterBlockTriples;
+import com.hp.hpl.jena.sparql.engine.iterator.QueryIterPeek;
+import com.hp.hpl.jena.sparql.engine.iterator.QueryIterRoot;
+import com.hp.hpl.jena.sparql.engine.main.StageGenerator;
+import com.hp.hpl.jena.sparql.engine.optimizer.reorder.ReorderTransformation;
+
+/**
+ * A {@link StageGenerator} that reorders Basic Graph Patterns using the dataset {@link GraphStatistics} and then
+ * evaluates them triple-at-a-time.
+ *
+ * If statistics are not available, patterns are delegated to the wrapped {@link StageGenerator}.
+ *
+ * @author Andrea Gazzarini
+ * @since 1.1
+ */
+public class StatisticsStageGenerator implements StageGenerator {
+
+	final StageGenerator fallback;
+
+	/**
+	 * Builds a new {@link StageGenerator} with the given fallback.
+	 *
+	 * @param fallback the {@link StageGenerator} that will be used when statistics are not available.
+	 */
+	public StatisticsStageGenerator(final StageGenerator fallback) {
+		this.fallback = fallback;
+	}
+
+	@Override
+	public QueryIterator execute(final BasicPattern pattern, final QueryIterator input, final ExecutionContext execCxt) {
+		final DatasetGraph dataset = execCxt.getDataset();
+		final GraphStatistics statistics = pattern.size() > 1 && dataset instanceof DatasetGraphSupertypeLayer
+				? ((DatasetGraphSupertypeLayer) dataset).statistics()
+				: null;
+		if (statistics == null) {
+			return fallback.execute(pattern, input, execCxt);
+		}
+
+		if (!input.hasNext()) {
+			return input;
+		}
+
+		// Variables bound by the first incoming binding are considered as bound members
+		final ReorderTransformation reorder = new StatisticsReorderTransformation(statistics);
+		QueryIterator iterator = input;
+		BasicPattern grounded = pattern;
+		if (!(input instanceof QueryIterRoot)) {
+			final QueryIterPeek peek = QueryIterPeek.create(input, execCxt);
+			grounded = Substitute.substitute(pattern, peek.peek());
+			iterator = peek;
+		}
+
+		return QueryIterBlockTriples.create(iterator, reorder.reorderIndexes(grounded).reorder(pattern), execCxt);
+	}
+}
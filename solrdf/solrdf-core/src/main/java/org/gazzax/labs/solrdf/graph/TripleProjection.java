@@ -0,0 +1,137 @@
+package org.gazzax.labs.solrdf.graph;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+import org.gazzax.labs.solrdf.Field;
+import org.gazzax.labs.solrdf.NTriples;
+
+import com.hp.hpl.jena.graph.Node;
+import com.hp.hpl.jena.graph.Triple;
+import com.hp.hpl.jena.sparql.core.Var;
+
+/**
+ * The positions (subject, predicate, object) of the triples matching a pattern that are actually needed.
+ *
+ * Only those positions are loaded from the index and decoded:
+ *
+ * <ul>
+ * 	<li>a position fixed by the pattern is rebuilt from the pattern itself. That doesn't apply to literal objects,
+ * 	which are matched by value (e.g. "1"^^xsd:int matches also "01"^^xsd:int);</li>
+ * 	<li>a variable position that is not needed (e.g. it is projected away) is not loaded at all, and it is
+ * 	replaced by {@link Node#ANY} in the resulting triple. A variable that occurs twice in the pattern is always
+ * 	needed, because its values have to be compared.</li>
+ * </ul>
+ *
+ * @author Andrea Gazzarini
+ * @since 1.1
+ */
+public class TripleProjection {
+	/**
+	 * Loads all the positions.
+	 */
+	public static final TripleProjection ALL = new TripleProjection(Node.ANY, Node.ANY, Node.ANY, null);
+
+	final Node subject;
+	final Node predicate;
+	final Node object;
+	final Set<String> fields;
+
+	/**
+	 * Builds a new projection of the given pattern.
+	 *
+	 * @param subject the subject of the pattern.
+	 * @param predicate the predicate of the pattern.
+	 * @param object the object of the pattern.
+	 * @param needed the variables that are needed, null if all variables are needed.
+	 */
+	TripleProjection(final Node subject, final Node predicate, final Node object, final Collection<Var> needed) {
+		final Set<String> fields = new LinkedHashSet<String>(3);
+		this.subject = position(subject, Field.S, needed, fields, predicate, object);
+		this.predicate = position(predicate, Field.P, needed, fields, subject, object);
+		this.object = position(object, Field.O, needed, fields, subject, predicate);
+		this.fields = Collections.unmodifiableSet(fields);
+	}
+
+	/**
+	 * Returns the projection of a given pattern, where all the variable positions are needed.
+	 *
+	 * @param pattern the triple pattern (variables or {@link Node#ANY} stand for any value).
+	 * @return the projection of the given pattern.
+	 */
+	public static TripleProjection of(final Triple pattern) {
+		return of(pattern, null);
+	}
+
+	/**
+	 * Returns the projection of a given pattern, where only the given variables are needed.
+	 *
+	 * @param pattern the triple pattern.
+	 * @param needed the variables that are needed, null if all variables are needed.
+	 * @return the projection of the given pattern.
+	 */
+	public static TripleProjection of(final Triple pattern, final Collection<Var> needed) {
+		return new TripleProjection(pattern.getSubject(), pattern.getPredicate(), pattern.getObject(), needed);
+	}
+
+	/**
+	 * Returns the (stored) fields that must be loaded.
+	 *
+	 * @return the (stored) fields that must be loaded.
+	 */
+	public Set<String> fields() {
+		return fields;
+	}
+
+	/**
+	 * Builds a triple from the values of the loaded fields.
+	 *
+	 * @param s the value of the subject field, ignored if the subject is not loaded.
+	 * @param p the value of the predicate field, ignored if the predicate is not loaded.
+	 * @param o the value of the object field, ignored if the object is not loaded.
+	 * @return the triple.
+	 */
+	public Triple triple(final String s, final String p, final String o) {
+		return Triple.create(
+				subject != null ? subject : NTriples.asURIorBlankNode(s),
+				predicate != null ? predicate : NTriples.asURI(p),
+				object != null ? object : NTriples.asNode(o));
+	}
+
+	/**
+	 * Returns the value of a position that doesn't need to be loaded.
+	 *
+	 * @param member the pattern member at the given position.
+	 * @param field the field associated with the position.
+	 * @param needed the variables that are needed, null if all variables are needed.
+	 * @param fields the fields that must be loaded, the field of the position is added here if needed.
+	 * @param others the other members of the pattern.
+	 * @return the value of the position, null if it must be loaded.
+	 */
+	static Node position(
+			final Node member,
+			final String field,
+			final Collection<Var> needed,
+			final Set<String> fields,
+			final Node ... others) {
+		if (member.isConcrete() && !(member.isLiteral() && Field.O.equals(field))) {
+			return member;
+		}
+
+		if (member.isVariable() && needed != null && !needed.contains(Var.alloc(member))) {
+			boolean repeated = false;
+			for (final Node other : others) {
+				repeated |= member.equals(other);
+			}
+
+			if (!repeated) {
+				return Node.ANY;
+			}
+		}
+
+		fields.add(field);
+		return null;
+	}
+}
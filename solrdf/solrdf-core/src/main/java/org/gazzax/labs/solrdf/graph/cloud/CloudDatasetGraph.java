@@ -17,15 +17,22 @@ import org.apache.solr.request.SolrQueryRequest;
 import org.apache.solr.response.SolrQueryResponse;
 import org.gazzax.labs.solrdf.Field;
 import org.gazzax.labs.solrdf.NTriples;
+import org.gazzax.labs.solrdf.Names;
 import org.gazzax.labs.solrdf.graph.DatasetGraphSupertypeLayer;
+import org.gazzax.labs.solrdf.graph.GraphStatistics;
+import org.gazzax.labs.solrdf.graph.PageSizer;
 import org.gazzax.labs.solrdf.graph.SolRDFGraph;
+import org.gazzax.labs.solrdf.graph.StatisticsStageGenerator;
+import org.gazzax.labs.solrdf.graph.standalone.TripleDocumentFactory;
 import org.gazzax.labs.solrdf.log.Log;
 import org.gazzax.labs.solrdf.log.MessageCatalog;
 import org.slf4j.LoggerFactory;
 
 import com.hp.hpl.jena.graph.Graph;
 import com.hp.hpl.jena.graph.Node;
+import com.hp.hpl.jena.query.ARQ;
 import com.hp.hpl.jena.sparql.core.DatasetGraph;
+import com.hp.hpl.jena.sparql.engine.main.StageBuilder;
 
 /**
  * A Jena {@link DatasetGraph} implementaton that will be used when SolRDF is running in SolrCloud.
@@ -37,6 +44,16 @@ public class CloudDatasetGraph extends DatasetGraphSupertypeLayer {
 	static final Log LOGGER = new Log(LoggerFactory.getLogger(CloudDatasetGraph.class));
 	
 	protected CloudSolrClient cloud;
+	final PrefetchExecutor prefetchExecutor;
+	final boolean termIds;
+	final boolean subjectRouting;
+	final boolean legacyIds;
+	final int prefetchPages;
+	final long pageMemoryBudget;
+	final long statisticsTimeToLive;
+	final List<CloudGraph> graphs = new ArrayList<CloudGraph>();
+	
+	private GraphStatistics statistics;
 	
 	final static SolrQuery LIST_GRAPHS_QUERY = new SolrQuery("*:*");
 	static {
@@ -51,23 +68,69 @@ public class CloudDatasetGraph extends DatasetGraphSupertypeLayer {
 	 * 
 	 * @param request the Solr query request.
 	 * @param response the Solr query response.
+	 * @param server the SolrCloud client.
+	 * @param prefetchExecutor the thread pool that runs the page prefetchers (owned by the caller), null disables prefetching.
 	 */
 	public CloudDatasetGraph(
 			final SolrQueryRequest request, 
 			final SolrQueryResponse response,
-			final CloudSolrClient server) {
+			final CloudSolrClient server,
+			final PrefetchExecutor prefetchExecutor) {
 		super(request, response, null, NULL_GRAPH_EVENT_CONSUMER);
 		this.cloud = server;
+		this.prefetchExecutor = prefetchExecutor;
+		this.legacyIds = CloudLegacyIds.get(server);
+		this.subjectRouting = SolRDFGraph.hasSubjectRouting(request.getSchema()) && !legacyIds;
+		this.termIds = TripleDocumentFactory.hasTermIds(request.getSchema());
+		this.prefetchPages = request.getParams().getInt(Names.CLOUD_PREFETCH_PAGES_PARAMETER_NAME, 0);
+		this.pageMemoryBudget = request.getParams().getLong(Names.PAGE_MEMORY_BUDGET_PARAMETER_NAME, PageSizer.DEFAULT_MEMORY_BUDGET);
+		this.statisticsTimeToLive = request.getParams().getLong(Names.CLOUD_STATISTICS_TTL_PARAMETER_NAME, CloudStatistics.DEFAULT_TIME_TO_LIVE);
+		StageBuilder.setGenerator(
+				getContext(), 
+				new StatisticsStageGenerator(StageBuilder.chooseStageGenerator(ARQ.getContext())));
 	}	
 	
+	@Override
+	public GraphStatistics statistics() {
+		if (statistics == null) {
+			statistics = CloudStatistics.get(cloud, statisticsTimeToLive);
+		}
+		return statistics;
+	}
+	
 	@Override
 	protected Graph _createNamedGraph(final Node graphNode) {
-		return new CloudGraph(graphNode, cloud, CloudGraph.DEFAULT_QUERY_FETCH_SIZE, listener);
+		return track(new CloudGraph(graphNode, cloud, CloudGraph.DEFAULT_QUERY_FETCH_SIZE, listener, termIds, subjectRouting, legacyIds, prefetchExecutor, prefetchPages, pageMemoryBudget));
 	}
 
 	@Override
 	protected Graph _createDefaultGraph() {
-		return new CloudGraph(null, cloud, CloudGraph.DEFAULT_QUERY_FETCH_SIZE, listener);
+		return track(new CloudGraph(null, cloud, CloudGraph.DEFAULT_QUERY_FETCH_SIZE, listener, termIds, subjectRouting, legacyIds, prefetchExecutor, prefetchPages, pageMemoryBudget));
+	}
+	
+	@Override
+	protected void _close() {
+		boolean changed = false;
+		for (final CloudGraph graph : graphs) {
+			graph.flush();
+			changed |= graph.changed;
+		}
+		
+		if (changed) {
+			CloudStatistics.invalidate(cloud);
+			CloudLegacyIds.invalidate(cloud);
+		}
+	}
+	
+	/**
+	 * Keeps track of a graph created by this dataset, so its pending changes can be flushed on close.
+	 * 
+	 * @param graph the graph.
+	 * @return the same graph.
+	 */
+	CloudGraph track(final CloudGraph graph) {
+		graphs.add(graph);
+		return graph;
 	}
 
 	@Override
@@ -3,24 +3,32 @@ package org.gazzax.labs.solrdf.graph.cloud;
 import static org.gazzax.labs.solrdf.F.fq;
 import static org.gazzax.labs.solrdf.NTriples.asNt;
 import static org.gazzax.labs.solrdf.NTriples.asNtURI;
-import static org.gazzax.labs.solrdf.Strings.isNotNullOrEmptyString;
 
+import java.util.ArrayList;
 import java.util.Iterator;
-import java.util.UUID;
+import java.util.List;
+import java.util.Map;
 
 import org.apache.solr.client.solrj.SolrClient;
 import org.apache.solr.client.solrj.SolrQuery;
 import org.apache.solr.client.solrj.SolrQuery.ORDER;
+import org.apache.solr.client.solrj.impl.CloudSolrClient;
+import org.apache.solr.client.solrj.impl.CloudSolrClient.RouteException;
 import org.apache.solr.common.SolrException;
 import org.apache.solr.common.SolrException.ErrorCode;
 import org.apache.solr.common.SolrInputDocument;
+import org.apache.solr.common.params.ShardParams;
 import org.apache.solr.search.SyntaxError;
 import org.gazzax.labs.solrdf.Field;
 import org.gazzax.labs.solrdf.Strings;
 import org.gazzax.labs.solrdf.graph.GraphEventConsumer;
+import org.gazzax.labs.solrdf.graph.PageSizer;
 import org.gazzax.labs.solrdf.graph.SolRDFGraph;
+import org.gazzax.labs.solrdf.graph.TripleProjection;
+import org.gazzax.labs.solrdf.graph.standalone.TripleDocumentFactory;
 import org.gazzax.labs.solrdf.log.Log;
 import org.gazzax.labs.solrdf.log.MessageCatalog;
+import org.gazzax.labs.solrdf.log.MessageFactory;
 import org.slf4j.LoggerFactory;
 
 import com.hp.hpl.jena.datatypes.RDFDatatype;
@@ -32,14 +40,38 @@ import com.hp.hpl.jena.shared.DeleteDeniedException;
 /**
  * A {@link SolRDFGraph} implementation for running SolRDF in SolrCloud.
  * 
+ * Documents are built by the same {@link TripleDocumentFactory} of local graphs, with the cloud {@link FieldInjectorRegistry}.
+ * Changes are buffered and sent in batches. A batch of adds is sent when it is full, when its first document 
+ * has been waiting for too long, or when the operation ends (see {@link #flush()}).
+ * Within a batch, the {@link CloudSolrClient} groups documents by target shard and sends the groups to the shard leaders in parallel.
+ * Only one kind of change (adds or deletes by id) is buffered at a time, so changes are always applied in the order they were made.
+ * 
+ * With subject routing (a setting of the collection schema, see {@link SolRDFGraph#hasSubjectRouting}), 
+ * document identifiers are prefixed with a shard key derived from the subject (see {@link SolRDFGraph#documentId}), 
+ * so the compositeId router places all triples of a subject on the same shard, and patterns with a bound subject 
+ * are sent to that shard only (through the <code>_route_</code> parameter).
+ * 
  * @author Andrea Gazzarini
  * @since 1.0
  */
 public final class CloudGraph extends SolRDFGraph {
 	static final Log LOGGER = new Log(LoggerFactory.getLogger(CloudGraph.class));
+	static final int DELETE_BATCH_SIZE = 1000;
+	static final int ADD_BATCH_SIZE = 500;
+	static final long MAX_BUFFERING_TIME = 1000;
 	
-	final FieldInjectorRegistry registry = new FieldInjectorRegistry();
+	final FieldInjectorRegistry registry;
+	final TripleDocumentFactory documentFactory;
 	final SolrClient cloud;
+	final boolean subjectRouting;
+	final boolean legacyIds;
+	final PrefetchExecutor prefetchExecutor;
+	final int prefetchPages;
+	final long pageMemoryBudget;
+	final List<String> pendingDeletes = new ArrayList<String>();
+	final List<SolrInputDocument> pendingAdds = new ArrayList<SolrInputDocument>();
+	long firstPendingAddTimestamp;
+	boolean changed;
 
 	private SolrQuery graphSizeQuery;
 	
@@ -52,55 +84,76 @@ public final class CloudGraph extends SolRDFGraph {
 	 * @param qparser the query parser.
 	 * @param fetchSize the fetch size that will be used in reads.
 	 * @param consumer the Graph event consumer that will be notified on relevant events.
+	 * @param termIds true if term identifiers have to be indexed (see {@link TripleDocumentFactory#hasTermIds}).
+	 * @param subjectRouting true if documents are routed by subject.
+	 * @param legacyIds true if the collection has been built with legacy identifiers (see {@link SolRDFGraph#hasLegacyIds}).
+	 * @param prefetchExecutor the thread pool that runs the prefetchers, null disables prefetching.
+	 * @param prefetchPages how many result pages can be fetched in advance, 0 disables prefetching.
+	 * @param pageMemoryBudget the maximum amount of memory (in bytes) a result page can take.
 	 */
 	CloudGraph(
 		final Node graphNode, 
 		final SolrClient cloud, 
 		final int fetchSize, 
-		final GraphEventConsumer consumer) {
+		final GraphEventConsumer consumer,
+		final boolean termIds,
+		final boolean subjectRouting,
+		final boolean legacyIds,
+		final PrefetchExecutor prefetchExecutor,
+		final int prefetchPages,
+		final long pageMemoryBudget) {
 		super(graphNode, consumer, fetchSize);
 		this.cloud = cloud;
+		this.subjectRouting = subjectRouting && !legacyIds;
+		this.legacyIds = legacyIds;
+		this.registry = FieldInjectorRegistry.of(legacyIds);
+		this.documentFactory = new TripleDocumentFactory(registry, termIds, this.subjectRouting, legacyIds);
+		this.prefetchExecutor = prefetchExecutor;
+		this.prefetchPages = prefetchPages;
+		this.pageMemoryBudget = pageMemoryBudget;
+	}
+	
+	/**
+	 * Returns the identifier of the document that holds a given (concrete) triple.
+	 * 
+	 * @param triple the triple.
+	 * @return the identifier of the document that holds the given triple.
+	 */
+	String id(final Triple triple) {
+		return documentFactory.id(graphNodeStringified, triple);
 	}
 	
 	@Override
 	public void performAdd(final Triple triple) {
-		final SolrInputDocument document = new SolrInputDocument();
-		document.setField(Field.C, graphNodeStringified);
-		document.setField(Field.S, asNt(triple.getSubject()));
-		document.setField(Field.P, asNtURI(triple.getPredicate()));
-		document.setField(Field.ID, UUID.nameUUIDFromBytes(
-				new StringBuilder()
-					.append(graphNodeStringified)
-					.append(triple.getSubject())
-					.append(triple.getPredicate())
-					.append(triple.getObject())
-					.toString().getBytes()).toString());
-		
-		final Node object = triple.getObject();
-		final String o = asNt(object);
-		document.setField(Field.O, o);
-
-		if (object.isLiteral()) {
-			final String language = object.getLiteralLanguage();
-			document.setField(Field.LANG, isNotNullOrEmptyString(language) ? language : NULL_LANGUAGE);				
-
-			final RDFDatatype dataType = object.getLiteralDatatype();
-			final Object value = object.getLiteralValue();
-			registry.get(dataType != null ? dataType.getURI() : null).inject(document, value);
-		} else {
-			registry.catchAllFieldInjector.inject(document, o);
-		}			
+		changed = true;
+		flushPendingDeletes();
 
-		try {
-			cloud.add(document);
-		} catch (final Exception exception) {
-			LOGGER.error(MessageCatalog._00113_NWS_FAILURE, exception);
-			throw new AddDeniedException(exception.getMessage(), triple);
+		final SolrInputDocument document = documentFactory.document(graphNodeStringified, triple);
+		if (pendingAdds.isEmpty()) {
+			firstPendingAddTimestamp = System.currentTimeMillis();
+		}
+		
+		pendingAdds.add(document);
+		if (pendingAdds.size() >= ADD_BATCH_SIZE || System.currentTimeMillis() - firstPendingAddTimestamp >= MAX_BUFFERING_TIME) {
+			flushPendingAdds();
 		}
 	}
 	
 	@Override
 	public void performDelete(final Triple triple) {
+		changed = true;
+		flushPendingAdds();
+		
+		// Concrete triples are deleted by id, in batches (by query, with legacy identifiers)
+		if (triple.isConcrete() && !legacyIds) {
+			pendingDeletes.add(id(triple));
+			if (pendingDeletes.size() >= DELETE_BATCH_SIZE) {
+				flushPendingDeletes();
+			}
+			return;
+		}
+		
+		flushPendingDeletes();
 		try {
 			cloud.deleteByQuery(deleteQuery(triple));
 		} catch (final Exception exception) {
@@ -119,8 +172,81 @@ public final class CloudGraph extends SolRDFGraph {
 		}	  
 	}
 	
+	/**
+	 * Sends all pending changes to SolrCloud.
+	 * Must be called once the update operations on this graph are completed.
+	 */
+	void flush() {
+		flushPendingAdds();
+		flushPendingDeletes();
+	}
+	
+	/**
+	 * Sends the pending adds to SolrCloud, as a single batch.
+	 */
+	void flushPendingAdds() {
+		if (pendingAdds.isEmpty()) {
+			return;
+		}
+		
+		final int batchSize = pendingAdds.size();
+		try {
+			cloud.add(new ArrayList<SolrInputDocument>(pendingAdds));
+		} catch (final Exception exception) {
+			throw new AddDeniedException(batchFailure(batchSize, exception));
+		} finally {
+			pendingAdds.clear();
+		}
+	}
+	
+	/**
+	 * Sends the pending (by id) deletes to SolrCloud, as a single batch.
+	 */
+	void flushPendingDeletes() {
+		if (pendingDeletes.isEmpty()) {
+			return;
+		}
+		
+		final int batchSize = pendingDeletes.size();
+		try {
+			cloud.deleteById(new ArrayList<String>(pendingDeletes));
+		} catch (final Exception exception) {
+			throw new DeleteDeniedException(batchFailure(batchSize, exception));
+		} finally {
+			pendingDeletes.clear();
+		}
+	}
+	
+	/**
+	 * Logs the failure of a batch, with the detail of each failed shard, if available.
+	 * 
+	 * @param batchSize the size of the failed batch.
+	 * @param exception the batch failure.
+	 * @return the failure message.
+	 */
+	String batchFailure(final int batchSize, final Exception exception) {
+		final String message = MessageFactory.createMessage(MessageCatalog._00129_CLOUD_BATCH_FAILURE, batchSize, graphNodeStringified);
+		LOGGER.error(message, exception);
+		if (exception instanceof RouteException) {
+			for (final Map.Entry<String, Throwable> failure : ((RouteException)exception).getThrowables()) {
+				LOGGER.error(MessageFactory.createMessage(MessageCatalog._00130_CLOUD_SHARD_FAILURE, failure.getKey()), failure.getValue());
+			}
+		}
+		return message;
+	}
+	
+	@Override
+	public void close() {
+		flush();
+		super.close();
+	}
+	
 	@Override
     public void clear() {
+		changed = true;
+		// Pending changes are about this graph, they would be cleared anyway
+		pendingAdds.clear();
+		pendingDeletes.clear();
 		try {
 			cloud.deleteByQuery(fq(Field.C, graphNodeStringified));
 		} catch (final Exception exception) {
@@ -133,7 +259,6 @@ public final class CloudGraph extends SolRDFGraph {
 	protected Iterator<Triple> query(final Triple pattern) throws SyntaxError {
 		final SolrQuery query = new SolrQuery("*:*");
 		query.setSort(Field.ID, ORDER.asc);
-	    query.setRows(queryFetchSize);
 	    
 		final Node s = pattern.getMatchSubject();
 		final Node p = pattern.getMatchPredicate();
@@ -141,6 +266,9 @@ public final class CloudGraph extends SolRDFGraph {
 		
 		if (s != null) {
 			query.addFilterQuery(fq(Field.S, asNt(s)));
+			if (subjectRouting) {
+				query.set(ShardParams._ROUTE_, shardKey(s));
+			}
 		}
 		
 		if (p != null) {
@@ -162,7 +290,14 @@ public final class CloudGraph extends SolRDFGraph {
 		
 		query.addFilterQuery(fq(Field.C, graphNodeStringified));			
 		
-	    return new DeepPagingIterator(cloud, query, consumer);
+	    return new DeepPagingIterator(
+	    		cloud, 
+	    		query, 
+	    		consumer, 
+	    		prefetchExecutor, 
+	    		prefetchPages, 
+	    		new PageSizer(queryFetchSize, pageMemoryBudget), 
+	    		TripleProjection.of(pattern));
 	}	
 	
 	/**
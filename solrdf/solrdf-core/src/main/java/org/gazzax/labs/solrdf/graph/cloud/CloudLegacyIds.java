@@ -0,0 +1,81 @@
+package org.gazzax.labs.solrdf.graph.cloud;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.apache.solr.client.solrj.SolrQuery;
+import org.apache.solr.client.solrj.impl.CloudSolrClient;
+import org.apache.solr.common.SolrDocument;
+import org.apache.solr.common.SolrDocumentList;
+import org.apache.solr.common.SolrException;
+import org.apache.solr.common.SolrException.ErrorCode;
+import org.gazzax.labs.solrdf.Field;
+import org.gazzax.labs.solrdf.graph.SolRDFGraph;
+import org.gazzax.labs.solrdf.log.Log;
+import org.gazzax.labs.solrdf.log.MessageCatalog;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Tells if a SolrCloud collection has been built with legacy identifiers (see {@link SolRDFGraph#hasLegacyIds}).
+ *
+ * The local core is just one of the shards (or it could even belong to another collection), so the whole collection
+ * is probed, asking the cluster for the identifier of one document. All documents of a collection have identifiers
+ * in the same format, so the answer is cached per collection as soon as the collection is not empty.
+ *
+ * @author Andrea Gazzarini
+ * @since 1.1
+ */
+final class CloudLegacyIds {
+	static final Log LOGGER = new Log(LoggerFactory.getLogger(CloudLegacyIds.class));
+
+	static final ConcurrentMap<String, Boolean> CACHE = new ConcurrentHashMap<String, Boolean>();
+
+	final static SolrQuery PROBE_QUERY = new SolrQuery("*:*");
+	static {
+		PROBE_QUERY.setRows(1);
+		PROBE_QUERY.setFields(Field.ID);
+	}
+
+	/**
+	 * Returns true if the collection associated with the given client has been built with legacy identifiers.
+	 *
+	 * @param cloud the SolrCloud client.
+	 * @return true if the collection has been built with legacy identifiers, false if it is empty.
+	 */
+	static boolean get(final CloudSolrClient cloud) {
+		final String collection = String.valueOf(cloud.getDefaultCollection());
+		final Boolean cached = CACHE.get(collection);
+		if (cached != null) {
+			return cached;
+		}
+
+		try {
+			final SolrDocumentList documents = cloud.query(PROBE_QUERY).getResults();
+			if (documents == null || documents.isEmpty()) {
+				return false;
+			}
+
+			final SolrDocument document = documents.get(0);
+			final Object id = document.getFieldValue(Field.ID);
+			final boolean legacy = id != null && SolRDFGraph.isLegacyId(String.valueOf(id));
+			if (legacy) {
+				SolRDFGraph.reportLegacyIds(collection);
+			}
+			CACHE.put(collection, legacy);
+			return legacy;
+		} catch (final Exception exception) {
+			LOGGER.error(MessageCatalog._00113_NWS_FAILURE, exception);
+			throw new SolrException(ErrorCode.SERVER_ERROR, exception);
+		}
+	}
+
+	/**
+	 * Invalidates the cached answer for the collection associated with the given client.
+	 * A changed collection could have been emptied and then loaded again, with any identifiers format.
+	 *
+	 * @param cloud the SolrCloud client.
+	 */
+	static void invalidate(final CloudSolrClient cloud) {
+		CACHE.remove(String.valueOf(cloud.getDefaultCollection()));
+	}
+}
@@ -0,0 +1,162 @@
+package org.gazzax.labs.solrdf.graph.cloud;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.apache.solr.client.solrj.SolrClient;
+import org.apache.solr.client.solrj.SolrQuery;
+import org.apache.solr.client.solrj.impl.CloudSolrClient;
+import org.apache.solr.common.SolrException;
+import org.apache.solr.common.SolrException.ErrorCode;
+import org.apache.solr.common.util.NamedList;
+import org.gazzax.labs.solrdf.Field;
+import org.gazzax.labs.solrdf.graph.GraphStatistics;
+import org.gazzax.labs.solrdf.graph.GraphStatistics.PredicateStatistics;
+import org.gazzax.labs.solrdf.log.Log;
+import org.gazzax.labs.solrdf.log.MessageCatalog;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Loads the {@link GraphStatistics} of a SolrCloud collection.
+ * Statistics are computed by the cluster, with a single JSON Facet request.
+ * 
+ * That request visits the whole collection, so statistics are cached per collection and shared by all requests 
+ * (see {@link #get(CloudSolrClient, long)}). A cached entry expires after a given time to live, or as soon as the 
+ * collection is changed through this node (see {@link #invalidate(CloudSolrClient)}).
+ * 
+ * @author Andrea Gazzarini
+ * @since 1.1
+ */
+final class CloudStatistics {
+	static final Log LOGGER = new Log(LoggerFactory.getLogger(CloudStatistics.class));
+	
+	static final long DEFAULT_TIME_TO_LIVE = 60 * 1000;
+	static final ConcurrentMap<String, CloudStatistics> CACHE = new ConcurrentHashMap<String, CloudStatistics>();
+	
+	private GraphStatistics statistics;
+	private long loadTimestamp;
+	
+	final static SolrQuery STATISTICS_QUERY = new SolrQuery("*:*");
+	static {
+		STATISTICS_QUERY.setRows(0);
+		STATISTICS_QUERY.set(
+				"json.facet", 
+				"{" 
+					+ "graphs:{type:terms,field:" + Field.C + ",limit:-1}," 
+					+ "predicates:{type:terms,field:" + Field.P + ",limit:-1,facet:{s:\"unique(" + Field.S + ")\",o:\"unique(" + Field.O + ")\"}},"
+					+ "s:\"unique(" + Field.S + ")\","
+					+ "o:\"unique(" + Field.O + ")\"" 
+				+ "}");
+	}
+	
+	/**
+	 * Returns the (cached) statistics of the collection associated with the given client.
+	 * Requests that find an expired entry wait for the one that reloads it, so the collection is visited once.
+	 * 
+	 * @param cloud the SolrCloud client.
+	 * @param timeToLive how long (in milliseconds) cached statistics can be used.
+	 * @return the statistics of the collection associated with the given client.
+	 */
+	static GraphStatistics get(final CloudSolrClient cloud, final long timeToLive) {
+		final String collection = String.valueOf(cloud.getDefaultCollection());
+		CloudStatistics entry = CACHE.get(collection);
+		if (entry == null) {
+			final CloudStatistics newEntry = new CloudStatistics();
+			entry = CACHE.putIfAbsent(collection, newEntry);
+			if (entry == null) {
+				entry = newEntry;
+			}
+		}
+		
+		synchronized (entry) {
+			final long now = System.currentTimeMillis();
+			if (entry.statistics == null || now - entry.loadTimestamp >= timeToLive) {
+				entry.statistics = load(cloud);
+				entry.loadTimestamp = now;
+			}
+			return entry.statistics;
+		}
+	}
+	
+	/**
+	 * Invalidates the cached statistics of the collection associated with the given client.
+	 * 
+	 * @param cloud the SolrCloud client.
+	 */
+	static void invalidate(final CloudSolrClient cloud) {
+		final CloudStatistics entry = CACHE.get(String.valueOf(cloud.getDefaultCollection()));
+		if (entry != null) {
+			synchronized (entry) {
+				entry.statistics = null;
+			}
+		}
+	}
+	
+	/**
+	 * Loads the statistics of the collection associated with the given client.
+	 * 
+	 * @param cloud the SolrCloud client.
+	 * @return the statistics of the collection associated with the given client.
+	 */
+	static GraphStatistics load(final SolrClient cloud) {
+		try {
+			final NamedList<?> facets = (NamedList<?>) cloud.query(STATISTICS_QUERY).getResponse().get("facets");
+			
+			final Map<String, Long> graphs = new HashMap<String, Long>();
+			for (final NamedList<?> bucket : buckets(facets, "graphs")) {
+				graphs.put(String.valueOf(bucket.get("val")), longValue(bucket, "count"));
+			}
+			
+			final Map<String, PredicateStatistics> predicates = new HashMap<String, PredicateStatistics>();
+			for (final NamedList<?> bucket : buckets(facets, "predicates")) {
+				predicates.put(
+						String.valueOf(bucket.get("val")), 
+						new PredicateStatistics(
+								longValue(bucket, "count"), 
+								longValue(bucket, "s"), 
+								longValue(bucket, "o")));
+			}
+
+			return new GraphStatistics(
+					longValue(facets, "count"), 
+					longValue(facets, "s"), 
+					longValue(facets, "o"), 
+					graphs, 
+					predicates);
+		} catch (final Exception exception) {
+			LOGGER.error(MessageCatalog._00113_NWS_FAILURE, exception);
+			throw new SolrException(ErrorCode.SERVER_ERROR, exception);
+		}
+	}
+	
+	/**
+	 * Returns the buckets of a given facet.
+	 * 
+	 * @param facets the facets section of the response.
+	 * @param name the facet name.
+	 * @return the buckets of the given facet.
+	 */
+	@SuppressWarnings("unchecked")
+	static List<NamedList<?>> buckets(final NamedList<?> facets, final String name) {
+		final NamedList<?> facet = facets != null ? (NamedList<?>) facets.get(name) : null;
+		return facet != null && facet.get("buckets") != null 
+				? (List<NamedList<?>>) facet.get("buckets") 
+				: Collections.<NamedList<?>>emptyList();
+	}
+	
+	/**
+	 * Returns the numeric value of a given attribute.
+	 * 
+	 * @param list the attributes.
+	 * @param name the attribute name.
+	 * @return the numeric value of the given attribute, 0 if it is missing.
+	 */
+	static long longValue(final NamedList<?> list, final String name) {
+		final Object value = list != null ? list.get(name) : null;
+		return value instanceof Number ? ((Number) value).longValue() : 0;
+	}
+}
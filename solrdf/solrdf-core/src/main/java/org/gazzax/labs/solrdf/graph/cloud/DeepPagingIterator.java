@@ -1,8 +1,6 @@
 package org.gazzax.labs.solrdf.graph.cloud;
 
-import java.util.HashSet;
 import java.util.Iterator;
-import java.util.Set;
 
 import org.apache.solr.client.solrj.SolrClient;
 import org.apache.solr.client.solrj.SolrQuery;
@@ -10,36 +8,45 @@ import org.apache.solr.client.solrj.response.QueryResponse;
 import org.apache.solr.common.SolrDocument;
 import org.apache.solr.common.SolrDocumentList;
 import org.gazzax.labs.solrdf.Field;
-import org.gazzax.labs.solrdf.NTriples;
 import org.gazzax.labs.solrdf.graph.GraphEventConsumer;
+import org.gazzax.labs.solrdf.graph.PageSizer;
+import org.gazzax.labs.solrdf.graph.TripleProjection;
+import org.gazzax.labs.solrdf.log.Log;
+import org.gazzax.labs.solrdf.log.MessageCatalog;
+import org.slf4j.LoggerFactory;
 
 import com.google.common.collect.UnmodifiableIterator;
 import com.hp.hpl.jena.graph.Node;
 import com.hp.hpl.jena.graph.Triple;
+import com.hp.hpl.jena.util.iterator.ClosableIterator;
 
 /**
  * An iterator over SOLR results that uses the built-in Deep Paging strategy.
  * Internally it uses other iterators to represents each iteration state. 
  * 
+ * Optionally, pages can be prefetched: the request for the next page is sent as soon as the current page arrives
+ * (see {@link PagePrefetcher}). In that case, the iterator must be closed if it is abandoned before the end.
+ * If all the threads of the {@link PrefetchExecutor} are busy, pages are fetched synchronously.
+ * 
+ * The length of each page is chosen by a {@link PageSizer}.
+ * 
  * @see http://solr.pl/en/2014/03/10/solr-4-7-efficient-deep-paging
  * @see http://heliosearch.org/solr/paging-and-deep-paging
  * @see <a href="http://en.wikipedia.org/wiki/Finite-state_machine">http://en.wikipedia.org/wiki/Finite-state_machine</a>
  * @author Andrea Gazzarini
  * @since 1.0
  */
-public class DeepPagingIterator extends UnmodifiableIterator<Triple> {
-	protected static final Set<String> TRIPLE_FIELDS = new HashSet<String>();
-	static {
-		TRIPLE_FIELDS.add(Field.S);
-		TRIPLE_FIELDS.add(Field.P);
-		TRIPLE_FIELDS.add(Field.O);
-	}
-
+public class DeepPagingIterator extends UnmodifiableIterator<Triple> implements ClosableIterator<Triple> {
+	static final Log LOGGER = new Log(LoggerFactory.getLogger(DeepPagingIterator.class));
+	
 	protected static final Triple DUMMY_TRIPLE = new Triple(Node.ANY, Node.ANY, Node.ANY);
 	
 	final SolrClient cloud; 
 	final SolrQuery query;
 	final GraphEventConsumer consumer;
+	final PageSizer pageSizer;
+	PagePrefetcher prefetcher;
+	final TripleProjection projection;
 	private SolrDocumentList page;
 	
 	private String nextCursorMark;
@@ -53,18 +60,7 @@ public class DeepPagingIterator extends UnmodifiableIterator<Triple> {
 	private final Iterator<Triple> firstQueryExecution = new UnmodifiableIterator<Triple>() {
 		@Override
 		public boolean hasNext() {
-			try {
-				final QueryResponse response = cloud.query(query);
-			    
-				sentCursorMark = query.get("cursorMark");
-				nextCursorMark = response.getNextCursorMark();
-				
-				page = response.getResults();
-
-				return page.size() > 0;
-			} catch (final Exception exception) {
-				throw new RuntimeException(exception);
-			}
+			return fetchPage();
 		}
 
 		@Override
@@ -82,18 +78,7 @@ public class DeepPagingIterator extends UnmodifiableIterator<Triple> {
 	private final Iterator<Triple> executeQuery = new UnmodifiableIterator<Triple>() {
 		@Override
 		public boolean hasNext() {
-			try {
-				final QueryResponse response = cloud.query(query);
-			    
-				sentCursorMark = query.get("cursorMark");
-				nextCursorMark = response.getNextCursorMark();
-				
-				page = response.getResults();
-
-				return page.size() > 0;
-			} catch (final Exception exception) {
-				throw new RuntimeException(exception);
-			}
+			return fetchPage();
 		}
 
 		@Override
@@ -126,10 +111,10 @@ public class DeepPagingIterator extends UnmodifiableIterator<Triple> {
 			
 			Triple triple = null;
 			if (consumer.requireTripleBuild()) { 
-				triple = Triple.create(
-						NTriples.asURIorBlankNode((String) document.getFieldValue(Field.S)), 
-						NTriples.asURI((String) document.getFieldValue(Field.P)),
-						NTriples.asNode((String) document.getFieldValue(Field.O)));
+				triple = projection.triple(
+						(String) document.getFieldValue(Field.S), 
+						(String) document.getFieldValue(Field.P),
+						(String) document.getFieldValue(Field.O));
 			} else {
 				triple = DUMMY_TRIPLE;
 			}
@@ -152,13 +137,17 @@ public class DeepPagingIterator extends UnmodifiableIterator<Triple> {
 	private final Iterator<Triple> checkForConsumptionCompleteness = new UnmodifiableIterator<Triple>() {
 		@Override
 		public boolean hasNext() {
-			final boolean hasNext = !sentCursorMark.equals(nextCursorMark);
-			if (hasNext) {
+			// With prefetching, cursor marks are managed by the prefetcher
+			if (prefetcher == null) {
+				if (sentCursorMark.equals(nextCursorMark)) {
+					LOGGER.debug(MessageCatalog._00131_PAGED_SCAN_COMPLETED, pageSizer.summary());
+					return false;
+				}
 				query.set("cursorMark", nextCursorMark);
-				currentState = executeQuery;
-				return currentState.hasNext();
+				query.setRows(pageSizer.nextPageSize());
 			}
-			return false;
+			currentState = executeQuery;
+			return currentState.hasNext();
 		}
 
 		@Override
@@ -172,22 +161,110 @@ public class DeepPagingIterator extends UnmodifiableIterator<Triple> {
 	/**
 	 * Builds a new iterator with the given data.
 	 * 
-	 * @param searcher the Solr index searcher.
-	 * @param queryCommand the query command that will be submitted.static 
-	 * @param sort the sort specs.
+	 * @param cloud the SolrCloud client.
+	 * @param query the query that will be submitted.
 	 * @param consumer the Graph event consumer that will be notified on relevant events.
 	 */
 	DeepPagingIterator(
 			final SolrClient cloud, 
 			final SolrQuery query, 
 			final GraphEventConsumer consumer) {
+		this(cloud, query, consumer, null, 0, new PageSizer(PageSizer.INITIAL_PAGE_SIZE, PageSizer.DEFAULT_MEMORY_BUDGET), TripleProjection.ALL);
+	}
+	
+	/**
+	 * Builds a new iterator with the given data.
+	 * 
+	 * @param cloud the SolrCloud client.
+	 * @param query the query that will be submitted.
+	 * @param consumer the Graph event consumer that will be notified on relevant events.
+	 * @param executor the thread pool that runs the prefetchers, null disables prefetching.
+	 * @param prefetchPages how many pages can be fetched in advance, 0 disables prefetching.
+	 * @param pageSizer the component that chooses the length of each result page.
+	 */
+	DeepPagingIterator(
+			final SolrClient cloud, 
+			final SolrQuery query, 
+			final GraphEventConsumer consumer,
+			final PrefetchExecutor executor,
+			final int prefetchPages,
+			final PageSizer pageSizer) {
+		this(cloud, query, consumer, executor, prefetchPages, pageSizer, TripleProjection.ALL);
+	}
+	
+	/**
+	 * Builds a new iterator with the given data.
+	 * Only the fields of the needed positions are requested (fl), so the other stored fields don't travel over the wire.
+	 * 
+	 * @param cloud the SolrCloud client.
+	 * @param query the query that will be submitted.
+	 * @param consumer the Graph event consumer that will be notified on relevant events.
+	 * @param executor the thread pool that runs the prefetchers, null disables prefetching.
+	 * @param prefetchPages how many pages can be fetched in advance, 0 disables prefetching.
+	 * @param pageSizer the component that chooses the length of each result page.
+	 * @param projection the positions of the matching triples that are needed.
+	 */
+	DeepPagingIterator(
+			final SolrClient cloud, 
+			final SolrQuery query, 
+			final GraphEventConsumer consumer,
+			final PrefetchExecutor executor,
+			final int prefetchPages,
+			final PageSizer pageSizer,
+			final TripleProjection projection) {
 		this.cloud = cloud;
 		this.query = query;
+		this.projection = projection;
+		// An empty field list would mean all fields
+		this.query.setFields(projection.fields().isEmpty() 
+				? new String[] { Field.ID } 
+				: projection.fields().toArray(new String[projection.fields().size()]));
 		this.sentCursorMark = "*";
 		this.query.set("cursorMark", sentCursorMark);
+		this.query.setRows(pageSizer.pageSize());
 		this.consumer = consumer;
+		this.pageSizer = pageSizer;
+		this.prefetcher = executor != null && prefetchPages > 0 
+				? new PagePrefetcher(executor, cloud, query.getCopy(), prefetchPages, pageSizer) 
+				: null;
 	}
 
+	/**
+	 * Loads the next page of results.
+	 * 
+	 * @return true if the loaded page contains at least one result.
+	 */
+	boolean fetchPage() {
+		// No free prefetch thread: this scan falls back to synchronous fetches, starting from the first page
+		if (prefetcher != null && !prefetcher.start()) {
+			prefetcher = null;
+		}
+		
+		if (prefetcher != null) {
+			page = prefetcher.nextPage();
+			return page != null;
+		}
+		
+		try {
+			pageSizer.fetchStarted();
+			final QueryResponse response = cloud.query(query);
+		    
+			sentCursorMark = query.get("cursorMark");
+			nextCursorMark = response.getNextCursorMark();
+			
+			page = response.getResults();
+			pageSizer.fetchCompleted(page.size(), page.getNumFound());
+
+			if (page.isEmpty()) {
+				LOGGER.debug(MessageCatalog._00131_PAGED_SCAN_COMPLETED, pageSizer.summary());
+				return false;
+			}
+			return true;
+		} catch (final Exception exception) {
+			throw new RuntimeException(exception);
+		}
+	}
+	
 	@Override
 	public boolean hasNext() {
 		return currentState.hasNext();
@@ -197,4 +274,11 @@ public class DeepPagingIterator extends UnmodifiableIterator<Triple> {
 	public Triple next() {
 		return currentState.next();
 	}
+	
+	@Override
+	public void close() {
+		if (prefetcher != null) {
+			prefetcher.cancel();
+		}
+	}
 }
\ No newline at end of file
@@ -9,6 +9,7 @@ import java.util.Map;
 import org.apache.solr.client.solrj.SolrQuery;
 import org.apache.solr.common.SolrInputDocument;
 import org.gazzax.labs.solrdf.Field;
+import org.gazzax.labs.solrdf.graph.ObjectFieldInjectors;
 
 import com.hp.hpl.jena.datatypes.xsd.XSDDatatype;
 import com.hp.hpl.jena.datatypes.xsd.XSDDateTime;
@@ -19,20 +20,48 @@ import com.hp.hpl.jena.datatypes.xsd.XSDDateTime;
  * @author Andrea Gazzarini
  * @since 1.0
  */
-class FieldInjectorRegistry {
+class FieldInjectorRegistry implements ObjectFieldInjectors {
+	/**
+	 * Numeric types that are indexed as numbers (o_n) since SolRDF 1.1; before, they were indexed like plain strings (o_s).
+	 */
+	static final XSDDatatype [] EXTENDED_NUMERIC_TYPES = {
+		XSDDatatype.XSDfloat,
+		XSDDatatype.XSDshort,
+		XSDDatatype.XSDbyte,
+		XSDDatatype.XSDnonNegativeInteger,
+		XSDDatatype.XSDnonPositiveInteger,
+		XSDDatatype.XSDpositiveInteger,
+		XSDDatatype.XSDnegativeInteger,
+		XSDDatatype.XSDunsignedLong,
+		XSDDatatype.XSDunsignedInt,
+		XSDDatatype.XSDunsignedShort,
+		XSDDatatype.XSDunsignedByte };
+	
+	/**
+	 * Injectors are stateless, so a single registry is shared by all graphs.
+	 */
+	static final FieldInjectorRegistry INSTANCE = new FieldInjectorRegistry(false);
+	
+	/**
+	 * The registry of indexes built with the legacy (SolRDF 1.0) identifiers (see {@link org.gazzax.labs.solrdf.graph.SolRDFGraph#hasLegacyIds}), 
+	 * which hold the {@link #EXTENDED_NUMERIC_TYPES} in o_s: they are kept there until the index is rebuilt.
+	 */
+	static final FieldInjectorRegistry LEGACY = new FieldInjectorRegistry(true);
+	
 	/**
 	 * Command interface.
 	 * 
 	 * @author Andrea Gazzarini
 	 * @since 1.0
 	 */
-	interface FieldInjector {
+	interface FieldInjector extends ObjectFieldInjectors.Injector {
 		/**
 		 * Injects a given value into a document.
 		 * 
 		 * @param triple the {@link SolrInputDocument} representing a triple.
 		 * @param value the value of the object member.
 		 */
+		@Override
 		void inject(SolrInputDocument triple, Object value);
 		
 		/**
@@ -73,7 +102,12 @@ class FieldInjectorRegistry {
 		
 		@Override
 		public void inject(final SolrInputDocument document, final Object value) {
-			document.setField(Field.NUMERIC_OBJECT, value instanceof BigDecimal ? ((BigDecimal)value).doubleValue() : value);
+			// Floats are widened using their decimal representation, so (e.g.) 0.1f is indexed as 0.1 and not as 0.10000000149011612
+			document.setField(
+					Field.NUMERIC_OBJECT, 
+					value instanceof BigDecimal 
+						? ((BigDecimal)value).doubleValue() 
+						: value instanceof Float ? Double.valueOf(value.toString()) : value);
 		}
 		
 		@Override
@@ -137,12 +171,43 @@ class FieldInjectorRegistry {
 		injectors.put(null, catchAllFieldInjector);	
 	}
 	
+	/**
+	 * Builds a new registry.
+	 */
+	FieldInjectorRegistry() {
+		this(false);
+	}
+	
+	/**
+	 * Builds a new registry.
+	 * 
+	 * @param legacy true if the {@link #EXTENDED_NUMERIC_TYPES} must be indexed like plain strings (i.e. legacy indexes).
+	 */
+	FieldInjectorRegistry(final boolean legacy) {
+		if (!legacy) {
+			for (final XSDDatatype type : EXTENDED_NUMERIC_TYPES) {
+				injectors.put(type.getURI(), numericFieldInjector);
+			}
+		}
+	}
+	
+	/**
+	 * Returns the registry of an index.
+	 * 
+	 * @param legacyIds true if the index has been built with the legacy identifiers.
+	 * @return the registry of the index.
+	 */
+	static FieldInjectorRegistry of(final boolean legacyIds) {
+		return legacyIds ? LEGACY : INSTANCE;
+	}
+	
 	/**
 	 * Returns the {@link FieldInjector} that is in charge to handle the given (datatype) URI.
 	 * 
 	 * @param uri the datatype URI.
 	 * @return the {@link FieldInjector} that is in charge to handle the given (datatype) URI.
 	 */
+	@Override
 	public FieldInjector get(final String uri) {
 		final FieldInjector injector = injectors.get(uri);
 		return injector != null ? injector : catchAllFieldInjector;
@@ -153,6 +218,7 @@ class FieldInjectorRegistry {
 	 * 
 	 * @return the {@link FieldInjector} used for storing plain strings.
 	 */
+	@Override
 	public FieldInjector catchAllInjector() {
 		return catchAllFieldInjector;
 	}
@@ -0,0 +1,148 @@
+package org.gazzax.labs.solrdf.graph.cloud;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Future;
+
+import org.apache.solr.client.solrj.SolrClient;
+import org.apache.solr.client.solrj.SolrQuery;
+import org.apache.solr.client.solrj.response.QueryResponse;
+import org.apache.solr.common.SolrDocumentList;
+import org.apache.solr.common.params.CursorMarkParams;
+import org.gazzax.labs.solrdf.graph.PageSizer;
+import org.gazzax.labs.solrdf.log.MessageCatalog;
+
+/**
+ * Fetches the pages of a cursor-based query in background.
+ * The request for the page N+1 is sent as soon as the page N arrives, and at most a given number of pages
+ * is kept waiting for the consumer.
+ * 
+ * Since the consumer is decoupled from fetching, the time spent waiting for a free slot in the queue
+ * is what the {@link PageSizer} sees as consumption time.
+ *
+ * @author Andrea Gazzarini
+ * @since 1.1
+ */
+class PagePrefetcher implements Runnable {
+	private static final SolrDocumentList END_OF_RESULTS = new SolrDocumentList();
+
+	final PrefetchExecutor executor;
+	final SolrClient cloud;
+	final SolrQuery query;
+	final BlockingQueue<SolrDocumentList> pages;
+	final PageSizer pageSizer;
+
+	private volatile boolean cancelled;
+	private volatile Exception failure;
+	private Future<?> future;
+
+	/**
+	 * Builds a new prefetcher.
+	 *
+	 * @param executor the thread pool that runs this prefetcher.
+	 * @param cloud the SolrCloud client.
+	 * @param query the query, which is owned (i.e. changed) by this prefetcher from now on.
+	 * @param maxPages the maximum number of pages that can wait for the consumer.
+	 * @param pageSizer the component that chooses the length of each result page.
+	 */
+	PagePrefetcher(final PrefetchExecutor executor, final SolrClient cloud, final SolrQuery query, final int maxPages, final PageSizer pageSizer) {
+		this.executor = executor;
+		this.cloud = cloud;
+		this.query = query;
+		this.pages = new ArrayBlockingQueue<SolrDocumentList>(Math.max(1, maxPages));
+		this.pageSizer = pageSizer;
+	}
+
+	/**
+	 * Starts fetching pages, if there's a free thread in the pool.
+	 * 
+	 * @return true if this prefetcher has been started, false if all the prefetch threads are busy.
+	 */
+	boolean start() {
+		if (future == null) {
+			future = executor.trySubmit(this);
+		}
+		return future != null;
+	}
+
+	@Override
+	public void run() {
+		String cursorMark = CursorMarkParams.CURSOR_MARK_START;
+		try {
+			while (!cancelled) {
+				query.set(CursorMarkParams.CURSOR_MARK_PARAM, cursorMark);
+				query.setRows(pageSizer.pageSize());
+				pageSizer.fetchStarted();
+				final QueryResponse response = cloud.query(query);
+				final SolrDocumentList page = response.getResults();
+				pageSizer.fetchCompleted(page.size(), page.getNumFound());
+				if (page.isEmpty()) {
+					break;
+				}
+
+				pages.put(page);
+				if (cancelled) {
+					// The page has been put after (or while) the consumer discarded the pages
+					pages.clear();
+					break;
+				}
+
+				final String nextCursorMark = response.getNextCursorMark();
+				if (cursorMark.equals(nextCursorMark)) {
+					break;
+				}
+				cursorMark = nextCursorMark;
+				pageSizer.nextPageSize();
+			}
+		} catch (final InterruptedException exception) {
+			Thread.currentThread().interrupt();
+			return;
+		} catch (final Exception exception) {
+			failure = exception;
+		}
+
+		DeepPagingIterator.LOGGER.debug(MessageCatalog._00131_PAGED_SCAN_COMPLETED, pageSizer.summary());
+
+		try {
+			if (!cancelled) {
+				pages.put(END_OF_RESULTS);
+			}
+		} catch (final InterruptedException exception) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * Returns the next page, waiting for it if it isn't yet available.
+	 * This prefetcher must have been started (see {@link #start()}).
+	 *
+	 * @return the next page, null if there are no more results.
+	 */
+	SolrDocumentList nextPage() {
+		try {
+			final SolrDocumentList page = pages.take();
+			if (page == END_OF_RESULTS) {
+				pages.offer(END_OF_RESULTS);
+				if (failure != null) {
+					throw new RuntimeException(failure);
+				}
+				return null;
+			}
+			return page;
+		} catch (final InterruptedException exception) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException(exception);
+		}
+	}
+
+	/**
+	 * Stops fetching pages and discards the pages that haven't been consumed.
+	 */
+	void cancel() {
+		cancelled = true;
+		if (future != null) {
+			future.cancel(true);
+		}
+		pages.clear();
+	}
+}
@@ -0,0 +1,78 @@
+package org.gazzax.labs.solrdf.graph.cloud;
+
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.gazzax.labs.solrdf.log.Log;
+import org.gazzax.labs.solrdf.log.MessageCatalog;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The bounded thread pool that runs the {@link PagePrefetcher}s of the cloud scans.
+ *
+ * A prefetcher takes a thread for the whole life of its scan, so the pool never queues: when all threads are busy,
+ * the scan is refused and fetches its pages synchronously (see {@link DeepPagingIterator}).
+ * The pool is owned by the component that owns the SolrCloud client, and it must be shut down together with that client.
+ *
+ * @author Andrea Gazzarini
+ * @since 1.1
+ */
+public class PrefetchExecutor {
+	static final Log LOGGER = new Log(LoggerFactory.getLogger(PrefetchExecutor.class));
+
+	public static final int DEFAULT_THREADS = 16;
+	static final long KEEP_ALIVE_TIME = 60000;
+
+	final ThreadPoolExecutor executor;
+
+	/**
+	 * Builds a new executor with the given number of threads.
+	 *
+	 * @param name the executor name, used for naming its threads.
+	 * @param threads the maximum number of scans that can be prefetched at the same time.
+	 */
+	public PrefetchExecutor(final String name, final int threads) {
+		final AtomicInteger counter = new AtomicInteger();
+		this.executor = new ThreadPoolExecutor(
+				0,
+				Math.max(1, threads),
+				KEEP_ALIVE_TIME,
+				TimeUnit.MILLISECONDS,
+				new SynchronousQueue<Runnable>(),
+				new ThreadFactory() {
+					@Override
+					public Thread newThread(final Runnable task) {
+						final Thread thread = new Thread(task, "solrdf-prefetch-" + name + "-" + counter.incrementAndGet());
+						thread.setDaemon(true);
+						return thread;
+					}
+				});
+	}
+
+	/**
+	 * Runs a given prefetcher, if there's a free thread.
+	 *
+	 * @param prefetcher the prefetcher.
+	 * @return the future of the prefetcher, null if all threads are busy (or the executor has been shut down).
+	 */
+	Future<?> trySubmit(final PagePrefetcher prefetcher) {
+		try {
+			return executor.submit(prefetcher);
+		} catch (final RejectedExecutionException exception) {
+			LOGGER.debug(MessageCatalog._00142_PREFETCH_POOL_FULL, executor.getMaximumPoolSize());
+			return null;
+		}
+	}
+
+	/**
+	 * Shuts down this executor, stopping the running prefetchers.
+	 */
+	public void shutdown() {
+		executor.shutdownNow();
+	}
+}
@@ -0,0 +1,616 @@
+package org.gazzax.labs.solrdf.graph.standalone;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.TreeMap;
+
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.PostingsEnum;
+import org.apache.lucene.index.SortedDocValues;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.index.Terms;
+import org.apache.lucene.index.TermsEnum;
+import org.apache.lucene.search.BooleanClause.Occur;
+import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.DocIdSet;
+import org.apache.lucene.search.DocIdSetIterator;
+import org.apache.lucene.search.Filter;
+import org.apache.lucene.search.MatchAllDocsQuery;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.util.Bits;
+import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.FixedBitSet;
+import org.apache.solr.schema.SchemaField;
+import org.apache.solr.search.DocIterator;
+import org.apache.solr.search.DocSet;
+import org.apache.solr.search.SolrIndexSearcher;
+import org.apache.solr.search.SortSpec;
+import org.apache.solr.search.SyntaxError;
+import org.gazzax.labs.solrdf.Field;
+import org.gazzax.labs.solrdf.NTriples;
+import org.gazzax.labs.solrdf.graph.SolRDFGraph;
+import org.gazzax.labs.solrdf.graph.TripleProjection;
+import org.gazzax.labs.solrdf.log.Log;
+import org.gazzax.labs.solrdf.log.MessageCatalog;
+import org.slf4j.LoggerFactory;
+
+import com.carrotsearch.hppc.IntIntOpenHashMap;
+import com.carrotsearch.hppc.IntOpenHashSet;
+import com.carrotsearch.hppc.cursors.IntIntCursor;
+import com.hp.hpl.jena.graph.Node;
+import com.hp.hpl.jena.graph.Triple;
+import com.hp.hpl.jena.sparql.algebra.Op;
+import com.hp.hpl.jena.sparql.algebra.op.OpBGP;
+import com.hp.hpl.jena.sparql.algebra.op.OpGraph;
+import com.hp.hpl.jena.sparql.algebra.op.OpGroup;
+import com.hp.hpl.jena.sparql.core.Var;
+import com.hp.hpl.jena.sparql.engine.binding.Binding;
+import com.hp.hpl.jena.sparql.engine.binding.BindingFactory;
+import com.hp.hpl.jena.sparql.engine.binding.BindingMap;
+import com.hp.hpl.jena.sparql.expr.Expr;
+import com.hp.hpl.jena.sparql.expr.ExprAggregator;
+import com.hp.hpl.jena.sparql.expr.ExprEvalException;
+import com.hp.hpl.jena.sparql.expr.ExprList;
+import com.hp.hpl.jena.sparql.expr.NodeValue;
+import com.hp.hpl.jena.sparql.expr.aggregate.AggAvg;
+import com.hp.hpl.jena.sparql.expr.aggregate.AggCount;
+import com.hp.hpl.jena.sparql.expr.aggregate.AggCountVar;
+import com.hp.hpl.jena.sparql.expr.aggregate.AggMax;
+import com.hp.hpl.jena.sparql.expr.aggregate.AggMin;
+import com.hp.hpl.jena.sparql.expr.aggregate.AggSum;
+import com.hp.hpl.jena.sparql.expr.aggregate.Aggregator;
+import com.hp.hpl.jena.sparql.expr.nodevalue.XSDFuncOp;
+
+/**
+ * Answers the aggregates of a single triple pattern directly from the index, without decoding the matching triples.
+ *
+ * <ul>
+ * 	<li>COUNT(*) and COUNT(?var) are the size of the {@link DocSet} of the matching triples;</li>
+ * 	<li>MIN(?o) and MAX(?o) are the first triple of a search sorted by the object value (see {@link LocalGraph#objectOrder(Triple, boolean)});</li>
+ * 	<li>SUM(?o) and AVG(?o), if all objects are numbers (i.e. they have a numeric object field, o_n), are computed like
+ * 	Jena does (i.e. with the XSD numeric type promotion), on the object terms (o_dv): each distinct object is decoded once;</li>
+ * 	<li>GROUP BY the subject, predicate, object or graph variable (counts only) are the counts of the distinct values of the
+ * 	corresponding field, read from its docValues copy (s_dv, p_dv, o_dv) or, for graphs, from its terms (never uninverted);
+ * 	without aggregates, that is also a DISTINCT projection of that variable.</li>
+ * </ul>
+ *
+ * Anything else (e.g. COUNT(DISTINCT ?var), expressions, mixed object types) is left to Jena.
+ *
+ * @author Andrea Gazzarini
+ * @since 1.1
+ */
+class AggregateEvaluator {
+	static final Log LOGGER = new Log(LoggerFactory.getLogger(AggregateEvaluator.class));
+
+	static final Query NAMED_GRAPHS_QUERY = new BooleanQuery.Builder()
+			.add(new MatchAllDocsQuery(), Occur.MUST)
+			.add(new TermQuery(new Term(Field.C, SolRDFGraph.UNNAMED_GRAPH_PLACEHOLDER)), Occur.MUST_NOT)
+			.build();
+
+	final LocalGraph graph;
+
+	/**
+	 * Builds a new evaluator for the given graph.
+	 *
+	 * @param graph the target {@link LocalGraph}.
+	 */
+	AggregateEvaluator(final LocalGraph graph) {
+		this.graph = graph;
+	}
+
+	/**
+	 * Evaluates the aggregates of a given group in the index.
+	 *
+	 * @param opGroup the group operation.
+	 * @return the solutions of the given group, null if the index cannot answer (e.g. the objects are not all numbers).
+	 * @throws IOException in case of I/O failure.
+	 * @throws SyntaxError in case the query cannot be executed because syntax errors.
+	 */
+	List<Binding> evaluate(final OpGroup opGroup) throws IOException, SyntaxError {
+		final Triple triplePattern = triplePattern(opGroup.getSubOp());
+		final Var graphVar = graphVar(opGroup.getSubOp());
+
+		final List<Query> filters = graphVar != null ? graph.memberFilters(triplePattern) : graph.filters(triplePattern);
+		if (graphVar != null) {
+			filters.add(NAMED_GRAPHS_QUERY);
+		}
+
+		final DocSet docSet = graph.searcher.getDocSet(filters);
+
+		final List<Binding> solutions = opGroup.getGroupVars().isEmpty()
+				? aggregates(triplePattern, docSet, opGroup.getAggregators())
+				: groups(
+						field(triplePattern, graphVar, opGroup.getGroupVars().getVars().get(0)),
+						opGroup.getGroupVars().getVars().get(0),
+						docSet,
+						opGroup.getAggregators());
+
+		if (solutions != null) {
+			LOGGER.debug(MessageCatalog._00132_AGGREGATES_ANSWERED_BY_INDEX, opGroup.getAggregators(), triplePattern, docSet.size());
+		}
+		return solutions;
+	}
+
+	/**
+	 * Computes the aggregates of all the triples matching a given pattern (i.e. a single group).
+	 *
+	 * @param triplePattern the triple pattern.
+	 * @param docSet the triples matching the pattern.
+	 * @param aggregators the aggregates.
+	 * @return the (single) solution with the value of each aggregate, null if the index cannot answer.
+	 * @throws IOException in case of I/O failure.
+	 * @throws SyntaxError in case the query cannot be executed because syntax errors.
+	 */
+	List<Binding> aggregates(final Triple triplePattern, final DocSet docSet, final List<ExprAggregator> aggregators) throws IOException, SyntaxError {
+		if (docSet.size() == 0) {
+			// The empty group has its own (per-aggregate) semantic, and Jena evaluates it for free
+			return null;
+		}
+
+		final BindingMap solution = BindingFactory.create();
+		for (final ExprAggregator aggregator : aggregators) {
+			final Class<?> type = aggregator.getAggregator().getClass();
+			Node value = null;
+			if (type == AggCount.class || type == AggCountVar.class) {
+				value = NodeValue.makeInteger(docSet.size()).asNode();
+			} else if (type == AggMin.class || type == AggMax.class) {
+				value = bound(triplePattern, type == AggMax.class);
+			} else if (type == AggSum.class || type == AggAvg.class) {
+				final SchemaField field = graph.objectField(triplePattern);
+				if (field != null && Field.NUMERIC_OBJECT.equals(field.getName())) {
+					final NodeValue sum = sum(docSet);
+					if (sum != null) {
+						value = (type == AggSum.class ? sum : average(sum, docSet.size())).asNode();
+					}
+				}
+			}
+
+			if (value == null) {
+				return null;
+			}
+			solution.add(aggregator.getVar(), value);
+		}
+		return Collections.<Binding>singletonList(solution);
+	}
+
+	/**
+	 * Computes the counts of the groups of the triples matching a given pattern.
+	 * Each distinct value of the given field is a group.
+	 *
+	 * @param field the field that corresponds to the group variable.
+	 * @param groupVar the group variable.
+	 * @param docSet the triples matching the pattern.
+	 * @param aggregators the aggregates (all counts).
+	 * @return a solution for each group.
+	 * @throws IOException in case of I/O failure.
+	 */
+	List<Binding> groups(final String field, final Var groupVar, final DocSet docSet, final List<ExprAggregator> aggregators) throws IOException {
+		final Map<String, Integer> counts = counts(graph.searcher, field, docSet);
+
+		final List<Binding> solutions = new ArrayList<Binding>(counts.size());
+		for (final Entry<String, Integer> entry : counts.entrySet()) {
+			final BindingMap solution = BindingFactory.create();
+			solution.add(groupVar, node(field, entry.getKey()));
+
+			final Node count = NodeValue.makeInteger(entry.getValue()).asNode();
+			for (final ExprAggregator aggregator : aggregators) {
+				solution.add(aggregator.getVar(), count);
+			}
+			solutions.add(solution);
+		}
+		return solutions;
+	}
+
+	/**
+	 * Counts the documents of a set by the value of a given field, in term order.
+	 *
+	 * Values of s, p and o are read from their docValues copies (s_dv, p_dv and o_dv): documents are counted by ordinal,
+	 * so each distinct value is read once. Otherwise (i.e. graphs, or segments without docValues) values are the terms
+	 * of the field, restricted to the set. In both cases the field is not uninverted (i.e. loaded in the FieldCache).
+	 *
+	 * @param searcher the Solr index searcher.
+	 * @param field the field (s, p, o or c).
+	 * @param docSet the documents.
+	 * @return the number of documents of each value of the given field.
+	 * @throws IOException in case of I/O failure.
+	 */
+	static Map<String, Integer> counts(final SolrIndexSearcher searcher, final String field, final DocSet docSet) throws IOException {
+		final String docValuesField = TripleReader.hasDocValues(searcher.getSchema()) ? docValuesField(field) : null;
+		final Map<String, Integer> counts = new TreeMap<String, Integer>();
+		final Filter filter = docSet.getTopFilter();
+		for (final LeafReaderContext leaf : searcher.getTopReaderContext().leaves()) {
+			final DocIdSet docs = filter.getDocIdSet(leaf, null);
+			if (docs == null || docs.iterator() == null) {
+				continue;
+			}
+
+			final SortedDocValues values = docValuesField != null ? leaf.reader().getSortedDocValues(docValuesField) : null;
+			if (values != null) {
+				countDocValues(searcher, leaf, docs, values, field, counts);
+			} else {
+				final FixedBitSet bits = new FixedBitSet(leaf.reader().maxDoc());
+				bits.or(docs.iterator());
+				countTerms(leaf, bits, field, counts);
+			}
+		}
+		return counts;
+	}
+
+	/**
+	 * Counts the documents of a segment by the docValues of a given field.
+	 * A value that could have been truncated (or that is missing) is read from the stored field.
+	 *
+	 * @param searcher the Solr index searcher.
+	 * @param leaf the segment.
+	 * @param docs the documents of the segment.
+	 * @param values the docValues (copy) of the field.
+	 * @param field the (stored) field.
+	 * @param counts the number of documents of each value, updated by this method.
+	 * @throws IOException in case of I/O failure.
+	 */
+	static void countDocValues(
+			final SolrIndexSearcher searcher,
+			final LeafReaderContext leaf,
+			final DocIdSet docs,
+			final SortedDocValues values,
+			final String field,
+			final Map<String, Integer> counts) throws IOException {
+		final IntIntOpenHashMap ords = new IntIntOpenHashMap();
+		DocIdSetIterator iterator = docs.iterator();
+		for (int doc = iterator.nextDoc(); doc != DocIdSetIterator.NO_MORE_DOCS; doc = iterator.nextDoc()) {
+			ords.putOrAdd(values.getOrd(doc), 1, 1);
+		}
+
+		final IntOpenHashSet truncated = new IntOpenHashSet();
+		for (final IntIntCursor ord : ords) {
+			final String term = ord.key >= 0 ? values.lookupOrd(ord.key).utf8ToString() : null;
+			if (term != null && term.length() < TripleReader.MAX_CHARS) {
+				add(counts, term, ord.value);
+			} else {
+				truncated.add(ord.key);
+			}
+		}
+
+		if (truncated.isEmpty()) {
+			return;
+		}
+
+		final Set<String> fields = Collections.singleton(field);
+		iterator = docs.iterator();
+		for (int doc = iterator.nextDoc(); doc != DocIdSetIterator.NO_MORE_DOCS; doc = iterator.nextDoc()) {
+			if (truncated.contains(values.getOrd(doc))) {
+				final String term = searcher.doc(leaf.docBase + doc, fields).get(field);
+				if (term != null) {
+					add(counts, term, 1);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Counts the documents of a segment by the terms of a given field.
+	 *
+	 * @param leaf the segment.
+	 * @param docs the documents of the segment.
+	 * @param field the (indexed) field.
+	 * @param counts the number of documents of each value, updated by this method.
+	 * @throws IOException in case of I/O failure.
+	 */
+	static void countTerms(final LeafReaderContext leaf, final Bits docs, final String field, final Map<String, Integer> counts) throws IOException {
+		final Terms terms = leaf.reader().terms(field);
+		if (terms == null) {
+			return;
+		}
+
+		final TermsEnum iterator = terms.iterator();
+		PostingsEnum postings = null;
+		BytesRef term;
+		while ((term = iterator.next()) != null) {
+			int count = 0;
+			postings = iterator.postings(postings, PostingsEnum.NONE);
+			for (int doc = postings.nextDoc(); doc != DocIdSetIterator.NO_MORE_DOCS; doc = postings.nextDoc()) {
+				if (docs.get(doc)) {
+					count++;
+				}
+			}
+
+			if (count > 0) {
+				add(counts, term.utf8ToString(), count);
+			}
+		}
+	}
+
+	/**
+	 * Adds a given number of documents to the count of a value.
+	 *
+	 * @param counts the number of documents of each value.
+	 * @param value the value.
+	 * @param count the number of documents to add.
+	 */
+	private static void add(final Map<String, Integer> counts, final String value, final int count) {
+		final Integer current = counts.get(value);
+		counts.put(value, current != null ? current + count : count);
+	}
+
+	/**
+	 * Returns the docValues copy of a given field.
+	 *
+	 * @param field the field.
+	 * @return the docValues copy of the given field, null if the field doesn't have a docValues copy (i.e. c).
+	 */
+	static String docValuesField(final String field) {
+		for (int i = 0; i < TripleReader.FIELDS.length; i++) {
+			if (TripleReader.FIELDS[i].equals(field)) {
+				return TripleReader.DOCVALUES_FIELDS[i];
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Returns the minimum (or maximum) object of the triples matching a given pattern.
+	 *
+	 * @param triplePattern the triple pattern.
+	 * @param max true for the maximum object.
+	 * @return the minimum (or maximum) object, null if objects cannot be ordered through a single field.
+	 * @throws IOException in case of I/O failure.
+	 * @throws SyntaxError in case the query cannot be executed because syntax errors.
+	 */
+	Node bound(final Triple triplePattern, final boolean max) throws IOException, SyntaxError {
+		final SortSpec order = graph.objectOrder(triplePattern, max);
+		if (order == null) {
+			return null;
+		}
+
+		final Iterator<Triple> first = graph.query(
+				triplePattern, 
+				order, 
+				0, 
+				1, 
+				TripleProjection.of(triplePattern, Collections.singleton(Var.alloc(triplePattern.getObject()))));
+		return first.hasNext() ? first.next().getObject() : null;
+	}
+
+	/**
+	 * Sums the (numeric) objects of a set of documents.
+	 * Objects are counted by term (i.e. docValues ordinal), so each distinct object is decoded and summed once.
+	 *
+	 * @param docSet the documents.
+	 * @return the sum of the objects of the given documents, null if the objects cannot be read from docValues.
+	 * @throws IOException in case of I/O failure.
+	 */
+	NodeValue sum(final DocSet docSet) throws IOException {
+		if (!TripleReader.hasDocValues(graph.searcher.getSchema())) {
+			return null;
+		}
+
+		final List<LeafReaderContext> leaves = graph.searcher.getTopReaderContext().leaves();
+		int leafIndex = -1;
+		LeafReaderContext leaf = null;
+		SortedDocValues objects = null;
+		final IntIntOpenHashMap counts = new IntIntOpenHashMap();
+
+		NodeValue sum = NodeValue.nvZERO;
+		final DocIterator iterator = docSet.iterator();
+		while (iterator.hasNext()) {
+			final int docId = iterator.nextDoc();
+			// DocSet iterators are ordered, so each leaf is visited once
+			while (leaf == null || docId >= leaf.docBase + leaf.reader().maxDoc()) {
+				sum = sum(sum, objects, counts);
+				leaf = leaves.get(++leafIndex);
+				objects = leaf.reader().getSortedDocValues(Field.O_DV);
+			}
+
+			final int ord = objects != null ? objects.getOrd(docId - leaf.docBase) : -1;
+			if (ord < 0 || sum == null) {
+				return null;
+			}
+			counts.putOrAdd(ord, 1, 1);
+		}
+		return sum(sum, objects, counts);
+	}
+
+	/**
+	 * Adds the counted objects of a leaf to a given sum.
+	 *
+	 * @param sum the sum so far, null if the objects cannot be summed.
+	 * @param objects the objects of the leaf.
+	 * @param counts how many times each object (i.e. ordinal) occurs, cleared once added.
+	 * @return the new sum, null if the objects cannot be summed (i.e. an object term could have been truncated or it is not a number).
+	 */
+	static NodeValue sum(final NodeValue sum, final SortedDocValues objects, final IntIntOpenHashMap counts) {
+		if (counts.isEmpty()) {
+			return sum;
+		}
+
+		NodeValue result = sum;
+		try {
+			for (final IntIntCursor count : counts) {
+				final String term = objects.lookupOrd(count.key).utf8ToString();
+				if (result == null || term.length() >= TripleReader.MAX_CHARS) {
+					result = null;
+					break;
+				}
+				result = add(result, NodeValue.makeNode(NTriples.asNode(term)), count.value);
+			}
+		} catch (final ExprEvalException exception) {
+			// Jena knows how to deal with that (i.e. SUM is unbound)
+			result = null;
+		}
+		counts.clear();
+		return result;
+	}
+
+	/**
+	 * Adds a value, which occurs a given number of times, to a sum.
+	 * Types are promoted like in SPARQL (e.g. integer + decimal is a decimal), as Jena does for SUM.
+	 *
+	 * @param sum the sum so far.
+	 * @param value the (numeric) value.
+	 * @param count how many times the value occurs.
+	 * @return the new sum.
+	 */
+	static NodeValue add(final NodeValue sum, final NodeValue value, final int count) {
+		return XSDFuncOp.numAdd(sum, count == 1 ? value : XSDFuncOp.numMultiply(value, NodeValue.makeInteger(count)));
+	}
+
+	/**
+	 * Returns the average of a given number of values, like Jena does for AVG (e.g. the average of integers is a decimal).
+	 *
+	 * @param sum the sum of the values.
+	 * @param count the number of values.
+	 * @return the average of the values, zero if there are no values.
+	 */
+	static NodeValue average(final NodeValue sum, final long count) {
+		return count == 0 ? NodeValue.nvZERO : XSDFuncOp.numDivide(sum, NodeValue.makeInteger(count));
+	}
+
+	/**
+	 * Returns true if the aggregates of a given group can be evaluated in the index.
+	 * That requires:
+	 *
+	 * <ul>
+	 * 	<li>a single triple pattern (see {@link LocalOpExecutor#singlePattern(Op)}), optionally within a GRAPH ?g;</li>
+	 * 	<li>no group or a single group variable that is a member of the pattern (or the graph variable);</li>
+	 * 	<li>COUNT(*) or COUNT(?var) and, without groups and GRAPH ?g, MIN / MAX / SUM / AVG of the object variable.</li>
+	 * </ul>
+	 *
+	 * @param opGroup the group operation.
+	 * @return true if the aggregates of the given group can be evaluated in the index.
+	 */
+	static boolean isSupported(final OpGroup opGroup) {
+		final Triple triplePattern = triplePattern(opGroup.getSubOp());
+		if (triplePattern == null) {
+			return false;
+		}
+
+		final Var graphVar = graphVar(opGroup.getSubOp());
+		final List<Var> groupVars = opGroup.getGroupVars().getVars();
+		if (groupVars.size() > 1
+				|| (groupVars.size() == 1 &&
+					(opGroup.getGroupVars().hasExpr(groupVars.get(0)) || field(triplePattern, graphVar, groupVars.get(0)) == null))) {
+			return false;
+		}
+
+		for (final ExprAggregator expression : opGroup.getAggregators()) {
+			final Aggregator aggregator = expression.getAggregator();
+			final Class<?> type = aggregator.getClass();
+			if (type == AggCount.class) {
+				continue;
+			}
+
+			final ExprList arguments = aggregator.getExprList();
+			final Expr argument = arguments != null && arguments.size() == 1 ? arguments.get(0) : null;
+			if (argument == null || !argument.isVariable()) {
+				return false;
+			}
+
+			final Var var = argument.asVar();
+			if (type == AggCountVar.class) {
+				if (field(triplePattern, graphVar, var) == null) {
+					return false;
+				}
+			} else if (type == AggMin.class || type == AggMax.class || type == AggSum.class || type == AggAvg.class) {
+				if (!groupVars.isEmpty() || graphVar != null || !Field.O.equals(field(triplePattern, null, var))) {
+					return false;
+				}
+			} else {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Returns the triple pattern of the operation under a group.
+	 *
+	 * @param op the operation under a group.
+	 * @return the triple pattern of the given operation, null if the operation doesn't have the expected shape.
+	 */
+	static Triple triplePattern(final Op op) {
+		if (op instanceof OpBGP) {
+			return LocalOpExecutor.singlePattern(op);
+		}
+
+		final Var graphVar = graphVar(op);
+		if (graphVar == null) {
+			return null;
+		}
+
+		final Op subOp = ((OpGraph) op).getSubOp();
+		final Triple triplePattern = subOp instanceof OpBGP ? LocalOpExecutor.singlePattern(subOp) : null;
+		return triplePattern != null && field(triplePattern, null, graphVar) == null ? triplePattern : null;
+	}
+
+	/**
+	 * Returns the graph variable of a GRAPH ?g operation.
+	 *
+	 * @param op the operation.
+	 * @return the graph variable of the given operation, null if the operation is not a GRAPH ?g.
+	 */
+	static Var graphVar(final Op op) {
+		return op instanceof OpGraph && ((OpGraph) op).getNode().isVariable()
+				? Var.alloc(((OpGraph) op).getNode())
+				: null;
+	}
+
+	/**
+	 * Returns the field that holds the values of a given variable.
+	 *
+	 * @param triplePattern the triple pattern.
+	 * @param graphVar the graph variable, if any.
+	 * @param var the variable.
+	 * @return the field that holds the values of the given variable, null if the variable is not in the pattern.
+	 */
+	static String field(final Triple triplePattern, final Var graphVar, final Var var) {
+		if (var.equals(graphVar)) {
+			return Field.C;
+		}
+
+		if (isVar(triplePattern.getSubject(), var)) {
+			return Field.S;
+		}
+
+		if (isVar(triplePattern.getPredicate(), var)) {
+			return Field.P;
+		}
+
+		return isVar(triplePattern.getObject(), var) ? Field.O : null;
+	}
+
+	/**
+	 * Decodes a term of a given field.
+	 *
+	 * @param field the field.
+	 * @param term the term.
+	 * @return the {@link Node} represented by the given term.
+	 */
+	static Node node(final String field, final String term) {
+		switch (field) {
+		case Field.S:
+			return NTriples.asURIorBlankNode(term);
+		case Field.O:
+			return NTriples.asNode(term);
+		default:
+			return NTriples.asURI(term);
+		}
+	}
+
+	/**
+	 * Returns true if a given pattern member is a given variable.
+	 *
+	 * @param member the pattern member.
+	 * @param var the variable.
+	 * @return true if the given pattern member is the given variable.
+	 */
+	private static boolean isVar(final Node member, final Var var) {
+		return member.isVariable() && Var.alloc(member).equals(var);
+	}
+}
@@ -0,0 +1,663 @@
+package org.gazzax.labs.solrdf.graph.standalone;
+
+import static org.gazzax.labs.solrdf.NTriples.asNt;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.lucene.index.Term;
+import org.apache.lucene.queries.TermsQuery;
+import org.apache.lucene.search.Query;
+import org.apache.solr.common.SolrException;
+import org.apache.solr.common.SolrException.ErrorCode;
+import org.apache.solr.search.DocIterator;
+import org.apache.solr.search.DocSet;
+import org.apache.solr.search.SortSpec;
+import org.apache.solr.search.SyntaxError;
+import org.apache.solr.search.WrappedQuery;
+import org.gazzax.labs.solrdf.Field;
+import org.gazzax.labs.solrdf.graph.TripleProjection;
+import org.gazzax.labs.solrdf.log.Log;
+import org.gazzax.labs.solrdf.log.MessageCatalog;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.base.Function;
+import com.google.common.collect.AbstractIterator;
+import com.google.common.collect.Iterators;
+
+import com.hp.hpl.jena.graph.Node;
+import com.hp.hpl.jena.graph.Triple;
+import com.hp.hpl.jena.sparql.core.BasicPattern;
+import com.hp.hpl.jena.sparql.core.Substitute;
+import com.hp.hpl.jena.sparql.core.Var;
+import com.hp.hpl.jena.sparql.engine.binding.Binding;
+import com.hp.hpl.jena.sparql.engine.binding.BindingFactory;
+import com.hp.hpl.jena.sparql.engine.binding.BindingMap;
+
+/**
+ * Evaluates a whole Basic Graph Pattern against a {@link LocalGraph} using a "set-at-a-time" strategy.
+ *
+ * Instead of issuing a new search for each binding produced by the preceding triple pattern (that is what
+ * Jena does by default), each triple pattern is resolved only once, as a {@link DocSet}.
+ * Shared variables are then handled with set operations: the values already bound for a variable are collected
+ * in a terms filter that is intersected with the {@link DocSet} of the next pattern, and the surviving
+ * matches are (hash) joined with the current solutions.
+ *
+ * The same strategy is used for evaluating a pattern against a whole batch of bindings (block bind join), so
+ * that N incoming bindings cost a single search instead of N.
+ *
+ * Memory is bounded: the solutions of the last triple pattern are streamed, and intermediate solutions are 
+ * collected only up to a given maximum, beyond that the remaining patterns are evaluated in batches.
+ *
+ * Note that joins follow the RDF term equality (e.g. "1"^^xsd:int and "01"^^xsd:int are two different terms).
+ *
+ * @author Andrea Gazzarini
+ * @since 1.1
+ */
+class BasicPatternEvaluator {
+	static final Log LOGGER = new Log(LoggerFactory.getLogger(BasicPatternEvaluator.class));
+
+	final LocalGraph graph;
+	final int maxIntermediateSolutions;
+
+	/**
+	 * Builds a new evaluator for the given graph.
+	 *
+	 * @param graph the target {@link LocalGraph}.
+	 */
+	BasicPatternEvaluator(final LocalGraph graph) {
+		this(graph, graph.maxIntermediateSolutions);
+	}
+
+	/**
+	 * Builds a new evaluator for the given graph.
+	 *
+	 * @param graph the target {@link LocalGraph}.
+	 * @param maxIntermediateSolutions the maximum number of intermediate solutions that are collected at once.
+	 */
+	BasicPatternEvaluator(final LocalGraph graph, final int maxIntermediateSolutions) {
+		this.graph = graph;
+		this.maxIntermediateSolutions = maxIntermediateSolutions;
+	}
+
+	/**
+	 * Evaluates the given Basic Graph Pattern.
+	 *
+	 * @param pattern the Basic Graph Pattern, with the parent binding already substituted.
+	 * @param parent the parent binding.
+	 * @return an iterator over the solutions of the given pattern.
+	 */
+	Iterator<Binding> evaluate(final BasicPattern pattern, final Binding parent) {
+		return evaluate(pattern, noConstraints(pattern), parent);
+	}
+	
+	/**
+	 * Evaluates the given Basic Graph Pattern, restricting each triple pattern with a given set of additional constraints.
+	 * A pattern with just one triple is streamed directly from the index, while larger patterns are evaluated set-at-a-time.
+	 *
+	 * @param pattern the Basic Graph Pattern, with the parent binding already substituted.
+	 * @param constraints the additional constraints of each triple pattern, in the same order of the pattern.
+	 * @param parent the parent binding.
+	 * @return an iterator over the solutions of the given pattern.
+	 */
+	Iterator<Binding> evaluate(final BasicPattern pattern, final List<List<Query>> constraints, final Binding parent) {
+		try {
+			if (pattern.size() == 1) {
+				return stream(pattern.get(0), constraints.get(0), parent);
+			}
+			return solve(pattern.getList(), constraints, Collections.singletonList(parent), new HashSet<Var>());
+		} catch (final IOException | SyntaxError exception) {
+			LOGGER.error(MessageCatalog._00113_NWS_FAILURE, exception);
+			throw new SolrException(ErrorCode.SERVER_ERROR, exception);
+		}
+	}
+
+	/**
+	 * Evaluates the given Basic Graph Pattern for a whole batch of parent bindings (i.e. a block bind join).
+	 * 
+	 * The variables bound by all parents are not substituted in the pattern: their values are collected in 
+	 * a single terms filter for each triple pattern, and the matching documents are routed back to their 
+	 * parents by the hash join.
+	 * If the parents don't share any variable with the pattern, there's nothing to join: in that case each 
+	 * parent is evaluated (and streamed) separately.
+	 *
+	 * @param pattern the Basic Graph Pattern.
+	 * @param constraints the additional constraints of each triple pattern, in the same order of the pattern.
+	 * @param parents the parent bindings.
+	 * @return an iterator over the solutions of the given pattern.
+	 */
+	Iterator<Binding> evaluate(final BasicPattern pattern, final List<List<Query>> constraints, final List<Binding> parents) {
+		final Set<Var> boundVariables = boundVariables(pattern, parents);
+		if (boundVariables.isEmpty()) {
+			return Iterators.concat(Iterators.transform(parents.iterator(), new Function<Binding, Iterator<Binding>>() {
+				@Override
+				public Iterator<Binding> apply(final Binding parent) {
+					return evaluate(Substitute.substitute(pattern, parent), constraints, parent);
+				}
+			}));
+		}
+		
+		try {
+			return solve(pattern.getList(), constraints, parents, boundVariables);
+		} catch (final IOException exception) {
+			LOGGER.error(MessageCatalog._00113_NWS_FAILURE, exception);
+			throw new SolrException(ErrorCode.SERVER_ERROR, exception);
+		}
+	}
+	
+	/**
+	 * Solves the given triple patterns set-at-a-time.
+	 * 
+	 * @param triplePatterns the triple patterns.
+	 * @param constraints the additional constraints of each triple pattern, in the same order of the pattern.
+	 * @param parents the parent bindings.
+	 * @param parentVariables the pattern variables that are bound in all parent bindings.
+	 * @return an iterator over the solutions of the given triple patterns.
+	 * @throws IOException in case of I/O failure.
+	 */
+	Iterator<Binding> solve(
+			final List<Triple> triplePatterns, 
+			final List<List<Query>> constraints, 
+			final List<Binding> parents, 
+			final Set<Var> parentVariables) throws IOException {
+		final Map<Triple, DocSet> docSets = new HashMap<Triple, DocSet>();
+		for (int i = 0; i < triplePatterns.size(); i++) {
+			final Triple triplePattern = triplePatterns.get(i);
+			final DocSet docSet = docSet(triplePattern, constraints.get(i));
+			if (docSet.size() == 0) {
+				return Collections.<Binding>emptyList().iterator();
+			}
+			docSets.put(triplePattern, docSet);
+		}
+
+		return solve(new ArrayList<Triple>(triplePatterns), docSets, parents, new HashSet<Var>(parentVariables));
+	}
+
+	/**
+	 * Joins the given solutions with the remaining triple patterns, one at a time.
+	 * 
+	 * Intermediate solutions are collected, because the next pattern is restricted with their values, while 
+	 * the solutions of the last join are streamed (so that, for example, a LIMIT doesn't load all of them).
+	 * When there are more than maxIntermediateSolutions intermediate solutions, they are streamed too, and 
+	 * the remaining patterns are evaluated for each batch of them (i.e. a block bind join).
+	 * 
+	 * @param remaining the triple patterns that haven't been evaluated yet, changed by this method.
+	 * @param docSets the {@link DocSet}s associated with each triple pattern.
+	 * @param parents the parent bindings.
+	 * @param boundVariables the variables bound in all parent bindings, changed by this method.
+	 * @return an iterator over the solutions of the remaining triple patterns.
+	 * @throws IOException in case of I/O failure.
+	 */
+	Iterator<Binding> solve(
+			final List<Triple> remaining, 
+			final Map<Triple, DocSet> docSets, 
+			final List<Binding> parents, 
+			final Set<Var> boundVariables) throws IOException {
+		if (remaining.isEmpty()) {
+			return parents.iterator();
+		}
+
+		List<Binding> solutions = parents;
+		while (!solutions.isEmpty()) {
+			final Triple triplePattern = next(remaining, docSets, boundVariables);
+			remaining.remove(triplePattern);
+
+			final DocSet matches = restrict(docSets.get(triplePattern), triplePattern, solutions, boundVariables);
+			final Iterator<Binding> joined = join(solutions, triplePattern, matches, boundVariables);
+			boundVariables.addAll(variables(triplePattern));
+			if (remaining.isEmpty()) {
+				return joined;
+			}
+
+			solutions = new ArrayList<Binding>();
+			while (joined.hasNext() && solutions.size() < maxIntermediateSolutions) {
+				solutions.add(joined.next());
+			}
+
+			if (joined.hasNext()) {
+				LOGGER.debug(MessageCatalog._00141_INTERMEDIATE_SOLUTIONS_LIMIT, maxIntermediateSolutions, remaining);
+				return batches(Iterators.concat(solutions.iterator(), joined), remaining, docSets, boundVariables);
+			}
+		}
+		return Collections.<Binding>emptyList().iterator();
+	}
+
+	/**
+	 * Evaluates the remaining triple patterns for each batch (of maxIntermediateSolutions) of the given solutions.
+	 * 
+	 * @param solutions the (intermediate) solutions.
+	 * @param remaining the triple patterns that haven't been evaluated yet.
+	 * @param docSets the {@link DocSet}s associated with each triple pattern.
+	 * @param boundVariables the variables bound in all the given solutions.
+	 * @return an iterator over the solutions of the remaining triple patterns.
+	 */
+	Iterator<Binding> batches(
+			final Iterator<Binding> solutions, 
+			final List<Triple> remaining, 
+			final Map<Triple, DocSet> docSets, 
+			final Set<Var> boundVariables) {
+		return Iterators.concat(Iterators.transform(
+				Iterators.partition(solutions, maxIntermediateSolutions), 
+				new Function<List<Binding>, Iterator<Binding>>() {
+					@Override
+					public Iterator<Binding> apply(final List<Binding> batch) {
+						try {
+							return solve(new ArrayList<Triple>(remaining), docSets, batch, new HashSet<Var>(boundVariables));
+						} catch (final IOException exception) {
+							LOGGER.error(MessageCatalog._00113_NWS_FAILURE, exception);
+							throw new SolrException(ErrorCode.SERVER_ERROR, exception);
+						}
+					}
+				}));
+	}
+
+	/**
+	 * Returns the {@link DocSet} of a given triple pattern.
+	 * 
+	 * @param triplePattern the triple pattern.
+	 * @param constraints the additional constraints of the triple pattern.
+	 * @return the {@link DocSet} of the given triple pattern.
+	 * @throws IOException in case of I/O failure.
+	 */
+	DocSet docSet(final Triple triplePattern, final List<Query> constraints) throws IOException {
+		return graph.docSet(triplePattern, constraints);
+	}
+
+	/**
+	 * Returns the variables of the given pattern that are bound in all the given bindings.
+	 * 
+	 * @param pattern the Basic Graph Pattern.
+	 * @param bindings the bindings.
+	 * @return the variables of the given pattern that are bound in all the given bindings.
+	 */
+	static Set<Var> boundVariables(final BasicPattern pattern, final List<Binding> bindings) {
+		final Set<Var> result = new HashSet<Var>();
+		for (final Triple triplePattern : pattern) {
+			result.addAll(variables(triplePattern));
+		}
+		
+		for (final Binding binding : bindings) {
+			for (final Iterator<Var> iterator = result.iterator(); iterator.hasNext();) {
+				if (!binding.contains(iterator.next())) {
+					iterator.remove();
+				}
+			}
+		}
+		return result;
+	}
+	
+	/**
+	 * Returns an empty list of constraints for each triple pattern of the given pattern.
+	 * 
+	 * @param pattern the Basic Graph Pattern.
+	 * @return an empty list of constraints for each triple pattern of the given pattern.
+	 */
+	static List<List<Query>> noConstraints(final BasicPattern pattern) {
+		final List<List<Query>> constraints = new ArrayList<List<Query>>(pattern.size());
+		for (int i = 0; i < pattern.size(); i++) {
+			constraints.add(Collections.<Query>emptyList());
+		}
+		return constraints;
+	}
+	
+	/**
+	 * Streams the solutions of a single triple pattern.
+	 * 
+	 * @param triplePattern the triple pattern.
+	 * @param constraints the additional constraints of the triple pattern.
+	 * @param parent the parent binding.
+	 * @return an iterator over the solutions of the given triple pattern.
+	 * @throws SyntaxError in case the query cannot be executed because syntax errors.
+	 */
+	Iterator<Binding> stream(final Triple triplePattern, final List<Query> constraints, final Binding parent) throws SyntaxError {
+		return bindings(triplePattern, graph.query(triplePattern, constraints), parent);
+	}
+
+	/**
+	 * Streams a slice of the solutions of a single triple pattern.
+	 * The slice is computed by the index, so the triple pattern must not contain the same variable twice 
+	 * (i.e. each matching triple must be a solution).
+	 * 
+	 * @param triplePattern the triple pattern.
+	 * @param parent the parent binding.
+	 * @param order the order of solutions, null for the default order.
+	 * @param offset the number of solutions that will be skipped.
+	 * @param limit the maximum number of solutions that will be returned, -1 for all the (ordered) solutions.
+	 * @param projection the positions of the matching triples that are needed.
+	 * @return an iterator over the requested slice of solutions.
+	 * @throws SyntaxError in case the query cannot be executed because syntax errors.
+	 */
+	Iterator<Binding> stream(
+			final Triple triplePattern, 
+			final Binding parent, 
+			final SortSpec order, 
+			final int offset, 
+			final int limit,
+			final TripleProjection projection) throws SyntaxError {
+		return bindings(triplePattern, graph.query(triplePattern, order, offset, limit, projection), parent);
+	}
+
+	/**
+	 * Turns the triples matching a given triple pattern in solutions.
+	 * 
+	 * @param triplePattern the triple pattern.
+	 * @param triples the matching triples.
+	 * @param parent the parent binding.
+	 * @return an iterator over the solutions of the given triple pattern.
+	 */
+	Iterator<Binding> bindings(final Triple triplePattern, final Iterator<Triple> triples, final Binding parent) {
+		return new AbstractIterator<Binding>() {
+			@Override
+			protected Binding computeNext() {
+				while (triples.hasNext()) {
+					final Map<Var, Node> match = match(triplePattern, triples.next());
+					if (match != null) {
+						final BindingMap binding = BindingFactory.create(parent);
+						for (final Map.Entry<Var, Node> entry : match.entrySet()) {
+							binding.add(entry.getKey(), entry.getValue());
+						}
+						return binding;
+					}
+				}
+				return endOfData();
+			}
+		};
+	}
+
+	/**
+	 * Selects the next triple pattern that will be evaluated.
+	 * The preference goes to patterns that share at least one variable with the (already) bound variables;
+	 * between them, the pattern with the smallest {@link DocSet} wins.
+	 *
+	 * @param remaining the triple patterns that haven't been evaluated yet.
+	 * @param docSets the {@link DocSet}s associated with each triple pattern.
+	 * @param boundVariables the variables bound by the patterns evaluated so far.
+	 * @return the next triple pattern that will be evaluated.
+	 */
+	Triple next(final List<Triple> remaining, final Map<Triple, DocSet> docSets, final Set<Var> boundVariables) {
+		Triple candidate = null;
+		boolean candidateIsConnected = false;
+		for (final Triple triplePattern : remaining) {
+			final boolean connected = !Collections.disjoint(variables(triplePattern), boundVariables);
+			if (candidate == null
+					|| (connected && !candidateIsConnected)
+					|| (connected == candidateIsConnected && docSets.get(triplePattern).size() < docSets.get(candidate).size())) {
+				candidate = triplePattern;
+				candidateIsConnected = connected;
+			}
+		}
+		return candidate;
+	}
+
+	/**
+	 * Restricts the {@link DocSet} of a given triple pattern using the values already bound for its variables.
+	 *
+	 * @param docSet the {@link DocSet} of the triple pattern.
+	 * @param triplePattern the triple pattern.
+	 * @param solutions the current solutions.
+	 * @param boundVariables the variables bound by the current solutions.
+	 * @return the restricted {@link DocSet}.
+	 * @throws IOException in case of I/O failure.
+	 */
+	DocSet restrict(
+			final DocSet docSet,
+			final Triple triplePattern,
+			final List<Binding> solutions,
+			final Set<Var> boundVariables) throws IOException {
+		DocSet result = docSet;
+		result = restrict(result, Field.S, triplePattern.getSubject(), solutions, boundVariables);
+		result = restrict(result, Field.P, triplePattern.getPredicate(), solutions, boundVariables);
+		result = restrict(result, Field.O, triplePattern.getObject(), solutions, boundVariables);
+		return result;
+	}
+
+	/**
+	 * Restricts a {@link DocSet} using the values already bound for a given triple pattern member.
+	 * The restriction is applied only if it is worth to do that, that is, if the number of distinct values
+	 * is lesser than the {@link DocSet} size.
+	 *
+	 * @param docSet the {@link DocSet} of the triple pattern.
+	 * @param fieldName the name of the field associated with the triple pattern member.
+	 * @param member the triple pattern member.
+	 * @param solutions the current solutions.
+	 * @param boundVariables the variables bound by the current solutions.
+	 * @return the restricted {@link DocSet}.
+	 * @throws IOException in case of I/O failure.
+	 */
+	DocSet restrict(
+			final DocSet docSet,
+			final String fieldName,
+			final Node member,
+			final List<Binding> solutions,
+			final Set<Var> boundVariables) throws IOException {
+		if (!member.isVariable() || docSet.size() == 0) {
+			return docSet;
+		}
+
+		final Var variable = Var.alloc(member);
+		if (!boundVariables.contains(variable)) {
+			return docSet;
+		}
+
+		final Set<String> values = new LinkedHashSet<String>();
+		for (final Binding solution : solutions) {
+			final Node value = solution.get(variable);
+			if (value != null && (!Field.P.equals(fieldName) || value.isURI()) && (!Field.S.equals(fieldName) || !value.isLiteral())) {
+				values.add(asNt(value));
+				if (values.size() >= docSet.size()) {
+					return docSet;
+				}
+			}
+		}
+
+		if (values.isEmpty()) {
+			return DocSet.EMPTY;
+		}
+
+		final List<Term> terms = new ArrayList<Term>(values.size());
+		for (final String value : values) {
+			terms.add(new Term(fieldName, value));
+		}
+
+		// Terms filters are request-specific, so they shouldn't pollute the filter cache.
+		final WrappedQuery filter = new WrappedQuery(new TermsQuery(terms));
+		filter.setCache(false);
+		return graph.searcher.getDocSet(filter, docSet);
+	}
+
+	/**
+	 * Joins the current solutions with the matches of a given triple pattern.
+	 * The current solutions are indexed by their join key, while the matches are read (and joined) lazily, 
+	 * as the returned iterator is consumed.
+	 *
+	 * @param solutions the current solutions.
+	 * @param triplePattern the triple pattern.
+	 * @param matches the {@link DocSet} of the triple pattern.
+	 * @param boundVariables the variables bound by the current solutions.
+	 * @return an iterator over the new solutions.
+	 * @throws IOException in case of I/O failure.
+	 */
+	Iterator<Binding> join(
+			final List<Binding> solutions,
+			final Triple triplePattern,
+			final DocSet matches,
+			final Set<Var> boundVariables) throws IOException {
+		if (matches.size() == 0) {
+			return Collections.<Binding>emptyList().iterator();
+		}
+
+		final List<Var> variables = variables(triplePattern);
+		final List<Var> joinVariables = new ArrayList<Var>(variables);
+		joinVariables.retainAll(boundVariables);
+
+		final Map<List<Node>, List<Binding>> index = new HashMap<List<Node>, List<Binding>>();
+		for (final Binding solution : solutions) {
+			final List<Node> key = new ArrayList<Node>(joinVariables.size());
+			for (final Var variable : joinVariables) {
+				key.add(solution.get(variable));
+			}
+
+			List<Binding> bucket = index.get(key);
+			if (bucket == null) {
+				bucket = new ArrayList<Binding>();
+				index.put(key, bucket);
+			}
+			bucket.add(solution);
+		}
+
+		// Documents that cannot join are discarded before being loaded
+		final TermIdProbe probe = graph.termIds 
+				? TermIdProbe.of(graph.searcher, triplePattern, joinVariables, index.keySet()) 
+				: null;
+		
+		final TripleReader reader = new TripleReader(graph.searcher, TripleProjection.of(triplePattern));
+		final DocIterator iterator = matches.iterator();
+		return new AbstractIterator<Binding>() {
+			private Iterator<Binding> joined = Collections.<Binding>emptyList().iterator();
+
+			@Override
+			protected Binding computeNext() {
+				try {
+					while (!joined.hasNext()) {
+						if (!iterator.hasNext()) {
+							return endOfData();
+						}
+						joined = join(iterator.nextDoc());
+					}
+					return joined.next();
+				} catch (final IOException exception) {
+					LOGGER.error(MessageCatalog._00113_NWS_FAILURE, exception);
+					throw new SolrException(ErrorCode.SERVER_ERROR, exception);
+				}
+			}
+
+			/**
+			 * Joins the current solutions with a single matching document.
+			 * 
+			 * @param docId the Lucene document identifier.
+			 * @return an iterator over the new solutions of the given document.
+			 * @throws IOException in case of I/O failure.
+			 */
+			private Iterator<Binding> join(final int docId) throws IOException {
+				if (probe != null && !probe.mayMatch(docId)) {
+					return Collections.<Binding>emptyList().iterator();
+				}
+				
+				final Map<Var, Node> match = match(triplePattern, reader.triple(docId));
+				if (match == null) {
+					return Collections.<Binding>emptyList().iterator();
+				}
+
+				final List<Node> key = new ArrayList<Node>(joinVariables.size());
+				for (final Var variable : joinVariables) {
+					key.add(match.get(variable));
+				}
+
+				final List<Binding> bucket = index.get(key);
+				if (bucket == null) {
+					return Collections.<Binding>emptyList().iterator();
+				}
+
+				final List<Binding> result = new ArrayList<Binding>(bucket.size());
+				for (final Binding solution : bucket) {
+					if (!compatible(solution, match)) {
+						continue;
+					}
+					
+					final BindingMap binding = BindingFactory.create(solution);
+					for (final Map.Entry<Var, Node> entry : match.entrySet()) {
+						if (!solution.contains(entry.getKey())) {
+							binding.add(entry.getKey(), entry.getValue());
+						}
+					}
+					result.add(binding);
+				}
+				return result.iterator();
+			}
+		};
+	}
+
+	/**
+	 * Returns true if the given solution doesn't bind any variable of the given match to a different value.
+	 * That could happen only for those variables that are bound in some solution but not in all of them.
+	 * 
+	 * @param solution the solution.
+	 * @param match the variable values of a matching triple.
+	 * @return true if the given solution and match are compatible.
+	 */
+	boolean compatible(final Binding solution, final Map<Var, Node> match) {
+		for (final Map.Entry<Var, Node> entry : match.entrySet()) {
+			final Node value = solution.get(entry.getKey());
+			if (value != null && !value.equals(entry.getValue())) {
+				return false;
+			}
+		}
+		return true;
+	}
+	
+	/**
+	 * Matches the given triple against a triple pattern.
+	 *
+	 * @param triplePattern the triple pattern.
+	 * @param triple the triple.
+	 * @return the variable values, null in case the triple doesn't match (e.g. ?x :p ?x where subject and object differ).
+	 */
+	Map<Var, Node> match(final Triple triplePattern, final Triple triple) {
+		final Map<Var, Node> result = new HashMap<Var, Node>(4);
+		return bind(triplePattern.getSubject(), triple.getSubject(), result)
+				&& bind(triplePattern.getPredicate(), triple.getPredicate(), result)
+				&& bind(triplePattern.getObject(), triple.getObject(), result)
+					? result
+					: null;
+	}
+
+	/**
+	 * Binds a given value to a (variable) triple pattern member.
+	 * A member whose value hasn't been loaded (see {@link TripleProjection}) is left unbound.
+	 *
+	 * @param member the triple pattern member.
+	 * @param value the value.
+	 * @param binding the binding that is being built.
+	 * @return false if the variable has been already bound to a different value, true otherwise.
+	 */
+	boolean bind(final Node member, final Node value, final Map<Var, Node> binding) {
+		if (!member.isVariable() || value == Node.ANY) {
+			return true;
+		}
+
+		final Var variable = Var.alloc(member);
+		final Node current = binding.get(variable);
+		if (current == null) {
+			binding.put(variable, value);
+			return true;
+		}
+		return current.equals(value);
+	}
+
+	/**
+	 * Returns the (distinct) variables of the given triple pattern.
+	 *
+	 * @param triplePattern the triple pattern.
+	 * @return the (distinct) variables of the given triple pattern.
+	 */
+	static List<Var> variables(final Triple triplePattern) {
+		final List<Var> result = new ArrayList<Var>(3);
+		for (final Node member : new Node[] {triplePattern.getSubject(), triplePattern.getPredicate(), triplePattern.getObject()}) {
+			if (member.isVariable()) {
+				final Var variable = Var.alloc(member);
+				if (!result.contains(variable)) {
+					result.add(variable);
+				}
+			}
+		}
+		return result;
+	}
+}
@@ -1,20 +1,18 @@
 package org.gazzax.labs.solrdf.graph.standalone;
 
 import java.io.IOException;
-import java.util.HashSet;
 import java.util.Iterator;
-import java.util.Set;
 
-import org.apache.lucene.document.Document;
 import org.apache.solr.search.CursorMark;
 import org.apache.solr.search.DocIterator;
 import org.apache.solr.search.DocList;
 import org.apache.solr.search.SolrIndexSearcher;
 import org.apache.solr.search.SortSpec;
-import org.gazzax.labs.solrdf.Field;
-import org.gazzax.labs.solrdf.NTriples;
 import org.gazzax.labs.solrdf.graph.GraphEventConsumer;
+import org.gazzax.labs.solrdf.graph.PageSizer;
+import org.gazzax.labs.solrdf.graph.TripleProjection;
 import org.gazzax.labs.solrdf.log.Log;
+import org.gazzax.labs.solrdf.log.MessageCatalog;
 import org.slf4j.LoggerFactory;
 
 import com.google.common.collect.UnmodifiableIterator;
@@ -25,6 +23,8 @@ import com.hp.hpl.jena.graph.Triple;
  * An iterator over SOLR results that uses the built-in Deep Paging strategy.
  * Internally it uses other iterators to represents each iteration state. 
  * 
+ * The length of each page is chosen by a {@link PageSizer}.
+ * 
  * @see http://solr.pl/en/2014/03/10/solr-4-7-efficient-deep-paging
  * @see http://heliosearch.org/solr/paging-and-deep-paging
  * @see <a href="http://en.wikipedia.org/wiki/Finite-state_machine">http://en.wikipedia.org/wiki/Finite-state_machine</a>
@@ -34,18 +34,13 @@ import com.hp.hpl.jena.graph.Triple;
 public class DeepPagingIterator extends UnmodifiableIterator<Triple> {
 	static final Log LOGGER = new Log(LoggerFactory.getLogger(LocalGraph.class));
 	
-	protected static final Set<String> TRIPLE_FIELDS = new HashSet<String>();
-	static {
-		TRIPLE_FIELDS.add(Field.S);
-		TRIPLE_FIELDS.add(Field.P);
-		TRIPLE_FIELDS.add(Field.O);
-	}
-
 	protected static final Triple DUMMY_TRIPLE = new Triple(Node.ANY, Node.ANY, Node.ANY);
 	
 	private final SolrIndexSearcher searcher;
 	final SolrIndexSearcher.QueryCommand queryCommand;
 	final GraphEventConsumer consumer;
+	final PageSizer pageSizer;
+	final TripleReader reader;
 	private DocList page;
 	
 	private CursorMark nextCursorMark;
@@ -59,24 +54,7 @@ public class DeepPagingIterator extends UnmodifiableIterator<Triple> {
 	private final Iterator<Triple> firstQueryExecution = new UnmodifiableIterator<Triple>() {
 		@Override
 		public boolean hasNext() {
-			try {
-			    final SolrIndexSearcher.QueryResult result = new SolrIndexSearcher.QueryResult();
-			    searcher.search(result, queryCommand);
-			  			
-			    LOGGER.debugQuery(queryCommand, result);
-			    
-			    consumer.onDocSet(result.getDocListAndSet().docSet);
-			    queryCommand.clearFlags(SolrIndexSearcher.GET_DOCSET);
-			    
-				sentCursorMark = queryCommand.getCursorMark();
-				nextCursorMark = result.getNextCursorMark();
-				
-				page = result.getDocListAndSet().docList;
-
-				return page.size() > 0;
-			} catch (final Exception exception) {
-				throw new RuntimeException(exception);
-			}
+			return fetchPage();
 		}
 
 		@Override
@@ -94,21 +72,7 @@ public class DeepPagingIterator extends UnmodifiableIterator<Triple> {
 	private final Iterator<Triple> executeQuery = new UnmodifiableIterator<Triple>() {
 		@Override
 		public boolean hasNext() {
-			try {
-				final SolrIndexSearcher.QueryResult result = new SolrIndexSearcher.QueryResult();
-			    searcher.search(result, queryCommand);
-
-				LOGGER.debugQuery(queryCommand, result);
-			    
-				sentCursorMark = queryCommand.getCursorMark();
-				nextCursorMark = result.getNextCursorMark();
-				
-				page = result.getDocListAndSet().docList;
-
-				return page.size() > 0;
-			} catch (final Exception exception) {
-				throw new RuntimeException(exception);
-			}
+			return fetchPage();
 		}
 
 		@Override
@@ -142,11 +106,7 @@ public class DeepPagingIterator extends UnmodifiableIterator<Triple> {
 				
 				Triple triple = null;
 				if (consumer.requireTripleBuild()) { 
-					final Document document = searcher.doc(nextDocId, TRIPLE_FIELDS);
-					triple = Triple.create(
-							NTriples.asURIorBlankNode((String) document.get(Field.S)), 
-							NTriples.asURI((String) document.get(Field.P)),
-							NTriples.asNode((String) document.get(Field.O)));
+					triple = reader.triple(nextDocId);
 				} else {
 					triple = DUMMY_TRIPLE;
 				}
@@ -174,9 +134,11 @@ public class DeepPagingIterator extends UnmodifiableIterator<Triple> {
 			final boolean hasNext = (page.size() == queryCommand.getLen() && !sentCursorMark.equals(nextCursorMark));
 			if (hasNext) {
 				queryCommand.setCursorMark(nextCursorMark);			
+				queryCommand.setLen(pageSizer.nextPageSize());
 				currentState = executeQuery;
 				return currentState.hasNext();
 			}
+			LOGGER.debug(MessageCatalog._00131_PAGED_SCAN_COMPLETED, pageSizer.summary());
 			return false;
 		}
 
@@ -195,17 +157,59 @@ public class DeepPagingIterator extends UnmodifiableIterator<Triple> {
 	 * @param queryCommand the query command that will be submitted.static 
 	 * @param sort the sort specs.
 	 * @param consumer the Graph event consumer that will be notified on relevant events.
+	 * @param pageSizer the component that chooses the length of each result page.
+	 * @param projection the positions of the matching triples that are needed.
 	 */
 	DeepPagingIterator(
 			final SolrIndexSearcher searcher, 
 			final SolrIndexSearcher.QueryCommand queryCommand, 
 			final SortSpec sort, 
-			final GraphEventConsumer consumer) {
+			final GraphEventConsumer consumer,
+			final PageSizer pageSizer,
+			final TripleProjection projection) {
 		this.searcher = searcher;
 		this.queryCommand = queryCommand;
 		this.sentCursorMark = new CursorMark(searcher.getSchema(), sort);
 		this.queryCommand.setCursorMark(sentCursorMark);
+		this.queryCommand.setLen(pageSizer.pageSize());
 		this.consumer = consumer;
+		this.pageSizer = pageSizer;
+		this.reader = new TripleReader(searcher, projection);
+	}
+
+	/**
+	 * Loads the next page of results.
+	 * The very first time, the consumer is also notified with the whole set of matching documents.
+	 * 
+	 * @return true if the loaded page contains at least one result.
+	 */
+	boolean fetchPage() {
+		try {
+			final SolrIndexSearcher.QueryResult result = new SolrIndexSearcher.QueryResult();
+			pageSizer.fetchStarted();
+		    searcher.search(result, queryCommand);
+
+			LOGGER.debugQuery(queryCommand, result);
+
+			if ((queryCommand.getFlags() & SolrIndexSearcher.GET_DOCSET) != 0) {
+			    consumer.onDocSet(result.getDocListAndSet().docSet);
+			    queryCommand.clearFlags(SolrIndexSearcher.GET_DOCSET);
+			}
+		    
+			sentCursorMark = queryCommand.getCursorMark();
+			nextCursorMark = result.getNextCursorMark();
+			
+			page = result.getDocListAndSet().docList;
+			pageSizer.fetchCompleted(page.size(), page.matches());
+
+			if (page.size() == 0) {
+				LOGGER.debug(MessageCatalog._00131_PAGED_SCAN_COMPLETED, pageSizer.summary());
+				return false;
+			}
+			return true;
+		} catch (final Exception exception) {
+			throw new RuntimeException(exception);
+		}
 	}
 
 	@Override
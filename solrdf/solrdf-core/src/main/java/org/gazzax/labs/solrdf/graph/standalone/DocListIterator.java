@@ -0,0 +1,51 @@
+package org.gazzax.labs.solrdf.graph.standalone;
+
+import java.io.IOException;
+
+import org.apache.solr.search.DocIterator;
+import org.apache.solr.search.SolrIndexSearcher;
+import org.gazzax.labs.solrdf.graph.GraphEventConsumer;
+import org.gazzax.labs.solrdf.graph.TripleProjection;
+
+/**
+ * An iterator over a single page of the triples matching a given query command.
+ * Offset and length of the page are part of the command, so skipped triples are never loaded, and the 
+ * iteration ends as soon as the page has been consumed.
+ *
+ * @author Andrea Gazzarini
+ * @since 1.1
+ */
+class DocListIterator extends DocSetIterator {
+	final SolrIndexSearcher.QueryCommand queryCommand;
+
+	/**
+	 * Builds a new iterator with the given data.
+	 *
+	 * @param searcher the Solr index searcher.
+	 * @param queryCommand the query command that will be submitted.
+	 * @param consumer the Graph event consumer that will be notified on relevant events.
+	 * @param projection the positions of the matching triples that are needed.
+	 */
+	DocListIterator(
+			final SolrIndexSearcher searcher, 
+			final SolrIndexSearcher.QueryCommand queryCommand, 
+			final GraphEventConsumer consumer, 
+			final TripleProjection projection) {
+		super(searcher, queryCommand.getFilterList(), consumer, projection);
+		this.queryCommand = queryCommand;
+	}
+
+	@Override
+	DocIterator search() throws IOException {
+		final SolrIndexSearcher.QueryResult result = new SolrIndexSearcher.QueryResult();
+		searcher.search(result, queryCommand);
+
+		DeepPagingIterator.LOGGER.debugQuery(queryCommand, result);
+
+		if ((queryCommand.getFlags() & SolrIndexSearcher.GET_DOCSET) != 0) {
+			consumer.onDocSet(result.getDocListAndSet().docSet);
+		}
+
+		return result.getDocListAndSet().docList.iterator();
+	}
+}
@@ -0,0 +1,101 @@
+package org.gazzax.labs.solrdf.graph.standalone;
+
+import java.io.IOException;
+import java.util.List;
+
+import org.apache.lucene.search.Query;
+import org.apache.solr.search.DocIterator;
+import org.apache.solr.search.DocSet;
+import org.apache.solr.search.SolrIndexSearcher;
+import org.gazzax.labs.solrdf.graph.GraphEventConsumer;
+import org.gazzax.labs.solrdf.graph.TripleProjection;
+
+import com.google.common.collect.UnmodifiableIterator;
+import com.hp.hpl.jena.graph.Triple;
+
+/**
+ * An unordered iterator over the triples matching a given set of filters.
+ * Unlike {@link DeepPagingIterator}, matching documents are collected once (as a {@link DocSet}) and then
+ * visited in index order; each triple is decoded only when it is requested, and only in the needed positions (see {@link TripleProjection}).
+ * Suitable for consumers that don't depend on the order of triples (e.g. BGP evaluation).
+ *
+ * @author Andrea Gazzarini
+ * @since 1.1
+ */
+class DocSetIterator extends UnmodifiableIterator<Triple> {
+	final SolrIndexSearcher searcher;
+	final List<Query> filters;
+	final GraphEventConsumer consumer;
+	final TripleReader reader;
+
+	private DocIterator iterator;
+
+	/**
+	 * Builds a new iterator with the given data.
+	 *
+	 * @param searcher the Solr index searcher.
+	 * @param filters the filters that matching triples must satisfy.
+	 * @param consumer the Graph event consumer that will be notified on relevant events.
+	 * @param projection the positions of the matching triples that are needed.
+	 */
+	DocSetIterator(
+			final SolrIndexSearcher searcher, 
+			final List<Query> filters, 
+			final GraphEventConsumer consumer, 
+			final TripleProjection projection) {
+		this.searcher = searcher;
+		this.filters = filters;
+		this.consumer = consumer;
+		this.reader = new TripleReader(searcher, projection);
+	}
+
+	@Override
+	public boolean hasNext() {
+		return iterator().hasNext();
+	}
+
+	@Override
+	public Triple next() {
+		final int docId = iterator().nextDoc();
+		try {
+			Triple triple = null;
+			if (consumer.requireTripleBuild()) {
+				triple = reader.triple(docId);
+			} else {
+				triple = DeepPagingIterator.DUMMY_TRIPLE;
+			}
+			consumer.afterTripleHasBeenBuilt(triple, docId);
+			return triple;
+		} catch (final IOException exception) {
+			throw new RuntimeException(exception);
+		}
+	}
+
+	/**
+	 * Returns the iterator over matching documents, collecting them the first time.
+	 *
+	 * @return the iterator over matching documents.
+	 */
+	DocIterator iterator() {
+		if (iterator == null) {
+			try {
+				iterator = search();
+			} catch (final IOException exception) {
+				throw new RuntimeException(exception);
+			}
+		}
+		return iterator;
+	}
+
+	/**
+	 * Collects the matching documents.
+	 *
+	 * @return the iterator over matching documents.
+	 * @throws IOException in case of I/O failure.
+	 */
+	DocIterator search() throws IOException {
+		final DocSet docSet = searcher.getDocSet(filters);
+		consumer.onDocSet(docSet);
+		return docSet.iterator();
+	}
+}
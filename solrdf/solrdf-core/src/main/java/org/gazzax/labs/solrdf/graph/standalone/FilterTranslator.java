@@ -0,0 +1,352 @@
+package org.gazzax.labs.solrdf.graph.standalone;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.BooleanClause.Occur;
+import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.MatchAllDocsQuery;
+import org.apache.lucene.search.PrefixQuery;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.RegexpQuery;
+import org.apache.solr.schema.SchemaField;
+import org.apache.solr.util.DateFormatUtil;
+import org.gazzax.labs.solrdf.Field;
+import org.gazzax.labs.solrdf.NTriples;
+import org.gazzax.labs.solrdf.log.Log;
+import org.gazzax.labs.solrdf.log.MessageCatalog;
+import org.slf4j.LoggerFactory;
+
+import com.hp.hpl.jena.datatypes.xsd.XSDDateTime;
+import com.hp.hpl.jena.graph.Node;
+import com.hp.hpl.jena.graph.Triple;
+import com.hp.hpl.jena.sparql.core.BasicPattern;
+import com.hp.hpl.jena.sparql.core.Var;
+import com.hp.hpl.jena.sparql.expr.E_Equals;
+import com.hp.hpl.jena.sparql.expr.E_GreaterThan;
+import com.hp.hpl.jena.sparql.expr.E_GreaterThanOrEqual;
+import com.hp.hpl.jena.sparql.expr.E_Lang;
+import com.hp.hpl.jena.sparql.expr.E_LangMatches;
+import com.hp.hpl.jena.sparql.expr.E_LessThan;
+import com.hp.hpl.jena.sparql.expr.E_LessThanOrEqual;
+import com.hp.hpl.jena.sparql.expr.E_LogicalAnd;
+import com.hp.hpl.jena.sparql.expr.E_LogicalOr;
+import com.hp.hpl.jena.sparql.expr.E_Str;
+import com.hp.hpl.jena.sparql.expr.E_StrStartsWith;
+import com.hp.hpl.jena.sparql.expr.Expr;
+import com.hp.hpl.jena.sparql.expr.ExprFunction1;
+import com.hp.hpl.jena.sparql.expr.ExprFunction2;
+import com.hp.hpl.jena.sparql.expr.ExprList;
+import com.hp.hpl.jena.sparql.expr.NodeValue;
+
+/**
+ * Translates SPARQL FILTER expressions into Lucene queries on the typed object fields (o_n, o_d, o_lang and o).
+ *
+ * A translated query is always a superset of what the original expression accepts: Jena still evaluates
+ * the FILTER on each solution, but only those triples that can possibly satisfy it leave the index.
+ * Supported expressions (where ?o is a variable in object position and c is a constant) are:
+ *
+ * <ul>
+ * 	<li>?o (&lt;, &lt;=, &gt;, &gt;=, =) c, with c numeric (o_n) or xsd:date / xsd:dateTime (o_d);</li>
+ * 	<li>langMatches(lang(?o), c) and lang(?o) = c (o_lang);</li>
+ * 	<li>STRSTARTS(?o, c) and STRSTARTS(STR(?o), c) (o);</li>
+ * 	<li>&amp;&amp; and || combinations of the expressions above.</li>
+ * </ul>
+ *
+ * @author Andrea Gazzarini
+ * @since 1.1
+ */
+class FilterTranslator {
+	static final Log LOGGER = new Log(LoggerFactory.getLogger(FilterTranslator.class));
+
+	/**
+	 * Dates are indexed with their timezone offset applied, so date ranges are widened with the maximum offset (14 hours).
+	 */
+	static final long MAX_TIMEZONE_OFFSET = 14L * 60 * 60 * 1000;
+
+	private static final String ANY_LANGUAGE = "*";
+
+	final LocalGraph graph;
+	final boolean numbers;
+
+	/**
+	 * Builds a new translator for the given graph.
+	 * Indexes built with legacy identifiers don't have all the numeric literals in o_n, so numeric comparisons are not translated.
+	 *
+	 * @param graph the target {@link LocalGraph}.
+	 */
+	FilterTranslator(final LocalGraph graph) {
+		this(graph, !graph.legacyIds);
+	}
+
+	/**
+	 * Builds a new translator for the given graph.
+	 *
+	 * @param graph the target {@link LocalGraph}.
+	 * @param numbers true if numeric comparisons can be translated in range queries on o_n.
+	 */
+	FilterTranslator(final LocalGraph graph, final boolean numbers) {
+		this.graph = graph;
+		this.numbers = numbers;
+	}
+
+	/**
+	 * Translates the given FILTER expressions in a list of additional constraints for each triple pattern.
+	 *
+	 * @param pattern the Basic Graph Pattern.
+	 * @param exprs the FILTER expressions.
+	 * @return the additional constraints of each triple pattern, in the same order of the pattern, or null if no expression can be translated.
+	 */
+	List<List<Query>> constraints(final BasicPattern pattern, final ExprList exprs) {
+		boolean found = false;
+		final List<List<Query>> result = new ArrayList<List<Query>>(pattern.size());
+		for (final Triple triplePattern : pattern) {
+			final Node object = triplePattern.getObject();
+			if (!object.isVariable()) {
+				result.add(Collections.<Query>emptyList());
+				continue;
+			}
+
+			final List<Query> constraints = new ArrayList<Query>();
+			for (final Expr expr : exprs) {
+				final Query query = translate(expr, Var.alloc(object));
+				if (query != null) {
+					LOGGER.debug(MessageCatalog._00119_FILTER_PUSHDOWN, expr, query);
+					constraints.add(query);
+				}
+			}
+
+			found |= !constraints.isEmpty();
+			result.add(constraints);
+		}
+		return found ? result : null;
+	}
+
+	/**
+	 * Translates the given expression in a Lucene query that applies to the given variable.
+	 *
+	 * @param expr the FILTER expression.
+	 * @param variable the variable, which is supposed to be in object position.
+	 * @return the Lucene query corresponding to the given expression, null if the expression cannot be translated.
+	 */
+	Query translate(final Expr expr, final Var variable) {
+		try {
+			if (expr instanceof E_LogicalAnd) {
+				final Query left = translate(((E_LogicalAnd) expr).getArg1(), variable);
+				final Query right = translate(((E_LogicalAnd) expr).getArg2(), variable);
+				if (left == null || right == null) {
+					return left != null ? left : right;
+				}
+				return booleanQuery(Occur.MUST, left, right);
+			} else if (expr instanceof E_LogicalOr) {
+				final Query left = translate(((E_LogicalOr) expr).getArg1(), variable);
+				final Query right = translate(((E_LogicalOr) expr).getArg2(), variable);
+				return left != null && right != null ? booleanQuery(Occur.SHOULD, left, right) : null;
+			} else if (expr instanceof E_LangMatches) {
+				return langMatches((E_LangMatches) expr, variable);
+			} else if (expr instanceof E_StrStartsWith) {
+				return strStarts((E_StrStartsWith) expr, variable);
+			} else if (isComparison(expr)) {
+				return comparison((ExprFunction2) expr, variable);
+			}
+		} catch (final RuntimeException exception) {
+			// The expression is still evaluated by Jena, so a failed translation is just a missed optimization.
+			LOGGER.debug(MessageCatalog._00120_FILTER_NOT_PUSHED_DOWN, expr, exception.getMessage());
+		}
+		return null;
+	}
+
+	/**
+	 * Translates a langMatches(lang(?o), "range") expression.
+	 *
+	 * @param expr the langMatches expression.
+	 * @param variable the target variable.
+	 * @return the corresponding query on the o_lang field, null if the expression cannot be translated.
+	 */
+	Query langMatches(final E_LangMatches expr, final Var variable) {
+		if (!isLangOf(expr.getArg1(), variable) || !isString(expr.getArg2())) {
+			return null;
+		}
+
+		final String range = expr.getArg2().getConstant().getString();
+		if (range.isEmpty()) {
+			return null;
+		}
+		
+		if (ANY_LANGUAGE.equals(range)) {
+			return new BooleanQuery.Builder()
+					.add(new MatchAllDocsQuery(), Occur.MUST)
+					.add(graph.languageTermQuery(null), Occur.MUST_NOT)
+					.build();
+		}
+
+		// Language ranges are case-insensitive and match all the sub-tags (e.g. "en" matches "EN-us")
+		final StringBuilder regexp = new StringBuilder();
+		for (final char ch : range.toCharArray()) {
+			if (Character.isLetterOrDigit(ch)) {
+				regexp.append('[').append(Character.toLowerCase(ch)).append(Character.toUpperCase(ch)).append(']');
+			} else {
+				regexp.append('\\').append(ch);
+			}
+		}
+		return new RegexpQuery(new Term(Field.LANG, regexp.append("(-.*)?").toString()));
+	}
+
+	/**
+	 * Translates a STRSTARTS(?o, "prefix") or STRSTARTS(STR(?o), "prefix") expression.
+	 *
+	 * @param expr the STRSTARTS expression.
+	 * @param variable the target variable.
+	 * @return the corresponding prefix query on the o field, null if the expression cannot be translated.
+	 */
+	Query strStarts(final E_StrStartsWith expr, final Var variable) {
+		if (!isString(expr.getArg2())) {
+			return null;
+		}
+
+		final String prefix = NTriples.escape(expr.getArg2().getConstant().getString());
+		final Query literals = new PrefixQuery(new Term(Field.O, "\"" + prefix));
+		if (isVariable(expr.getArg1(), variable)) {
+			return literals;
+		} else if (expr.getArg1() instanceof E_Str && isVariable(((E_Str) expr.getArg1()).getArg(), variable)) {
+			return booleanQuery(Occur.SHOULD, literals, new PrefixQuery(new Term(Field.O, "<" + prefix)));
+		}
+		return null;
+	}
+
+	/**
+	 * Translates a comparison between the given variable and a constant.
+	 *
+	 * @param expr the comparison expression.
+	 * @param variable the target variable.
+	 * @return the corresponding (range) query, null if the expression cannot be translated.
+	 */
+	Query comparison(final ExprFunction2 expr, final Var variable) {
+		if (expr instanceof E_Equals && isLangOf(expr.getArg1(), variable) && isString(expr.getArg2())) {
+			return graph.languageTermQuery(expr.getArg2().getConstant().getString());
+		} else if (expr instanceof E_Equals && isLangOf(expr.getArg2(), variable) && isString(expr.getArg1())) {
+			return graph.languageTermQuery(expr.getArg1().getConstant().getString());
+		}
+
+		final NodeValue value;
+		final boolean below;
+		final boolean above;
+		if (isVariable(expr.getArg1(), variable) && expr.getArg2().isConstant()) {
+			value = expr.getArg2().getConstant();
+			below = expr instanceof E_LessThan || expr instanceof E_LessThanOrEqual;
+			above = expr instanceof E_GreaterThan || expr instanceof E_GreaterThanOrEqual;
+		} else if (isVariable(expr.getArg2(), variable) && expr.getArg1().isConstant()) {
+			value = expr.getArg1().getConstant();
+			below = expr instanceof E_GreaterThan || expr instanceof E_GreaterThanOrEqual;
+			above = expr instanceof E_LessThan || expr instanceof E_LessThanOrEqual;
+		} else {
+			return null;
+		}
+
+		// below (above) means the variable is below (above) the constant, which is then the upper (lower) bound of the range; equals means both.
+		final boolean equals = expr instanceof E_Equals;
+		final boolean hasMin = above || equals;
+		final boolean hasMax = below || equals;
+
+		if (value.isNumber()) {
+			if (!numbers) {
+				return null;
+			}
+
+			final double number = value.getDouble();
+			if (Double.isNaN(number)) {
+				return null;
+			}
+
+			// Bounds are always inclusive because values are indexed as doubles, and that could lose some precision.
+			return rangeQuery(
+					Field.NUMERIC_OBJECT,
+					hasMin ? String.valueOf(number) : null,
+					hasMax ? String.valueOf(number) : null);
+		} else if (value.isDateTime() || value.isDate()) {
+			final long millis = ((XSDDateTime) value.asNode().getLiteralValue()).asCalendar().getTimeInMillis();
+			return rangeQuery(
+					Field.DATE_OBJECT,
+					hasMin ? DateFormatUtil.formatExternal(new Date(millis - MAX_TIMEZONE_OFFSET)) : null,
+					hasMax ? DateFormatUtil.formatExternal(new Date(millis + MAX_TIMEZONE_OFFSET)) : null);
+		}
+		return null;
+	}
+
+	/**
+	 * Builds an inclusive range query on the given field, using the field type declared in the schema.
+	 *
+	 * @param fieldName the field name.
+	 * @param min the lower bound, null in case of open range.
+	 * @param max the upper bound, null in case of open range.
+	 * @return an inclusive range query on the given field.
+	 */
+	Query rangeQuery(final String fieldName, final String min, final String max) {
+		final SchemaField field = graph.searcher.getSchema().getField(fieldName);
+		return field.getType().getRangeQuery(graph.qParser, field, min, max, true, true);
+	}
+
+	/**
+	 * Returns a boolean query with the given clauses.
+	 *
+	 * @param occur the occurrence of each clause.
+	 * @param clauses the query clauses.
+	 * @return a boolean query with the given clauses.
+	 */
+	BooleanQuery booleanQuery(final Occur occur, final Query ... clauses) {
+		final BooleanQuery.Builder builder = new BooleanQuery.Builder();
+		for (final Query clause : clauses) {
+			builder.add(clause, occur);
+		}
+		return builder.build();
+	}
+
+	/**
+	 * Returns true if the given expression is a (supported) comparison.
+	 *
+	 * @param expr the expression.
+	 * @return true if the given expression is a (supported) comparison.
+	 */
+	boolean isComparison(final Expr expr) {
+		return expr instanceof E_Equals
+				|| expr instanceof E_LessThan
+				|| expr instanceof E_LessThanOrEqual
+				|| expr instanceof E_GreaterThan
+				|| expr instanceof E_GreaterThanOrEqual;
+	}
+
+	/**
+	 * Returns true if the given expression is the given variable.
+	 *
+	 * @param expr the expression.
+	 * @param variable the variable.
+	 * @return true if the given expression is the given variable.
+	 */
+	boolean isVariable(final Expr expr, final Var variable) {
+		return expr.isVariable() && variable.equals(expr.asVar());
+	}
+
+	/**
+	 * Returns true if the given expression is lang(variable).
+	 *
+	 * @param expr the expression.
+	 * @param variable the variable.
+	 * @return true if the given expression is lang(variable).
+	 */
+	boolean isLangOf(final Expr expr, final Var variable) {
+		return expr instanceof E_Lang && isVariable(((ExprFunction1) expr).getArg(), variable);
+	}
+
+	/**
+	 * Returns true if the given expression is a string constant.
+	 *
+	 * @param expr the expression.
+	 * @return true if the given expression is a string constant.
+	 */
+	boolean isString(final Expr expr) {
+		return expr.isConstant() && expr.getConstant().isString();
+	}
+}
@@ -0,0 +1,119 @@
+package org.gazzax.labs.solrdf.graph.standalone;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+import org.apache.lucene.index.LeafReader;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.solr.common.SolrException;
+import org.apache.solr.common.SolrException.ErrorCode;
+import org.apache.solr.search.CacheRegenerator;
+import org.apache.solr.search.SolrCache;
+import org.apache.solr.search.SolrIndexSearcher;
+import org.gazzax.labs.solrdf.graph.GraphStatistics;
+import org.gazzax.labs.solrdf.log.Log;
+import org.gazzax.labs.solrdf.log.MessageCatalog;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Builds and maintains the {@link GraphStatistics} of each searcher generation.
+ *
+ * Statistics live in a Solr user cache (see solrconfig.xml) that uses this class as regenerator:
+ * that means they are computed (once) while a new searcher is warming, that is, after each commit.
+ * Only the segments changed by the commit are read (see {@link #compute(SolrIndexSearcher)}).
+ * If the cache hasn't been configured, statistics are not available.
+ *
+ * @author Andrea Gazzarini
+ * @since 1.1
+ */
+public class GraphStatisticsRegenerator implements CacheRegenerator {
+	static final Log LOGGER = new Log(LoggerFactory.getLogger(GraphStatisticsRegenerator.class));
+
+	public static final String CACHE_NAME = "solrdf-statistics";
+	static final String CACHE_KEY = "statistics";
+
+	// The statistics of each segment (by core), which go away with the segment
+	static final Map<Object, SegmentStatistics> SEGMENTS = Collections.synchronizedMap(new WeakHashMap<Object, SegmentStatistics>());
+
+	@Override
+	@SuppressWarnings({ "rawtypes", "unchecked" })
+	public boolean regenerateItem(
+			final SolrIndexSearcher newSearcher,
+			final SolrCache newCache,
+			final SolrCache oldCache,
+			final Object oldKey,
+			final Object oldVal) throws IOException {
+		newCache.put(oldKey, compute(newSearcher));
+		return true;
+	}
+
+	/**
+	 * Returns the statistics associated with the given searcher.
+	 *
+	 * @param searcher the Solr index searcher.
+	 * @return the statistics associated with the given searcher, null if the statistics cache hasn't been configured.
+	 */
+	@SuppressWarnings({ "rawtypes", "unchecked" })
+	public static GraphStatistics statistics(final SolrIndexSearcher searcher) {
+		final SolrCache cache = searcher.getCache(CACHE_NAME);
+		if (cache == null) {
+			return null;
+		}
+
+		synchronized (cache) {
+			GraphStatistics statistics = (GraphStatistics) cache.get(CACHE_KEY);
+			if (statistics == null) {
+				try {
+					statistics = compute(searcher);
+					cache.put(CACHE_KEY, statistics);
+				} catch (final IOException exception) {
+					LOGGER.error(MessageCatalog._00113_NWS_FAILURE, exception);
+					throw new SolrException(ErrorCode.SERVER_ERROR, exception);
+				}
+			}
+			return statistics;
+		}
+	}
+
+	/**
+	 * Computes the statistics of the index associated with the given searcher.
+	 *
+	 * Statistics are computed per segment and merged: the statistics of a segment are reused by the following
+	 * searchers, until the segment gets new deletions or is merged away, so a commit reads only the new 
+	 * (flushed or merged) segments and those with new deletions.
+	 *
+	 * @param searcher the Solr index searcher.
+	 * @return the statistics of the index associated with the given searcher.
+	 * @throws IOException in case of I/O failure.
+	 */
+	public static GraphStatistics compute(final SolrIndexSearcher searcher) throws IOException {
+		final long start = System.currentTimeMillis();
+
+		final SegmentStatistics total = new SegmentStatistics(0);
+		int computed = 0;
+		final List<LeafReaderContext> leaves = searcher.getTopReaderContext().leaves();
+		for (final LeafReaderContext leaf : leaves) {
+			final LeafReader reader = leaf.reader();
+			SegmentStatistics segment = SEGMENTS.get(reader.getCoreCacheKey());
+			if (segment == null || segment.deletedDocs != reader.numDeletedDocs()) {
+				segment = SegmentStatistics.compute(reader);
+				SEGMENTS.put(reader.getCoreCacheKey(), segment);
+				computed++;
+			}
+			total.add(segment);
+		}
+
+		final GraphStatistics result = total.graphStatistics();
+		LOGGER.info(
+				MessageCatalog._00121_STATISTICS_COMPUTED, 
+				result.triples(), 
+				total.predicates.size(), 
+				computed, 
+				leaves.size(), 
+				System.currentTimeMillis() - start);
+		return result;
+	}
+}
@@ -25,13 +25,18 @@ import org.gazzax.labs.solrdf.Field;
 import org.gazzax.labs.solrdf.NTriples;
 import org.gazzax.labs.solrdf.graph.DatasetGraphSupertypeLayer;
 import org.gazzax.labs.solrdf.graph.GraphEventConsumer;
+import org.gazzax.labs.solrdf.graph.GraphStatistics;
 import org.gazzax.labs.solrdf.graph.SolRDFGraph;
+import org.gazzax.labs.solrdf.graph.StatisticsStageGenerator;
 import org.gazzax.labs.solrdf.log.Log;
 import org.gazzax.labs.solrdf.log.MessageCatalog;
 import org.slf4j.LoggerFactory;
 
 import com.hp.hpl.jena.graph.Graph;
 import com.hp.hpl.jena.graph.Node;
+import com.hp.hpl.jena.query.ARQ;
+import com.hp.hpl.jena.sparql.engine.main.QC;
+import com.hp.hpl.jena.sparql.engine.main.StageBuilder;
 
 /**
  * A local SolRDF (Solr low level) implementation of a Jena Dataset.
@@ -74,6 +79,20 @@ public class LocalDatasetGraph extends DatasetGraphSupertypeLayer {
 			final QParser qParser,
 			final GraphEventConsumer listener) {
 		super(request, response, qParser, listener);
+		
+		// Hybrid requests need to be notified about each matching triple, 
+		// so Basic Graph Patterns (and FILTERs) are evaluated in Solr only if nobody is listening.
+		// Otherwise they are evaluated triple-at-a-time, in the order suggested by the statistics. 
+		if (this.listener == NULL_GRAPH_EVENT_CONSUMER) {
+			StageBuilder.setGenerator(
+					getContext(), 
+					new LocalStageGenerator(StageBuilder.chooseStageGenerator(ARQ.getContext())));
+			QC.setFactory(getContext(), LocalOpExecutor.FACTORY);
+		} else {
+			StageBuilder.setGenerator(
+					getContext(), 
+					new StatisticsStageGenerator(StageBuilder.chooseStageGenerator(ARQ.getContext())));
+		}
 	}
 	
 	@Override
@@ -115,6 +134,11 @@ public class LocalDatasetGraph extends DatasetGraphSupertypeLayer {
 		}	    
 	}
 
+	@Override
+	public GraphStatistics statistics() {
+		return GraphStatisticsRegenerator.statistics(request.getSearcher());
+	}
+	
 	@Override
 	protected Graph _createNamedGraph(final Node graphNode) {
 		return LocalGraph.readableAndWritableGraph(graphNode, request, response, qParser, listener);
@@ -4,22 +4,30 @@ import static org.gazzax.labs.solrdf.NTriples.asNt;
 import static org.gazzax.labs.solrdf.NTriples.asNtURI;
 import static org.gazzax.labs.solrdf.Strings.isNotNullOrEmptyString;
 
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
-import java.util.UUID;
+import java.util.concurrent.atomic.AtomicBoolean;
 
+import org.apache.lucene.index.DocValuesType;
+import org.apache.lucene.index.FieldInfo;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.LeafReaderContext;
 import org.apache.lucene.index.Term;
 import org.apache.lucene.search.MatchAllDocsQuery;
 import org.apache.lucene.search.Query;
+import org.apache.lucene.search.Sort;
 import org.apache.lucene.search.TermQuery;
 import org.apache.solr.common.SolrException;
 import org.apache.solr.common.SolrException.ErrorCode;
-import org.apache.solr.common.SolrInputDocument;
 import org.apache.solr.request.SolrQueryRequest;
 import org.apache.solr.response.SolrQueryResponse;
+import org.apache.solr.schema.IndexSchema;
+import org.apache.solr.schema.SchemaField;
+import org.apache.solr.search.DocSet;
 import org.apache.solr.search.QParser;
 import org.apache.solr.search.QueryParsing;
 import org.apache.solr.search.SolrIndexSearcher;
@@ -29,8 +37,12 @@ import org.apache.solr.update.AddUpdateCommand;
 import org.apache.solr.update.DeleteUpdateCommand;
 import org.apache.solr.update.processor.UpdateRequestProcessor;
 import org.gazzax.labs.solrdf.Field;
+import org.gazzax.labs.solrdf.Names;
 import org.gazzax.labs.solrdf.graph.GraphEventConsumer;
+import org.gazzax.labs.solrdf.graph.GraphStatistics;
+import org.gazzax.labs.solrdf.graph.PageSizer;
 import org.gazzax.labs.solrdf.graph.SolRDFGraph;
+import org.gazzax.labs.solrdf.graph.TripleProjection;
 import org.gazzax.labs.solrdf.log.Log;
 import org.gazzax.labs.solrdf.log.MessageCatalog;
 import org.slf4j.LoggerFactory;
@@ -56,6 +68,14 @@ public final class LocalGraph extends SolRDFGraph {
 		
 	static final Map<String, TermQuery> LANGUAGE_TERM_QUERIES = new HashMap<String, TermQuery>();
 	
+	static final int DEFAULT_BIND_JOIN_BATCH_SIZE = 500;
+	
+	static final int DEFAULT_MAX_INTERMEDIATE_SOLUTIONS = 10000;
+	
+	static final String [] SORTABLE_OBJECT_FIELDS = { Field.NUMERIC_OBJECT, Field.DATE_OBJECT };
+	
+	private static final AtomicBoolean MISSING_DOC_VALUES_REPORTED = new AtomicBoolean();
+	
 	private SolrIndexSearcher.QueryCommand graphSizeQueryCommand;
 	private DeleteUpdateCommand clearCommand;
 	
@@ -67,15 +87,25 @@ public final class LocalGraph extends SolRDFGraph {
 	final QParser qParser;
 	
 	final TermQuery graphTermQuery;
+	
+	final int bindJoinBatchSize;
+	final int maxIntermediateSolutions;
+	final long pageMemoryBudget;
 		
-	private FieldInjectorRegistry registry = new FieldInjectorRegistry();
+	private final FieldInjectorRegistry registry;
+	private final TripleDocumentFactory documentFactory;
+	
+	final boolean termIds;
+	final boolean subjectRouting;
+	final boolean legacyIds;
 	
 	private SortSpec sortSpec;
 	
     /**
      * A {@link GraphStatisticsHandler} with the same logic of GraphMemStatisticsHandler. 
-     * It queries the Solr-based Graph for delivering statistics on single-concrete-node 
-     * queries and for trivial cases of two-concrete-node queries.
+     * It uses the precomputed {@link GraphStatistics}, if available; otherwise it queries the 
+     * Solr-based Graph for delivering statistics on single-concrete-node queries and for trivial 
+     * cases of two-concrete-node queries.
      * 
      * @author Andrea Gazzarini
      * @since 1.0
@@ -83,6 +113,16 @@ public final class LocalGraph extends SolRDFGraph {
 	public class LocalGraphStatisticHandler implements GraphStatisticsHandler {
 		@Override
 		public long getStatistic(final Node s, final Node p, final Node o) {
+			final GraphStatistics statistics = GraphStatisticsRegenerator.statistics(searcher);
+			if (statistics != null) {
+				// Statistics are not partitioned by graph, so the estimate is scaled with the graph size
+				final Long graphTriples = statistics.graphs().get(graphNodeStringified);
+				return graphTriples == null || statistics.triples() == 0
+						? 0
+						: (long) Math.ceil(
+								(double) statistics.asStatisticsHandler().getStatistic(s, p, o) * graphTriples / statistics.triples());
+			}
+			
 			final SolrIndexSearcher.QueryResult result = new SolrIndexSearcher.QueryResult();
 		    try {
 			    return searcher.search(
@@ -158,7 +198,15 @@ public final class LocalGraph extends SolRDFGraph {
 		this.updateCommand = new AddUpdateCommand(request);
 		this.updateProcessor = request.getCore().getUpdateProcessingChain(null).createProcessor(request, response);
 		this.searcher = request.getSearcher();
+		this.termIds = TripleDocumentFactory.hasTermIds(searcher.getSchema());
+		this.legacyIds = hasLegacyIds(searcher);
+		this.subjectRouting = hasSubjectRouting(searcher.getSchema()) && !legacyIds;
+		this.registry = FieldInjectorRegistry.of(legacyIds);
+		this.documentFactory = new TripleDocumentFactory(registry, termIds, subjectRouting, legacyIds);
 		this.qParser = qparser;
+		this.bindJoinBatchSize = Math.max(1, request.getParams().getInt(Names.BIND_JOIN_BATCH_SIZE_PARAMETER_NAME, DEFAULT_BIND_JOIN_BATCH_SIZE));
+		this.maxIntermediateSolutions = Math.max(1, request.getParams().getInt(Names.MAX_INTERMEDIATE_SOLUTIONS_PARAMETER_NAME, DEFAULT_MAX_INTERMEDIATE_SOLUTIONS));
+		this.pageMemoryBudget = request.getParams().getLong(Names.PAGE_MEMORY_BUDGET_PARAMETER_NAME, PageSizer.DEFAULT_MEMORY_BUDGET);
 	}
 	
 	@Override
@@ -169,34 +217,7 @@ public final class LocalGraph extends SolRDFGraph {
 	@Override
 	public void performAdd(final Triple triple) {
 		updateCommand.clear();
-		
-		final SolrInputDocument document = new SolrInputDocument();
-		this.updateCommand.solrDoc = document;
-		document.setField(Field.C, graphNodeStringified);
-		document.setField(Field.S, asNt(triple.getSubject()));
-		document.setField(Field.P, asNtURI(triple.getPredicate()));
-		document.setField(Field.ID, UUID.nameUUIDFromBytes(
-				new StringBuilder()
-					.append(graphNodeStringified)
-					.append(triple.getSubject())
-					.append(triple.getPredicate())
-					.append(triple.getObject())
-					.toString().getBytes()).toString());
-		
-		final String o = asNt(triple.getObject());
-		document.setField(Field.O, o);
-
-		final Node object = triple.getObject();
-		if (object.isLiteral()) {
-			final String language = object.getLiteralLanguage();
-			document.setField(Field.LANG, isNotNullOrEmptyString(language) ? language : NULL_LANGUAGE);				
-
-			final RDFDatatype dataType = object.getLiteralDatatype();
-			final Object value = object.getLiteralValue();
-			registry.get(dataType != null ? dataType.getURI() : null).inject(document, value);
-		} else {
-			registry.catchAllFieldInjector.inject(document, o);
-		}			
+		updateCommand.solrDoc = documentFactory.document(graphNodeStringified, triple);
 
 		try {
 			updateProcessor.processAdd(updateCommand);
@@ -209,7 +230,15 @@ public final class LocalGraph extends SolRDFGraph {
 	@Override
 	public void performDelete(final Triple triple) {
 		final DeleteUpdateCommand deleteCommand = new DeleteUpdateCommand(request);
-		deleteCommand.query = deleteQuery(triple);
+
+		// A concrete triple is held by exactly one document, whose id can be computed:
+		// a delete by id is a plain term delete, while a delete by query needs a (reopened) searcher.
+		// Indexes with legacy identifiers are always deleted by query.
+		if (triple.isConcrete() && !legacyIds) {
+			deleteCommand.setId(documentFactory.id(graphNodeStringified, triple));
+		} else {
+			deleteCommand.query = deleteQuery(triple);
+		}
 		try {
 			updateProcessor.processDelete(deleteCommand);
 		} catch (final Exception exception) {
@@ -242,13 +271,174 @@ public final class LocalGraph extends SolRDFGraph {
 	
 	@Override
 	protected Iterator<Triple> query(final Triple pattern) throws SyntaxError {
+		if (unordered()) {
+			return new DocSetIterator(searcher, filters(pattern), consumer, TripleProjection.of(pattern));
+		}
+		
+		// A page that has been pushed down by the caller applies to the (first) pattern scan only
+		final Integer limit = (Integer) request.getContext().remove(Names.INDEX_LIMIT);
+		if (limit != null) {
+			final Integer offset = (Integer) request.getContext().remove(Names.INDEX_OFFSET);
+			return query(pattern, null, offset != null ? offset : 0, limit, TripleProjection.of(pattern));
+		}
+		
 	    return new DeepPagingIterator(
 	    		searcher, 
 	    		queryCommand(pattern, sortSpec()), 
 	    		sortSpec(), 
-	    		consumer);
+	    		consumer,
+	    		new PageSizer(queryFetchSize, pageMemoryBudget),
+	    		TripleProjection.of(pattern));
 	}	
 	
+	/**
+	 * Executes a query using the given triple pattern and the additional (object) constraints.
+	 * 
+	 * @param pattern the triple pattern.
+	 * @param constraints additional filters (e.g. coming from a SPARQL FILTER) that matching triples must satisfy.
+	 * @return an iterator containing matching triples.
+	 * @throws SyntaxError in case the query cannot be executed because syntax errors.
+	 */
+	Iterator<Triple> query(final Triple pattern, final List<Query> constraints) throws SyntaxError {
+		if (unordered()) {
+			final List<Query> filters = filters(pattern);
+			filters.addAll(constraints);
+			return new DocSetIterator(searcher, filters, consumer, TripleProjection.of(pattern));
+		}
+		
+		final SolrIndexSearcher.QueryCommand cmd = queryCommand(pattern, sortSpec());
+		cmd.getFilterList().addAll(constraints);
+	    return new DeepPagingIterator(
+	    		searcher, 
+	    		cmd, 
+	    		sortSpec(), 
+	    		consumer,
+	    		new PageSizer(queryFetchSize, pageMemoryBudget),
+	    		TripleProjection.of(pattern));
+	}	
+	
+	/**
+	 * Executes a query using the given triple pattern, returning only a slice of the matching triples.
+	 * The slice is computed by the index: skipped triples are never loaded.
+	 * 
+	 * @param pattern the triple pattern.
+	 * @param order the order of matching triples, null for the default order.
+	 * @param offset the number of matching triples that will be skipped.
+	 * @param limit the maximum number of triples that will be returned, -1 for all the (ordered) matching triples.
+	 * @param projection the positions of the matching triples that are needed.
+	 * @return an iterator containing the requested slice of matching triples.
+	 * @throws SyntaxError in case the query cannot be executed because syntax errors.
+	 */
+	Iterator<Triple> query(
+			final Triple pattern, 
+			final SortSpec order, 
+			final int offset, 
+			final int limit, 
+			final TripleProjection projection) throws SyntaxError {
+		final SolrIndexSearcher.QueryCommand cmd = queryCommand(pattern, order != null ? order : sortSpec());
+		if (unordered()) {
+			// Nobody is interested in the whole DocSet 
+			cmd.clearFlags(SolrIndexSearcher.GET_DOCSET);
+			if (order == null) {
+				// Same order of the DocSetIterator
+				cmd.setSort(Sort.INDEXORDER);
+			}
+		}
+		
+		if (limit < 0) {
+			return new DeepPagingIterator(
+					searcher, 
+					cmd, 
+					order != null ? order : sortSpec(), 
+					consumer, 
+					new PageSizer(queryFetchSize, pageMemoryBudget),
+					projection);
+		}
+		
+		cmd.setOffset(offset);
+		cmd.setLen(limit);
+		return new DocListIterator(searcher, cmd, consumer, projection);
+	}
+	
+	/**
+	 * Returns the order of the triples matching a given pattern by their object value.
+	 * Objects are ordered through a typed field with docValues (numbers by value and dates chronologically), 
+	 * so that is possible only if all matching triples have a value in the same field (see {@link #objectField(Triple)}).
+	 * Any other object (e.g. plain literals, which have no docValues in o_s) is ordered by Jena.
+	 * 
+	 * @param pattern the triple pattern.
+	 * @param descending true for a descending order.
+	 * @return the order of the triples matching the given pattern, null if objects cannot be ordered through a single field.
+	 * @throws IOException in case of I/O failure.
+	 */
+	SortSpec objectOrder(final Triple pattern, final boolean descending) throws IOException {
+		final SchemaField field = objectField(pattern);
+		if (field == null) {
+			return null;
+		}
+		
+		final SchemaField id = searcher.getSchema().getUniqueKeyField();
+		return new SortSpec(
+				new Sort(field.getSortField(descending), id.getSortField(false)), 
+				new SchemaField[] { field, id });
+	}
+	
+	/**
+	 * Returns the typed field (see {@link #SORTABLE_OBJECT_FIELDS}) where all the triples matching a given pattern 
+	 * have their object value. That is checked by intersecting the matching triples with those that have a value in the field.
+	 * The field must also have docValues in every segment (see {@link #hasDocValues(IndexReader, String)}).
+	 * 
+	 * @param pattern the triple pattern.
+	 * @return the typed field where all the matching triples have their object value, null if there's no such field.
+	 * @throws IOException in case of I/O failure.
+	 */
+	SchemaField objectField(final Triple pattern) throws IOException {
+		final List<Query> filters = filters(pattern);
+		final int matches = searcher.getDocSet(filters).size();
+		
+		final IndexSchema schema = searcher.getSchema();
+		for (final String name : SORTABLE_OBJECT_FIELDS) {
+			final SchemaField field = schema.getFieldOrNull(name);
+			if (field == null || !field.hasDocValues()) {
+				continue;
+			}
+			
+			final List<Query> typed = new ArrayList<Query>(filters);
+			typed.add(field.getType().getRangeQuery(null, field, null, null, true, true));
+			if (searcher.getDocSet(typed).size() == matches) {
+				if (hasDocValues(searcher.getIndexReader(), name)) {
+					return field;
+				}
+				
+				if (MISSING_DOC_VALUES_REPORTED.compareAndSet(false, true)) {
+					LOGGER.warning(MessageCatalog._00143_MISSING_DOC_VALUES, name);
+				}
+				return null;
+			}
+		}
+		return null;
+	}
+	
+	/**
+	 * Returns true if a given field has docValues in all the segments of an index.
+	 * Segments written before docValues were enabled in the schema have the field without docValues: sorting 
+	 * on it would treat their values as missing, so such an index needs to be rebuilt before it can be sorted by that field.
+	 * Segments without the field at all cannot have matching triples, so they don't count.
+	 * 
+	 * @param reader the index reader.
+	 * @param name the field name.
+	 * @return true if the given field has docValues in all the segments of the index.
+	 */
+	static boolean hasDocValues(final IndexReader reader, final String name) {
+		for (final LeafReaderContext leaf : reader.leaves()) {
+			final FieldInfo info = leaf.reader().getFieldInfos().fieldInfo(name);
+			if (info != null && info.getDocValuesType() == DocValuesType.NONE) {
+				return false;
+			}
+		}
+		return true;
+	}
+	
 	/**
 	 * Builds a DELETE query.
 	 * 
@@ -314,10 +504,14 @@ public final class LocalGraph extends SolRDFGraph {
 	 * If the cache doesn't contain a query for a specific language, it 
 	 * will be created, cached and returned.
 	 * 
-	 * @param language the language.
+	 * @param language the language, null or empty for literals without language.
 	 * @return a language {@link TermQuery} from the cache.
 	 */
 	TermQuery languageTermQuery(final String language) {
+		if (!isNotNullOrEmptyString(language)) {
+			return NULL_LANGUAGE_TERM_QUERY;
+		}
+		
 		TermQuery query = LANGUAGE_TERM_QUERIES.get(language);
 		if (query == null) {
 			query = new TermQuery(new Term(Field.LANG, language));
@@ -341,6 +535,18 @@ public final class LocalGraph extends SolRDFGraph {
 		return graphSizeQueryCommand;
 	}
 	
+	/**
+	 * Returns true if triples can be returned in any order.
+	 * Only hybrid requests return matching documents (in the requested order), so all other requests 
+	 * can scan matching triples in index order, in a single pass.
+	 * 
+	 * @return true if triples can be returned in any order.
+	 */
+	boolean unordered() {
+		final Map<Object, Object> context = request.getContext();
+		return context == null || !Boolean.TRUE.equals(context.get(Names.HYBRID_MODE));
+	}
+	
 	SortSpec sortSpec() throws SyntaxError {
 		if (sortSpec == null) {
 				sortSpec = qParser != null 
@@ -357,7 +563,62 @@ public final class LocalGraph extends SolRDFGraph {
 	    cmd.setSort(sortSpec.getSort());
 	    cmd.setLen(queryFetchSize);
 	    cmd.setFlags(cmd.getFlags() | SolrIndexSearcher.GET_DOCSET);
-	    
+		cmd.setFilterList(filters(pattern));
+		return cmd;
+	}
+	
+	/**
+	 * Returns the {@link DocSet} of all documents (i.e. triples) in this graph that match the given pattern.
+	 * Variables in the pattern are considered as wildcards.
+	 * Note that each filter is cached separately in the Solr filter cache, so the same pattern (or a pattern sharing
+	 * some constant member) will be resolved very quickly the next time. 
+	 * 
+	 * @param pattern the triple pattern.
+	 * @return the {@link DocSet} of all documents in this graph that match the given pattern.
+	 * @throws IOException in case of I/O failure.
+	 */
+	DocSet docSet(final Triple pattern) throws IOException {
+		return searcher.getDocSet(filters(pattern));
+	}
+	
+	/**
+	 * Returns the {@link DocSet} of all documents (i.e. triples) in this graph that match the given pattern and the 
+	 * additional (object) constraints.
+	 * 
+	 * @param pattern the triple pattern.
+	 * @param constraints additional filters (e.g. coming from a SPARQL FILTER) that matching triples must satisfy.
+	 * @return the {@link DocSet} of all documents in this graph that match the given pattern and constraints.
+	 * @throws IOException in case of I/O failure.
+	 */
+	DocSet docSet(final Triple pattern, final List<Query> constraints) throws IOException {
+		final List<Query> filters = filters(pattern);
+		filters.addAll(constraints);
+		return searcher.getDocSet(filters);
+	}
+	
+	
+	/**
+	 * Builds the filter list associated with the given triple pattern.
+	 * Variables in the incoming pattern are considered as wildcards.
+	 * 
+	 * @param triplePattern the triple pattern.
+	 * @return the filter list associated with the given triple pattern.
+	 */
+	List<Query> filters(final Triple triplePattern) {
+		final List<Query> filters = memberFilters(triplePattern);
+		filters.add(graphTermQuery);				
+		return filters;
+	}	
+	
+	/**
+	 * Builds the filter list associated with the members (i.e. subject, predicate and object) of the given triple pattern.
+	 * Unlike {@link #filters(Triple)}, the resulting filters are not restricted to this graph.
+	 * 
+	 * @param triplePattern the triple pattern.
+	 * @return the filter list associated with the members of the given triple pattern.
+	 */
+	List<Query> memberFilters(final Triple triplePattern) {
+		final Triple pattern = asMatch(triplePattern);
 	    final List<Query> filters = new ArrayList<Query>();
 	    
 		final Node s = pattern.getMatchSubject();
@@ -390,13 +651,22 @@ public final class LocalGraph extends SolRDFGraph {
 				filters.add(new TermQuery(new Term(Field.TEXT_OBJECT, asNt(o))));		
 			}
 		}
-		
-		filters.add(graphTermQuery);				
-		
-		cmd.setFilterList(filters);
-		return cmd;
+		return filters;
 	}	
 	
+	/**
+	 * Returns a match triple (i.e. a triple where variables are replaced with wildcards) from the given pattern.
+	 * 
+	 * @param pattern the triple pattern, which could contain variables.
+	 * @return a match triple that can be used for querying the index.
+	 */
+	static Triple asMatch(final Triple pattern) {
+		return Triple.createMatch(
+				pattern.getSubject().isConcrete() ? pattern.getSubject() : null, 
+				pattern.getPredicate().isConcrete() ? pattern.getPredicate() : null, 
+				pattern.getObject().isConcrete() ? pattern.getObject() : null);
+	}
+	
 	/**
 	 * Clear graph command lazy loader.
 	 * 
@@ -0,0 +1,320 @@
+package org.gazzax.labs.solrdf.graph.standalone;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.lucene.search.Query;
+import org.apache.solr.common.SolrException;
+import org.apache.solr.common.SolrException.ErrorCode;
+import org.apache.solr.search.SortSpec;
+import org.apache.solr.search.SyntaxError;
+import org.gazzax.labs.solrdf.graph.TripleProjection;
+import org.gazzax.labs.solrdf.log.Log;
+import org.gazzax.labs.solrdf.log.MessageCatalog;
+import org.slf4j.LoggerFactory;
+
+import com.hp.hpl.jena.graph.Graph;
+import com.hp.hpl.jena.graph.Node;
+import com.hp.hpl.jena.graph.Triple;
+import com.hp.hpl.jena.query.ARQ;
+import com.hp.hpl.jena.query.SortCondition;
+import com.hp.hpl.jena.sparql.algebra.Op;
+import com.hp.hpl.jena.sparql.algebra.op.OpBGP;
+import com.hp.hpl.jena.sparql.algebra.op.OpDistinct;
+import com.hp.hpl.jena.sparql.algebra.op.OpFilter;
+import com.hp.hpl.jena.sparql.algebra.op.OpGroup;
+import com.hp.hpl.jena.sparql.algebra.op.OpOrder;
+import com.hp.hpl.jena.sparql.algebra.op.OpProject;
+import com.hp.hpl.jena.sparql.algebra.op.OpSlice;
+import com.hp.hpl.jena.sparql.algebra.op.OpTopN;
+import com.hp.hpl.jena.sparql.core.BasicPattern;
+import com.hp.hpl.jena.sparql.core.Substitute;
+import com.hp.hpl.jena.sparql.core.Var;
+import com.hp.hpl.jena.sparql.core.VarExprList;
+import com.hp.hpl.jena.sparql.engine.ExecutionContext;
+import com.hp.hpl.jena.sparql.engine.QueryIterator;
+import com.hp.hpl.jena.sparql.engine.binding.Binding;
+import com.hp.hpl.jena.sparql.engine.iterator.QueryIterDistinguishedVars;
+import com.hp.hpl.jena.sparql.engine.iterator.QueryIterFilterExpr;
+import com.hp.hpl.jena.sparql.engine.iterator.QueryIterPlainWrapper;
+import com.hp.hpl.jena.sparql.engine.iterator.QueryIterProject;
+import com.hp.hpl.jena.sparql.engine.iterator.QueryIterRoot;
+import com.hp.hpl.jena.sparql.engine.main.OpExecutor;
+import com.hp.hpl.jena.sparql.engine.main.OpExecutorFactory;
+import com.hp.hpl.jena.sparql.expr.Expr;
+import com.hp.hpl.jena.sparql.expr.ExprAggregator;
+
+/**
+ * An {@link OpExecutor} that pushes down (part of) the SPARQL algebra into Solr.
+ *
+ * FILTERs that apply to a Basic Graph Pattern are translated (where possible) by a {@link FilterTranslator} in
+ * additional Lucene filters, so only those triples that could satisfy the FILTER leave the index.
+ * The FILTER is then evaluated by Jena as usual.
+ *
+ * LIMIT and OFFSET over a single triple pattern (optionally projected) become the offset and the length of
+ * a single index search, so skipped solutions are never loaded. 
+ * In the same way, ORDER BY the object of a single triple pattern becomes the sort of the index search, 
+ * so a top-k is answered by the index and a full ordering is streamed page by page instead of being sorted in memory.
+ * Aggregates (and GROUP BY) of a single triple pattern are answered from the index by an {@link AggregateEvaluator}, 
+ * and so are DISTINCT projections of one of its members, whose values are enumerated from the field of that member.
+ *
+ * @author Andrea Gazzarini
+ * @since 1.1
+ */
+public class LocalOpExecutor extends OpExecutor {
+	static final Log LOGGER = new Log(LoggerFactory.getLogger(LocalOpExecutor.class));
+
+	/**
+	 * The factory that creates {@link LocalOpExecutor} instances.
+	 */
+	public static final OpExecutorFactory FACTORY = new OpExecutorFactory() {
+		@Override
+		public OpExecutor create(final ExecutionContext execCxt) {
+			return new LocalOpExecutor(execCxt);
+		}
+	};
+
+	/**
+	 * Builds a new {@link LocalOpExecutor} with the given execution context.
+	 *
+	 * @param execCxt the execution context.
+	 */
+	LocalOpExecutor(final ExecutionContext execCxt) {
+		super(execCxt);
+	}
+
+	@Override
+	protected QueryIterator execute(final OpFilter opFilter, final QueryIterator input) {
+		final Graph graph = execCxt.getActiveGraph();
+		if (!(graph instanceof LocalGraph) || !(opFilter.getSubOp() instanceof OpBGP)) {
+			return super.execute(opFilter, input);
+		}
+
+		final BasicPattern pattern = ((OpBGP) opFilter.getSubOp()).getPattern();
+		final List<List<Query>> constraints = new FilterTranslator((LocalGraph) graph).constraints(pattern, opFilter.getExprs());
+		if (constraints == null) {
+			return super.execute(opFilter, input);
+		}
+
+		QueryIterator qIter = new QueryIterBindJoin(input, pattern, constraints, (LocalGraph) graph, execCxt);
+
+		if (execCxt.getContext().isTrue(ARQ.hideNonDistiguishedVariables)) {
+			qIter = new QueryIterDistinguishedVars(qIter, execCxt);
+		}
+
+		for (final Expr expr : opFilter.getExprs()) {
+			qIter = new QueryIterFilterExpr(qIter, expr, execCxt);
+		}
+		return qIter;
+	}
+
+	@Override
+	protected QueryIterator execute(final OpSlice opSlice, final QueryIterator input) {
+		final long offset = Math.max(0, opSlice.getStart());
+		final long limit = opSlice.getLength();
+		final QueryIterator qIter = limit >= 0 && offset + limit <= Integer.MAX_VALUE
+				? pushDown(opSlice.getSubOp(), input, (int) offset, (int) limit)
+				: null;
+		return qIter != null ? qIter : super.execute(opSlice, input);
+	}
+
+	@Override
+	protected QueryIterator execute(final OpTopN opTop, final QueryIterator input) {
+		final QueryIterator qIter = pushDown(new OpOrder(opTop.getSubOp(), opTop.getConditions()), input, 0, opTop.getLimit());
+		return qIter != null ? qIter : super.execute(opTop, input);
+	}
+
+	@Override
+	protected QueryIterator execute(final OpOrder opOrder, final QueryIterator input) {
+		final QueryIterator qIter = pushDown(opOrder, input, 0, -1);
+		return qIter != null ? qIter : super.execute(opOrder, input);
+	}
+
+	@Override
+	protected QueryIterator execute(final OpGroup opGroup, final QueryIterator input) {
+		if (!isIndexAggregate(opGroup, input)) {
+			return super.execute(opGroup, input);
+		}
+
+		final Binding parent = input.nextBinding();
+		input.close();
+		
+		final List<Binding> solutions = aggregate(opGroup, parent);
+		return solutions != null 
+				? new QueryIterPlainWrapper(solutions.iterator(), execCxt) 
+				: super.execute(opGroup, QueryIterRoot.create(parent, execCxt));
+	}
+
+	@Override
+	protected QueryIterator execute(final OpDistinct opDistinct, final QueryIterator input) {
+		final OpGroup opGroup = asGroup(opDistinct);
+		if (opGroup == null || !isIndexAggregate(opGroup, input)) {
+			return super.execute(opDistinct, input);
+		}
+
+		final Binding parent = input.nextBinding();
+		input.close();
+		
+		final List<Binding> solutions = aggregate(opGroup, parent);
+		return solutions != null 
+				? new QueryIterPlainWrapper(solutions.iterator(), execCxt) 
+				: super.execute(opDistinct, QueryIterRoot.create(parent, execCxt));
+	}
+	
+	/**
+	 * Returns true if the aggregates of a given group can be evaluated in the index, with the given input.
+	 * 
+	 * @param opGroup the group operation.
+	 * @param input the input iterator.
+	 * @return true if the aggregates of the given group can be evaluated in the index.
+	 */
+	boolean isIndexAggregate(final OpGroup opGroup, final QueryIterator input) {
+		return execCxt.getActiveGraph() instanceof LocalGraph
+				&& input instanceof QueryIterRoot
+				&& input.hasNext()
+				&& AggregateEvaluator.isSupported(opGroup)
+				&& (AggregateEvaluator.graphVar(opGroup.getSubOp()) == null || execCxt.getDataset() instanceof LocalDatasetGraph);
+	}
+	
+	/**
+	 * Evaluates the aggregates of a given group in the index.
+	 * 
+	 * @param opGroup the group operation.
+	 * @param parent the parent (root) binding.
+	 * @return the solutions of the given group, null if the index cannot answer.
+	 */
+	List<Binding> aggregate(final OpGroup opGroup, final Binding parent) {
+		try {
+			return parent.isEmpty() 
+					? new AggregateEvaluator((LocalGraph) execCxt.getActiveGraph()).evaluate(opGroup) 
+					: null;
+		} catch (final IOException | SyntaxError exception) {
+			LOGGER.error(MessageCatalog._00113_NWS_FAILURE, exception);
+			throw new SolrException(ErrorCode.SERVER_ERROR, exception);
+		}
+	}
+	
+	/**
+	 * A DISTINCT projection of a single variable is a GROUP BY that variable, without aggregates: 
+	 * that is, the distinct values of the variable can be enumerated from the index (see {@link AggregateEvaluator}).
+	 * 
+	 * @param opDistinct the distinct operation.
+	 * @return the equivalent group operation, null if the given operation is not a DISTINCT projection of a single variable.
+	 */
+	static OpGroup asGroup(final OpDistinct opDistinct) {
+		if (!(opDistinct.getSubOp() instanceof OpProject) || ((OpProject) opDistinct.getSubOp()).getVars().size() != 1) {
+			return null;
+		}
+		
+		final OpProject opProject = (OpProject) opDistinct.getSubOp();
+		return new OpGroup(
+				opProject.getSubOp(), 
+				new VarExprList(opProject.getVars()), 
+				Collections.<ExprAggregator>emptyList());
+	}
+
+	/**
+	 * Evaluates a single triple pattern (optionally ordered by its object and projected) directly in the index.
+	 *
+	 * @param op the operation.
+	 * @param input the input iterator.
+	 * @param offset the number of solutions that will be skipped.
+	 * @param limit the maximum number of solutions that will be returned, -1 for all the (ordered) solutions.
+	 * @return the solutions of the given operation, null if the operation cannot be evaluated in the index.
+	 */
+	QueryIterator pushDown(final Op op, final QueryIterator input, final int offset, final int limit) {
+		final Graph graph = execCxt.getActiveGraph();
+		if (!(graph instanceof LocalGraph) || !(input instanceof QueryIterRoot) || !input.hasNext()) {
+			return null;
+		}
+
+		final Op ordered = op instanceof OpProject ? ((OpProject) op).getSubOp() : op;
+		final List<SortCondition> conditions = ordered instanceof OpOrder ? ((OpOrder) ordered).getConditions() : null;
+		final Triple triplePattern = singlePattern(conditions != null ? ((OpOrder) ordered).getSubOp() : op);
+		if (triplePattern == null || (conditions == null && limit < 0)) {
+			return null;
+		}
+
+		QueryIterator qIter = null;
+		try {
+			SortSpec order = null;
+			if (conditions != null) {
+				order = isObjectOrder(triplePattern, conditions) 
+						? ((LocalGraph) graph).objectOrder(
+								triplePattern, 
+								conditions.get(0).getDirection() == com.hp.hpl.jena.query.Query.ORDER_DESCENDING) 
+						: null;
+				if (order == null) {
+					return null;
+				}
+			}
+
+			final Binding parent = input.nextBinding();
+			input.close();
+
+			// Positions projected away are neither loaded nor decoded
+			final Triple substituted = Substitute.substitute(triplePattern, parent);
+			qIter = new QueryIterPlainWrapper(
+					new BasicPatternEvaluator((LocalGraph) graph).stream(
+							substituted, 
+							parent, 
+							order,
+							offset, 
+							limit,
+							TripleProjection.of(substituted, op instanceof OpProject ? ((OpProject) op).getVars() : null)), 
+					execCxt);
+		} catch (final IOException | SyntaxError exception) {
+			LOGGER.error(MessageCatalog._00113_NWS_FAILURE, exception);
+			throw new SolrException(ErrorCode.SERVER_ERROR, exception);
+		}
+		
+		if (op instanceof OpProject) {
+			qIter = new QueryIterProject(qIter, ((OpProject) op).getVars(), execCxt);
+		} else if (execCxt.getContext().isTrue(ARQ.hideNonDistiguishedVariables)) {
+			qIter = new QueryIterDistinguishedVars(qIter, execCxt);
+		}
+		return qIter;
+	}
+
+	/**
+	 * Returns true if the given ORDER BY conditions can be translated in an index order of the triples matching a given pattern.
+	 * That is possible only for a single condition on the object variable. 
+	 *
+	 * @param triplePattern the triple pattern.
+	 * @param conditions the ORDER BY conditions.
+	 * @return true if the given ORDER BY conditions can be translated in an index order.
+	 */
+	static boolean isObjectOrder(final Triple triplePattern, final List<SortCondition> conditions) {
+		if (conditions.size() != 1 || !triplePattern.getObject().isVariable()) {
+			return false;
+		}
+
+		final Expr expression = conditions.get(0).getExpression();
+		return expression.isVariable() && expression.asVar().equals(Var.alloc(triplePattern.getObject()));
+	}
+
+	/**
+	 * Returns the triple pattern of a given operation, if the operation is a Basic Graph Pattern with just one triple 
+	 * (optionally projected) and that triple doesn't contain the same variable twice.
+	 * In that case, each triple that matches the pattern is a solution, so solutions can be sliced directly by the index.
+	 *
+	 * @param op the operation.
+	 * @return the triple pattern of the given operation, null if the operation doesn't have the expected shape.
+	 */
+	public static Triple singlePattern(final Op op) {
+		final Op subOp = op instanceof OpProject ? ((OpProject) op).getSubOp() : op;
+		if (!(subOp instanceof OpBGP) || ((OpBGP) subOp).getPattern().size() != 1) {
+			return null;
+		}
+
+		final Triple triplePattern = ((OpBGP) subOp).getPattern().get(0);
+		int variableMembers = 0;
+		for (final Node member : new Node[] {triplePattern.getSubject(), triplePattern.getPredicate(), triplePattern.getObject()}) {
+			if (member.isVariable()) {
+				variableMembers++;
+			}
+		}
+		return BasicPatternEvaluator.variables(triplePattern).size() == variableMembers ? triplePattern : null;
+	}
+}
@@ -0,0 +1,41 @@
+package org.gazzax.labs.solrdf.graph.standalone;
+
+import com.hp.hpl.jena.graph.Graph;
+import com.hp.hpl.jena.sparql.core.BasicPattern;
+import com.hp.hpl.jena.sparql.engine.ExecutionContext;
+import com.hp.hpl.jena.sparql.engine.QueryIterator;
+import com.hp.hpl.jena.sparql.engine.main.StageGenerator;
+
+/**
+ * A {@link StageGenerator} that evaluates Basic Graph Patterns directly within Solr.
+ *
+ * Incoming bindings are joined in batches with the pattern by a {@link QueryIterBindJoin}, so each batch costs 
+ * a single search; patterns with two or more triples are evaluated set-at-a-time by a {@link BasicPatternEvaluator}.
+ * Graphs that are not a {@link LocalGraph} are delegated to the wrapped {@link StageGenerator}.
+ *
+ * @author Andrea Gazzarini
+ * @since 1.1
+ */
+public class LocalStageGenerator implements StageGenerator {
+
+	final StageGenerator fallback;
+
+	/**
+	 * Builds a new {@link StageGenerator} with the given fallback.
+	 *
+	 * @param fallback the {@link StageGenerator} that will be used for all those patterns that cannot be evaluated by this generator.
+	 */
+	public LocalStageGenerator(final StageGenerator fallback) {
+		this.fallback = fallback;
+	}
+
+	@Override
+	public QueryIterator execute(final BasicPattern pattern, final QueryIterator input, final ExecutionContext execCxt) {
+		final Graph graph = execCxt.getActiveGraph();
+		if (pattern.isEmpty() || !(graph instanceof LocalGraph)) {
+			return fallback.execute(pattern, input, execCxt);
+		}
+
+		return new QueryIterBindJoin(input, pattern, BasicPatternEvaluator.noConstraints(pattern), (LocalGraph) graph, execCxt);
+	}
+}
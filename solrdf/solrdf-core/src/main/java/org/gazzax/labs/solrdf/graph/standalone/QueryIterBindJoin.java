@@ -0,0 +1,92 @@
+package org.gazzax.labs.solrdf.graph.standalone;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+
+import org.apache.jena.atlas.io.IndentedWriter;
+import org.apache.lucene.search.Query;
+
+import com.hp.hpl.jena.sparql.core.BasicPattern;
+import com.hp.hpl.jena.sparql.engine.ExecutionContext;
+import com.hp.hpl.jena.sparql.engine.QueryIterator;
+import com.hp.hpl.jena.sparql.engine.binding.Binding;
+import com.hp.hpl.jena.sparql.engine.iterator.QueryIter1;
+import com.hp.hpl.jena.sparql.serializer.SerializationContext;
+
+/**
+ * A block bind join between an input iterator and a Basic Graph Pattern.
+ *
+ * Instead of evaluating the pattern once for each input binding (that is what the default Jena stage generator does),
+ * input bindings are grouped in batches and each batch is evaluated at once by a {@link BasicPatternEvaluator}.
+ *
+ * @author Andrea Gazzarini
+ * @since 1.1
+ */
+class QueryIterBindJoin extends QueryIter1 {
+	final BasicPattern pattern;
+	final List<List<Query>> constraints;
+	final BasicPatternEvaluator evaluator;
+	final int batchSize;
+
+	private Iterator<Binding> current = Collections.<Binding>emptyList().iterator();
+
+	/**
+	 * Builds a new bind join with the given data.
+	 *
+	 * @param input the input iterator.
+	 * @param pattern the Basic Graph Pattern.
+	 * @param constraints the additional constraints of each triple pattern, in the same order of the pattern.
+	 * @param graph the target {@link LocalGraph}.
+	 * @param execCxt the execution context.
+	 */
+	QueryIterBindJoin(
+			final QueryIterator input,
+			final BasicPattern pattern,
+			final List<List<Query>> constraints,
+			final LocalGraph graph,
+			final ExecutionContext execCxt) {
+		super(input, execCxt);
+		this.pattern = pattern;
+		this.constraints = constraints;
+		this.evaluator = new BasicPatternEvaluator(graph);
+		this.batchSize = graph.bindJoinBatchSize;
+	}
+
+	@Override
+	protected boolean hasNextBinding() {
+		while (!current.hasNext()) {
+			if (isFinished() || !getInput().hasNext()) {
+				return false;
+			}
+
+			final List<Binding> batch = new ArrayList<Binding>(batchSize);
+			while (batch.size() < batchSize && getInput().hasNext()) {
+				batch.add(getInput().nextBinding());
+			}
+			current = evaluator.evaluate(pattern, constraints, batch);
+		}
+		return true;
+	}
+
+	@Override
+	protected Binding moveToNextBinding() {
+		return current.next();
+	}
+
+	@Override
+	protected void requestSubCancel() {
+		// Nothing to be done here
+	}
+
+	@Override
+	protected void closeSubIterator() {
+		current = Collections.<Binding>emptyList().iterator();
+	}
+
+	@Override
+	protected void details(final IndentedWriter out, final SerializationContext sCxt) {
+		out.print(pattern.toString());
+	}
+}
@@ -0,0 +1,251 @@
+package org.gazzax.labs.solrdf.graph.standalone;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.lucene.index.LeafReader;
+import org.apache.lucene.index.PostingsEnum;
+import org.apache.lucene.index.Terms;
+import org.apache.lucene.index.TermsEnum;
+import org.apache.lucene.search.DocIdSetIterator;
+import org.apache.lucene.util.Bits;
+import org.apache.lucene.util.BytesRef;
+import org.apache.solr.common.util.Hash;
+import org.apache.solr.util.hll.HLL;
+import org.gazzax.labs.solrdf.Field;
+import org.gazzax.labs.solrdf.graph.GraphStatistics;
+import org.gazzax.labs.solrdf.graph.GraphStatistics.PredicateStatistics;
+
+/**
+ * The statistics of a single segment, which can be merged with the statistics of other segments.
+ *
+ * Triples are counted, while distinct subjects and objects (which cannot be summed across segments) are
+ * HyperLogLog sketches: they are exact for small cardinalities, then estimates (about 1% off, 2% per predicate).
+ *
+ * @author Andrea Gazzarini
+ * @since 1.1
+ */
+final class SegmentStatistics {
+	static final int LOG2M = 14;
+	static final int PREDICATE_LOG2M = 11;
+	static final int REGWIDTH = 5;
+
+	/**
+	 * The statistics of a single predicate.
+	 *
+	 * @author Andrea Gazzarini
+	 * @since 1.1
+	 */
+	static final class PredicateSketch {
+		long triples;
+		final HLL subjects = new HLL(PREDICATE_LOG2M, REGWIDTH);
+		final HLL objects = new HLL(PREDICATE_LOG2M, REGWIDTH);
+	}
+
+	final int deletedDocs;
+	long triples;
+	final HLL subjects = new HLL(LOG2M, REGWIDTH);
+	final HLL objects = new HLL(LOG2M, REGWIDTH);
+	final Map<String, Long> graphs = new HashMap<String, Long>();
+	final Map<String, PredicateSketch> predicates = new HashMap<String, PredicateSketch>();
+
+	/**
+	 * Builds new (empty) statistics.
+	 *
+	 * @param deletedDocs the number of deleted documents of the segment, which tells if the statistics are still valid.
+	 */
+	SegmentStatistics(final int deletedDocs) {
+		this.deletedDocs = deletedDocs;
+	}
+
+	/**
+	 * Computes the statistics of a given segment.
+	 * The whole computation requires a single pass over the postings of the p, s, o and c fields.
+	 *
+	 * @param reader the segment reader.
+	 * @return the statistics of the given segment.
+	 * @throws IOException in case of I/O failure.
+	 */
+	static SegmentStatistics compute(final LeafReader reader) throws IOException {
+		final SegmentStatistics result = new SegmentStatistics(reader.numDeletedDocs());
+		final Bits liveDocs = reader.getLiveDocs();
+
+		// The (ordinal of the) predicate of each document
+		final int [] predicateOf = new int[reader.maxDoc()];
+		final List<PredicateSketch> sketches = new ArrayList<PredicateSketch>();
+
+		final Terms terms = reader.terms(Field.P);
+		if (terms != null) {
+			final TermsEnum iterator = terms.iterator();
+			PostingsEnum postings = null;
+			BytesRef term;
+			while ((term = iterator.next()) != null) {
+				final PredicateSketch sketch = new PredicateSketch();
+				final int ordinal = sketches.size();
+				postings = iterator.postings(postings, PostingsEnum.NONE);
+				for (int doc = postings.nextDoc(); doc != DocIdSetIterator.NO_MORE_DOCS; doc = postings.nextDoc()) {
+					if (liveDocs == null || liveDocs.get(doc)) {
+						predicateOf[doc] = ordinal;
+						sketch.triples++;
+					}
+				}
+
+				sketches.add(sketch);
+				if (sketch.triples > 0) {
+					result.predicates.put(term.utf8ToString(), sketch);
+					result.triples += sketch.triples;
+				}
+			}
+		}
+
+		distinct(reader, Field.S, liveDocs, predicateOf, sketches, result.subjects, true);
+		distinct(reader, Field.O, liveDocs, predicateOf, sketches, result.objects, false);
+		graphs(reader, liveDocs, result.graphs);
+		return result;
+	}
+
+	/**
+	 * Adds the distinct values of a given field to the sketches, both globally and per predicate.
+	 *
+	 * @param reader the segment reader.
+	 * @param fieldName the field name (s or o).
+	 * @param liveDocs the live (i.e. not deleted) documents, null if the segment doesn't have deletions.
+	 * @param predicateOf the (ordinal of the) predicate of each document.
+	 * @param sketches the statistics of each predicate (by ordinal).
+	 * @param global the global sketch of the given field.
+	 * @param subjects true if the field holds the subjects, false in case of objects.
+	 * @throws IOException in case of I/O failure.
+	 */
+	static void distinct(
+			final LeafReader reader,
+			final String fieldName,
+			final Bits liveDocs,
+			final int [] predicateOf,
+			final List<PredicateSketch> sketches,
+			final HLL global,
+			final boolean subjects) throws IOException {
+		final Terms terms = reader.terms(fieldName);
+		if (terms == null || sketches.isEmpty()) {
+			return;
+		}
+
+		// The last term added to the sketch of each predicate
+		final long [] lastSeen = new long[sketches.size()];
+		Arrays.fill(lastSeen, -1);
+
+		final Hash.LongPair hash = new Hash.LongPair();
+		long termOrdinal = 0;
+		final TermsEnum iterator = terms.iterator();
+		PostingsEnum postings = null;
+		BytesRef term;
+		while ((term = iterator.next()) != null) {
+			Hash.murmurhash3_x64_128(term.bytes, term.offset, term.length, 0, hash);
+			boolean live = false;
+			postings = iterator.postings(postings, PostingsEnum.NONE);
+			for (int doc = postings.nextDoc(); doc != DocIdSetIterator.NO_MORE_DOCS; doc = postings.nextDoc()) {
+				if (liveDocs == null || liveDocs.get(doc)) {
+					live = true;
+					final int predicate = predicateOf[doc];
+					if (lastSeen[predicate] != termOrdinal) {
+						lastSeen[predicate] = termOrdinal;
+						final PredicateSketch sketch = sketches.get(predicate);
+						(subjects ? sketch.subjects : sketch.objects).addRaw(hash.val1);
+					}
+				}
+			}
+
+			if (live) {
+				global.addRaw(hash.val1);
+			}
+			termOrdinal++;
+		}
+	}
+
+	/**
+	 * Counts the triples of each graph.
+	 *
+	 * @param reader the segment reader.
+	 * @param liveDocs the live (i.e. not deleted) documents, null if the segment doesn't have deletions.
+	 * @param graphs the number of triples of each graph, populated by this method.
+	 * @throws IOException in case of I/O failure.
+	 */
+	static void graphs(final LeafReader reader, final Bits liveDocs, final Map<String, Long> graphs) throws IOException {
+		final Terms terms = reader.terms(Field.C);
+		if (terms == null) {
+			return;
+		}
+
+		final TermsEnum iterator = terms.iterator();
+		PostingsEnum postings = null;
+		BytesRef term;
+		while ((term = iterator.next()) != null) {
+			long count = 0;
+			postings = iterator.postings(postings, PostingsEnum.NONE);
+			for (int doc = postings.nextDoc(); doc != DocIdSetIterator.NO_MORE_DOCS; doc = postings.nextDoc()) {
+				if (liveDocs == null || liveDocs.get(doc)) {
+					count++;
+				}
+			}
+
+			if (count > 0) {
+				graphs.put(term.utf8ToString(), count);
+			}
+		}
+	}
+
+	/**
+	 * Merges the statistics of another segment into these statistics.
+	 * The other statistics are left untouched, so they can be merged again (e.g. with the next searcher).
+	 *
+	 * @param other the statistics of another segment.
+	 */
+	void add(final SegmentStatistics other) {
+		triples += other.triples;
+		subjects.union(other.subjects);
+		objects.union(other.objects);
+
+		for (final Map.Entry<String, Long> graph : other.graphs.entrySet()) {
+			final Long count = graphs.get(graph.getKey());
+			graphs.put(graph.getKey(), count != null ? count + graph.getValue() : graph.getValue());
+		}
+
+		for (final Map.Entry<String, PredicateSketch> predicate : other.predicates.entrySet()) {
+			PredicateSketch sketch = predicates.get(predicate.getKey());
+			if (sketch == null) {
+				sketch = new PredicateSketch();
+				predicates.put(predicate.getKey(), sketch);
+			}
+			sketch.triples += predicate.getValue().triples;
+			sketch.subjects.union(predicate.getValue().subjects);
+			sketch.objects.union(predicate.getValue().objects);
+		}
+	}
+
+	/**
+	 * Returns the {@link GraphStatistics} of these statistics.
+	 *
+	 * @return the {@link GraphStatistics} of these statistics.
+	 */
+	GraphStatistics graphStatistics() {
+		final Map<String, PredicateStatistics> predicateStatistics = new HashMap<String, PredicateStatistics>();
+		for (final Map.Entry<String, PredicateSketch> predicate : predicates.entrySet()) {
+			predicateStatistics.put(
+					predicate.getKey(),
+					new PredicateStatistics(
+							predicate.getValue().triples,
+							predicate.getValue().subjects.cardinality(),
+							predicate.getValue().objects.cardinality()));
+		}
+
+		return new GraphStatistics(
+				triples,
+				subjects.cardinality(),
+				objects.cardinality(),
+				new HashMap<String, Long>(graphs),
+				predicateStatistics);
+	}
+}
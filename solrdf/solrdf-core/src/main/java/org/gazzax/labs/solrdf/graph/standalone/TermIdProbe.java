@@ -0,0 +1,163 @@
+package org.gazzax.labs.solrdf.graph.standalone;
+
+import static org.gazzax.labs.solrdf.NTriples.asNt;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.List;
+
+import org.apache.lucene.index.DocValues;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.NumericDocValues;
+import org.apache.lucene.util.Bits;
+import org.apache.solr.search.SolrIndexSearcher;
+import org.gazzax.labs.solrdf.Field;
+import org.gazzax.labs.solrdf.TermIds;
+
+import com.carrotsearch.hppc.LongOpenHashSet;
+import com.hp.hpl.jena.graph.Node;
+import com.hp.hpl.jena.graph.Triple;
+import com.hp.hpl.jena.sparql.core.Var;
+
+/**
+ * Discards the documents that cannot join with the current solutions, without loading them.
+ * 
+ * The join key of each document is made of the identifiers (see {@link TermIds}) of its join members, read from 
+ * the (numeric) docValues of s_id, p_id and o_id; the key is then looked up in the set of join keys of the current solutions.
+ * Keys are primitive longs: the identifier itself with one join variable, a combination (see {@link #key(long, long)}) 
+ * of the identifiers with more variables. So probing a document doesn't allocate anything.
+ * Identifiers are hashes, so a document that passes the probe could still not join: that is checked on terms, 
+ * once the document has been loaded. 
+ * A document that has been indexed without identifiers always passes the probe.
+ * 
+ * Documents must be probed in increasing order (i.e. the {@link org.apache.solr.search.DocSet} order).
+ *
+ * @author Andrea Gazzarini
+ * @since 1.1
+ */
+class TermIdProbe {
+	final String [] fields;
+	final LongOpenHashSet keys;
+	final List<LeafReaderContext> leaves;
+	
+	private int leafIndex = -1;
+	private LeafReaderContext leaf;
+	private final NumericDocValues [] values;
+	private final Bits [] docsWithField;
+	
+	/**
+	 * Builds a new probe.
+	 * 
+	 * @param searcher the Solr index searcher.
+	 * @param fields the identifier fields of the join members.
+	 * @param keys the join keys (as identifiers) of the current solutions.
+	 */
+	TermIdProbe(final SolrIndexSearcher searcher, final String [] fields, final LongOpenHashSet keys) {
+		this.fields = fields;
+		this.keys = keys;
+		this.leaves = searcher.getTopReaderContext().leaves();
+		this.values = new NumericDocValues[fields.length];
+		this.docsWithField = new Bits[fields.length];
+	}
+	
+	/**
+	 * Builds a probe for the matches of a given triple pattern.
+	 * 
+	 * @param searcher the Solr index searcher.
+	 * @param triplePattern the triple pattern.
+	 * @param joinVariables the join variables.
+	 * @param joinKeys the join keys (i.e. the values of the join variables) of the current solutions.
+	 * @return a probe for the matches of the given triple pattern, null if there's nothing to probe.
+	 */
+	static TermIdProbe of(
+			final SolrIndexSearcher searcher, 
+			final Triple triplePattern, 
+			final List<Var> joinVariables, 
+			final Collection<List<Node>> joinKeys) {
+		if (joinVariables.isEmpty()) {
+			return null;
+		}
+		
+		final String [] fields = new String[joinVariables.size()];
+		for (int i = 0; i < fields.length; i++) {
+			fields[i] = field(triplePattern, joinVariables.get(i));
+		}
+
+		final LongOpenHashSet keys = new LongOpenHashSet(joinKeys.size());
+		for (final List<Node> joinKey : joinKeys) {
+			long key = 0;
+			for (final Node value : joinKey) {
+				if (value == null) {
+					return null;
+				}
+				key = key(key, TermIds.id(asNt(value)));
+			}
+			keys.add(key);
+		}
+		return new TermIdProbe(searcher, fields, keys);
+	}
+	
+	/**
+	 * Returns false if the document with the given (Lucene) identifier cannot join with the current solutions.
+	 * 
+	 * @param docId the Lucene document identifier.
+	 * @return false if the document cannot join with the current solutions, true if it could.
+	 * @throws IOException in case of I/O failure.
+	 */
+	boolean mayMatch(final int docId) throws IOException {
+		while (leaf == null || docId >= leaf.docBase + leaf.reader().maxDoc()) {
+			leaf = leaves.get(++leafIndex);
+			for (int i = 0; i < fields.length; i++) {
+				values[i] = DocValues.getNumeric(leaf.reader(), fields[i]);
+				docsWithField[i] = DocValues.getDocsWithField(leaf.reader(), fields[i]);
+			}
+		}
+		
+		final int leafDocId = docId - leaf.docBase;
+		long key = 0;
+		for (int i = 0; i < fields.length; i++) {
+			if (!docsWithField[i].get(leafDocId)) {
+				return true;
+			}
+			key = key(key, values[i].get(leafDocId));
+		}
+		return keys.contains(key);
+	}
+	
+	/**
+	 * Adds the identifier of a join member to a (partial) join key.
+	 * The key of a single member is its identifier; combined keys could collide, like identifiers do.
+	 * 
+	 * @param key the join key of the previous members, 0 for the first member.
+	 * @param id the identifier of the join member.
+	 * @return the join key, including the given member.
+	 */
+	static long key(final long key, final long id) {
+		return key * 0x9E3779B97F4A7C15L + id;
+	}
+	
+	/**
+	 * Returns the identifier field of the (first) member of a triple pattern that is a given variable.
+	 * 
+	 * @param triplePattern the triple pattern.
+	 * @param variable the variable.
+	 * @return the identifier field of the member that is the given variable.
+	 */
+	static String field(final Triple triplePattern, final Var variable) {
+		if (is(triplePattern.getSubject(), variable)) {
+			return Field.S_ID;
+		}
+		return is(triplePattern.getPredicate(), variable) ? Field.P_ID : Field.O_ID;
+	}
+	
+	/**
+	 * Returns true if a given triple pattern member is a given variable.
+	 * 
+	 * @param member the triple pattern member.
+	 * @param variable the variable.
+	 * @return true if the given member is the given variable.
+	 */
+	private static boolean is(final Node member, final Var variable) {
+		return member.isVariable() && Var.alloc(member).equals(variable);
+	}
+}
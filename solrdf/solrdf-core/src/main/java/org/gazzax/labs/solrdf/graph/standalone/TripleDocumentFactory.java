@@ -0,0 +1,152 @@
+package org.gazzax.labs.solrdf.graph.standalone;
+
+import static org.gazzax.labs.solrdf.NTriples.asNt;
+import static org.gazzax.labs.solrdf.NTriples.asNtURI;
+import static org.gazzax.labs.solrdf.Strings.isNotNullOrEmptyString;
+
+import org.apache.solr.common.SolrInputDocument;
+import org.apache.solr.schema.IndexSchema;
+import org.gazzax.labs.solrdf.Field;
+import org.gazzax.labs.solrdf.TermIds;
+import org.gazzax.labs.solrdf.graph.ObjectFieldInjectors;
+import org.gazzax.labs.solrdf.graph.SolRDFGraph;
+
+import com.hp.hpl.jena.datatypes.RDFDatatype;
+import com.hp.hpl.jena.graph.Node;
+import com.hp.hpl.jena.graph.Triple;
+
+/**
+ * Builds the {@link SolrInputDocument} that represents a triple within a given graph.
+ * This is the only place where triple documents are built: local graphs, bulk loads, the offline index builder and 
+ * (with their own {@link ObjectFieldInjectors}) cloud graphs use it.
+ * 
+ * Instances are not thread-safe: concurrent producers (e.g. bulk loader workers) should use their own instance.
+ * 
+ * @author Andrea Gazzarini
+ * @since 1.1
+ */
+public class TripleDocumentFactory {
+	
+	final ObjectFieldInjectors registry;
+	final boolean termIds;
+	final boolean subjectRouting;
+	final boolean legacyIds;
+	
+	/**
+	 * Builds a new {@link TripleDocumentFactory}.
+	 */
+	public TripleDocumentFactory() {
+		this(FieldInjectorRegistry.INSTANCE, false, false, false);
+	}
+	
+	/**
+	 * Builds a new {@link TripleDocumentFactory} for a given schema.
+	 * 
+	 * @param schema the Solr schema, which tells if term identifiers (see {@link #hasTermIds(IndexSchema)}) have to be 
+	 * 			indexed and if documents are routed by subject (see {@link SolRDFGraph#hasSubjectRouting(IndexSchema)}).
+	 */
+	public TripleDocumentFactory(final IndexSchema schema) {
+		this(schema, false);
+	}
+	
+	/**
+	 * Builds a new {@link TripleDocumentFactory} for a given schema and identifiers format.
+	 * 
+	 * @param schema the Solr schema, which tells if term identifiers (see {@link #hasTermIds(IndexSchema)}) have to be 
+	 * 			indexed and if documents are routed by subject (see {@link SolRDFGraph#hasSubjectRouting(IndexSchema)}).
+	 * @param legacyIds true if the target index has been built with legacy identifiers (see 
+	 * 			{@link SolRDFGraph#hasLegacyIds(org.apache.solr.search.SolrIndexSearcher)}).
+	 */
+	public TripleDocumentFactory(final IndexSchema schema, final boolean legacyIds) {
+		this(FieldInjectorRegistry.of(legacyIds), hasTermIds(schema), SolRDFGraph.hasSubjectRouting(schema), legacyIds);
+	}
+	
+	/**
+	 * Builds a new {@link TripleDocumentFactory} with the given registry.
+	 * 
+	 * @param registry the datatype injectors registry.
+	 * @param termIds true if term identifiers (see {@link TermIds}) have to be indexed.
+	 * @param subjectRouting true if documents are routed by subject.
+	 * @param legacyIds true if documents have legacy identifiers (which are never routed by subject).
+	 */
+	public TripleDocumentFactory(final ObjectFieldInjectors registry, final boolean termIds, final boolean subjectRouting, final boolean legacyIds) {
+		this.registry = registry;
+		this.termIds = termIds;
+		this.subjectRouting = subjectRouting;
+		this.legacyIds = legacyIds;
+	}
+	
+	/**
+	 * Returns true if the given schema declares the term identifier fields.
+	 * 
+	 * @param schema the Solr schema.
+	 * @return true if the given schema declares the term identifier fields.
+	 */
+	public static boolean hasTermIds(final IndexSchema schema) {
+		return schema.getFieldOrNull(Field.S_ID) != null
+				&& schema.getFieldOrNull(Field.P_ID) != null
+				&& schema.getFieldOrNull(Field.O_ID) != null;
+	}
+	
+	/**
+	 * Returns the stringified (i.e. N-Triples) form of a given graph node, as it is indexed in the context field.
+	 * 
+	 * @param graphNode the graph node, null in case of default graph.
+	 * @return the stringified form of the given graph node.
+	 */
+	public static String graphName(final Node graphNode) {
+		return graphNode != null ? asNtURI(graphNode) : SolRDFGraph.UNNAMED_GRAPH_PLACEHOLDER;
+	}
+	
+	/**
+	 * Returns the identifier of the document that holds a given triple, in the identifiers format of this factory.
+	 * 
+	 * @param graphNodeStringified the stringified graph node (see {@link #graphName(Node)}).
+	 * @param triple the (concrete) triple.
+	 * @return the identifier of the document that holds the given triple.
+	 */
+	public String id(final String graphNodeStringified, final Triple triple) {
+		return legacyIds 
+				? SolRDFGraph.legacyDocumentId(graphNodeStringified, triple) 
+				: SolRDFGraph.documentId(graphNodeStringified, triple, subjectRouting);
+	}
+	
+	/**
+	 * Builds the {@link SolrInputDocument} of a given triple.
+	 * 
+	 * @param graphNodeStringified the stringified graph node (see {@link #graphName(Node)}).
+	 * @param triple the triple.
+	 * @return the {@link SolrInputDocument} of the given triple.
+	 */
+	public SolrInputDocument document(final String graphNodeStringified, final Triple triple) {
+		final SolrInputDocument document = new SolrInputDocument();
+		final String s = asNt(triple.getSubject());
+		final String p = asNtURI(triple.getPredicate());
+		final String o = asNt(triple.getObject());
+
+		document.setField(Field.C, graphNodeStringified);
+		document.setField(Field.S, s);
+		document.setField(Field.P, p);
+		document.setField(Field.ID, id(graphNodeStringified, triple));
+		document.setField(Field.O, o);
+		
+		if (termIds) {
+			document.setField(Field.S_ID, TermIds.id(s));
+			document.setField(Field.P_ID, TermIds.id(p));
+			document.setField(Field.O_ID, TermIds.id(o));
+		}
+
+		final Node object = triple.getObject();
+		if (object.isLiteral()) {
+			final String language = object.getLiteralLanguage();
+			document.setField(Field.LANG, isNotNullOrEmptyString(language) ? language : SolRDFGraph.NULL_LANGUAGE);				
+
+			final RDFDatatype dataType = object.getLiteralDatatype();
+			final Object value = object.getLiteralValue();
+			registry.get(dataType != null ? dataType.getURI() : null).inject(document, value);
+		} else {
+			registry.catchAllInjector().inject(document, o);
+		}
+		return document;
+	}
+}
@@ -0,0 +1,143 @@
+package org.gazzax.labs.solrdf.graph.standalone;
+
+import java.io.IOException;
+import java.util.List;
+
+import org.apache.lucene.document.Document;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.ReaderUtil;
+import org.apache.lucene.index.SortedDocValues;
+import org.apache.solr.schema.IndexSchema;
+import org.apache.solr.search.SolrIndexSearcher;
+import org.gazzax.labs.solrdf.Field;
+import org.gazzax.labs.solrdf.graph.TripleProjection;
+
+import com.hp.hpl.jena.graph.Triple;
+
+/**
+ * Builds the triples stored in the index, loading only the positions that are needed (see {@link TripleProjection}).
+ *
+ * Terms are read from the (sorted) docValues of s_dv, p_dv and o_dv, when the schema declares them and the segment
+ * of the document has them. Otherwise (e.g. an index built with an older schema) they are read from stored fields,
+ * which means decompressing a whole block for each document.
+ *
+ * The docValues fields are copies of s, p and o truncated to {@link #MAX_CHARS} characters (a docValues term cannot
+ * exceed 32766 bytes): a term that could have been truncated is read from stored fields, too.
+ *
+ * Documents are best read in increasing order (i.e. the {@link org.apache.solr.search.DocSet} order), because
+ * the docValues of a segment are opened once, when its first document is read.
+ *
+ * @author Andrea Gazzarini
+ * @since 1.1
+ */
+class TripleReader {
+	/**
+	 * Must be equal to the maxChars of the s_dv, p_dv and o_dv copyFields in schema.xml.
+	 */
+	static final int MAX_CHARS = 10000;
+
+	static final String [] FIELDS = { Field.S, Field.P, Field.O };
+	static final String [] DOCVALUES_FIELDS = { Field.S_DV, Field.P_DV, Field.O_DV };
+
+	final SolrIndexSearcher searcher;
+	final TripleProjection projection;
+	final boolean [] needed = new boolean[FIELDS.length];
+	final boolean docValues;
+	final List<LeafReaderContext> leaves;
+
+	private LeafReaderContext leaf;
+	private boolean leafHasDocValues;
+	private final SortedDocValues [] values = new SortedDocValues[FIELDS.length];
+	private final String [] terms = new String[FIELDS.length];
+
+	/**
+	 * Builds a new reader.
+	 *
+	 * @param searcher the Solr index searcher.
+	 * @param projection the positions that are needed.
+	 */
+	TripleReader(final SolrIndexSearcher searcher, final TripleProjection projection) {
+		this.searcher = searcher;
+		this.projection = projection;
+		this.leaves = searcher.getTopReaderContext().leaves();
+		for (int i = 0; i < FIELDS.length; i++) {
+			needed[i] = projection.fields().contains(FIELDS[i]);
+		}
+		this.docValues = hasDocValues(searcher.getSchema());
+	}
+
+	/**
+	 * Builds the {@link Triple} stored in the document with the given (Lucene) identifier.
+	 *
+	 * @param docId the Lucene document identifier.
+	 * @return the {@link Triple} stored in the document with the given identifier.
+	 * @throws IOException in case of I/O failure.
+	 */
+	Triple triple(final int docId) throws IOException {
+		if (projection.fields().isEmpty()) {
+			return projection.triple(null, null, null);
+		}
+
+		if (docValues && readDocValues(docId)) {
+			return projection.triple(terms[0], terms[1], terms[2]);
+		}
+
+		final Document document = searcher.doc(docId, projection.fields());
+		return projection.triple(document.get(Field.S), document.get(Field.P), document.get(Field.O));
+	}
+
+	/**
+	 * Reads the needed terms of a given document from docValues.
+	 *
+	 * @param docId the Lucene document identifier.
+	 * @return true if all the needed terms have been read, false if they must be read from stored fields.
+	 * @throws IOException in case of I/O failure.
+	 */
+	boolean readDocValues(final int docId) throws IOException {
+		if (leaf == null || docId < leaf.docBase || docId >= leaf.docBase + leaf.reader().maxDoc()) {
+			leaf = leaves.get(ReaderUtil.subIndex(docId, leaves));
+			leafHasDocValues = true;
+			for (int i = 0; i < FIELDS.length; i++) {
+				values[i] = needed[i] ? leaf.reader().getSortedDocValues(DOCVALUES_FIELDS[i]) : null;
+				leafHasDocValues &= !needed[i] || values[i] != null;
+			}
+		}
+
+		if (!leafHasDocValues) {
+			return false;
+		}
+
+		final int leafDocId = docId - leaf.docBase;
+		for (int i = 0; i < FIELDS.length; i++) {
+			if (!needed[i]) {
+				continue;
+			}
+
+			final int ord = values[i].getOrd(leafDocId);
+			if (ord < 0) {
+				return false;
+			}
+
+			terms[i] = values[i].lookupOrd(ord).utf8ToString();
+			if (terms[i].length() >= MAX_CHARS) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Returns true if a given schema declares the docValues copies of the triple members.
+	 *
+	 * @param schema the Solr schema.
+	 * @return true if the given schema declares the docValues copies of the triple members.
+	 */
+	static boolean hasDocValues(final IndexSchema schema) {
+		for (final String name : DOCVALUES_FIELDS) {
+			if (schema == null || schema.getFieldOrNull(name) == null || !schema.getField(name).hasDocValues()) {
+				return false;
+			}
+		}
+		return true;
+	}
+}
@@ -0,0 +1,66 @@
+package org.gazzax.labs.solrdf.handler;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map.Entry;
+
+import org.apache.solr.common.util.NamedList;
+import org.apache.solr.common.util.SimpleOrderedMap;
+import org.apache.solr.handler.RequestHandlerBase;
+import org.apache.solr.request.SolrQueryRequest;
+import org.apache.solr.response.SolrQueryResponse;
+import org.gazzax.labs.solrdf.graph.GraphStatistics;
+import org.gazzax.labs.solrdf.graph.GraphStatistics.PredicateStatistics;
+import org.gazzax.labs.solrdf.graph.standalone.GraphStatisticsRegenerator;
+
+/**
+ * Exposes the dataset cardinality statistics using the VoID vocabulary terms.
+ * 
+ * @see http://www.w3.org/TR/void
+ * @author Andrea Gazzarini
+ * @since 1.1
+ */
+public class VoidRequestHandler extends RequestHandlerBase {
+	
+	@Override
+	public void handleRequestBody(
+			final SolrQueryRequest request, 
+			final SolrQueryResponse response) throws Exception {
+		GraphStatistics statistics = GraphStatisticsRegenerator.statistics(request.getSearcher());
+		if (statistics == null) {
+			statistics = GraphStatisticsRegenerator.compute(request.getSearcher());
+		}
+		
+		response.add("void:triples", statistics.triples());
+		response.add("void:distinctSubjects", statistics.distinctSubjects());
+		response.add("void:distinctObjects", statistics.distinctObjects());
+		response.add("void:properties", statistics.predicates().size());
+		
+		final List<NamedList<Object>> partitions = new ArrayList<NamedList<Object>>(statistics.predicates().size());
+		for (final Entry<String, PredicateStatistics> predicate : statistics.predicates().entrySet()) {
+			final NamedList<Object> partition = new SimpleOrderedMap<Object>();
+			partition.add("void:property", predicate.getKey());
+			partition.add("void:triples", predicate.getValue().triples());
+			partition.add("void:distinctSubjects", predicate.getValue().distinctSubjects());
+			partition.add("void:distinctObjects", predicate.getValue().distinctObjects());
+			partitions.add(partition);
+		}
+		response.add("void:propertyPartition", partitions);
+		
+		final NamedList<Object> graphs = new SimpleOrderedMap<Object>();
+		for (final Entry<String, Long> graph : statistics.graphs().entrySet()) {
+			graphs.add(graph.getKey(), graph.getValue());
+		}
+		response.add("graphs", graphs);
+	}
+
+	@Override
+	public String getDescription() {
+		return "VoID-like dataset statistics endpoint.";
+	}
+
+	@Override
+	public String getSource() {
+		return "https://github.com/agazzarini/SolRDF";
+	}
+}
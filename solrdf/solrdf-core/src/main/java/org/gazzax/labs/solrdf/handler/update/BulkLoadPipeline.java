@@ -0,0 +1,504 @@
+package org.gazzax.labs.solrdf.handler.update;
+
+import java.io.File;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.apache.jena.riot.Lang;
+import org.apache.jena.riot.RDFDataMgr;
+import org.apache.jena.riot.RDFLanguages;
+import org.apache.jena.riot.lang.LabelToNode;
+import org.apache.jena.riot.lang.LangNQuads;
+import org.apache.jena.riot.lang.LangNTriples;
+import org.apache.jena.riot.lang.LangRIOT;
+import org.apache.jena.riot.system.ParserProfile;
+import org.apache.jena.riot.system.RiotLib;
+import org.apache.jena.riot.system.StreamRDF;
+import org.apache.jena.riot.system.StreamRDFBase;
+import org.apache.jena.riot.tokens.Tokenizer;
+import org.apache.jena.riot.tokens.TokenizerFactory;
+import org.apache.solr.common.SolrException;
+import org.apache.solr.common.SolrException.ErrorCode;
+import org.apache.solr.common.SolrInputDocument;
+import org.apache.solr.common.params.SolrParams;
+import org.apache.solr.handler.UpdateRequestHandler;
+import org.apache.solr.request.SolrQueryRequest;
+import org.apache.solr.schema.IndexSchema;
+import org.apache.solr.update.AddUpdateCommand;
+import org.apache.solr.update.processor.UpdateRequestProcessor;
+import org.gazzax.labs.solrdf.Field;
+import org.gazzax.labs.solrdf.Names;
+import org.gazzax.labs.solrdf.graph.SolRDFGraph;
+import org.gazzax.labs.solrdf.graph.standalone.TripleDocumentFactory;
+import org.gazzax.labs.solrdf.log.Log;
+import org.gazzax.labs.solrdf.log.MessageCatalog;
+import org.slf4j.LoggerFactory;
+
+import com.hp.hpl.jena.graph.Node;
+import com.hp.hpl.jena.graph.Triple;
+import com.hp.hpl.jena.sparql.core.Quad;
+
+/**
+ * A multi-stage bulk loading pipeline.
+ *
+ * <ul>
+ * 	<li>A parser thread reads the incoming stream and collects the parsed tuples in batches;</li>
+ * 	<li>N worker threads convert those batches in {@link SolrInputDocument}s;</li>
+ * 	<li>The request thread submits the documents to the {@link UpdateRequestProcessor} (which is not thread-safe).</li>
+ * </ul>
+ *
+ * Stages are connected by bounded queues, so a slow stage blocks (instead of buffering the whole payload in memory)
+ * the stages that feed it.
+ *
+ * With overwrite=false the load is append-only: documents are added without the identifier lookup Solr does on
+ * overwrite, except those whose identifier is already in a Bloom filter (see {@link DuplicateFilter}).
+ *
+ * @author Andrea Gazzarini
+ * @since 1.1
+ */
+class BulkLoadPipeline {
+	static final Log LOGGER = new Log(LoggerFactory.getLogger(BulkLoadPipeline.class));
+
+	static final int DEFAULT_WORKERS = Math.max(1, Runtime.getRuntime().availableProcessors() - 1);
+	static final int DEFAULT_BATCH_SIZE = 1000;
+	static final int DEFAULT_QUEUE_CAPACITY = 16;
+	static final long DEFAULT_CHUNK_SIZE = 64 * 1024 * 1024;
+
+	final IngestScheduler scheduler;
+	final int requestedWorkers;
+	final int batchSize;
+	final int queueCapacity;
+	final long chunkSize;
+	final boolean appendOnly;
+	final boolean persistentFilter;
+	final int expectedTriples;
+	final double falsePositiveProbability;
+
+	/**
+	 * Builds a new pipeline configured with the given request parameters.
+	 *
+	 * @param scheduler the scheduler that will run the parser and the workers.
+	 * @param parameters the request parameters.
+	 */
+	BulkLoadPipeline(final IngestScheduler scheduler, final SolrParams parameters) {
+		this.scheduler = scheduler;
+		this.requestedWorkers = Math.max(1, parameters.getInt(Names.BULK_WORKERS_PARAMETER_NAME, DEFAULT_WORKERS));
+		this.batchSize = Math.max(1, parameters.getInt(Names.BULK_BATCH_SIZE_PARAMETER_NAME, DEFAULT_BATCH_SIZE));
+		this.queueCapacity = Math.max(1, parameters.getInt(Names.BULK_QUEUE_CAPACITY_PARAMETER_NAME, DEFAULT_QUEUE_CAPACITY));
+		this.chunkSize = Math.min(
+				Integer.MAX_VALUE, 
+				Math.max(1, parameters.getLong(Names.BULK_CHUNK_SIZE_PARAMETER_NAME, DEFAULT_CHUNK_SIZE)));
+		this.appendOnly = !parameters.getBool(UpdateRequestHandler.OVERWRITE, true);
+		this.persistentFilter = parameters.getBool(Names.BULK_BLOOM_PERSISTENT_PARAMETER_NAME, false);
+		this.expectedTriples = Math.max(
+				1, 
+				parameters.getInt(Names.BULK_BLOOM_EXPECTED_TRIPLES_PARAMETER_NAME, DuplicateFilter.DEFAULT_EXPECTED_TRIPLES));
+		this.falsePositiveProbability = Math.min(
+				0.5, 
+				Math.max(0.000001, parameters.getDouble(
+						Names.BULK_BLOOM_FALSE_POSITIVE_PROBABILITY_PARAMETER_NAME, 
+						DuplicateFilter.DEFAULT_FALSE_POSITIVE_PROBABILITY)));
+	}
+
+	/**
+	 * Loads the given stream, once the load has been admitted by the scheduler.
+	 *
+	 * @param request the current Solr request.
+	 * @param stream the RDF stream.
+	 * @param lang the RDF language of the stream.
+	 * @param targetGraph the graph where triples will be loaded, null in case of default graph. Ignored for quads.
+	 * @param processor the update processor.
+	 * @throws Exception in case of load failure.
+	 */
+	void load(
+			final SolrQueryRequest request,
+			final InputStream stream,
+			final Lang lang,
+			final Node targetGraph,
+			final UpdateRequestProcessor processor) throws Exception {
+		final IngestScheduler.Lease lease = scheduler.admit(requestedWorkers);
+		long count = 0;
+		try {
+			count = load(request, stream, lang, targetGraph, processor, lease.workers);
+		} finally {
+			lease.release(count);
+		}
+	}
+
+	/**
+	 * Loads the given stream using a given number of workers.
+	 *
+	 * @param request the current Solr request.
+	 * @param stream the RDF stream.
+	 * @param lang the RDF language of the stream.
+	 * @param targetGraph the graph where triples will be loaded, null in case of default graph. Ignored for quads.
+	 * @param processor the update processor.
+	 * @param workers the number of workers.
+	 * @return the number of loaded triples.
+	 * @throws Exception in case of load failure.
+	 */
+	long load(
+			final SolrQueryRequest request,
+			final InputStream stream,
+			final Lang lang,
+			final Node targetGraph,
+			final UpdateRequestProcessor processor,
+			final int workers) throws Exception {
+		final long start = System.currentTimeMillis();
+		final ExecutorService executor = scheduler.executor;
+
+		final BlockingQueue<List<Quad>> tuples = new ArrayBlockingQueue<List<Quad>>(queueCapacity);
+		final BlockingQueue<List<SolrInputDocument>> documents = new ArrayBlockingQueue<List<SolrInputDocument>>(queueCapacity);
+		final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+
+		// End-of-stream markers (compared by identity)
+		final List<Quad> noMoreTuples = new ArrayList<Quad>(0);
+		final List<SolrInputDocument> noMoreDocuments = new ArrayList<SolrInputDocument>(0);
+
+		final Node graph = targetGraph != null ? targetGraph : Quad.defaultGraphNodeGenerated;
+		final IndexSchema schema = request.getSchema();
+		final boolean legacyIds = SolRDFGraph.hasLegacyIds(request.getSearcher());
+
+		final List<Future<?>> stages = new ArrayList<Future<?>>(workers + 1);
+		stages.add(executor.submit(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					RDFDataMgr.parse(new StreamRDFBase() {
+						List<Quad> batch = new ArrayList<Quad>(batchSize);
+
+						@Override
+						public void triple(final Triple triple) {
+							quad(new Quad(graph, triple));
+						}
+
+						@Override
+						public void quad(final Quad quad) {
+							batch.add(quad);
+							if (batch.size() == batchSize) {
+								flush();
+							}
+						}
+
+						@Override
+						public void finish() {
+							if (!batch.isEmpty()) {
+								flush();
+							}
+						}
+
+						void flush() {
+							try {
+								tuples.put(batch);
+								batch = new ArrayList<Quad>(batchSize);
+							} catch (final InterruptedException exception) {
+								Thread.currentThread().interrupt();
+								throw new IllegalStateException(exception);
+							}
+						}
+					}, stream, lang);
+				} catch (final Throwable throwable) {
+					failure.compareAndSet(null, throwable);
+				} finally {
+					try {
+						for (int i = 0; i < workers; i++) {
+							tuples.put(noMoreTuples);
+						}
+					} catch (final InterruptedException exception) {
+						Thread.currentThread().interrupt();
+					}
+				}
+			}
+		}));
+
+		for (int i = 0; i < workers; i++) {
+			stages.add(executor.submit(new Runnable() {
+				@Override
+				public void run() {
+					final TripleDocumentFactory factory = new TripleDocumentFactory(schema, legacyIds);
+					try {
+						List<Quad> batch;
+						while ((batch = tuples.take()) != noMoreTuples) {
+							documents.put(documents(factory, batch));
+						}
+					} catch (final InterruptedException exception) {
+						Thread.currentThread().interrupt();
+						return;
+					} catch (final Throwable throwable) {
+						failure.compareAndSet(null, throwable);
+					}
+
+					try {
+						documents.put(noMoreDocuments);
+					} catch (final InterruptedException exception) {
+						Thread.currentThread().interrupt();
+					}
+				}
+			}));
+		}
+
+		final long count = submit(request, processor, documents, noMoreDocuments, workers, stages, failure);
+		LOGGER.info(MessageCatalog._00122_BULK_LOAD_COMPLETED, count, System.currentTimeMillis() - start, workers);
+		return count;
+	}
+
+	/**
+	 * Loads a local N-Triples or N-Quads file, once the load has been admitted by the scheduler.
+	 * 
+	 * @param request the current Solr request.
+	 * @param file the file.
+	 * @param lang the RDF language of the file (N-Triples or N-Quads).
+	 * @param targetGraph the graph where triples will be loaded, null in case of default graph. Ignored for quads.
+	 * @param processor the update processor.
+	 * @throws Exception in case of load failure.
+	 */
+	void load(
+			final SolrQueryRequest request,
+			final File file,
+			final Lang lang,
+			final Node targetGraph,
+			final UpdateRequestProcessor processor) throws Exception {
+		final IngestScheduler.Lease lease = scheduler.admit(requestedWorkers);
+		long count = 0;
+		final RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r");
+		try {
+			count = load(request, randomAccessFile.getChannel(), lang, targetGraph, processor, lease.workers + 1);
+		} finally {
+			randomAccessFile.close();
+			lease.release(count);
+		}
+	}
+
+	/**
+	 * Loads a line-based file in chunks.
+	 * Each chunk is memory-mapped, parsed and converted in {@link SolrInputDocument}s by a single thread.
+	 *
+	 * @param request the current Solr request.
+	 * @param channel the file channel.
+	 * @param lang the RDF language of the file (N-Triples or N-Quads).
+	 * @param targetGraph the graph where triples will be loaded, null in case of default graph. Ignored for quads.
+	 * @param processor the update processor.
+	 * @param parsers the number of parser threads.
+	 * @return the number of loaded triples.
+	 * @throws Exception in case of load failure.
+	 */
+	long load(
+			final SolrQueryRequest request,
+			final FileChannel channel,
+			final Lang lang,
+			final Node targetGraph,
+			final UpdateRequestProcessor processor,
+			final int parsers) throws Exception {
+		final long start = System.currentTimeMillis();
+
+		final List<long[]> chunks = FileChunks.split(channel, chunkSize);
+		final AtomicInteger nextChunk = new AtomicInteger();
+
+		final BlockingQueue<List<SolrInputDocument>> documents = new ArrayBlockingQueue<List<SolrInputDocument>>(queueCapacity);
+		final List<SolrInputDocument> noMoreDocuments = new ArrayList<SolrInputDocument>(0);
+		final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+
+		// Blank node labels are scoped to the file, not to the chunk
+		final UUID seed = UUID.randomUUID();
+		final Node graph = targetGraph != null ? targetGraph : Quad.defaultGraphNodeGenerated;
+		final IndexSchema schema = request.getSchema();
+		final boolean legacyIds = SolRDFGraph.hasLegacyIds(request.getSearcher());
+
+		final List<Future<?>> stages = new ArrayList<Future<?>>(parsers);
+		for (int i = 0; i < parsers; i++) {
+			stages.add(scheduler.executor.submit(new Runnable() {
+				@Override
+				public void run() {
+					final TripleDocumentFactory factory = new TripleDocumentFactory(schema, legacyIds);
+					try {
+						int index;
+						while ((index = nextChunk.getAndIncrement()) < chunks.size() && failure.get() == null) {
+							final ParserProfile profile = RiotLib.profile(lang, null);
+							profile.setLabelToNode(LabelToNode.createScopeByDocumentHash(seed));
+
+							final StreamRDF sink = new StreamRDFBase() {
+								List<Quad> batch = new ArrayList<Quad>(batchSize);
+
+								@Override
+								public void triple(final Triple triple) {
+									quad(new Quad(graph, triple));
+								}
+
+								@Override
+								public void quad(final Quad quad) {
+									batch.add(quad);
+									if (batch.size() == batchSize) {
+										flush();
+									}
+								}
+
+								@Override
+								public void finish() {
+									if (!batch.isEmpty()) {
+										flush();
+									}
+								}
+
+								void flush() {
+									try {
+										documents.put(documents(factory, batch));
+										batch = new ArrayList<Quad>(batchSize);
+									} catch (final InterruptedException exception) {
+										Thread.currentThread().interrupt();
+										throw new IllegalStateException(exception);
+									}
+								}
+							};
+						
+							final Tokenizer tokenizer = TokenizerFactory.makeTokenizerUTF8(FileChunks.open(channel, chunks.get(index)));
+							final LangRIOT parser = RDFLanguages.sameLang(lang, Lang.NQUADS)
+									? new LangNQuads(tokenizer, profile, sink)
+									: new LangNTriples(tokenizer, profile, sink);
+							parser.parse();
+						}
+					} catch (final Throwable throwable) {
+						if (!Thread.currentThread().isInterrupted()) {
+							failure.compareAndSet(null, throwable);
+						}
+					}
+
+					try {
+						documents.put(noMoreDocuments);
+					} catch (final InterruptedException exception) {
+						Thread.currentThread().interrupt();
+					}
+				}
+			}));
+		}
+
+		final long count = submit(request, processor, documents, noMoreDocuments, parsers, stages, failure);
+		LOGGER.info(MessageCatalog._00126_CHUNKED_LOAD_COMPLETED, count, chunks.size(), System.currentTimeMillis() - start, parsers);
+		return count;
+	}
+
+	/**
+	 * Submits the documents produced by the given stages to the update processor.
+	 * Once all producers are done, or as soon as a stage fails, the stages are stopped.
+	 * In append-only mode, duplicates are skipped and the filter (if persistent) is saved.
+	 *
+	 * @param request the current Solr request.
+	 * @param processor the update processor.
+	 * @param documents the documents queue.
+	 * @param noMoreDocuments the marker that each producer puts in the queue once done.
+	 * @param producers the number of stages that produce documents.
+	 * @param stages all stages of the pipeline.
+	 * @param failure the first failure of the stages, if any.
+	 * @return the number of submitted (i.e. not skipped) documents.
+	 * @throws Exception in case of submission failure.
+	 */
+	long submit(
+			final SolrQueryRequest request,
+			final UpdateRequestProcessor processor,
+			final BlockingQueue<List<SolrInputDocument>> documents,
+			final List<SolrInputDocument> noMoreDocuments,
+			final int producers,
+			final List<Future<?>> stages,
+			final AtomicReference<Throwable> failure) throws Exception {
+		long count = 0;
+		long overwritten = 0;
+		long skipped = 0;
+		final DuplicateFilter duplicates = appendOnly ? duplicateFilter(request) : null;
+		try {
+			final AddUpdateCommand command = new AddUpdateCommand(request);
+			int activeProducers = producers;
+			while (activeProducers > 0) {
+				final List<SolrInputDocument> batch = documents.take();
+
+				// A failing stage always puts something in the queue (at least its marker), so the failure
+				// is seen here as soon as it happens and the remaining stages are stopped (see below).
+				if (failure.get() != null) {
+					break;
+				}
+
+				if (batch == noMoreDocuments) {
+					activeProducers--;
+					continue;
+				}
+
+				for (final SolrInputDocument document : batch) {
+					command.clear();
+					command.solrDoc = document;
+					if (duplicates != null) {
+						switch (duplicates.check((String) document.getFieldValue(Field.ID))) {
+						case SKIP:
+							skipped++;
+							continue;
+						case OVERWRITE:
+							command.overwrite = true;
+							overwritten++;
+							break;
+						default:
+							command.overwrite = false;
+						}
+					}
+					processor.processAdd(command);
+					count++;
+				}
+			}
+		} finally {
+			// No-op if everything went fine, otherwise it stops the stages that are still running.
+			for (final Future<?> stage : stages) {
+				stage.cancel(true);
+			}
+		}
+
+		if (failure.get() != null) {
+			LOGGER.error(MessageCatalog._00113_NWS_FAILURE, failure.get());
+			throw new SolrException(ErrorCode.SERVER_ERROR, failure.get());
+		}
+
+		if (duplicates != null) {
+			duplicates.save();
+			LOGGER.info(
+					MessageCatalog._00137_APPEND_ONLY_LOAD_COMPLETED, 
+					count - overwritten, 
+					overwritten, 
+					skipped, 
+					duplicates.falsePositiveProbability());
+		}
+		return count;
+	}
+
+	/**
+	 * Returns the duplicate filter of the append-only load of a given request.
+	 *
+	 * @param request the current Solr request.
+	 * @return the duplicate filter of the append-only load of the given request.
+	 */
+	DuplicateFilter duplicateFilter(final SolrQueryRequest request) {
+		return DuplicateFilter.of(request, persistentFilter, expectedTriples, falsePositiveProbability);
+	}
+
+	/**
+	 * Builds the {@link SolrInputDocument}s of a given batch of tuples.
+	 *
+	 * @param factory the document factory.
+	 * @param batch the batch of tuples.
+	 * @return the {@link SolrInputDocument}s of the given batch.
+	 */
+	static List<SolrInputDocument> documents(final TripleDocumentFactory factory, final List<Quad> batch) {
+		final List<SolrInputDocument> result = new ArrayList<SolrInputDocument>(batch.size());
+		for (final Quad quad : batch) {
+			result.add(
+					factory.document(
+							TripleDocumentFactory.graphName(quad.isDefaultGraph() ? null : quad.getGraph()),
+							quad.asTriple()));
+		}
+		return result;
+	}
+}
@@ -0,0 +1,436 @@
+package org.gazzax.labs.solrdf.handler.update;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.lucene.index.FilterLeafReader;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.LeafReader;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.SegmentReader;
+import org.apache.lucene.index.Terms;
+import org.apache.lucene.index.TermsEnum;
+import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.StringHelper;
+import org.apache.solr.common.SolrException;
+import org.apache.solr.common.SolrException.ErrorCode;
+import org.apache.solr.core.AbstractSolrEventListener;
+import org.apache.solr.core.CloseHook;
+import org.apache.solr.core.SolrCore;
+import org.apache.solr.request.SolrQueryRequest;
+import org.apache.solr.search.SolrIndexSearcher;
+import org.apache.solr.update.UpdateLog;
+import org.apache.solr.update.VersionInfo;
+import org.gazzax.labs.solrdf.Field;
+import org.gazzax.labs.solrdf.log.Log;
+import org.gazzax.labs.solrdf.log.MessageCatalog;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.hash.BloomFilter;
+import com.google.common.hash.Funnels;
+
+/**
+ * Bloom filter over the identifiers of the documents loaded in append-only mode (i.e. without overwrite).
+ *
+ * An identifier that is not in the filter has never been loaded (through the filter), so its document can be simply
+ * appended, without the identifier lookup Solr does on overwrite.
+ * Only the identifiers that might be in the filter (i.e. true duplicates and false positives) are looked up, through
+ * the update log (which knows both the uncommitted and the indexed documents): found documents are skipped, the others
+ * are appended. Without an update log (or in SolrCloud, where the document could belong to another shard) those
+ * documents are added with overwrite, as usual.
+ *
+ * Both kinds of filter know the indexed documents, so triples already in the index are detected as duplicates.
+ * A request-scoped filter is seeded with the identifiers of the whole index of the request searcher (see 
+ * {@link #sync(IndexReader)}), which costs a scan of the identifiers at each load. A persistent filter is shared by all 
+ * loads of the core and saved in its data directory. It is synchronized with the index each time a new searcher is 
+ * opened and before each load: the identifiers of the segments it doesn't know yet are added, so documents written 
+ * otherwise (e.g. SPARQL updates, loads with overwrite, indexes built offline or replicated) are tracked as well.
+ * New segments (e.g. merged segments) are read while the new searcher is warmed, so a load usually finds nothing to
+ * read in the searcher of its request, and it never forces a new one. As a consequence, with both kinds of filter, 
+ * documents written by other requests and not committed yet are not seen by the filter.
+ *
+ * @author Andrea Gazzarini
+ * @since 1.1
+ */
+class DuplicateFilter {
+	static final Log LOGGER = new Log(LoggerFactory.getLogger(DuplicateFilter.class));
+
+	static final String FILE_NAME = "bulk-append.bloom";
+	static final int DEFAULT_EXPECTED_TRIPLES = 1000000;
+	static final double DEFAULT_FALSE_POSITIVE_PROBABILITY = 0.01;
+	static final int SYNC_BATCH_SIZE = 1024;
+
+	private static final Map<SolrCore, DuplicateFilter> PERSISTENT_FILTERS = new IdentityHashMap<SolrCore, DuplicateFilter>();
+
+	/**
+	 * What to do with a document.
+	 *
+	 * @author Andrea Gazzarini
+	 * @since 1.1
+	 */
+	enum Verdict {
+		APPEND, SKIP, OVERWRITE
+	}
+
+	private final BloomFilter<CharSequence> ids;
+	private final VersionInfo versions;
+	private final File file;
+	private final Object saveLock = new Object();
+	private final Object syncLock = new Object();
+
+	// The (unique) identifiers of the segments whose documents are in the filter
+	private Set<String> segments;
+
+	/**
+	 * Builds a new filter.
+	 *
+	 * @param ids the Bloom filter.
+	 * @param versions the versions of the core, used for looking up the positive identifiers. Null if not available.
+	 * @param file the file where the filter is saved, null in case of request-scoped filter.
+	 */
+	DuplicateFilter(final BloomFilter<CharSequence> ids, final VersionInfo versions, final File file) {
+		this(ids, versions, file, new HashSet<String>());
+	}
+
+	/**
+	 * Builds a new filter, which already holds the identifiers of the given segments.
+	 *
+	 * @param ids the Bloom filter.
+	 * @param versions the versions of the core, used for looking up the positive identifiers. Null if not available.
+	 * @param file the file where the filter is saved, null in case of request-scoped filter.
+	 * @param segments the identifiers of the segments whose documents are in the filter.
+	 */
+	DuplicateFilter(final BloomFilter<CharSequence> ids, final VersionInfo versions, final File file, final Set<String> segments) {
+		this.ids = ids;
+		this.versions = versions;
+		this.file = file;
+		this.segments = segments;
+	}
+
+	/**
+	 * Returns the filter of the append-only load of a given request.
+	 *
+	 * @param request the current Solr request.
+	 * @param persistent true for the persistent filter of the core, false for a new request-scoped filter.
+	 * @param expectedTriples the number of expected triples, used for sizing a new filter.
+	 * @param falsePositiveProbability the false positive probability of a new filter.
+	 * @return the filter of the append-only load of the given request.
+	 */
+	static DuplicateFilter of(
+			final SolrQueryRequest request,
+			final boolean persistent,
+			final int expectedTriples,
+			final double falsePositiveProbability) {
+		final SolrCore core = request.getCore();
+		if (!persistent) {
+			try {
+				return requestScoped(request.getSearcher().getIndexReader(), versions(core), expectedTriples, falsePositiveProbability);
+			} catch (final IOException exception) {
+				LOGGER.error(MessageCatalog._00113_NWS_FAILURE, exception);
+				throw new SolrException(ErrorCode.SERVER_ERROR, exception);
+			}
+		}
+
+		DuplicateFilter filter;
+		synchronized (PERSISTENT_FILTERS) {
+			filter = PERSISTENT_FILTERS.get(core);
+			if (filter == null) {
+				final File file = new File(core.getDataDir(), FILE_NAME);
+				filter = file.exists() ? load(file, versions(core)) : null;
+				if (filter == null) {
+					// The filter is sized for (at least) twice the indexed documents; these are added by the first sync
+					filter = new DuplicateFilter(
+							BloomFilter.create(
+									Funnels.stringFunnel(),
+									(int) Math.min(Integer.MAX_VALUE, Math.max(expectedTriples, 2L * request.getSearcher().maxDoc())),
+									falsePositiveProbability),
+							versions(core),
+							file);
+				}
+				PERSISTENT_FILTERS.put(core, filter);
+
+				final DuplicateFilter persistentFilter = filter;
+				core.registerNewSearcherListener(new AbstractSolrEventListener(core) {
+					@Override
+					public void newSearcher(final SolrIndexSearcher newSearcher, final SolrIndexSearcher currentSearcher) {
+						try {
+							persistentFilter.sync(newSearcher.getIndexReader());
+						} catch (final IOException exception) {
+							LOGGER.error(MessageCatalog._00113_NWS_FAILURE, exception);
+						}
+					}
+				});
+
+				core.addCloseHook(new CloseHook() {
+					@Override
+					public void preClose(final SolrCore core) {
+						synchronized (PERSISTENT_FILTERS) {
+							PERSISTENT_FILTERS.remove(core);
+						}
+					}
+
+					@Override
+					public void postClose(final SolrCore core) {
+						// Nothing to be done here
+					}
+				});
+			}
+		}
+
+		try {
+			filter.sync(request.getSearcher().getIndexReader());
+		} catch (final IOException exception) {
+			LOGGER.error(MessageCatalog._00113_NWS_FAILURE, exception);
+			throw new SolrException(ErrorCode.SERVER_ERROR, exception);
+		}
+		return filter;
+	}
+
+	/**
+	 * Builds a new request-scoped filter, seeded with the identifiers of a given index.
+	 * The filter is sized for the indexed documents plus the expected triples.
+	 *
+	 * @param reader the index reader.
+	 * @param versions the versions of the core, used for looking up the positive identifiers. Null if not available.
+	 * @param expectedTriples the number of expected triples.
+	 * @param falsePositiveProbability the false positive probability of the filter.
+	 * @return a new request-scoped filter, which already holds the identifiers of the given index.
+	 * @throws IOException in case of I/O failure.
+	 */
+	static DuplicateFilter requestScoped(
+			final IndexReader reader,
+			final VersionInfo versions,
+			final int expectedTriples,
+			final double falsePositiveProbability) throws IOException {
+		final DuplicateFilter filter = new DuplicateFilter(
+				BloomFilter.create(
+						Funnels.stringFunnel(),
+						(int) Math.min(Integer.MAX_VALUE, (long) expectedTriples + reader.maxDoc()),
+						falsePositiveProbability),
+				versions,
+				null);
+		filter.sync(reader);
+		return filter;
+	}
+
+	/**
+	 * Adds to this filter the identifiers of the segments of a given index it doesn't know yet.
+	 *
+	 * Segments are compared by their unique identifier, so a new segment (flushed, merged, replicated or belonging 
+	 * to a replaced index) is always read, even if it has the same name of a known segment.
+	 * Identifiers are added in small batches, so a concurrent load is never blocked for long, while concurrent
+	 * synchronizations are serialized, so a segment is read just once.
+	 *
+	 * @param reader the index reader.
+	 * @throws IOException in case of I/O failure.
+	 */
+	void sync(final IndexReader reader) throws IOException {
+		synchronized (syncLock) {
+			syncSegments(reader);
+		}
+	}
+
+	/**
+	 * Adds to this filter the identifiers of the segments of a given index it doesn't know yet.
+	 *
+	 * @param reader the index reader.
+	 * @throws IOException in case of I/O failure.
+	 * @see #sync(IndexReader)
+	 */
+	private void syncSegments(final IndexReader reader) throws IOException {
+		final Set<String> current = new HashSet<String>();
+		final List<LeafReader> unknown = new ArrayList<LeafReader>();
+		synchronized (this) {
+			for (final LeafReaderContext leaf : reader.leaves()) {
+				final String segment = segment(leaf.reader());
+				if (segment == null || !segments.contains(segment)) {
+					unknown.add(leaf.reader());
+				}
+				if (segment != null) {
+					current.add(segment);
+				}
+			}
+		}
+
+		if (unknown.isEmpty()) {
+			return;
+		}
+
+		long documents = 0;
+		final List<String> batch = new ArrayList<String>(SYNC_BATCH_SIZE);
+		for (final LeafReader segment : unknown) {
+			// Identifiers of deleted documents are still there: they are just false positives.
+			final Terms terms = segment.terms(Field.ID);
+			if (terms == null) {
+				continue;
+			}
+
+			final TermsEnum iterator = terms.iterator();
+			BytesRef term;
+			while ((term = iterator.next()) != null) {
+				batch.add(term.utf8ToString());
+				if (batch.size() == SYNC_BATCH_SIZE) {
+					documents += putAll(batch);
+				}
+			}
+		}
+		documents += putAll(batch);
+
+		synchronized (this) {
+			segments = current;
+		}
+		LOGGER.info(MessageCatalog._00138_BLOOM_FILTER_SYNCHRONIZED, file != null ? file : "(request)", documents, unknown.size());
+	}
+
+	/**
+	 * Adds a batch of identifiers to this filter.
+	 *
+	 * @param batch the identifiers, cleared once added.
+	 * @return how many identifiers have been added.
+	 */
+	private synchronized int putAll(final List<String> batch) {
+		final int size = batch.size();
+		for (final String id : batch) {
+			ids.put(id);
+		}
+		batch.clear();
+		return size;
+	}
+
+	/**
+	 * Returns the unique identifier of the segment of a given leaf reader.
+	 *
+	 * @param reader the leaf reader (e.g. a segment reader wrapped by Solr).
+	 * @return the unique identifier of the segment of the given leaf reader, null if it is not a segment (so it is always read).
+	 */
+	static String segment(final LeafReader reader) {
+		final LeafReader unwrapped = FilterLeafReader.unwrap(reader);
+		return unwrapped instanceof SegmentReader 
+				? StringHelper.idToString(((SegmentReader) unwrapped).getSegmentInfo().info.getId()) 
+				: null;
+	}
+
+	/**
+	 * Checks a given document identifier, adding it to the filter.
+	 *
+	 * @param id the document identifier.
+	 * @return what to do with the document.
+	 */
+	synchronized Verdict check(final String id) {
+		if (ids.put(id)) {
+			return Verdict.APPEND;
+		}
+
+		if (versions == null) {
+			return Verdict.OVERWRITE;
+		}
+
+		// A negative version is a deletion
+		final Long version = versions.lookupVersion(new BytesRef(id));
+		return version != null && version > 0 ? Verdict.SKIP : Verdict.APPEND;
+	}
+
+	/**
+	 * Returns the probability that a new identifier is (wrongly) found in this filter.
+	 * It grows with the number of identifiers, beyond the configured one if the filter is saturated.
+	 *
+	 * @return the probability that a new identifier is (wrongly) found in this filter.
+	 */
+	synchronized double falsePositiveProbability() {
+		return ids.expectedFpp();
+	}
+
+	/**
+	 * Saves this filter, if persistent.
+	 * The filter is copied (which is just a copy of its bits) and the copy is written without holding the lock of 
+	 * this filter, so concurrent loads go on meanwhile.
+	 * The previous copy is atomically replaced, so a crash never leaves a partially written filter.
+	 *
+	 * @throws IOException in case of I/O failure.
+	 */
+	void save() throws IOException {
+		if (file == null) {
+			return;
+		}
+
+		final BloomFilter<CharSequence> snapshot;
+		final Set<String> snapshotSegments;
+		synchronized (this) {
+			snapshot = ids.copy();
+			snapshotSegments = segments;
+		}
+
+		synchronized (saveLock) {
+			final File temporary = new File(file.getParentFile(), file.getName() + ".tmp");
+			final ObjectOutputStream out = new ObjectOutputStream(new BufferedOutputStream(new FileOutputStream(temporary)));
+			try {
+				out.writeObject(snapshot);
+				out.writeObject(new HashSet<String>(snapshotSegments));
+			} finally {
+				out.close();
+			}
+			Files.move(temporary.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		}
+	}
+
+	/**
+	 * Loads a persistent filter.
+	 *
+	 * @param file the file of the filter.
+	 * @param versions the versions of the core, used for looking up the positive identifiers. Null if not available.
+	 * @return the filter, null if it cannot be loaded.
+	 */
+	@SuppressWarnings("unchecked")
+	static DuplicateFilter load(final File file, final VersionInfo versions) {
+		try {
+			final ObjectInputStream in = new ObjectInputStream(new BufferedInputStream(new FileInputStream(file)));
+			try {
+				final BloomFilter<CharSequence> ids = (BloomFilter<CharSequence>) in.readObject();
+				return new DuplicateFilter(ids, versions, file, (Set<String>) in.readObject());
+			} finally {
+				in.close();
+			}
+		} catch (final Exception exception) {
+			LOGGER.error(MessageCatalog._00139_BLOOM_FILTER_NOT_LOADED, exception, file);
+			return null;
+		}
+	}
+
+	/**
+	 * Returns the identifiers of the segments whose documents are in this filter.
+	 *
+	 * @return the identifiers of the segments whose documents are in this filter.
+	 */
+	synchronized Set<String> segments() {
+		return segments;
+	}
+
+	/**
+	 * Returns the versions of a given core, if they can be used for looking up identifiers.
+	 *
+	 * @param core the Solr core.
+	 * @return the versions of the given core, null if there's no update log or the core is part of a SolrCloud collection.
+	 */
+	static VersionInfo versions(final SolrCore core) {
+		if (core.getCoreDescriptor().getCloudDescriptor() != null) {
+			return null;
+		}
+
+		final UpdateLog updateLog = core.getUpdateHandler().getUpdateLog();
+		return updateLog != null ? updateLog.getVersionInfo() : null;
+	}
+}
@@ -0,0 +1,183 @@
+package org.gazzax.labs.solrdf.handler.update;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.gazzax.labs.solrdf.log.MessageCatalog;
+import org.gazzax.labs.solrdf.log.MessageFactory;
+
+/**
+ * Splits a line-based (i.e. N-Triples or N-Quads) file in chunks that can be parsed independently.
+ * Chunks always end at line boundaries and are read through memory mapping.
+ * Besides the bulk loader, it is used by the offline index builder (solrdf-indexer).
+ *
+ * @author Andrea Gazzarini
+ * @since 1.1
+ */
+public final class FileChunks {
+	static final int LOOKUP_BUFFER_SIZE = 8192;
+	
+	// A chunk is memory mapped, so it cannot be bigger than Integer.MAX_VALUE bytes
+	static final long MAX_CHUNK_SIZE = Integer.MAX_VALUE;
+
+	/**
+	 * An {@link InputStream} that reads from a {@link ByteBuffer}.
+	 *
+	 * @author Andrea Gazzarini
+	 * @since 1.1
+	 */
+	static class ByteBufferInputStream extends InputStream {
+		final ByteBuffer buffer;
+
+		/**
+		 * Builds a new stream that reads the remaining bytes of the given buffer.
+		 *
+		 * @param buffer the buffer.
+		 */
+		ByteBufferInputStream(final ByteBuffer buffer) {
+			this.buffer = buffer;
+		}
+
+		@Override
+		public int read() {
+			return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+		}
+
+		@Override
+		public int read(final byte[] bytes, final int offset, final int length) {
+			if (!buffer.hasRemaining()) {
+				return -1;
+			}
+
+			final int howMany = Math.min(length, buffer.remaining());
+			buffer.get(bytes, offset, howMany);
+			return howMany;
+		}
+
+		@Override
+		public int available() {
+			return buffer.remaining();
+		}
+	}
+
+	/**
+	 * Splits the file associated with the given channel in chunks of (about) the given size.
+	 * Each chunk is extended up to the end of its last line.
+	 *
+	 * @param channel the file channel.
+	 * @param chunkSize the (minimum) chunk size, in bytes.
+	 * @return the chunks, as [start, end) offsets.
+	 * @throws IOException in case of I/O failure, or if a line doesn't fit in a chunk.
+	 */
+	public static List<long[]> split(final FileChannel channel, final long chunkSize) throws IOException {
+		return split(channel, chunkSize, MAX_CHUNK_SIZE);
+	}
+
+	/**
+	 * Splits the file associated with the given channel in chunks of (about) the given size, up to a given maximum size.
+	 * A chunk that would exceed the maximum size once extended up to the end of its last line is instead cut at the 
+	 * last line that fits.
+	 *
+	 * @param channel the file channel.
+	 * @param chunkSize the (minimum) chunk size, in bytes.
+	 * @param maxChunkSize the maximum chunk size, in bytes.
+	 * @return the chunks, as [start, end) offsets.
+	 * @throws IOException in case of I/O failure, or if a line is longer than the maximum chunk size.
+	 */
+	static List<long[]> split(final FileChannel channel, final long chunkSize, final long maxChunkSize) throws IOException {
+		final long size = channel.size();
+		final long nominalSize = Math.max(1, Math.min(chunkSize, maxChunkSize));
+		final List<long[]> chunks = new ArrayList<long[]>();
+		final ByteBuffer lookup = ByteBuffer.allocate(LOOKUP_BUFFER_SIZE);
+
+		long start = 0;
+		while (start < size) {
+			long end = endOfLine(channel, Math.min(size, start + nominalSize), lookup);
+			if (end - start > maxChunkSize) {
+				end = lastEndOfLine(channel, start, start + maxChunkSize, lookup);
+				if (end == -1) {
+					throw new IOException(MessageFactory.createMessage(MessageCatalog._00144_LINE_TOO_LONG, start, maxChunkSize));
+				}
+			}
+			chunks.add(new long[] { start, end });
+			start = end;
+		}
+		return chunks;
+	}
+
+	/**
+	 * Opens a given chunk.
+	 *
+	 * @param channel the file channel.
+	 * @param chunk the chunk, as [start, end) offsets.
+	 * @return a stream that reads the given chunk.
+	 * @throws IOException in case of I/O failure.
+	 */
+	public static InputStream open(final FileChannel channel, final long[] chunk) throws IOException {
+		return new ByteBufferInputStream(channel.map(MapMode.READ_ONLY, chunk[0], chunk[1] - chunk[0]));
+	}
+
+	/**
+	 * Returns the offset that follows the first line feed found at or after a given position.
+	 *
+	 * @param channel the file channel.
+	 * @param position the start position.
+	 * @param lookup the buffer used for reading.
+	 * @return the offset that follows the first line feed found at or after the given position, or the file size.
+	 * @throws IOException in case of I/O failure.
+	 */
+	static long endOfLine(final FileChannel channel, final long position, final ByteBuffer lookup) throws IOException {
+		final long size = channel.size();
+		long offset = position;
+		while (offset < size) {
+			lookup.clear();
+			final int read = channel.read(lookup, offset);
+			if (read <= 0) {
+				break;
+			}
+
+			for (int i = 0; i < read; i++) {
+				if (lookup.get(i) == '\n') {
+					return offset + i + 1;
+				}
+			}
+			offset += read;
+		}
+		return size;
+	}
+
+	/**
+	 * Returns the offset that follows the last line feed found in a given range.
+	 *
+	 * @param channel the file channel.
+	 * @param start the start position (inclusive).
+	 * @param limit the end position (exclusive).
+	 * @param lookup the buffer used for reading.
+	 * @return the offset that follows the last line feed found in the given range, -1 if there's no line feed.
+	 * @throws IOException in case of I/O failure.
+	 */
+	static long lastEndOfLine(final FileChannel channel, final long start, final long limit, final ByteBuffer lookup) throws IOException {
+		long offset = limit;
+		while (offset > start) {
+			final long blockStart = Math.max(start, offset - lookup.capacity());
+			lookup.clear();
+			lookup.limit((int) (offset - blockStart));
+			while (lookup.hasRemaining() && channel.read(lookup, blockStart + lookup.position()) > 0) {
+				// Nothing to be done here
+			}
+
+			for (int i = lookup.position() - 1; i >= 0; i--) {
+				if (lookup.get(i) == '\n') {
+					return blockStart + i + 1;
+				}
+			}
+			offset = blockStart;
+		}
+		return -1;
+	}
+}
@@ -0,0 +1,232 @@
+package org.gazzax.labs.solrdf.handler.update;
+
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.solr.common.SolrException;
+import org.apache.solr.common.SolrException.ErrorCode;
+import org.apache.solr.common.params.SolrParams;
+import org.apache.solr.common.util.NamedList;
+import org.apache.solr.common.util.SimpleOrderedMap;
+import org.apache.solr.core.CloseHook;
+import org.apache.solr.core.SolrCore;
+import org.gazzax.labs.solrdf.Names;
+import org.gazzax.labs.solrdf.log.Log;
+import org.gazzax.labs.solrdf.log.MessageCatalog;
+import org.gazzax.labs.solrdf.log.MessageFactory;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Core-level scheduler shared by all bulk loads (i.e. /update/bulk and Graph Store Protocol POSTs) of a given core.
+ *
+ * The scheduler owns a bounded thread pool. Each load must be admitted before running: it reserves a slot for its
+ * parser and for each of its workers, waiting (in FIFO order) if not enough slots are available.
+ * Loads that cannot be admitted within a given timeout, or that find too many loads already waiting, are rejected.
+ * Since a load never uses more threads than the slots it reserved, the stages of concurrent loads cannot starve each other.
+ *
+ * @author Andrea Gazzarini
+ * @since 1.1
+ */
+class IngestScheduler {
+	static final Log LOGGER = new Log(LoggerFactory.getLogger(IngestScheduler.class));
+
+	static final int DEFAULT_THREADS = Math.max(2, Runtime.getRuntime().availableProcessors());
+	static final int DEFAULT_MAX_QUEUED_LOADS = 64;
+	static final long DEFAULT_ADMISSION_TIMEOUT = 60000;
+
+	private static final Map<SolrCore, IngestScheduler> SCHEDULERS = new IdentityHashMap<SolrCore, IngestScheduler>();
+
+	/**
+	 * The slots reserved by an admitted load.
+	 *
+	 * @author Andrea Gazzarini
+	 * @since 1.1
+	 */
+	class Lease {
+		final int workers;
+		final long start = System.currentTimeMillis();
+
+		/**
+		 * Builds a new lease for the given number of workers (plus the parser).
+		 *
+		 * @param workers the number of workers.
+		 */
+		Lease(final int workers) {
+			this.workers = workers;
+		}
+
+		/**
+		 * Releases the slots of this lease.
+		 *
+		 * @param triples the number of triples that have been loaded.
+		 */
+		void release(final long triples) {
+			slots.release(workers + 1);
+			runningLoads.decrementAndGet();
+			completedLoads.incrementAndGet();
+			loadedTriples.addAndGet(triples);
+			busyTime.addAndGet(System.currentTimeMillis() - start);
+		}
+	}
+
+	final int threads;
+	final int maxQueuedLoads;
+	final long admissionTimeout;
+
+	final ExecutorService executor;
+	final Semaphore slots;
+
+	final AtomicInteger runningLoads = new AtomicInteger();
+	final AtomicLong completedLoads = new AtomicLong();
+	final AtomicLong rejectedLoads = new AtomicLong();
+	final AtomicLong loadedTriples = new AtomicLong();
+	final AtomicLong busyTime = new AtomicLong();
+
+	/**
+	 * Builds a new scheduler with the given configuration.
+	 *
+	 * @param name the scheduler name, used for naming its threads.
+	 * @param threads the size of the thread pool (at least 2, a parser and a worker).
+	 * @param maxQueuedLoads the maximum number of loads waiting for admission.
+	 * @param admissionTimeout the maximum time (in milliseconds) a load waits for admission.
+	 */
+	IngestScheduler(final String name, final int threads, final int maxQueuedLoads, final long admissionTimeout) {
+		this.threads = Math.max(2, threads);
+		this.maxQueuedLoads = Math.max(0, maxQueuedLoads);
+		this.admissionTimeout = admissionTimeout;
+		this.slots = new Semaphore(this.threads, true);
+
+		final AtomicInteger counter = new AtomicInteger();
+		this.executor = new ThreadPoolExecutor(
+				this.threads,
+				this.threads,
+				0L,
+				TimeUnit.MILLISECONDS,
+				new LinkedBlockingQueue<Runnable>(),
+				new ThreadFactory() {
+					@Override
+					public Thread newThread(final Runnable task) {
+						final Thread thread = new Thread(task, "solrdf-ingest-" + name + "-" + counter.incrementAndGet());
+						thread.setDaemon(true);
+						return thread;
+					}
+				});
+	}
+
+	/**
+	 * Returns the scheduler of a given core, creating it if it doesn't exist.
+	 * The scheduler is shut down when the core is closed.
+	 *
+	 * @param core the Solr core.
+	 * @param configuration the scheduler configuration.
+	 * @return the scheduler of the given core.
+	 */
+	static IngestScheduler of(final SolrCore core, final SolrParams configuration) {
+		synchronized (SCHEDULERS) {
+			IngestScheduler scheduler = SCHEDULERS.get(core);
+			if (scheduler == null) {
+				scheduler = new IngestScheduler(
+						core.getName(),
+						configuration.getInt(Names.INGEST_THREADS_PARAMETER_NAME, DEFAULT_THREADS),
+						configuration.getInt(Names.INGEST_MAX_QUEUED_LOADS_PARAMETER_NAME, DEFAULT_MAX_QUEUED_LOADS),
+						configuration.getLong(Names.INGEST_ADMISSION_TIMEOUT_PARAMETER_NAME, DEFAULT_ADMISSION_TIMEOUT));
+				SCHEDULERS.put(core, scheduler);
+
+				core.addCloseHook(new CloseHook() {
+					@Override
+					public void preClose(final SolrCore core) {
+						synchronized (SCHEDULERS) {
+							final IngestScheduler scheduler = SCHEDULERS.remove(core);
+							if (scheduler != null) {
+								scheduler.shutdown();
+							}
+						}
+					}
+
+					@Override
+					public void postClose(final SolrCore core) {
+						// Nothing to be done here
+					}
+				});
+			}
+			return scheduler;
+		}
+	}
+
+	/**
+	 * Admits a new load.
+	 *
+	 * @param requestedWorkers the number of workers requested by the load.
+	 * @return the lease of the admitted load, which grants (at most) the requested workers.
+	 * @throws SolrException (503) in case the load cannot be admitted.
+	 */
+	Lease admit(final int requestedWorkers) {
+		final int workers = Math.max(1, Math.min(requestedWorkers, threads - 1));
+		try {
+			// A zero timeout doesn't barge in front of the waiting loads (while the untimed tryAcquire does)
+			if (!slots.tryAcquire(workers + 1, 0, TimeUnit.MILLISECONDS)) {
+				if (slots.getQueueLength() >= maxQueuedLoads) {
+					reject(MessageFactory.createMessage(MessageCatalog._00124_INGEST_QUEUE_FULL, slots.getQueueLength()));
+				}
+				
+				if (!slots.tryAcquire(workers + 1, admissionTimeout, TimeUnit.MILLISECONDS)) {
+					reject(MessageFactory.createMessage(MessageCatalog._00125_INGEST_ADMISSION_TIMEOUT, admissionTimeout));
+				}
+			}
+		} catch (final InterruptedException exception) {
+			Thread.currentThread().interrupt();
+			reject(MessageFactory.createMessage(MessageCatalog._00125_INGEST_ADMISSION_TIMEOUT, admissionTimeout));
+		}
+
+		runningLoads.incrementAndGet();
+		return new Lease(workers);
+	}
+
+	/**
+	 * Rejects a load.
+	 *
+	 * @param message the rejection message.
+	 * @throws SolrException (503) always.
+	 */
+	void reject(final String message) {
+		rejectedLoads.incrementAndGet();
+		LOGGER.error(message);
+		throw new SolrException(ErrorCode.SERVICE_UNAVAILABLE, message);
+	}
+
+	/**
+	 * Returns the status of this scheduler.
+	 *
+	 * @return the status of this scheduler.
+	 */
+	NamedList<Object> status() {
+		final NamedList<Object> status = new SimpleOrderedMap<Object>();
+		status.add("ingestThreads", threads);
+		status.add("ingestFreeSlots", slots.availablePermits());
+		status.add("ingestQueuedLoads", slots.getQueueLength());
+		status.add("ingestRunningLoads", runningLoads.get());
+		status.add("ingestCompletedLoads", completedLoads.get());
+		status.add("ingestRejectedLoads", rejectedLoads.get());
+		status.add("ingestLoadedTriples", loadedTriples.get());
+
+		final long elapsed = busyTime.get();
+		status.add("ingestTriplesPerSecond", elapsed > 0 ? loadedTriples.get() * 1000 / elapsed : 0);
+		return status;
+	}
+
+	/**
+	 * Shuts down this scheduler.
+	 */
+	void shutdown() {
+		executor.shutdownNow();
+		LOGGER.info(MessageCatalog._00123_INGEST_SCHEDULER_SHUTDOWN, completedLoads.get(), loadedTriples.get());
+	}
+}
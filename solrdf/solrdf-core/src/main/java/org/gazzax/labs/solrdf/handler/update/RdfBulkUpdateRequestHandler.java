@@ -1,42 +1,35 @@
 package org.gazzax.labs.solrdf.handler.update;
 
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.Reader;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Map.Entry;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 
 import org.apache.jena.riot.Lang;
-import org.apache.jena.riot.RDFDataMgr;
 import org.apache.jena.riot.RDFLanguages;
 import org.apache.jena.riot.WebContent;
-import org.apache.jena.riot.lang.PipedQuadsStream;
-import org.apache.jena.riot.lang.PipedRDFIterator;
-import org.apache.jena.riot.lang.PipedTriplesStream;
-import org.apache.jena.riot.system.StreamRDF;
 import org.apache.solr.common.SolrException;
 import org.apache.solr.common.SolrException.ErrorCode;
+import org.apache.solr.common.params.SolrParams;
 import org.apache.solr.common.params.UpdateParams;
 import org.apache.solr.common.util.ContentStream;
 import org.apache.solr.common.util.NamedList;
+import org.apache.solr.core.SolrCore;
+import org.apache.solr.handler.RequestHandlerUtils;
 import org.apache.solr.handler.UpdateRequestHandler;
 import org.apache.solr.handler.loader.ContentStreamLoader;
 import org.apache.solr.request.SolrQueryRequest;
 import org.apache.solr.response.SolrQueryResponse;
 import org.apache.solr.update.processor.UpdateRequestProcessor;
+import org.apache.solr.util.plugin.SolrCoreAware;
 import org.gazzax.labs.solrdf.Names;
-import org.gazzax.labs.solrdf.graph.standalone.LocalDatasetGraph;
 import org.gazzax.labs.solrdf.log.MessageCatalog;
 import org.gazzax.labs.solrdf.log.MessageFactory;
 
-import com.hp.hpl.jena.graph.Graph;
 import com.hp.hpl.jena.graph.NodeFactory;
-import com.hp.hpl.jena.graph.Triple;
-import com.hp.hpl.jena.sparql.core.DatasetGraph;
-import com.hp.hpl.jena.sparql.core.Quad;
 
 /**
  * A subclass of {@link UpdateRequestHandler} for handling RDF bulk loadings.
@@ -44,7 +37,9 @@ import com.hp.hpl.jena.sparql.core.Quad;
  * @author Andrea Gazzarini
  * @since 1.0
  */
-public class RdfBulkUpdateRequestHandler extends UpdateRequestHandler {
+public class RdfBulkUpdateRequestHandler extends UpdateRequestHandler implements SolrCoreAware {
+	private IngestScheduler scheduler;
+	
 	/**
 	 * Loads an RDF {@link ContentStream} into Solr.
 	 * 
@@ -52,8 +47,6 @@ public class RdfBulkUpdateRequestHandler extends UpdateRequestHandler {
 	 * @since 1.0
 	 */
 	private class RdfDataLoader extends ContentStreamLoader {
-		final ExecutorService executor = Executors.newSingleThreadExecutor();
-		
 		final ContentStreamLoader quadsLoader = new ContentStreamLoader() {
 			@Override
 			public void load( 
@@ -61,28 +54,12 @@ public class RdfBulkUpdateRequestHandler extends UpdateRequestHandler {
 					final SolrQueryResponse response,
 					final ContentStream stream, 
 					final UpdateRequestProcessor processor) throws Exception {
-				
-				final PipedRDFIterator<Quad> iterator = new PipedRDFIterator<Quad>();
-				final StreamRDF inputStream = new PipedQuadsStream(iterator);
-				
-				executor.submit(new Runnable() {
-					@Override
-					public void run() {
-						try {
-							RDFDataMgr.parse(
-									inputStream, 
-									stream.getStream(), 
-									RDFLanguages.contentTypeToLang(stream.getContentType()));
-						} catch (final IOException exception) {
-							throw new SolrException(ErrorCode.SERVER_ERROR, exception);
-						}					
-					}
-				});
-				
-				final DatasetGraph dataset = new LocalDatasetGraph(request, response);
-				while (iterator.hasNext()) {
-					dataset.add(iterator.next());
-				}									
+				new BulkLoadPipeline(scheduler, request.getParams()).load(
+						request, 
+						stream.getStream(), 
+						RDFLanguages.contentTypeToLang(stream.getContentType()), 
+						null, 
+						processor);
 			}
 			
 			@Override
@@ -99,35 +76,17 @@ public class RdfBulkUpdateRequestHandler extends UpdateRequestHandler {
 					final ContentStream stream, 
 					final UpdateRequestProcessor processor) throws Exception {
 				
-				final PipedRDFIterator<Triple> iterator = new PipedRDFIterator<Triple>();
-				final StreamRDF inputStream = new PipedTriplesStream(iterator);
-				
-				executor.submit(new Runnable() {
-					@Override
-					public void run() {
-						try {
-							RDFDataMgr.parse(
-									inputStream, 
-									stream.getStream(), 
-									RDFLanguages.contentTypeToLang(stream.getContentType()));
-						} catch (final IOException exception) {
-							throw new SolrException(ErrorCode.SERVER_ERROR, exception);
-						}					
-					}
-				});
-		
 				// Graph Store Protocol indicates the target graph URI separately.
 				// So the incoming Content-type here is one that maps "Triples Loader" but
 				// the indexed tuple could be a Quad.
 				final String graphUri = request.getParams().get(Names.GRAPH_URI_ATTRIBUTE_NAME);
 				
-				final DatasetGraph dataset = new LocalDatasetGraph(request, response, null, null);
-				final Graph defaultGraph = graphUri == null 
-						? dataset.getDefaultGraph() 
-						: dataset.getGraph(NodeFactory.createURI(graphUri));
-				while (iterator.hasNext()) {
-					defaultGraph.add(iterator.next());
-				}		
+				new BulkLoadPipeline(scheduler, request.getParams()).load(
+						request, 
+						stream.getStream(), 
+						RDFLanguages.contentTypeToLang(stream.getContentType()), 
+						graphUri != null ? NodeFactory.createURI(graphUri) : null, 
+						processor);
 			}
 			
 			@Override
@@ -217,6 +176,9 @@ public class RdfBulkUpdateRequestHandler extends UpdateRequestHandler {
 			registry.put(language.getContentType().toHeaderString(), loader);
 		}
 		registry.put(WebContent.contentTypeSPARQLUpdate, new Sparql11UpdateRdfDataLoader());
+		
+		// Binary (length-prefixed) triples and quads, as sent by the SolRDF client
+		registry.put(WebContent.contentTypeRDFThrift, loader);
 
 		if (log.isDebugEnabled()) {
 			prettyPrint(registry);
@@ -225,6 +187,68 @@ public class RdfBulkUpdateRequestHandler extends UpdateRequestHandler {
 		return registry;
 	}
 	
+	/**
+	 * Loads the local file indicated by the {@link Names#BULK_FILE_PARAMETER_NAME} parameter, if present.
+	 * Otherwise the incoming content streams are loaded as usual.
+	 */
+	@Override
+	public void handleRequestBody(final SolrQueryRequest request, final SolrQueryResponse response) throws Exception {
+		final SolrParams parameters = request.getParams();
+		final String path = parameters.get(Names.BULK_FILE_PARAMETER_NAME);
+		if (path == null) {
+			super.handleRequestBody(request, response);
+			return;
+		}
+		
+		if (!request.getCore().getSolrConfig().isEnableRemoteStreams()) {
+			log.error(MessageCatalog._00128_REMOTE_STREAMING_DISABLED);							
+			throw new SolrException(ErrorCode.BAD_REQUEST, MessageCatalog._00128_REMOTE_STREAMING_DISABLED);
+		}
+
+		// Memory mapped files are parsed in chunks, so only line-based (and uncompressed) formats are supported		
+		final String contentType = parameters.get(UpdateParams.ASSUME_CONTENT_TYPE);
+		final Lang lang = contentType != null 
+				? RDFLanguages.contentTypeToLang(contentType) 
+				: RDFLanguages.filenameToLang(path);
+		if (path.endsWith(".gz") 
+				|| !(RDFLanguages.sameLang(lang, Lang.NTRIPLES) || RDFLanguages.sameLang(lang, Lang.NQUADS))) {
+			final String message = MessageFactory.createMessage(MessageCatalog._00127_UNSUPPORTED_CHUNKED_LOAD, path);
+			log.error(message);							
+			throw new SolrException(ErrorCode.BAD_REQUEST, message);
+		}
+		
+		final String graphUri = parameters.get(Names.GRAPH_URI_ATTRIBUTE_NAME);
+		final UpdateRequestProcessor processor = request.getCore()
+				.getUpdateProcessingChain(parameters.get(UpdateParams.UPDATE_CHAIN))
+				.createProcessor(request, response);
+		try {
+			new BulkLoadPipeline(scheduler, parameters).load(
+					request, 
+					new File(path), 
+					lang, 
+					graphUri != null ? NodeFactory.createURI(graphUri) : null, 
+					processor);
+			RequestHandlerUtils.handleCommit(request, processor, parameters, false);
+		} finally {
+			processor.finish();
+		}
+	}
+	
+	@Override
+	public void inform(final SolrCore core) {
+		scheduler = IngestScheduler.of(core, SolrParams.toSolrParams(initArgs));
+	}
+	
+	@Override
+	@SuppressWarnings("unchecked")
+	public NamedList<Object> getStatistics() {
+		final NamedList<Object> statistics = super.getStatistics();
+		if (scheduler != null) {
+			statistics.addAll(scheduler.status());
+		}
+		return statistics;
+	}
+	
 	@Override
 	public String getDescription() {
 		return "RDFBulkUpdateRequestHandler";
@@ -74,11 +74,36 @@ class Sparql11UpdateRdfDataLoader extends ContentStreamLoader {
 		}
 		
 		LOGGER.debug(MessageCatalog._00105_INCOMING_SPARQL_UPDATE_REQUEST_DEBUG, updateRequest);
-		execute(
-				usingList(parameters), 
-				updateRequest, 
-				datasetGraph(request, response));
-
+		final DatasetGraph datasetGraph = datasetGraph(request, response);
+		enableStreaming(datasetGraph, parameters);
+		try {
+			execute(
+					usingList(parameters),
+					updateRequest,
+					datasetGraph);
+		} finally {
+			// Flushes any buffered (i.e. batched) change
+			datasetGraph.close();
+		}
+	}
+	
+	/**
+	 * Enables the {@link StreamingUpdateEngine} on the given dataset, if that is safe.
+	 * 
+	 * Streaming requires the WHERE clause to read from the searcher that was open when the request started, 
+	 * and that holds only for a {@link LocalDatasetGraph}. SolrCloud graphs page through the live collection, 
+	 * where the changes already flushed by the same request could become visible (e.g. after a soft commit): 
+	 * in that case the default engine, which collects all bindings before applying any change, is used.
+	 * 
+	 * @param datasetGraph the dataset graph.
+	 * @param parameters the current Solr request parameters.
+	 */
+	void enableStreaming(final DatasetGraph datasetGraph, final SolrParams parameters) {
+		if (datasetGraph instanceof LocalDatasetGraph) {
+			StreamingUpdateEngine.enable(
+					datasetGraph,
+					parameters.getInt(Names.UPDATE_BATCH_SIZE_PARAMETER_NAME, StreamingUpdateEngine.DEFAULT_BATCH_SIZE));
+		}
 	}
 	
 	/**
@@ -143,6 +168,7 @@ class Sparql11UpdateRdfDataLoader extends ContentStreamLoader {
     
 	/**
 	 * Creates an appropriate {@link DatasetGraph} for this SolRDF instance.
+	 * The shared SolrCloud client has no lifecycle here, so updates don't prefetch result pages (i.e. they don't own threads).
 	 * 
 	 * @param request the current Solr request
 	 * @param response the current Solr response.
@@ -152,7 +178,7 @@ class Sparql11UpdateRdfDataLoader extends ContentStreamLoader {
 	 */
 	DatasetGraph datasetGraph(final SolrQueryRequest request, final SolrQueryResponse response) {
 		return CLUSTER != null 
-				? new CloudDatasetGraph(request, response, CLUSTER)
+				? new CloudDatasetGraph(request, response, CLUSTER, null)
 				: new LocalDatasetGraph(request, response);
 	}    
 }	 
\ No newline at end of file
@@ -0,0 +1,227 @@
+package org.gazzax.labs.solrdf.handler.update;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import org.apache.jena.atlas.iterator.Iter;
+
+import com.hp.hpl.jena.graph.Node;
+import com.hp.hpl.jena.query.Query;
+import com.hp.hpl.jena.sparql.core.DatasetGraph;
+import com.hp.hpl.jena.sparql.core.Quad;
+import com.hp.hpl.jena.sparql.engine.binding.Binding;
+import com.hp.hpl.jena.sparql.modify.UpdateEngine;
+import com.hp.hpl.jena.sparql.modify.UpdateEngineFactory;
+import com.hp.hpl.jena.sparql.modify.UpdateEngineMain;
+import com.hp.hpl.jena.sparql.modify.UpdateEngineRegistry;
+import com.hp.hpl.jena.sparql.modify.UpdateEngineWorker;
+import com.hp.hpl.jena.sparql.modify.request.UpdateDeleteWhere;
+import com.hp.hpl.jena.sparql.modify.request.UpdateModify;
+import com.hp.hpl.jena.sparql.modify.request.UpdateVisitor;
+import com.hp.hpl.jena.sparql.syntax.Element;
+import com.hp.hpl.jena.sparql.syntax.ElementNamedGraph;
+import com.hp.hpl.jena.sparql.util.Context;
+import com.hp.hpl.jena.sparql.util.Symbol;
+import com.hp.hpl.jena.update.GraphStore;
+
+/**
+ * A SPARQL Update engine that streams the WHERE bindings of DELETE/INSERT and DELETE WHERE operations.
+ *
+ * The ARQ default engine collects all bindings before applying the templates. Here bindings are consumed
+ * in bounded batches: the templates are applied to each batch, and the batch is discarded.
+ * This relies on SolRDF graphs reading from the searcher that was open when the request started:
+ * changes made while streaming are not visible to the WHERE evaluation.
+ *
+ * When a triple could be both deleted and inserted by the same operation, all deletes must be applied before any insert.
+ * In that case the WHERE clause is evaluated twice: the first pass deletes, the second pass inserts.
+ *
+ * The engine is used for all graph stores whose context defines the {@link #BATCH_SIZE} symbol, that is, only
+ * for local datasets (see {@link Sparql11UpdateRdfDataLoader#enableStreaming}).
+ *
+ * @author Andrea Gazzarini
+ * @since 1.1
+ */
+class StreamingUpdateEngine extends UpdateEngineMain {
+	static final int DEFAULT_BATCH_SIZE = 1000;
+	static final Symbol BATCH_SIZE = Symbol.create("http://gazzax.org/solrdf#updateBatchSize");
+
+	static final UpdateEngineFactory FACTORY = new UpdateEngineFactory() {
+		@Override
+		public boolean accept(final GraphStore graphStore, final Context context) {
+			return context.isDefined(BATCH_SIZE);
+		}
+
+		@Override
+		public UpdateEngine create(final GraphStore graphStore, final Binding inputBinding, final Context context) {
+			return new StreamingUpdateEngine(graphStore, inputBinding, context, (Integer) context.get(BATCH_SIZE));
+		}
+	};
+
+	static {
+		UpdateEngineRegistry.addFactory(FACTORY);
+	}
+
+	final int batchSize;
+
+	/**
+	 * Streaming version of the {@link UpdateEngineWorker}.
+	 *
+	 * @author Andrea Gazzarini
+	 * @since 1.1
+	 */
+	class StreamingUpdateEngineWorker extends UpdateEngineWorker {
+
+		/**
+		 * Builds a new worker.
+		 *
+		 * @param graphStore the target graph store.
+		 * @param inputBinding the initial binding, if any.
+		 * @param context the execution context.
+		 */
+		StreamingUpdateEngineWorker(final GraphStore graphStore, final Binding inputBinding, final Context context) {
+			super(graphStore, inputBinding, context);
+		}
+
+		@Override
+		public void visit(final UpdateDeleteWhere update) {
+			final List<Quad> quads = update.getQuads();
+			apply(evalBindings(elementFromQuads(quads), null), quads, null, null);
+		}
+
+		@Override
+		public void visit(final UpdateModify update) {
+			final Node withGraph = update.getWithIRI();
+			Element where = update.getWherePattern();
+
+			// USING overrides WITH (see UpdateEngineWorker)
+			DatasetGraph dataset = processUsing(update);
+			if (dataset == null && withGraph != null) {
+				where = new ElementNamedGraph(withGraph, where);
+			}
+
+			if (dataset == null) {
+				dataset = graphStore;
+			}
+
+			final Query query = elementToQuery(where);
+			final List<Quad> deletes = update.getDeleteQuads();
+			final List<Quad> inserts = update.getInsertQuads();
+			if (mayOverlap(deletes, inserts)) {
+				apply(evalBindings(query, dataset, inputBinding, context), deletes, null, withGraph);
+				apply(evalBindings(query, dataset, inputBinding, context), null, inserts, withGraph);
+			} else {
+				apply(evalBindings(query, dataset, inputBinding, context), deletes, inserts, withGraph);
+			}
+		}
+
+		/**
+		 * Applies the given templates to the given bindings, one batch at a time.
+		 *
+		 * @param bindings the WHERE bindings.
+		 * @param deletes the DELETE template (null or empty if there's nothing to delete).
+		 * @param inserts the INSERT template (null or empty if there's nothing to insert).
+		 * @param withGraph the WITH graph, null if the operation doesn't have a WITH clause.
+		 */
+		void apply(final Iterator<Binding> bindings, final List<Quad> deletes, final List<Quad> inserts, final Node withGraph) {
+			final List<Binding> batch = new ArrayList<Binding>(batchSize);
+			try {
+				while (bindings.hasNext()) {
+					batch.add(bindings.next());
+					if (batch.size() >= batchSize) {
+						apply(batch, deletes, inserts, withGraph);
+					}
+				}
+				apply(batch, deletes, inserts, withGraph);
+			} finally {
+				Iter.close(bindings);
+			}
+		}
+
+		/**
+		 * Applies the given templates to a batch of bindings, and then clears the batch.
+		 *
+		 * @param batch the batch of bindings.
+		 * @param deletes the DELETE template (null or empty if there's nothing to delete).
+		 * @param inserts the INSERT template (null or empty if there's nothing to insert).
+		 * @param withGraph the WITH graph, null if the operation doesn't have a WITH clause.
+		 */
+		void apply(final List<Binding> batch, final List<Quad> deletes, final List<Quad> inserts, final Node withGraph) {
+			if (batch.isEmpty()) {
+				return;
+			}
+
+			execDelete(deletes, withGraph, batch.iterator());
+			execInsert(inserts, withGraph, batch.iterator());
+			batch.clear();
+		}
+	}
+
+	/**
+	 * Builds a new engine.
+	 *
+	 * @param graphStore the target graph store.
+	 * @param inputBinding the initial binding, if any.
+	 * @param context the execution context.
+	 * @param batchSize the maximum number of bindings that are kept in memory.
+	 */
+	StreamingUpdateEngine(final GraphStore graphStore, final Binding inputBinding, final Context context, final int batchSize) {
+		super(graphStore, inputBinding, context);
+		this.batchSize = Math.max(1, batchSize);
+	}
+
+	/**
+	 * Enables this engine on a given dataset.
+	 *
+	 * @param dataset the dataset.
+	 * @param batchSize the maximum number of bindings that are kept in memory.
+	 */
+	static void enable(final DatasetGraph dataset, final int batchSize) {
+		dataset.getContext().set(BATCH_SIZE, batchSize);
+	}
+
+	@Override
+	protected UpdateVisitor prepareWorker() {
+		return new StreamingUpdateEngineWorker(graphStore, inputBinding, context);
+	}
+
+	/**
+	 * Returns true if the given DELETE and INSERT templates could produce the same quad.
+	 *
+	 * @param deletes the DELETE template.
+	 * @param inserts the INSERT template.
+	 * @return true if the given DELETE and INSERT templates could produce the same quad.
+	 */
+	static boolean mayOverlap(final List<Quad> deletes, final List<Quad> inserts) {
+		if (deletes == null || inserts == null) {
+			return false;
+		}
+
+		for (final Quad delete : deletes) {
+			for (final Quad insert : inserts) {
+				if (mayMatch(delete.getGraph(), insert.getGraph())
+						&& mayMatch(delete.getSubject(), insert.getSubject())
+						&& mayMatch(delete.getPredicate(), insert.getPredicate())
+						&& mayMatch(delete.getObject(), insert.getObject())) {
+					return true;
+				}
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Returns true if two template nodes could be instantiated with the same value.
+	 * Blank nodes of an INSERT template are always new, so they never match.
+	 *
+	 * @param delete the DELETE template node.
+	 * @param insert the INSERT template node.
+	 * @return true if two template nodes could be instantiated with the same value.
+	 */
+	static boolean mayMatch(final Node delete, final Node insert) {
+		if (insert.isBlank()) {
+			return false;
+		}
+		return !delete.isConcrete() || !insert.isConcrete() || delete.equals(insert);
+	}
+}
@@ -45,4 +45,31 @@ public interface MessageCatalog {
 	String _00116_CLEAR_NOT_ALLOWED = PREFIX + "-00116> : Clear operation not allowed as this is a read-only view of the underlying graph.";
 	String _00117_UTF8_NOT_SUPPORTED = PREFIX + "-00117> : URL cannot be properly encoded using UTF-8. As consequence of that the system will use the default platform encoding.";
 	String _00118_DELETE_QUERY = PREFIX + "-00118> : DELETE Query: %s";
+	String _00119_FILTER_PUSHDOWN = PREFIX + "-00119> : FILTER %s has been pushed down as %s";
+	String _00120_FILTER_NOT_PUSHED_DOWN = PREFIX + "-00120> : FILTER %s cannot be pushed down (%s)";
+	String _00121_STATISTICS_COMPUTED = PREFIX + "-00121> : Statistics computed (%s triples, %s predicates, %s of %s segments read) in %s ms.";
+	String _00122_BULK_LOAD_COMPLETED = PREFIX + "-00122> : Bulk load completed: %s triples in %s ms (%s workers).";
+	String _00123_INGEST_SCHEDULER_SHUTDOWN = PREFIX + "-00123> : Ingest scheduler shut down (%s completed loads, %s triples).";
+	String _00124_INGEST_QUEUE_FULL = PREFIX + "-00124> : Bulk load rejected: there are already %s loads waiting for admission.";
+	String _00125_INGEST_ADMISSION_TIMEOUT = PREFIX + "-00125> : Bulk load rejected: not admitted within %s ms.";
+	String _00126_CHUNKED_LOAD_COMPLETED = PREFIX + "-00126> : Chunked load completed: %s triples (%s chunks) in %s ms (%s parsers).";
+	String _00127_UNSUPPORTED_CHUNKED_LOAD = PREFIX + "-00127> : Server-side file loading supports only N-Triples and N-Quads files (%s).";
+	String _00128_REMOTE_STREAMING_DISABLED = PREFIX + "-00128> : Server-side file loading requires remote streaming to be enabled (see requestParsers in solrconfig.xml).";
+	String _00129_CLOUD_BATCH_FAILURE = PREFIX + "-00129> : A batch of %s changes on graph %s has been rejected.";
+	String _00130_CLOUD_SHARD_FAILURE = PREFIX + "-00130> : Shard %s failure:";
+	String _00131_PAGED_SCAN_COMPLETED = PREFIX + "-00131> : Paged scan completed (%s).";
+	String _00132_AGGREGATES_ANSWERED_BY_INDEX = PREFIX + "-00132> : Aggregates %s of pattern %s answered by the index (%s matches).";
+	String _00133_OFFLINE_INDEX_BUILT = PREFIX + "-00133> : Offline index built in %s: %s triples in %s ms (%s parsers, %s shards, %s writers per shard).";
+	String _00134_OFFLINE_PARTITION_MERGED = PREFIX + "-00134> : %s partitions merged in %s.";
+	String _00135_OFFLINE_UNSUPPORTED_FILE = PREFIX + "-00135> : The offline index builder supports only N-Triples and N-Quads files (%s).";
+	String _00136_OFFLINE_USAGE = "Usage: OfflineIndexBuilder -conf <core instance dir> -out <output dir> "
+			+ "[-parsers N] [-shards N] [-writers N] [-segment N] [-graph <uri>] [-no-overwrite] file ...";
+	String _00137_APPEND_ONLY_LOAD_COMPLETED = PREFIX + "-00137> : Append-only load: %s triples appended, %s added with overwrite, %s duplicates skipped (false positive probability of the Bloom filter: %s).";
+	String _00138_BLOOM_FILTER_SYNCHRONIZED = PREFIX + "-00138> : Bloom filter %s synchronized with the index: %s identifiers of %s new segments added.";
+	String _00139_BLOOM_FILTER_NOT_LOADED = PREFIX + "-00139> : Unable to load the Bloom filter %s, it will be rebuilt.";
+	String _00140_LEGACY_DOCUMENT_IDS = PREFIX + "-00140> : Index %s has been built with legacy (SolRDF 1.0) document identifiers: they will be kept, concrete triples will be deleted by query, subject routing is disabled and only int, integer, long, decimal and double literals are indexed (and filtered) as numbers. Rebuild the index to use the current identifiers.";
+	String _00141_INTERMEDIATE_SOLUTIONS_LIMIT = PREFIX + "-00141> : More than %s intermediate solutions before %s: the remaining triple patterns will be evaluated in batches.";
+	String _00142_PREFETCH_POOL_FULL = PREFIX + "-00142> : All the %s prefetch threads are busy: the scan will fetch its pages synchronously.";
+	String _00143_MISSING_DOC_VALUES = PREFIX + "-00143> : Some segments have no docValues for %s (they have been written before docValues were enabled): objects will be ordered in memory. Rebuild the index to order them through the index.";
+	String _00144_LINE_TOO_LONG = PREFIX + "-00144> : The line at offset %s is longer than %s bytes: it cannot be loaded.";
 }
\ No newline at end of file
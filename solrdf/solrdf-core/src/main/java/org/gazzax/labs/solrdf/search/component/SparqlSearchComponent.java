@@ -11,6 +11,8 @@ import org.apache.solr.common.SolrException.ErrorCode;
 import org.apache.solr.common.params.CommonParams;
 import org.apache.solr.common.params.SolrParams;
 import org.apache.solr.common.util.NamedList;
+import org.apache.solr.core.CloseHook;
+import org.apache.solr.core.SolrCore;
 import org.apache.solr.handler.component.ResponseBuilder;
 import org.apache.solr.handler.component.SearchComponent;
 import org.apache.solr.request.SolrQueryRequest;
@@ -19,10 +21,13 @@ import org.apache.solr.search.DocListAndSet;
 import org.apache.solr.search.DocSet;
 import org.apache.solr.search.QParser;
 import org.apache.solr.search.SyntaxError;
+import org.apache.solr.util.plugin.SolrCoreAware;
 import org.gazzax.labs.solrdf.Names;
 import org.gazzax.labs.solrdf.graph.GraphEventConsumer;
 import org.gazzax.labs.solrdf.graph.cloud.CloudDatasetGraph;
+import org.gazzax.labs.solrdf.graph.cloud.PrefetchExecutor;
 import org.gazzax.labs.solrdf.graph.standalone.LocalDatasetGraph;
+import org.gazzax.labs.solrdf.graph.standalone.LocalOpExecutor;
 import org.gazzax.labs.solrdf.log.Log;
 import org.gazzax.labs.solrdf.log.MessageCatalog;
 import org.gazzax.labs.solrdf.log.MessageFactory;
@@ -35,19 +40,24 @@ import com.hp.hpl.jena.query.Query;
 import com.hp.hpl.jena.query.QueryExecution;
 import com.hp.hpl.jena.query.QueryExecutionFactory;
 import com.hp.hpl.jena.query.ResultSetRewindable;
+import com.hp.hpl.jena.sparql.algebra.Algebra;
 import com.hp.hpl.jena.sparql.core.DatasetGraph;
 
 /**
  * A {@link SearchComponent} implementation for executing SPARQL queries.
  * 
+ * In SolrCloud, the component owns the SolrCloud client and the (bounded) thread pool that prefetches the result pages; 
+ * both are closed together with the core.
+ * 
  * @author Andrea Gazzarini
  * @since 1.0
  */
-public class SparqlSearchComponent extends SearchComponent {
+public class SparqlSearchComponent extends SearchComponent implements SolrCoreAware {
 	private static final String DEFAULT_DEF_TYPE = "sparql";
 	private static final Log LOGGER = new Log(LoggerFactory.getLogger(SparqlSearchComponent.class));
 	
 	private CloudSolrClient server;
+	private PrefetchExecutor prefetchExecutor;
 	
 	@SuppressWarnings("rawtypes")
 	@Override
@@ -58,9 +68,37 @@ public class SparqlSearchComponent extends SearchComponent {
 		if (isNotNullOrEmptyString(zkAddress)) {
 			this.server= new CloudSolrClient(zkAddress);
 			this.server.setDefaultCollection("store");
+			this.prefetchExecutor = new PrefetchExecutor(
+					"store", 
+					SolrParams.toSolrParams(args).getInt(Names.CLOUD_PREFETCH_THREADS_PARAMETER_NAME, PrefetchExecutor.DEFAULT_THREADS));
 		}
 	}
 	
+	@Override
+	public void inform(final SolrCore core) {
+		core.addCloseHook(new CloseHook() {
+			@Override
+			public void preClose(final SolrCore core) {
+				if (prefetchExecutor != null) {
+					prefetchExecutor.shutdown();
+				}
+				
+				if (server != null) {
+					try {
+						server.close();
+					} catch (final IOException exception) {
+						LOGGER.error(MessageCatalog._00113_NWS_FAILURE, exception);
+					}
+				}
+			}
+
+			@Override
+			public void postClose(final SolrCore core) {
+				// Nothing to be done here
+			}
+		});
+	}
+	
 	@Override
 	public int distributedProcess(final ResponseBuilder responseBuilder) throws IOException {
 		doProcess(responseBuilder);
@@ -94,6 +132,15 @@ public class SparqlSearchComponent extends SearchComponent {
 	    	
 	    	final Query query = wrapper.getQuery();
 	    	final DocListAndSet results = new DocListAndSet();
+	    	
+	    	// A single triple pattern doesn't need to be paged by the PagedResultSet: 
+	    	// start and rows become the offset and the length of the index search.
+	    	final boolean pagedByIndex = wrapper.isHybrid() && pagedByIndex(request, query);
+	    	if (pagedByIndex) {
+	    		request.getContext().put(Names.INDEX_OFFSET, start);
+	    		request.getContext().put(Names.INDEX_LIMIT, rows);
+	    	}
+	    	final int firstRow = pagedByIndex ? 0 : start;
 
 			final QueryExecution execution = QueryExecutionFactory.create(
 	    			query, 
@@ -113,7 +160,7 @@ public class SparqlSearchComponent extends SearchComponent {
 
 											@Override
 											public boolean requireTripleBuild() {
-												return currentRow >= start && currentRow < start + rows;
+												return currentRow >= firstRow && currentRow < firstRow + rows;
 											}
 
 											@Override
@@ -134,7 +181,7 @@ public class SparqlSearchComponent extends SearchComponent {
 			case Query.QueryTypeSelect: {
 				if (wrapper.isHybrid()) {
 					
-					final ResultSetRewindable resultSet = new PagedResultSet(execution.execSelect(), rows, start);
+					final ResultSetRewindable resultSet = new PagedResultSet(execution.execSelect(), rows, firstRow);
 					while (resultSet.hasNext()) { 
 						resultSet.next(); 
 					}
@@ -226,6 +273,21 @@ public class SparqlSearchComponent extends SearchComponent {
 	    return queryString;
 	}
 	
+	/**
+	 * Returns true if the results of a given (hybrid) query can be paged directly by the index.
+	 * That happens for a local SELECT over a single triple pattern, where each matching triple is a solution.
+	 * 
+	 * @param request the current Solr request.
+	 * @param query the SPARQL query.
+	 * @return true if the results of the given query can be paged directly by the index.
+	 */
+	boolean pagedByIndex(final SolrQueryRequest request, final Query query) {
+		return query.isSelectType()
+				&& !query.hasDatasetDescription()
+				&& !request.getCore().getCoreDescriptor().getCoreContainer().isZooKeeperAware()
+				&& LocalOpExecutor.singlePattern(Algebra.compile(query)) != null;
+	}
+	
 	/**
 	 * Creates an appropriate {@link DatasetGraph} for this SolRDF instance.
 	 * 
@@ -237,7 +299,7 @@ public class SparqlSearchComponent extends SearchComponent {
 	 */
 	DatasetGraph datasetGraph(final SolrQueryRequest request, final SolrQueryResponse response, final QParser parser, final GraphEventConsumer consumer) {
 		return request.getCore().getCoreDescriptor().getCoreContainer().isZooKeeperAware() 
-				? new CloudDatasetGraph(request, response, server)
+				? new CloudDatasetGraph(request, response, server, prefetchExecutor)
 				: new LocalDatasetGraph(request, response, parser, consumer);
 	}
 }
\ No newline at end of file
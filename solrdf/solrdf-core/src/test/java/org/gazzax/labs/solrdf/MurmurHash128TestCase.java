@@ -0,0 +1,90 @@
+package org.gazzax.labs.solrdf;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.UUID;
+
+import org.junit.Test;
+
+import com.google.common.hash.HashCode;
+import com.google.common.hash.Hashing;
+
+/**
+ * {@link MurmurHash128} test case.
+ *
+ * @author Andrea Gazzarini
+ * @since 1.1
+ */
+public class MurmurHash128TestCase {
+	private final MurmurHash128 cut = new MurmurHash128();
+
+	/**
+	 * The streamed hash is the reference MurmurHash3 (x64, 128) of the fed characters, whatever their length
+	 * (i.e. empty, partial and full blocks).
+	 */
+	@Test
+	public void sameAsReference() {
+		final StringBuilder value = new StringBuilder();
+		for (int length = 0; length < 40; length++) {
+			assertEquals(reference(value.toString()), cut.reset().put(value).asId());
+			value.append((char) ('a' + length));
+		}
+
+		assertEquals(reference("<http://example.org/s>\"café\"@fr"), cut.reset().put("<http://example.org/s>").put("\"café\"@fr").asId());
+	}
+
+	/**
+	 * The 64 bits hash is the first half of the reference hash.
+	 */
+	@Test
+	@SuppressWarnings("deprecation")
+	public void asLong() {
+		for (final String value : new String [] { "", "<http://example.org/s>", "\"café\"@fr", "_:b0" }) {
+			assertEquals(Hashing.murmur3_128().hashString(value).asLong(), cut.reset().put(value).asLong());
+		}
+	}
+
+	/**
+	 * A versioned hash is a UUID of that version, which differs from the plain hash by the version and variant bits only.
+	 */
+	@Test
+	public void asUuid() {
+		for (final String value : new String [] { "", "<http://example.org/s>", "\"café\"@fr" }) {
+			final UUID plain = UUID.fromString(cut.reset().put(value).asId());
+			final UUID versioned = UUID.fromString(cut.asUuid(8));
+
+			assertEquals(8, versioned.version());
+			assertEquals(2, versioned.variant());
+			assertEquals(plain.getMostSignificantBits() & ~0xF000L, versioned.getMostSignificantBits() & ~0xF000L);
+			assertEquals(plain.getLeastSignificantBits() & 0x3FFFFFFFFFFFFFFFL, versioned.getLeastSignificantBits() & 0x3FFFFFFFFFFFFFFFL);
+		}
+	}
+
+	/**
+	 * A reset hash forgets the characters fed so far.
+	 */
+	@Test
+	public void reset() {
+		final String expected = cut.reset().put("<http://example.org/s>").asId();
+
+		cut.put("<http://example.org/p>");
+		assertNotEquals(expected, cut.asId());
+		assertEquals(expected, cut.reset().put("<http://example.org/s>").asId());
+	}
+
+	/**
+	 * Computes the reference hash of a given value, formatted as a UUID.
+	 *
+	 * @param value the value.
+	 * @return the reference hash of the given value, formatted as a UUID.
+	 */
+	@SuppressWarnings("deprecation")
+	private String reference(final String value) {
+		final HashCode hash = Hashing.murmur3_128().hashString(value);
+		final ByteBuffer bytes = ByteBuffer.wrap(hash.asBytes()).order(ByteOrder.LITTLE_ENDIAN);
+		return new UUID(bytes.getLong(), bytes.getLong()).toString();
+	}
+}
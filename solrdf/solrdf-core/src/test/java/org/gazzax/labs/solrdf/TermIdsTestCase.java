@@ -0,0 +1,35 @@
+package org.gazzax.labs.solrdf;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+
+import org.junit.Test;
+
+/**
+ * {@link TermIds} test case.
+ *  
+ * @author Andrea Gazzarini
+ * @since 1.1
+ */
+public class TermIdsTestCase {
+	
+	/**
+	 * The same term has always the same identifier.
+	 */
+	@Test
+	public void stable() {
+		assertEquals(TermIds.id("<http://example.org/s>"), TermIds.id(new String("<http://example.org/s>")));
+		assertEquals(TermIds.id("\"café\"@fr"), TermIds.id("\"café\"@fr"));
+	}
+	
+	/**
+	 * Different terms (also when they are equal by value) have different identifiers.
+	 */
+	@Test
+	public void distinct() {
+		assertNotEquals(TermIds.id("<http://example.org/s>"), TermIds.id("<http://example.org/S>"));
+		assertNotEquals(
+				TermIds.id("\"1\"^^<http://www.w3.org/2001/XMLSchema#int>"), 
+				TermIds.id("\"01\"^^<http://www.w3.org/2001/XMLSchema#int>"));
+	}	
+}
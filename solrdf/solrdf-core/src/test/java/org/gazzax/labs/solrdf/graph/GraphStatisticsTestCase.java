@@ -0,0 +1,67 @@
+package org.gazzax.labs.solrdf.graph;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.gazzax.labs.solrdf.graph.GraphStatistics.PredicateStatistics;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Test case for {@link GraphStatistics}.
+ *
+ * @author Andrea Gazzarini
+ * @since 1.1
+ */
+public class GraphStatisticsTestCase {
+	private GraphStatistics cut;
+
+	private final String name = "<http://xmlns.com/foaf/0.1/name>";
+	private final String type = "<http://www.w3.org/1999/02/22-rdf-syntax-ns#type>";
+
+	/**
+	 * Setup fixture for this test case.
+	 */
+	@Before
+	public void setUp() {
+		final Map<String, PredicateStatistics> predicates = new HashMap<String, PredicateStatistics>();
+		predicates.put(name, new PredicateStatistics(1000, 1000, 900));
+		predicates.put(type, new PredicateStatistics(1000, 1000, 4));
+
+		final Map<String, Long> graphs = new HashMap<String, Long>();
+		graphs.put("_", 2000L);
+
+		cut = new GraphStatistics(2000, 1000, 904, graphs, predicates);
+	}
+
+	/**
+	 * A pattern with a concrete predicate is estimated with the statistics of that predicate.
+	 */
+	@Test
+	public void concretePredicate() {
+		assertEquals(1000, cut.estimate(false, name, true, false));
+		assertEquals(1, cut.estimate(true, name, true, false));
+		assertEquals(250, cut.estimate(false, type, true, true));
+		assertEquals(2, cut.estimate(false, name, true, true));
+	}
+
+	/**
+	 * A pattern with an unknown predicate doesn't match anything.
+	 */
+	@Test
+	public void unknownPredicate() {
+		assertEquals(0, cut.estimate(false, "<http://example.org/unknown>", true, false));
+	}
+
+	/**
+	 * A pattern without a concrete predicate is estimated with the global statistics.
+	 */
+	@Test
+	public void variablePredicate() {
+		assertEquals(2000, cut.estimate(false, null, false, false));
+		assertEquals(1000, cut.estimate(false, null, true, false));
+		assertEquals(2, cut.estimate(true, null, false, false));
+	}
+}
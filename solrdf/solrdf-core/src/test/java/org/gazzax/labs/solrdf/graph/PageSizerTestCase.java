@@ -0,0 +1,96 @@
+package org.gazzax.labs.solrdf.graph;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Test case for {@link PageSizer}.
+ *
+ * @author Andrea Gazzarini
+ * @since 1.1
+ */
+public class PageSizerTestCase {
+	private static final long ONE_HOUR = TimeUnit.HOURS.toNanos(1);
+
+	private PageSizer cut;
+
+	/**
+	 * Setup fixture for this test case.
+	 */
+	@Before
+	public void setUp() {
+		cut = new PageSizer(SolRDFGraph.DEFAULT_QUERY_FETCH_SIZE, PageSizer.DEFAULT_MEMORY_BUDGET);
+	}
+
+	/**
+	 * The first page is small, regardless of the configured fetch size.
+	 */
+	@Test
+	public void firstPage() {
+		assertEquals(PageSizer.INITIAL_PAGE_SIZE, cut.pageSize());
+		assertEquals(PageSizer.MIN_PAGE_SIZE, new PageSizer(1, PageSizer.DEFAULT_MEMORY_BUDGET).pageSize());
+	}
+
+	/**
+	 * If a page is consumed faster than it was fetched, the next page is larger.
+	 */
+	@Test
+	public void fastConsumer() {
+		fetchCompleted(cut.pageSize(), Long.MAX_VALUE);
+		cut.fetchTime = ONE_HOUR;
+
+		assertEquals(PageSizer.INITIAL_PAGE_SIZE * 2, cut.nextPageSize());
+	}
+
+	/**
+	 * If a page is consumed much slower than it was fetched, the next page is smaller.
+	 */
+	@Test
+	public void slowConsumer() {
+		fetchCompleted(cut.pageSize(), Long.MAX_VALUE);
+		cut.fetchTime = 0;
+		cut.pageReadyAt = System.nanoTime() - ONE_HOUR;
+
+		assertEquals(PageSizer.INITIAL_PAGE_SIZE / 2, cut.nextPageSize());
+	}
+
+	/**
+	 * A page never exceeds the remaining results.
+	 */
+	@Test
+	public void remainingResults() {
+		fetchCompleted(cut.pageSize(), PageSizer.INITIAL_PAGE_SIZE + 50);
+		cut.fetchTime = ONE_HOUR;
+
+		assertEquals(50, cut.nextPageSize());
+	}
+
+	/**
+	 * A page never exceeds the memory budget.
+	 */
+	@Test
+	public void memoryBudget() {
+		final int maxPageSize = 150;
+		cut = new PageSizer(SolRDFGraph.DEFAULT_QUERY_FETCH_SIZE, maxPageSize * PageSizer.ESTIMATED_TRIPLE_SIZE);
+
+		fetchCompleted(cut.pageSize(), Long.MAX_VALUE);
+		cut.fetchTime = ONE_HOUR;
+
+		assertEquals(maxPageSize, cut.nextPageSize());
+	}
+
+	/**
+	 * Simulates the fetch of a page.
+	 *
+	 * @param length the page length.
+	 * @param matches the total number of results.
+	 */
+	private void fetchCompleted(final int length, final long matches) {
+		cut.fetchStarted();
+		cut.fetchCompleted(length, matches);
+	}
+}
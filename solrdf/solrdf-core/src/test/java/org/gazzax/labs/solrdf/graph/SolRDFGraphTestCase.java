@@ -0,0 +1,141 @@
+package org.gazzax.labs.solrdf.graph;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.UUID;
+
+import org.apache.lucene.analysis.core.KeywordAnalyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field.Store;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.MultiReader;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.RAMDirectory;
+import org.apache.solr.search.SolrIndexSearcher;
+import org.gazzax.labs.solrdf.Field;
+import org.junit.Test;
+
+import com.hp.hpl.jena.graph.Node;
+import com.hp.hpl.jena.graph.NodeFactory;
+import com.hp.hpl.jena.graph.Triple;
+
+/**
+ * Test case for the document identifiers of {@link SolRDFGraph}.
+ *
+ * @author Andrea Gazzarini
+ * @since 1.1
+ */
+public class SolRDFGraphTestCase {
+	private final Node s = NodeFactory.createURI("http://example.org/s");
+	private final Triple triple = Triple.create(s, NodeFactory.createURI("http://example.org/p"), NodeFactory.createLiteral("Rome", "it", false));
+
+	/**
+	 * Document identifiers are UUIDs whose version tells the identifiers format.
+	 */
+	@Test
+	public void documentIdVersion() {
+		assertEquals(SolRDFGraph.ID_VERSION, UUID.fromString(SolRDFGraph.documentId("_", triple, false)).version());
+		assertEquals(3, UUID.fromString(SolRDFGraph.legacyDocumentId("_", triple)).version());
+	}
+
+	/**
+	 * Legacy identifiers are the SolRDF 1.0 identifiers, and they are detected with or without a shard key.
+	 */
+	@Test
+	public void legacyIds() {
+		assertEquals(
+				UUID.nameUUIDFromBytes(("_" + triple.getSubject() + triple.getPredicate() + triple.getObject()).getBytes()).toString(),
+				SolRDFGraph.legacyDocumentId("_", triple));
+
+		assertTrue(SolRDFGraph.isLegacyId(SolRDFGraph.legacyDocumentId("_", triple)));
+		assertFalse(SolRDFGraph.isLegacyId(SolRDFGraph.documentId("_", triple, false)));
+		assertFalse(SolRDFGraph.isLegacyId(SolRDFGraph.documentId("_", triple, true)));
+		assertTrue(SolRDFGraph.isLegacyId(SolRDFGraph.shardKey(s) + SolRDFGraph.legacyDocumentId("_", triple)));
+		assertFalse(SolRDFGraph.isLegacyId("id"));
+	}
+
+	/**
+	 * The identifiers format of an index is told by its first live document; an empty index has no legacy identifiers.
+	 *
+	 * @throws Exception never, otherwise the test fails.
+	 */
+	@Test
+	public void hasLegacyIds() throws Exception {
+		assertFalse(SolRDFGraph.hasLegacyIds(searcher(new MultiReader())));
+
+		final Directory directory = new RAMDirectory();
+		final IndexWriter writer = new IndexWriter(directory, new IndexWriterConfig(new KeywordAnalyzer()));
+		writer.addDocument(document(SolRDFGraph.documentId("_", triple, false)));
+		writer.commit();
+		
+		DirectoryReader reader = DirectoryReader.open(directory);
+		assertFalse(SolRDFGraph.hasLegacyIds(searcher(reader)));
+		reader.close();
+		
+		writer.deleteAll();
+		writer.addDocument(document(SolRDFGraph.legacyDocumentId("_", triple)));
+		writer.close();
+		
+		reader = DirectoryReader.open(directory);
+		assertTrue(SolRDFGraph.hasLegacyIds(searcher(reader)));
+		reader.close();
+	}
+
+	/**
+	 * The identifiers format is probed once per searcher.
+	 *
+	 * @throws Exception never, otherwise the test fails.
+	 */
+	@Test
+	public void hasLegacyIdsIsCachedPerSearcher() throws Exception {
+		final Directory directory = new RAMDirectory();
+		final IndexWriter writer = new IndexWriter(directory, new IndexWriterConfig(new KeywordAnalyzer()));
+		writer.addDocument(document(SolRDFGraph.legacyDocumentId("_", triple)));
+		writer.close();
+
+		final DirectoryReader reader = DirectoryReader.open(directory);
+		final SolrIndexSearcher searcher = searcher(reader);
+		assertTrue(SolRDFGraph.hasLegacyIds(searcher));
+		assertTrue(SolRDFGraph.hasLegacyIds(searcher));
+		verify(searcher, times(1)).getTopReaderContext();
+
+		final SolrIndexSearcher anotherSearcher = searcher(reader);
+		assertTrue(SolRDFGraph.hasLegacyIds(anotherSearcher));
+		verify(anotherSearcher, times(1)).getTopReaderContext();
+		reader.close();
+	}
+
+	/**
+	 * Builds a (mock) searcher over a given reader.
+	 *
+	 * @param reader the index reader.
+	 * @return a (mock) searcher over the given reader.
+	 */
+	private SolrIndexSearcher searcher(final IndexReader reader) {
+		final SolrIndexSearcher searcher = mock(SolrIndexSearcher.class);
+		when(searcher.getTopReaderContext()).thenReturn(reader.getContext());
+		return searcher;
+	}
+
+	/**
+	 * Builds a document with a given identifier.
+	 *
+	 * @param id the document identifier.
+	 * @return a document with the given identifier.
+	 */
+	private Document document(final String id) {
+		final Document document = new Document();
+		document.add(new StringField(Field.ID, id, Store.YES));
+		return document;
+	}
+}
@@ -0,0 +1,73 @@
+package org.gazzax.labs.solrdf.graph;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+
+import org.gazzax.labs.solrdf.Field;
+import org.junit.Test;
+
+import com.hp.hpl.jena.graph.Node;
+import com.hp.hpl.jena.graph.NodeFactory;
+import com.hp.hpl.jena.graph.Triple;
+import com.hp.hpl.jena.sparql.core.Var;
+
+/**
+ * Test case for {@link TripleProjection}.
+ *
+ * @author Andrea Gazzarini
+ * @since 1.1
+ */
+public class TripleProjectionTestCase {
+	private static final Node S = NodeFactory.createURI("http://example.org/s");
+	private static final Node P = NodeFactory.createURI("http://example.org/p");
+	private static final Node O = NodeFactory.createLiteral("1");
+
+	/**
+	 * All positions are loaded if the pattern doesn't fix any of them.
+	 */
+	@Test
+	public void all() {
+		assertEquals(new HashSet<String>(Arrays.asList(Field.S, Field.P, Field.O)), TripleProjection.ALL.fields());
+		assertEquals(
+				TripleProjection.ALL.fields(), 
+				TripleProjection.of(Triple.create(Var.alloc("s"), Var.alloc("p"), Var.alloc("o"))).fields());
+	}
+
+	/**
+	 * Positions fixed by the pattern are rebuilt from the pattern, except literal objects.
+	 */
+	@Test
+	public void constants() {
+		final TripleProjection cut = TripleProjection.of(Triple.create(Var.alloc("s"), P, O));
+		assertEquals(new HashSet<String>(Arrays.asList(Field.S, Field.O)), cut.fields());
+		
+		final Triple triple = cut.triple("<http://example.org/s>", null, "\"01\"");
+		assertEquals(S, triple.getSubject());
+		assertEquals(P, triple.getPredicate());
+		assertEquals(NodeFactory.createLiteral("01"), triple.getObject());
+		
+		assertTrue(TripleProjection.of(Triple.create(S, P, S)).fields().isEmpty());
+	}
+
+	/**
+	 * Variables that are not needed are not loaded, unless they occur twice in the pattern.
+	 */
+	@Test
+	public void projection() {
+		final TripleProjection cut = TripleProjection.of(
+				Triple.create(Var.alloc("s"), P, Var.alloc("o")), 
+				Collections.singleton(Var.alloc("s")));
+		assertEquals(Collections.singleton(Field.S), cut.fields());
+		assertEquals(Node.ANY, cut.triple("<http://example.org/s>", null, null).getObject());
+		
+		assertEquals(
+				new HashSet<String>(Arrays.asList(Field.S, Field.O)), 
+				TripleProjection.of(
+						Triple.create(Var.alloc("x"), P, Var.alloc("x")), 
+						Collections.<Var>emptySet()).fields());
+	}
+}
@@ -0,0 +1,240 @@
+package org.gazzax.labs.solrdf.graph.cloud;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Matchers.anyCollectionOf;
+import static org.mockito.Matchers.anyListOf;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.Arrays;
+
+import org.apache.solr.client.solrj.SolrClient;
+import org.apache.solr.client.solrj.SolrServerException;
+import org.apache.solr.common.SolrInputDocument;
+import org.apache.solr.common.params.ShardParams;
+import org.apache.solr.schema.IndexSchema;
+import org.apache.solr.schema.SchemaField;
+import org.apache.solr.schema.StrField;
+import org.gazzax.labs.solrdf.Field;
+import org.gazzax.labs.solrdf.graph.PageSizer;
+import org.gazzax.labs.solrdf.graph.SolRDFGraph;
+import org.gazzax.labs.solrdf.graph.standalone.TripleDocumentFactory;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.InOrder;
+import org.mockito.Matchers;
+
+import com.hp.hpl.jena.datatypes.xsd.XSDDatatype;
+import com.hp.hpl.jena.graph.Node;
+import com.hp.hpl.jena.graph.NodeFactory;
+import com.hp.hpl.jena.graph.Triple;
+import com.hp.hpl.jena.shared.AddDeniedException;
+
+/**
+ * Test case for {@link CloudGraph}.
+ *
+ * @author Andrea Gazzarini
+ * @since 1.1
+ */
+public class CloudGraphTestCase {
+	private CloudGraph cut;
+	private SolrClient cloud;
+
+	private final Node s = NodeFactory.createURI("http://example.org/s");
+	private final Node p = NodeFactory.createURI("http://example.org/p");
+
+	/**
+	 * Setup fixture for this test case.
+	 */
+	@Before
+	public void setUp() {
+		cloud = mock(SolrClient.class);
+		cut = new CloudGraph(NodeFactory.createURI("http://example.org/g"), cloud, SolRDFGraph.DEFAULT_QUERY_FETCH_SIZE, null, false, false, false, null, 0, PageSizer.DEFAULT_MEMORY_BUDGET);
+	}
+
+	/**
+	 * Concrete triples must be deleted by id, in batches.
+	 *
+	 * @throws Exception never, otherwise the test fails.
+	 */
+	@Test
+	public void concreteTriplesAreDeletedById() throws Exception {
+		final int howManyTriples = CloudGraph.DELETE_BATCH_SIZE + 1;
+		for (int i = 0; i < howManyTriples; i++) {
+			cut.performDelete(Triple.create(s, p, NodeFactory.createLiteral(String.valueOf(i))));
+		}
+
+		verify(cloud, times(1)).deleteById(anyListOf(String.class));
+		assertEquals(1, cut.pendingDeletes.size());
+
+		cut.close();
+
+		verify(cloud, times(2)).deleteById(anyListOf(String.class));
+		verify(cloud, never()).deleteByQuery(anyString());
+		assertTrue(cut.pendingDeletes.isEmpty());
+	}
+
+	/**
+	 * The id of a deleted triple must be the id of the document that has been created for it.
+	 *
+	 * @throws Exception never, otherwise the test fails.
+	 */
+	@Test
+	public void deletedIdMatchesIndexedId() throws Exception {
+		final Triple triple = Triple.create(s, p, NodeFactory.createLiteral("Rome", "it", false));
+
+		cut.performDelete(triple);
+
+		assertEquals(
+				Arrays.asList(SolRDFGraph.documentId("<http://example.org/g>", triple, false)),
+				cut.pendingDeletes);
+	}
+
+	/**
+	 * Pending changes must be flushed in the order they were made.
+	 *
+	 * @throws Exception never, otherwise the test fails.
+	 */
+	@Test
+	public void pendingChangesAreFlushedInOrder() throws Exception {
+		final Triple triple = Triple.create(s, p, NodeFactory.createURI("http://example.org/o"));
+
+		cut.performDelete(triple);
+		cut.performAdd(triple);
+		cut.performDelete(triple);
+		cut.performDelete(Triple.createMatch(s, null, null));
+
+		final InOrder order = inOrder(cloud);
+		order.verify(cloud).deleteById(anyListOf(String.class));
+		order.verify(cloud).add(anyCollectionOf(SolrInputDocument.class));
+		order.verify(cloud).deleteById(anyListOf(String.class));
+		order.verify(cloud).deleteByQuery(anyString());
+	}
+
+	/**
+	 * Added triples must be sent in batches.
+	 *
+	 * @throws Exception never, otherwise the test fails.
+	 */
+	@Test
+	public void triplesAreAddedInBatches() throws Exception {
+		final int howManyTriples = CloudGraph.ADD_BATCH_SIZE + 1;
+		for (int i = 0; i < howManyTriples; i++) {
+			cut.performAdd(Triple.create(s, p, NodeFactory.createLiteral(String.valueOf(i))));
+		}
+
+		verify(cloud, times(1)).add(anyCollectionOf(SolrInputDocument.class));
+		assertEquals(1, cut.pendingAdds.size());
+
+		cut.close();
+
+		verify(cloud, times(2)).add(anyCollectionOf(SolrInputDocument.class));
+		verify(cloud, never()).add(Matchers.any(SolrInputDocument.class));
+		assertTrue(cut.pendingAdds.isEmpty());
+	}
+
+	/**
+	 * A failed batch must be reported and discarded.
+	 *
+	 * @throws Exception never, otherwise the test fails.
+	 */
+	@Test
+	public void batchFailure() throws Exception {
+		when(cloud.add(anyCollectionOf(SolrInputDocument.class))).thenThrow(new SolrServerException("shard down"));
+		cut.performAdd(Triple.create(s, p, NodeFactory.createLiteral("1")));
+
+		try {
+			cut.flush();
+			fail();
+		} catch (final AddDeniedException expected) {
+			assertTrue(cut.pendingAdds.isEmpty());
+		}
+	}
+
+	/**
+	 * With subject routing, ids must be prefixed with the subject shard key and subject lookups must be routed.
+	 *
+	 * @throws Exception never, otherwise the test fails.
+	 */
+	@Test
+	public void subjectRouting() throws Exception {
+		cut = new CloudGraph(NodeFactory.createURI("http://example.org/g"), cloud, SolRDFGraph.DEFAULT_QUERY_FETCH_SIZE, null, false, true, false, null, 0, PageSizer.DEFAULT_MEMORY_BUDGET);
+		final Triple triple = Triple.create(s, p, NodeFactory.createURI("http://example.org/o"));
+
+		cut.performDelete(triple);
+		assertEquals(
+				Arrays.asList(SolRDFGraph.shardKey(s) + SolRDFGraph.documentId("<http://example.org/g>", triple, false)),
+				cut.pendingDeletes);
+
+		final DeepPagingIterator boundSubject = (DeepPagingIterator) cut.query(Triple.createMatch(s, null, null));
+		assertEquals(SolRDFGraph.shardKey(s), boundSubject.query.get(ShardParams._ROUTE_));
+
+		final DeepPagingIterator unboundSubject = (DeepPagingIterator) cut.query(Triple.createMatch(null, p, null));
+		assertNull(unboundSubject.query.get(ShardParams._ROUTE_));
+	}
+
+	/**
+	 * Documents loaded in bulk must have the same (routed) identifiers of the documents written by the graph.
+	 */
+	@Test
+	public void subjectRoutingIsSharedByAllWriters() {
+		final IndexSchema schema = mock(IndexSchema.class);
+		when(schema.getFieldOrNull(Field.S_ROUTE)).thenReturn(new SchemaField(Field.S_ROUTE, new StrField()));
+		assertTrue(SolRDFGraph.hasSubjectRouting(schema));
+
+		cut = new CloudGraph(NodeFactory.createURI("http://example.org/g"), cloud, SolRDFGraph.DEFAULT_QUERY_FETCH_SIZE, null, false, true, false, null, 0, PageSizer.DEFAULT_MEMORY_BUDGET);
+		final Triple triple = Triple.create(s, p, NodeFactory.createLiteral("1"));
+
+		final String id = (String) new TripleDocumentFactory(schema).document("<http://example.org/g>", triple).getFieldValue(Field.ID);
+		assertTrue(id.startsWith(SolRDFGraph.shardKey(s)));
+		assertEquals(cut.id(triple), id);
+	}
+	
+	/**
+	 * Added documents must be built by the shared document factory, with the same fields of the local write path.
+	 */
+	@Test
+	public void documentsAreBuiltByTheSharedFactory() {
+		cut = new CloudGraph(NodeFactory.createURI("http://example.org/g"), cloud, SolRDFGraph.DEFAULT_QUERY_FETCH_SIZE, null, true, false, false, null, 0, PageSizer.DEFAULT_MEMORY_BUDGET);
+		final Triple triple = Triple.create(s, p, NodeFactory.createLiteral("1.5", XSDDatatype.XSDdouble));
+
+		cut.performAdd(triple);
+
+		final SolrInputDocument document = cut.pendingAdds.get(0);
+		assertEquals(cut.id(triple), document.getFieldValue(Field.ID));
+		assertEquals(1.5d, document.getFieldValue(Field.NUMERIC_OBJECT));
+		assertEquals(SolRDFGraph.NULL_LANGUAGE, document.getFieldValue(Field.LANG));
+		assertTrue(document.containsKey(Field.S_ID));
+		assertTrue(document.containsKey(Field.P_ID));
+		assertTrue(document.containsKey(Field.O_ID));
+	}
+	
+	/**
+	 * On a collection built with legacy identifiers, triples are added with the legacy identifiers, 
+	 * concrete triples are deleted by query and documents are not routed by subject.
+	 *
+	 * @throws Exception never, otherwise the test fails.
+	 */
+	@Test
+	public void legacyIdentifiers() throws Exception {
+		cut = new CloudGraph(NodeFactory.createURI("http://example.org/g"), cloud, SolRDFGraph.DEFAULT_QUERY_FETCH_SIZE, null, false, true, true, null, 0, PageSizer.DEFAULT_MEMORY_BUDGET);
+		final Triple triple = Triple.create(s, p, NodeFactory.createLiteral("1"));
+
+		assertEquals(SolRDFGraph.legacyDocumentId("<http://example.org/g>", triple), cut.id(triple));
+		assertFalse(cut.subjectRouting);
+
+		cut.performDelete(triple);
+		assertTrue(cut.pendingDeletes.isEmpty());
+		verify(cloud).deleteByQuery(anyString());
+		verify(cloud, never()).deleteById(anyListOf(String.class));
+	}
+}
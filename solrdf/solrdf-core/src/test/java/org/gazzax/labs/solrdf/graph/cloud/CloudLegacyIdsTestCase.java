@@ -0,0 +1,125 @@
+package org.gazzax.labs.solrdf.graph.cloud;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import org.apache.solr.client.solrj.impl.CloudSolrClient;
+import org.apache.solr.client.solrj.response.QueryResponse;
+import org.apache.solr.common.SolrDocument;
+import org.apache.solr.common.SolrDocumentList;
+import org.apache.solr.common.params.SolrParams;
+import org.gazzax.labs.solrdf.Field;
+import org.gazzax.labs.solrdf.graph.SolRDFGraph;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.hp.hpl.jena.graph.NodeFactory;
+import com.hp.hpl.jena.graph.Triple;
+
+/**
+ * Test case for {@link CloudLegacyIds}.
+ *
+ * @author Andrea Gazzarini
+ * @since 1.1
+ */
+public class CloudLegacyIdsTestCase {
+	private final Triple triple = Triple.create(
+			NodeFactory.createURI("http://example.org/s"), 
+			NodeFactory.createURI("http://example.org/p"), 
+			NodeFactory.createURI("http://example.org/o"));
+	
+	private CloudSolrClient cloud;
+	private SolrDocumentList documents;
+
+	/**
+	 * Setup fixture for this test case.
+	 *
+	 * @throws Exception never, otherwise the test fails.
+	 */
+	@Before
+	public void setUp() throws Exception {
+		CloudLegacyIds.CACHE.clear();
+
+		documents = new SolrDocumentList();
+		final QueryResponse response = mock(QueryResponse.class);
+		when(response.getResults()).thenReturn(documents);
+
+		cloud = mock(CloudSolrClient.class);
+		when(cloud.getDefaultCollection()).thenReturn("store");
+		when(cloud.query(any(SolrParams.class))).thenReturn(response);
+	}
+
+	/**
+	 * The identifiers format is told by the collection, and it is probed once.
+	 *
+	 * @throws Exception never, otherwise the test fails.
+	 */
+	@Test
+	public void legacyCollection() throws Exception {
+		documents.add(document(SolRDFGraph.shardKey(triple.getSubject()) + SolRDFGraph.legacyDocumentId("_", triple)));
+
+		assertTrue(CloudLegacyIds.get(cloud));
+		assertTrue(CloudLegacyIds.get(cloud));
+		verify(cloud, times(1)).query(any(SolrParams.class));
+	}
+
+	/**
+	 * A collection with the current identifiers is not a legacy collection.
+	 *
+	 * @throws Exception never, otherwise the test fails.
+	 */
+	@Test
+	public void currentCollection() throws Exception {
+		documents.add(document(SolRDFGraph.documentId("_", triple, true)));
+
+		assertFalse(CloudLegacyIds.get(cloud));
+		assertFalse(CloudLegacyIds.get(cloud));
+		verify(cloud, times(1)).query(any(SolrParams.class));
+	}
+
+	/**
+	 * An empty collection has no legacy identifiers, and it is probed again until it gets some document.
+	 *
+	 * @throws Exception never, otherwise the test fails.
+	 */
+	@Test
+	public void emptyCollection() throws Exception {
+		assertFalse(CloudLegacyIds.get(cloud));
+
+		documents.add(document(SolRDFGraph.legacyDocumentId("_", triple)));
+		assertTrue(CloudLegacyIds.get(cloud));
+		verify(cloud, times(2)).query(any(SolrParams.class));
+	}
+
+	/**
+	 * An invalidated answer is probed again.
+	 *
+	 * @throws Exception never, otherwise the test fails.
+	 */
+	@Test
+	public void invalidation() throws Exception {
+		documents.add(document(SolRDFGraph.documentId("_", triple, false)));
+
+		CloudLegacyIds.get(cloud);
+		CloudLegacyIds.invalidate(cloud);
+		CloudLegacyIds.get(cloud);
+		verify(cloud, times(2)).query(any(SolrParams.class));
+	}
+
+	/**
+	 * Builds a result document with a given identifier.
+	 *
+	 * @param id the document identifier.
+	 * @return a result document with the given identifier.
+	 */
+	private SolrDocument document(final String id) {
+		final SolrDocument document = new SolrDocument();
+		document.setField(Field.ID, id);
+		return document;
+	}
+}
@@ -0,0 +1,82 @@
+package org.gazzax.labs.solrdf.graph.cloud;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import org.apache.solr.client.solrj.impl.CloudSolrClient;
+import org.apache.solr.client.solrj.response.QueryResponse;
+import org.apache.solr.common.params.SolrParams;
+import org.apache.solr.common.util.NamedList;
+import org.apache.solr.common.util.SimpleOrderedMap;
+import org.gazzax.labs.solrdf.graph.GraphStatistics;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Test case for {@link CloudStatistics}.
+ *
+ * @author Andrea Gazzarini
+ * @since 1.1
+ */
+public class CloudStatisticsTestCase {
+	private CloudSolrClient cloud;
+
+	/**
+	 * Setup fixture for this test case.
+	 *
+	 * @throws Exception never, otherwise the test fails.
+	 */
+	@Before
+	public void setUp() throws Exception {
+		CloudStatistics.CACHE.clear();
+
+		final NamedList<Object> facets = new SimpleOrderedMap<Object>();
+		facets.add("count", 10L);
+		facets.add("s", 4L);
+		facets.add("o", 7L);
+		final NamedList<Object> body = new NamedList<Object>();
+		body.add("facets", facets);
+
+		final QueryResponse response = mock(QueryResponse.class);
+		when(response.getResponse()).thenReturn(body);
+
+		cloud = mock(CloudSolrClient.class);
+		when(cloud.getDefaultCollection()).thenReturn("store");
+		when(cloud.query(any(SolrParams.class))).thenReturn(response);
+	}
+
+	/**
+	 * Statistics are loaded once and shared, until they expire.
+	 *
+	 * @throws Exception never, otherwise the test fails.
+	 */
+	@Test
+	public void statisticsAreCached() throws Exception {
+		final GraphStatistics statistics = CloudStatistics.get(cloud, CloudStatistics.DEFAULT_TIME_TO_LIVE);
+		assertEquals(10L, statistics.triples());
+		assertSame(statistics, CloudStatistics.get(cloud, CloudStatistics.DEFAULT_TIME_TO_LIVE));
+		verify(cloud, times(1)).query(any(SolrParams.class));
+
+		CloudStatistics.get(cloud, 0);
+		verify(cloud, times(2)).query(any(SolrParams.class));
+	}
+
+	/**
+	 * Invalidated statistics are loaded again.
+	 *
+	 * @throws Exception never, otherwise the test fails.
+	 */
+	@Test
+	public void invalidation() throws Exception {
+		CloudStatistics.get(cloud, CloudStatistics.DEFAULT_TIME_TO_LIVE);
+		CloudStatistics.invalidate(cloud);
+		CloudStatistics.get(cloud, CloudStatistics.DEFAULT_TIME_TO_LIVE);
+
+		verify(cloud, times(2)).query(any(SolrParams.class));
+	}
+}
@@ -0,0 +1,163 @@
+package org.gazzax.labs.solrdf.graph.cloud;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.solr.client.solrj.SolrClient;
+import org.apache.solr.client.solrj.SolrQuery;
+import org.apache.solr.client.solrj.response.QueryResponse;
+import org.apache.solr.common.SolrDocument;
+import org.apache.solr.common.SolrDocumentList;
+import org.apache.solr.common.params.CursorMarkParams;
+import org.apache.solr.common.params.SolrParams;
+import org.apache.solr.search.DocSet;
+import org.gazzax.labs.solrdf.Field;
+import org.gazzax.labs.solrdf.graph.GraphEventConsumer;
+import org.gazzax.labs.solrdf.graph.PageSizer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import com.hp.hpl.jena.graph.Triple;
+
+/**
+ * Test case for {@link DeepPagingIterator}.
+ *
+ * @author Andrea Gazzarini
+ * @since 1.1
+ */
+public class DeepPagingIteratorTestCase {
+	private static final int PAGE_SIZE = 3;
+	private static final String [] CURSOR_MARKS = { CursorMarkParams.CURSOR_MARK_START, "a", "b", "c" };
+
+	private SolrClient cloud;
+	private PrefetchExecutor executor;
+	private GraphEventConsumer consumer;
+	private final Map<String, QueryResponse> responses = new HashMap<String, QueryResponse>();
+
+	/**
+	 * Setup fixture for this test case.
+	 *
+	 * @throws Exception never, otherwise the test fails.
+	 */
+	@Before
+	public void setUp() throws Exception {
+		for (int i = 0; i < CURSOR_MARKS.length; i++) {
+			final boolean last = i == CURSOR_MARKS.length - 1;
+			final SolrDocumentList page = new SolrDocumentList();
+			for (int j = 0; !last && j < PAGE_SIZE; j++) {
+				final SolrDocument document = new SolrDocument();
+				document.setField(Field.S, "<http://example.org/s" + i + "_" + j + ">");
+				document.setField(Field.P, "<http://example.org/p>");
+				document.setField(Field.O, "\"" + j + "\"");
+				page.add(document);
+			}
+
+			final QueryResponse response = mock(QueryResponse.class);
+			when(response.getResults()).thenReturn(page);
+			when(response.getNextCursorMark()).thenReturn(last ? CURSOR_MARKS[i] : CURSOR_MARKS[i + 1]);
+			responses.put(CURSOR_MARKS[i], response);
+		}
+
+		cloud = mock(SolrClient.class);
+		when(cloud.query(any(SolrParams.class))).thenAnswer(new Answer<QueryResponse>() {
+			@Override
+			public QueryResponse answer(final InvocationOnMock invocation) throws Throwable {
+				final SolrParams query = (SolrParams) invocation.getArguments()[0];
+				return responses.get(query.get(CursorMarkParams.CURSOR_MARK_PARAM));
+			}
+		});
+
+		executor = new PrefetchExecutor("test", 1);
+		
+		consumer = new GraphEventConsumer() {
+			@Override
+			public boolean requireTripleBuild() {
+				return true;
+			}
+
+			@Override
+			public void onDocSet(final DocSet docSet) {
+				// Nothing to be done here
+			}
+
+			@Override
+			public void afterTripleHasBeenBuilt(final Triple triple, final int docId) {
+				// Nothing to be done here
+			}
+		};
+	}
+
+	/**
+	 * Shutdown fixture for this test case.
+	 */
+	@After
+	public void tearDown() {
+		executor.shutdown();
+	}
+	
+	/**
+	 * With or without prefetching, all pages must be returned.
+	 */
+	@Test
+	public void allPagesAreReturned() {
+		for (int prefetchPages = 0; prefetchPages < 3; prefetchPages++) {
+			final DeepPagingIterator cut = new DeepPagingIterator(cloud, new SolrQuery("*:*"), consumer, executor, prefetchPages, new PageSizer(PAGE_SIZE, PageSizer.DEFAULT_MEMORY_BUDGET));
+			int count = 0;
+			while (cut.hasNext()) {
+				cut.next();
+				count++;
+			}
+			cut.close();
+
+			assertEquals((CURSOR_MARKS.length - 1) * PAGE_SIZE, count);
+		}
+	}
+
+	/**
+	 * An abandoned iterator must stop prefetching.
+	 */
+	@Test
+	public void close() {
+		final DeepPagingIterator cut = new DeepPagingIterator(cloud, new SolrQuery("*:*"), consumer, executor, 1, new PageSizer(PAGE_SIZE, PageSizer.DEFAULT_MEMORY_BUDGET));
+		assertTrue(cut.hasNext());
+		cut.next();
+
+		cut.close();
+
+		assertTrue(cut.prefetcher.pages.isEmpty());
+	}
+
+	/**
+	 * If all the prefetch threads are busy, a scan must fetch its pages synchronously.
+	 */
+	@Test
+	public void synchronousFetchWhenThePoolIsFull() {
+		final DeepPagingIterator busy = new DeepPagingIterator(cloud, new SolrQuery("*:*"), consumer, executor, 1, new PageSizer(PAGE_SIZE, PageSizer.DEFAULT_MEMORY_BUDGET));
+		assertTrue(busy.hasNext());
+		busy.next();
+		assertNotNull(busy.prefetcher);
+		
+		final DeepPagingIterator cut = new DeepPagingIterator(cloud, new SolrQuery("*:*"), consumer, executor, 1, new PageSizer(PAGE_SIZE, PageSizer.DEFAULT_MEMORY_BUDGET));
+		int count = 0;
+		while (cut.hasNext()) {
+			cut.next();
+			count++;
+		}
+		cut.close();
+		busy.close();
+		
+		assertNull(cut.prefetcher);
+		assertEquals((CURSOR_MARKS.length - 1) * PAGE_SIZE, count);
+	}
+}
@@ -0,0 +1,356 @@
+package org.gazzax.labs.solrdf.graph.standalone;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.lucene.analysis.core.KeywordAnalyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field.Store;
+import org.apache.lucene.document.SortedDocValuesField;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.LeafReader;
+import org.apache.lucene.index.SortedDocValues;
+import org.apache.lucene.store.RAMDirectory;
+import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.FixedBitSet;
+import org.apache.solr.schema.IndexSchema;
+import org.apache.solr.schema.SchemaField;
+import org.apache.solr.schema.StrField;
+import org.apache.solr.search.BitDocSet;
+import org.apache.solr.search.SolrIndexSearcher;
+import org.gazzax.labs.solrdf.Field;
+import org.gazzax.labs.solrdf.NTriples;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import com.carrotsearch.hppc.IntIntOpenHashMap;
+import com.hp.hpl.jena.datatypes.xsd.XSDDatatype;
+import com.hp.hpl.jena.graph.Node;
+import com.hp.hpl.jena.graph.NodeFactory;
+import com.hp.hpl.jena.graph.Triple;
+import com.hp.hpl.jena.query.QueryExecution;
+import com.hp.hpl.jena.query.QueryExecutionFactory;
+import com.hp.hpl.jena.query.QueryFactory;
+import com.hp.hpl.jena.query.QuerySolution;
+import com.hp.hpl.jena.rdf.model.Model;
+import com.hp.hpl.jena.rdf.model.ModelFactory;
+import com.hp.hpl.jena.sparql.algebra.Algebra;
+import com.hp.hpl.jena.sparql.algebra.Op;
+import com.hp.hpl.jena.sparql.algebra.op.Op1;
+import com.hp.hpl.jena.sparql.algebra.op.OpGroup;
+import com.hp.hpl.jena.sparql.core.Var;
+import com.hp.hpl.jena.sparql.expr.NodeValue;
+
+/**
+ * Test case for {@link AggregateEvaluator}.
+ *
+ * @author Andrea Gazzarini
+ * @since 1.1
+ */
+public class AggregateEvaluatorTestCase {
+	private static final String PREFIX = "PREFIX ex: <http://example.org/> ";
+	// See org.apache.solr.schema.FieldProperties (not visible here)
+	private static final int DOC_VALUES = 0x8000;
+
+	/**
+	 * Counts, bounds, sums and averages of a single pattern (optionally grouped by one of its members) are answered by the index.
+	 */
+	@Test
+	public void supported() {
+		for (final String query : new String[] {
+				"SELECT (COUNT(*) AS ?n) WHERE { ?s a ex:Product }",
+				"SELECT (COUNT(?s) AS ?n) WHERE { ?s a ex:Product }",
+				"SELECT (MIN(?price) AS ?min) (MAX(?price) AS ?max) (SUM(?price) AS ?sum) (AVG(?price) AS ?avg) WHERE { ?s ex:price ?price }",
+				"SELECT ?p (COUNT(*) AS ?n) WHERE { ?s ?p ?o } GROUP BY ?p",
+				"SELECT ?o (COUNT(?s) AS ?n) WHERE { ?s a ?o } GROUP BY ?o",
+				"SELECT ?g (COUNT(*) AS ?n) WHERE { GRAPH ?g { ?s ?p ?o } } GROUP BY ?g" }) {
+			assertTrue(query, AggregateEvaluator.isSupported(group(query)));
+		}
+	}
+
+	/**
+	 * DISTINCT, expressions, joins and non-count aggregates of groups are left to Jena.
+	 */
+	@Test
+	public void notSupported() {
+		for (final String query : new String[] {
+				"SELECT (COUNT(DISTINCT ?s) AS ?n) WHERE { ?s a ex:Product }",
+				"SELECT (COUNT(?x) AS ?n) WHERE { ?s a ex:Product }",
+				"SELECT (SUM(?price * 2) AS ?sum) WHERE { ?s ex:price ?price }",
+				"SELECT (MAX(?s) AS ?max) WHERE { ?s ex:price ?price }",
+				"SELECT (COUNT(*) AS ?n) WHERE { ?s a ex:Product . ?s ex:price ?price }",
+				"SELECT ?p (SUM(?o) AS ?sum) WHERE { ?s ?p ?o } GROUP BY ?p",
+				"SELECT ?p ?s (COUNT(*) AS ?n) WHERE { ?s ?p ?o } GROUP BY ?p ?s",
+				"SELECT ?g (COUNT(*) AS ?n) WHERE { GRAPH ?g { ?g ?p ?o } } GROUP BY ?g" }) {
+			assertFalse(query, AggregateEvaluator.isSupported(group(query)));
+		}
+	}
+
+	/**
+	 * Each member of a pattern (and the graph variable) maps to its field.
+	 */
+	@Test
+	public void field() {
+		final OpGroup op = group("SELECT ?g (COUNT(*) AS ?n) WHERE { GRAPH ?g { ?s ?p ?o } } GROUP BY ?g");
+		final Var graphVar = AggregateEvaluator.graphVar(op.getSubOp());
+		assertEquals(Var.alloc("g"), graphVar);
+
+		final Triple pattern = AggregateEvaluator.triplePattern(op.getSubOp());
+		assertEquals(Field.C, AggregateEvaluator.field(pattern, graphVar, Var.alloc("g")));
+		assertEquals(Field.S, AggregateEvaluator.field(pattern, graphVar, Var.alloc("s")));
+		assertEquals(Field.P, AggregateEvaluator.field(pattern, graphVar, Var.alloc("p")));
+		assertEquals(Field.O, AggregateEvaluator.field(pattern, graphVar, Var.alloc("o")));
+		assertNull(AggregateEvaluator.field(pattern, graphVar, Var.alloc("x")));
+	}
+
+	/**
+	 * Sums and averages have the same value and type of Jena's SUM and AVG (i.e. with the XSD numeric type promotion).
+	 *
+	 * @throws Exception never, otherwise the test fails.
+	 */
+	@Test
+	public void sumAndAverage() throws Exception {
+		final XSDDatatype [][] typesOfValues = {
+				{ XSDDatatype.XSDinteger, XSDDatatype.XSDinteger, XSDDatatype.XSDint },
+				{ XSDDatatype.XSDdecimal, XSDDatatype.XSDdecimal, XSDDatatype.XSDdecimal },
+				{ XSDDatatype.XSDinteger, XSDDatatype.XSDdecimal, XSDDatatype.XSDinteger },
+				{ XSDDatatype.XSDfloat, XSDDatatype.XSDinteger, XSDDatatype.XSDfloat },
+				{ XSDDatatype.XSDdouble, XSDDatatype.XSDdecimal, XSDDatatype.XSDfloat } };
+		final String [][] lexicalValues = {
+				{ "9007199254740993", "9007199254740993", "1", "7", "1" },
+				{ "0.1", "0.1", "0.1", "12345678901234567890.123456789", "0.2" },
+				{ "1", "1.5", "2", "3", "4.25" },
+				{ "1.5", "1", "1.5", "2", "3" },
+				{ "0.1", "0.1", "0.1", "1e300", "0.2" } };
+
+		for (int i = 0; i < typesOfValues.length; i++) {
+			final Model model = ModelFactory.createDefaultModel();
+			final Node [] values = new Node[lexicalValues[i].length];
+			for (int j = 0; j < values.length; j++) {
+				values[j] = NodeFactory.createLiteral(lexicalValues[i][j], typesOfValues[i][j % typesOfValues[i].length]);
+				model.getGraph().add(new Triple(
+						NodeFactory.createURI("http://example.org/s" + j),
+						NodeFactory.createURI("http://example.org/value"),
+						values[j]));
+			}
+
+			final QueryExecution execution = QueryExecutionFactory.create(
+					PREFIX + "SELECT (SUM(?o) AS ?sum) (AVG(?o) AS ?avg) WHERE { ?s ex:value ?o }",
+					model);
+			try {
+				final QuerySolution expected = execution.execSelect().next();
+				final NodeValue sum = sum(values);
+				assertSameValue(expected.get("sum").asNode(), sum);
+				assertSameValue(expected.get("avg").asNode(), AggregateEvaluator.average(sum, values.length));
+			} finally {
+				execution.close();
+			}
+		}
+	}
+
+	/**
+	 * Like in Jena, the sum and the average of no values are zero.
+	 *
+	 * @throws Exception never, otherwise the test fails.
+	 */
+	@Test
+	public void noValues() throws Exception {
+		final NodeValue sum = AggregateEvaluator.sum(NodeValue.nvZERO, null, new IntIntOpenHashMap());
+		assertEquals(NodeValue.nvZERO, sum);
+		assertEquals(NodeValue.nvZERO, AggregateEvaluator.average(sum, 0));
+	}
+
+	/**
+	 * Objects which could have been truncated in docValues cannot be summed.
+	 *
+	 * @throws Exception never, otherwise the test fails.
+	 */
+	@Test
+	public void truncatedObjects() throws Exception {
+		final StringBuilder builder = new StringBuilder();
+		while (builder.length() < TripleReader.MAX_CHARS) {
+			builder.append("1234567890");
+		}
+		assertNull(sum(
+				NodeFactory.createLiteral("1", XSDDatatype.XSDinteger),
+				NodeFactory.createLiteral(builder.toString(), XSDDatatype.XSDinteger)));
+	}
+
+	/**
+	 * Groups are counted on docValues, on stored values when docValues could have been truncated, and on terms
+	 * for graphs or segments without docValues.
+	 *
+	 * @throws Exception never, otherwise the test fails.
+	 */
+	@Test
+	public void groupCounts() throws Exception {
+		final StringBuilder builder = new StringBuilder("<http://example.org/");
+		while (builder.length() < TripleReader.MAX_CHARS) {
+			builder.append("long");
+		}
+		final String long1 = builder + "1>";
+		final String long2 = builder + "2>";
+
+		final IndexWriter writer = new IndexWriter(new RAMDirectory(), new IndexWriterConfig(new KeywordAnalyzer()));
+		try {
+			// A segment with docValues (and two subjects truncated to the same docValue)
+			writer.addDocument(triple("<http://example.org/a>", "g1", true));
+			writer.addDocument(triple("<http://example.org/a>", "g2", true));
+			writer.addDocument(triple(long1, "g1", true));
+			writer.addDocument(triple(long2, "g1", true));
+			writer.addDocument(triple("<http://example.org/b>", "g1", true));
+			writer.commit();
+
+			// A segment without docValues (i.e. built with an older schema)
+			writer.addDocument(triple("<http://example.org/a>", "g1", false));
+			writer.addDocument(triple("<http://example.org/c>", "g2", false));
+			writer.commit();
+
+			final DirectoryReader reader = DirectoryReader.open(writer.getDirectory());
+			try {
+				assertEquals(2, reader.leaves().size());
+				final SolrIndexSearcher searcher = searcher(reader);
+
+				// All triples but the one with <b>
+				final FixedBitSet bits = new FixedBitSet(reader.maxDoc());
+				bits.set(0, reader.maxDoc());
+				bits.clear(4);
+				final BitDocSet docSet = new BitDocSet(bits);
+
+				final Map<String, Integer> subjects = AggregateEvaluator.counts(searcher, Field.S, docSet);
+				assertEquals(4, subjects.size());
+				assertEquals(Integer.valueOf(3), subjects.get("<http://example.org/a>"));
+				assertEquals(Integer.valueOf(1), subjects.get(long1));
+				assertEquals(Integer.valueOf(1), subjects.get(long2));
+				assertEquals(Integer.valueOf(1), subjects.get("<http://example.org/c>"));
+
+				final Map<String, Integer> graphs = AggregateEvaluator.counts(searcher, Field.C, docSet);
+				assertEquals(2, graphs.size());
+				assertEquals(Integer.valueOf(4), graphs.get("g1"));
+				assertEquals(Integer.valueOf(2), graphs.get("g2"));
+			} finally {
+				reader.close();
+			}
+		} finally {
+			writer.close();
+		}
+	}
+
+	/**
+	 * Builds a searcher over a given reader, with a schema that declares the docValues copies.
+	 *
+	 * @param reader the index reader.
+	 * @return a searcher over the given reader.
+	 * @throws Exception never, otherwise the test fails.
+	 */
+	private SolrIndexSearcher searcher(final DirectoryReader reader) throws Exception {
+		final IndexSchema schema = mock(IndexSchema.class);
+		for (final String name : TripleReader.DOCVALUES_FIELDS) {
+			final SchemaField field = new SchemaField(name, new StrField(), DOC_VALUES, null);
+			when(schema.getFieldOrNull(name)).thenReturn(field);
+			when(schema.getField(name)).thenReturn(field);
+		}
+
+		final SolrIndexSearcher searcher = mock(SolrIndexSearcher.class);
+		when(searcher.getSchema()).thenReturn(schema);
+		when(searcher.getTopReaderContext()).thenReturn(reader.getContext());
+		when(searcher.doc(anyInt(), any(Set.class))).thenAnswer(new Answer<Document>() {
+			@SuppressWarnings("unchecked")
+			@Override
+			public Document answer(final InvocationOnMock invocation) throws Throwable {
+				return reader.document((Integer) invocation.getArguments()[0], (Set<String>) invocation.getArguments()[1]);
+			}
+		});
+		return searcher;
+	}
+
+	/**
+	 * Builds the document of a triple, with its subject and graph.
+	 *
+	 * @param s the subject.
+	 * @param c the graph.
+	 * @param docValues true if the document has the (truncated) docValues copy of the subject.
+	 * @return the document of the given triple.
+	 */
+	private Document triple(final String s, final String c, final boolean docValues) {
+		final Document document = new Document();
+		document.add(new StringField(Field.S, s, Store.YES));
+		document.add(new StringField(Field.C, c, Store.YES));
+		if (docValues) {
+			document.add(new SortedDocValuesField(Field.S_DV, new BytesRef(s.substring(0, Math.min(s.length(), TripleReader.MAX_CHARS)))));
+		}
+		return document;
+	}
+
+	/**
+	 * Sums a set of values like {@link AggregateEvaluator} does, i.e. on the (o_dv) docValues of an index.
+	 *
+	 * @param values the values.
+	 * @return the sum of the given values, null if they cannot be summed.
+	 * @throws Exception never, otherwise the test fails.
+	 */
+	private NodeValue sum(final Node ... values) throws Exception {
+		final IndexWriter writer = new IndexWriter(new RAMDirectory(), new IndexWriterConfig(new KeywordAnalyzer()));
+		try {
+			for (final Node value : values) {
+				final Document document = new Document();
+				document.add(new SortedDocValuesField(Field.O_DV, new BytesRef(NTriples.asNt(value))));
+				writer.addDocument(document);
+			}
+			writer.forceMerge(1);
+
+			final DirectoryReader reader = DirectoryReader.open(writer, false);
+			try {
+				final LeafReader leaf = reader.leaves().get(0).reader();
+				final SortedDocValues objects = leaf.getSortedDocValues(Field.O_DV);
+				final IntIntOpenHashMap counts = new IntIntOpenHashMap();
+				for (int docId = 0; docId < leaf.maxDoc(); docId++) {
+					counts.putOrAdd(objects.getOrd(docId), 1, 1);
+				}
+				return AggregateEvaluator.sum(NodeValue.nvZERO, objects, counts);
+			} finally {
+				reader.close();
+			}
+		} finally {
+			writer.close();
+		}
+	}
+
+	/**
+	 * Asserts that a given value has the same value and type of an expected value.
+	 *
+	 * @param expected the expected value.
+	 * @param actual the actual value.
+	 */
+	private void assertSameValue(final Node expected, final NodeValue actual) {
+		assertEquals(expected.getLiteralDatatypeURI(), actual.asNode().getLiteralDatatypeURI());
+		assertTrue(expected + " != " + actual, NodeValue.sameAs(NodeValue.makeNode(expected), actual));
+	}
+
+	/**
+	 * Compiles a given aggregate query and returns its group operation.
+	 *
+	 * @param query the query.
+	 * @return the group operation of the given query.
+	 */
+	private OpGroup group(final String query) {
+		Op op = Algebra.compile(QueryFactory.create(PREFIX + query));
+		while (!(op instanceof OpGroup)) {
+			op = ((Op1) op).getSubOp();
+		}
+		return (OpGroup) op;
+	}
+}
@@ -0,0 +1,303 @@
+package org.gazzax.labs.solrdf.graph.standalone;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.lucene.search.Query;
+import org.apache.solr.search.DocSet;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.collect.AbstractIterator;
+import com.google.common.collect.Iterators;
+import com.hp.hpl.jena.graph.Node;
+import com.hp.hpl.jena.graph.NodeFactory;
+import com.hp.hpl.jena.graph.Triple;
+import com.hp.hpl.jena.sparql.core.BasicPattern;
+import com.hp.hpl.jena.sparql.core.Var;
+import com.hp.hpl.jena.sparql.engine.binding.Binding;
+import com.hp.hpl.jena.sparql.engine.binding.BindingFactory;
+import com.hp.hpl.jena.sparql.engine.binding.BindingMap;
+
+/**
+ * Test case for {@link BasicPatternEvaluator}.
+ *
+ * @author Andrea Gazzarini
+ * @since 1.1
+ */
+public class BasicPatternEvaluatorTestCase {
+	private BasicPatternEvaluator cut;
+
+	private final Var s = Var.alloc("s");
+	private final Var o = Var.alloc("o");
+	private final Var x = Var.alloc("x");
+	private final Node p1 = NodeFactory.createURI("http://example.org/p1");
+	private final Node p2 = NodeFactory.createURI("http://example.org/p2");
+	private final Node subject = NodeFactory.createURI("http://example.org/s");
+	private final Node object = NodeFactory.createLiteral("object");
+
+	/**
+	 * Setup fixture for this test case.
+	 */
+	@Before
+	public void setUp() {
+		cut = new BasicPatternEvaluator(null, LocalGraph.DEFAULT_MAX_INTERMEDIATE_SOLUTIONS);
+	}
+
+	/**
+	 * Variables of a triple pattern must be returned once, in order.
+	 */
+	@Test
+	public void variables() {
+		assertEquals(Arrays.asList(s, o), BasicPatternEvaluator.variables(Triple.create(s, p1, o)));
+		assertEquals(Arrays.asList(s), BasicPatternEvaluator.variables(Triple.create(s, p1, s)));
+		assertEquals(Collections.emptyList(), BasicPatternEvaluator.variables(Triple.create(subject, p1, object)));
+	}
+
+	/**
+	 * A triple matching a pattern must produce a value for each variable.
+	 */
+	@Test
+	public void match() {
+		final Map<Var, Node> result = cut.match(Triple.create(s, p1, o), Triple.create(subject, p1, object));
+		assertEquals(2, result.size());
+		assertEquals(subject, result.get(s));
+		assertEquals(object, result.get(o));
+	}
+
+	/**
+	 * If a variable occurs more than once in a pattern, all corresponding values must be the same.
+	 */
+	@Test
+	public void matchWithRepeatedVariable() {
+		assertNull(cut.match(Triple.create(s, p1, s), Triple.create(subject, p1, object)));
+
+		final Map<Var, Node> result = cut.match(Triple.create(s, p1, s), Triple.create(subject, p1, subject));
+		assertEquals(1, result.size());
+		assertEquals(subject, result.get(s));
+	}
+
+	/**
+	 * The first evaluated pattern must be the most selective one.
+	 * After that, patterns connected with bound variables must be preferred.
+	 */
+	@Test
+	public void next() {
+		final Triple big = Triple.create(s, p1, o);
+		final Triple small = Triple.create(x, p2, object);
+		final List<Triple> patterns = Arrays.asList(big, small);
+
+		final Map<Triple, DocSet> docSets = new HashMap<Triple, DocSet>();
+		docSets.put(big, docSet(1000));
+		docSets.put(small, docSet(10));
+
+		final Set<Var> boundVariables = new HashSet<Var>();
+		assertSame(small, cut.next(patterns, docSets, boundVariables));
+
+		boundVariables.add(s);
+		assertSame(big, cut.next(patterns, docSets, boundVariables));
+	}
+
+	/**
+	 * Only the pattern variables bound in all bindings must be considered as (batch) join variables.
+	 */
+	@Test
+	public void boundVariables() {
+		final BasicPattern pattern = new BasicPattern();
+		pattern.add(Triple.create(s, p1, o));
+		pattern.add(Triple.create(o, p2, x));
+
+		final BindingMap first = BindingFactory.create();
+		first.add(s, subject);
+		first.add(o, object);
+
+		final BindingMap second = BindingFactory.create();
+		second.add(s, subject);
+		second.add(Var.alloc("unrelated"), object);
+
+		assertEquals(new HashSet<Var>(Arrays.asList(s, o)), BasicPatternEvaluator.boundVariables(pattern, Arrays.<Binding>asList(first)));
+		assertEquals(Collections.singleton(s), BasicPatternEvaluator.boundVariables(pattern, Arrays.<Binding>asList(first, second)));
+		assertTrue(BasicPatternEvaluator.boundVariables(pattern, Arrays.asList(BindingFactory.binding())).isEmpty());
+	}
+
+	/**
+	 * A match is compatible with a solution only if they agree on the common variables.
+	 */
+	@Test
+	public void compatible() {
+		final BindingMap solution = BindingFactory.create();
+		solution.add(s, subject);
+
+		final Map<Var, Node> match = new HashMap<Var, Node>();
+		match.put(o, object);
+		assertTrue(cut.compatible(solution, match));
+
+		match.put(s, subject);
+		assertTrue(cut.compatible(solution, match));
+
+		match.put(s, object);
+		assertFalse(cut.compatible(solution, match));
+	}
+
+	/**
+	 * The solutions of the last triple pattern are streamed, not collected.
+	 *
+	 * @throws Exception never, otherwise the test fails.
+	 */
+	@Test
+	public void lastJoinIsStreamed() throws Exception {
+		final JoinRecorder evaluator = new JoinRecorder(LocalGraph.DEFAULT_MAX_INTERMEDIATE_SOLUTIONS);
+		final Iterator<Binding> solutions = evaluator.solve();
+		assertEquals(Integer.valueOf(5), evaluator.produced.get(evaluator.first));
+		assertEquals(Integer.valueOf(0), evaluator.produced.get(evaluator.last));
+
+		solutions.next();
+		assertEquals(Integer.valueOf(1), evaluator.produced.get(evaluator.last));
+
+		assertEquals(14, Iterators.size(solutions));
+		assertEquals(Arrays.asList(1, 5), evaluator.joinedSolutions);
+	}
+
+	/**
+	 * Beyond the maximum number of intermediate solutions, the remaining patterns are evaluated in batches,
+	 * with the same solutions.
+	 *
+	 * @throws Exception never, otherwise the test fails.
+	 */
+	@Test
+	public void intermediateSolutionsInBatches() throws Exception {
+		final JoinRecorder unbounded = new JoinRecorder(LocalGraph.DEFAULT_MAX_INTERMEDIATE_SOLUTIONS);
+		final JoinRecorder bounded = new JoinRecorder(2);
+
+		final Iterator<Binding> solutions = bounded.solve();
+		assertEquals(Arrays.asList(1), bounded.joinedSolutions);
+
+		assertEquals(new HashSet<Binding>(toList(unbounded.solve())), new HashSet<Binding>(toList(solutions)));
+		assertEquals(Arrays.asList(1, 2, 2, 1), bounded.joinedSolutions);
+	}
+
+	/**
+	 * A {@link BasicPatternEvaluator} whose joins bind each unbound variable to 5 (first pattern) or 3 (last pattern) 
+	 * values, and record how many solutions they join (and produce).
+	 *
+	 * @author Andrea Gazzarini
+	 * @since 1.1
+	 */
+	private class JoinRecorder extends BasicPatternEvaluator {
+		final Triple first = Triple.create(s, p1, o);
+		final Triple last = Triple.create(o, p2, x);
+		final Map<Triple, DocSet> docSets = new HashMap<Triple, DocSet>();
+		final List<Integer> joinedSolutions = new ArrayList<Integer>();
+		final Map<Triple, Integer> produced = new HashMap<Triple, Integer>();
+
+		/**
+		 * Builds a new recorder.
+		 *
+		 * @param maxIntermediateSolutions the maximum number of intermediate solutions that are collected at once.
+		 */
+		JoinRecorder(final int maxIntermediateSolutions) {
+			super(null, maxIntermediateSolutions);
+			docSets.put(first, BasicPatternEvaluatorTestCase.this.docSet(10));
+			docSets.put(last, BasicPatternEvaluatorTestCase.this.docSet(100));
+			produced.put(first, 0);
+			produced.put(last, 0);
+		}
+
+		/**
+		 * Solves the two patterns of this recorder.
+		 *
+		 * @return an iterator over the solutions.
+		 * @throws Exception never, otherwise the test fails.
+		 */
+		Iterator<Binding> solve() throws Exception {
+			return solve(
+					Arrays.asList(last, first),
+					Arrays.asList(Collections.<Query>emptyList(), Collections.<Query>emptyList()),
+					Collections.singletonList(BindingFactory.binding()),
+					new HashSet<Var>());
+		}
+
+		@Override
+		DocSet docSet(final Triple triplePattern, final List<Query> constraints) {
+			return docSets.get(triplePattern);
+		}
+
+		@Override
+		DocSet restrict(final DocSet docSet, final Triple triplePattern, final List<Binding> solutions, final Set<Var> boundVariables) {
+			return docSet;
+		}
+
+		@Override
+		Iterator<Binding> join(final List<Binding> solutions, final Triple triplePattern, final DocSet matches, final Set<Var> boundVariables) {
+			joinedSolutions.add(solutions.size());
+			final int values = triplePattern == first ? 5 : 3;
+			final Iterator<Binding> iterator = solutions.iterator();
+			return new AbstractIterator<Binding>() {
+				private Binding solution;
+				private int value = values;
+
+				@Override
+				protected Binding computeNext() {
+					if (value == values) {
+						if (!iterator.hasNext()) {
+							return endOfData();
+						}
+						solution = iterator.next();
+						value = 0;
+					}
+
+					final BindingMap binding = BindingFactory.create(solution);
+					for (final Var variable : variables(triplePattern)) {
+						if (!solution.contains(variable)) {
+							binding.add(variable, NodeFactory.createLiteral(variable.getName() + value));
+						}
+					}
+					value++;
+					produced.put(triplePattern, produced.get(triplePattern) + 1);
+					return binding;
+				}
+			};
+		}
+	}
+
+	/**
+	 * Collects the bindings of a given iterator.
+	 *
+	 * @param iterator the iterator.
+	 * @return the bindings of the given iterator.
+	 */
+	private List<Binding> toList(final Iterator<Binding> iterator) {
+		final List<Binding> result = new ArrayList<Binding>();
+		while (iterator.hasNext()) {
+			result.add(iterator.next());
+		}
+		return result;
+	}
+
+	/**
+	 * Creates a mock {@link DocSet} with the given size.
+	 *
+	 * @param size the {@link DocSet} size.
+	 * @return a mock {@link DocSet} with the given size.
+	 */
+	private DocSet docSet(final int size) {
+		final DocSet result = mock(DocSet.class);
+		when(result.size()).thenReturn(size);
+		return result;
+	}
+}
@@ -0,0 +1,408 @@
+package org.gazzax.labs.solrdf.graph.standalone;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+
+import org.apache.lucene.analysis.core.KeywordAnalyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field.Store;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.BooleanClause.Occur;
+import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.MatchAllDocsQuery;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.Sort;
+import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.store.RAMDirectory;
+import org.apache.lucene.util.FixedBitSet;
+import org.apache.solr.schema.IndexSchema;
+import org.apache.solr.schema.SchemaField;
+import org.apache.solr.schema.StrField;
+import org.apache.solr.search.BitDocSet;
+import org.apache.solr.search.DocSet;
+import org.apache.solr.search.DocSlice;
+import org.apache.solr.search.SolrIndexSearcher;
+import org.apache.solr.search.SortSpec;
+import org.gazzax.labs.solrdf.Field;
+import org.gazzax.labs.solrdf.NTriples;
+import org.gazzax.labs.solrdf.graph.GraphEventConsumer;
+import org.gazzax.labs.solrdf.graph.PageSizer;
+import org.gazzax.labs.solrdf.graph.SolRDFGraph;
+import org.gazzax.labs.solrdf.graph.TripleProjection;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import com.google.common.collect.Iterators;
+import com.hp.hpl.jena.graph.Node;
+import com.hp.hpl.jena.graph.NodeFactory;
+import com.hp.hpl.jena.graph.Triple;
+import com.hp.hpl.jena.sparql.core.Var;
+
+/**
+ * Test case for {@link DocSetIterator}.
+ *
+ * @author Andrea Gazzarini
+ * @since 1.1
+ */
+public class DocSetIteratorTestCase {
+	// See org.apache.solr.schema.FieldProperties (not visible here)
+	private static final int INDEXED = 0x1;
+	private static final String GRAPH = SolRDFGraph.UNNAMED_GRAPH_PLACEHOLDER;
+
+	private final Node p1 = NodeFactory.createURI("http://example.org/p1");
+	private final Node p2 = NodeFactory.createURI("http://example.org/p2");
+	private final Node a = NodeFactory.createLiteral("a");
+	private final Node b = NodeFactory.createLiteral("b");
+
+	private IndexWriter writer;
+	private DirectoryReader reader;
+	private SolrIndexSearcher searcher;
+	private SortSpec sortSpec;
+	private final List<Set<String>> loadedFields = new ArrayList<Set<String>>();
+
+	/**
+	 * Records the events of an iteration.
+	 *
+	 * @author Andrea Gazzarini
+	 * @since 1.1
+	 */
+	class RecordingConsumer implements GraphEventConsumer {
+		final boolean requireTripleBuild;
+		final List<Integer> docIds = new ArrayList<Integer>();
+		final List<DocSet> docSets = new ArrayList<DocSet>();
+
+		/**
+		 * Builds a new consumer.
+		 *
+		 * @param requireTripleBuild what {@link #requireTripleBuild()} returns.
+		 */
+		RecordingConsumer(final boolean requireTripleBuild) {
+			this.requireTripleBuild = requireTripleBuild;
+		}
+
+		@Override
+		public void afterTripleHasBeenBuilt(final Triple triple, final int docId) {
+			docIds.add(docId);
+		}
+
+		@Override
+		public boolean requireTripleBuild() {
+			return requireTripleBuild;
+		}
+
+		@Override
+		public void onDocSet(final DocSet docSet) {
+			docSets.add(docSet);
+		}
+	}
+
+	/**
+	 * Setup fixture for this test case.
+	 * The index has two segments, and documents are not added in identifier order.
+	 *
+	 * @throws Exception never, otherwise the test fails.
+	 */
+	@Before
+	public void setUp() throws Exception {
+		writer = new IndexWriter(new RAMDirectory(), new IndexWriterConfig(new KeywordAnalyzer()));
+		writer.addDocument(triple(5, p1, a, GRAPH));
+		writer.addDocument(triple(3, p2, a, GRAPH));
+		writer.addDocument(triple(1, p1, b, GRAPH));
+		writer.commit();
+
+		writer.addDocument(triple(4, p1, b, GRAPH));
+		writer.addDocument(triple(0, p1, a, "<http://example.org/g>"));
+		writer.addDocument(triple(2, p1, a, GRAPH));
+		writer.addDocument(triple(6, p2, b, GRAPH));
+		writer.commit();
+
+		reader = DirectoryReader.open(writer.getDirectory());
+		assertEquals(2, reader.leaves().size());
+
+		final SchemaField id = new SchemaField(Field.ID, new StrField(), INDEXED, null);
+		final IndexSchema schema = mock(IndexSchema.class);
+		when(schema.getUniqueKeyField()).thenReturn(id);
+		when(schema.getFieldOrNull(Field.ID)).thenReturn(id);
+		when(schema.getField(Field.ID)).thenReturn(id);
+		sortSpec = new SortSpec(new Sort(id.getSortField(false)), new SchemaField[] { id });
+
+		searcher = mock(SolrIndexSearcher.class);
+		when(searcher.getSchema()).thenReturn(schema);
+		when(searcher.getTopReaderContext()).thenReturn(reader.getContext());
+		when(searcher.doc(anyInt(), any(Set.class))).thenAnswer(new Answer<Document>() {
+			@SuppressWarnings("unchecked")
+			@Override
+			public Document answer(final InvocationOnMock invocation) throws Throwable {
+				final Set<String> fields = (Set<String>) invocation.getArguments()[1];
+				loadedFields.add(fields);
+				return reader.document((Integer) invocation.getArguments()[0], fields);
+			}
+		});
+		when(searcher.getDocSet(any(List.class))).thenAnswer(new Answer<DocSet>() {
+			@SuppressWarnings("unchecked")
+			@Override
+			public DocSet answer(final InvocationOnMock invocation) throws Throwable {
+				return docSet((List<Query>) invocation.getArguments()[0]);
+			}
+		});
+		doAnswer(new Answer<SolrIndexSearcher.QueryResult>() {
+			@Override
+			public SolrIndexSearcher.QueryResult answer(final InvocationOnMock invocation) throws Throwable {
+				return search(
+						(SolrIndexSearcher.QueryResult) invocation.getArguments()[0],
+						(SolrIndexSearcher.QueryCommand) invocation.getArguments()[1]);
+			}
+		}).when(searcher).search(any(SolrIndexSearcher.QueryResult.class), any(SolrIndexSearcher.QueryCommand.class));
+	}
+
+	/**
+	 * Shutdown fixture for this test case.
+	 *
+	 * @throws Exception never, otherwise the test fails.
+	 */
+	@After
+	public void tearDown() throws Exception {
+		reader.close();
+		writer.close();
+	}
+
+	/**
+	 * Matching triples must be returned in index order, across segments.
+	 */
+	@Test
+	public void indexOrder() {
+		final RecordingConsumer consumer = new RecordingConsumer(true);
+		final DocSetIterator cut = new DocSetIterator(searcher, filters(Triple.ANY), consumer, TripleProjection.ALL);
+
+		assertEquals(6, Iterators.size(cut));
+		assertEquals(Arrays.asList(0, 1, 2, 3, 5, 6), consumer.docIds);
+	}
+
+	/**
+	 * Matching documents must be collected once, and the consumer notified once, with all of them.
+	 *
+	 * @throws Exception never, otherwise the test fails.
+	 */
+	@Test
+	@SuppressWarnings("unchecked")
+	public void docSetIsCollectedOnce() throws Exception {
+		final RecordingConsumer consumer = new RecordingConsumer(true);
+		final DocSetIterator cut = new DocSetIterator(searcher, filters(Triple.create(Node.ANY, p1, Node.ANY)), consumer, TripleProjection.ALL);
+
+		verify(searcher, never()).getDocSet(any(List.class));
+		assertTrue(cut.hasNext());
+		assertTrue(cut.hasNext());
+		assertEquals(4, Iterators.size(cut));
+		assertFalse(cut.hasNext());
+
+		verify(searcher, times(1)).getDocSet(any(List.class));
+		assertEquals(1, consumer.docSets.size());
+		assertEquals(4, consumer.docSets.get(0).size());
+	}
+
+	/**
+	 * If the consumer doesn't require triples, nothing must be loaded.
+	 *
+	 * @throws Exception never, otherwise the test fails.
+	 */
+	@Test
+	public void tripleBuildNotRequired() throws Exception {
+		final RecordingConsumer consumer = new RecordingConsumer(false);
+		final DocSetIterator cut = new DocSetIterator(searcher, filters(Triple.ANY), consumer, TripleProjection.ALL);
+
+		while (cut.hasNext()) {
+			assertSame(DeepPagingIterator.DUMMY_TRIPLE, cut.next());
+		}
+
+		assertEquals(6, consumer.docIds.size());
+		verify(searcher, never()).doc(anyInt(), any(Set.class));
+	}
+
+	/**
+	 * Only the variable positions of the pattern must be loaded, the others are rebuilt from the pattern.
+	 */
+	@Test
+	public void projection() {
+		final Var s = Var.alloc("s");
+		final Var o = Var.alloc("o");
+		final Triple pattern = Triple.create(s, p1, o);
+		final DocSetIterator cut = new DocSetIterator(searcher, filters(pattern), new RecordingConsumer(true), TripleProjection.of(pattern));
+
+		final Set<Triple> triples = new HashSet<Triple>();
+		while (cut.hasNext()) {
+			triples.add(cut.next());
+		}
+
+		assertEquals(
+				new HashSet<Triple>(Arrays.asList(
+						Triple.create(subject(5), p1, a),
+						Triple.create(subject(1), p1, b),
+						Triple.create(subject(4), p1, b),
+						Triple.create(subject(2), p1, a))),
+				triples);
+		assertEquals(4, loadedFields.size());
+		for (final Set<String> fields : loadedFields) {
+			assertEquals(new HashSet<String>(Arrays.asList(Field.S, Field.O)), fields);
+		}
+	}
+
+	/**
+	 * The unordered scan must return the same triples of the (ordered) deep paging scan, with and without
+	 * additional constraints. Filters are built like {@link LocalGraph} does for both paths.
+	 */
+	@Test
+	public void sameTriplesAsDeepPaging() {
+		final Var s = Var.alloc("s");
+		final Var o = Var.alloc("o");
+		final List<Query> noConstraints = new ArrayList<Query>();
+		final List<Query> objectConstraint = Arrays.<Query>asList(new TermQuery(new Term(Field.O, NTriples.asNt(b))));
+
+		for (final Triple pattern : new Triple[] { Triple.create(s, p1, o), Triple.create(s, Var.alloc("p"), o), Triple.create(subject(3), p2, o) }) {
+			for (final List<Query> constraints : Arrays.asList(noConstraints, objectConstraint)) {
+				final List<Query> filters = filters(pattern);
+				filters.addAll(constraints);
+				final RecordingConsumer unorderedConsumer = new RecordingConsumer(true);
+				final Set<Triple> unordered = new HashSet<Triple>();
+				Iterators.addAll(unordered, new DocSetIterator(searcher, filters, unorderedConsumer, TripleProjection.of(pattern)));
+
+				final SolrIndexSearcher.QueryCommand cmd = new SolrIndexSearcher.QueryCommand();
+				cmd.setQuery(new MatchAllDocsQuery());
+				cmd.setSort(sortSpec.getSort());
+				cmd.setFlags(cmd.getFlags() | SolrIndexSearcher.GET_DOCSET);
+				cmd.setFilterList(filters(pattern));
+				cmd.getFilterList().addAll(constraints);
+				final RecordingConsumer orderedConsumer = new RecordingConsumer(true);
+				final Set<Triple> ordered = new HashSet<Triple>();
+				Iterators.addAll(ordered, new DeepPagingIterator(
+						searcher,
+						cmd,
+						sortSpec,
+						orderedConsumer,
+						new PageSizer(PageSizer.INITIAL_PAGE_SIZE, PageSizer.DEFAULT_MEMORY_BUDGET),
+						TripleProjection.of(pattern)));
+
+				assertEquals(pattern + " " + constraints, ordered, unordered);
+				assertEquals(orderedConsumer.docSets.get(0).size(), unorderedConsumer.docSets.get(0).size());
+			}
+		}
+	}
+
+	/**
+	 * Builds the filters of a given pattern in the default graph, like {@link LocalGraph#filters(Triple)} does.
+	 *
+	 * @param pattern the triple pattern.
+	 * @return the filters of the given pattern.
+	 */
+	private List<Query> filters(final Triple pattern) {
+		final List<Query> filters = new ArrayList<Query>();
+		if (pattern.getSubject().isConcrete()) {
+			filters.add(new TermQuery(new Term(Field.S, NTriples.asNt(pattern.getSubject()))));
+		}
+		if (pattern.getPredicate().isConcrete()) {
+			filters.add(new TermQuery(new Term(Field.P, NTriples.asNtURI(pattern.getPredicate()))));
+		}
+		filters.add(new TermQuery(new Term(Field.C, GRAPH)));
+		return filters;
+	}
+
+	/**
+	 * Collects the documents matching all the given filters.
+	 *
+	 * @param filters the filters.
+	 * @return the documents matching all the given filters.
+	 * @throws IOException in case of I/O failure.
+	 */
+	private DocSet docSet(final List<Query> filters) throws IOException {
+		final BooleanQuery.Builder query = new BooleanQuery.Builder();
+		query.add(new MatchAllDocsQuery(), Occur.MUST);
+		for (final Query filter : filters) {
+			query.add(filter, Occur.MUST);
+		}
+
+		final FixedBitSet bits = new FixedBitSet(reader.maxDoc());
+		for (final ScoreDoc match : new IndexSearcher(reader).search(query.build(), reader.maxDoc()).scoreDocs) {
+			bits.set(match.doc);
+		}
+		return new BitDocSet(bits);
+	}
+
+	/**
+	 * Executes a query command, returning all matches in a single page (in index order).
+	 *
+	 * @param result the query result.
+	 * @param cmd the query command.
+	 * @return the query result.
+	 * @throws IOException in case of I/O failure.
+	 */
+	private SolrIndexSearcher.QueryResult search(final SolrIndexSearcher.QueryResult result, final SolrIndexSearcher.QueryCommand cmd) throws IOException {
+		final DocSet docSet = docSet(cmd.getFilterList());
+		final int [] docs = new int[Math.min(docSet.size(), cmd.getLen())];
+		final Iterator<Integer> iterator = docSet.iterator();
+		for (int i = 0; i < docs.length; i++) {
+			docs[i] = iterator.next();
+		}
+
+		result.setDocList(new DocSlice(0, docs.length, docs, null, docSet.size(), 0));
+		if ((cmd.getFlags() & SolrIndexSearcher.GET_DOCSET) != 0) {
+			result.setDocSet(docSet);
+		}
+		result.setNextCursorMark(cmd.getCursorMark());
+		return result;
+	}
+
+	/**
+	 * Returns the subject with a given number.
+	 *
+	 * @param n the subject number.
+	 * @return the subject with the given number.
+	 */
+	private Node subject(final int n) {
+		return NodeFactory.createURI("http://example.org/s" + n);
+	}
+
+	/**
+	 * Builds the document of a triple.
+	 *
+	 * @param n the subject number, also used for the document identifier.
+	 * @param p the predicate.
+	 * @param o the object.
+	 * @param c the graph.
+	 * @return the document of the given triple.
+	 */
+	private Document triple(final int n, final Node p, final Node o, final String c) {
+		final Document document = new Document();
+		document.add(new StringField(Field.ID, String.valueOf(n), Store.YES));
+		document.add(new StringField(Field.S, NTriples.asNt(subject(n)), Store.YES));
+		document.add(new StringField(Field.P, NTriples.asNtURI(p), Store.YES));
+		document.add(new StringField(Field.O, NTriples.asNt(o), Store.YES));
+		document.add(new StringField(Field.C, c, Store.YES));
+		return document;
+	}
+}
@@ -8,6 +8,8 @@ import org.gazzax.labs.solrdf.graph.standalone.FieldInjectorRegistry.FieldInject
 import org.junit.Before;
 import org.junit.Test;
 
+import com.hp.hpl.jena.datatypes.xsd.XSDDatatype;
+
 /**
  * Test case for {@link FieldInjectorRegistry}.
  * 
@@ -53,4 +55,18 @@ public class FieldInjectorRegistryTestCase {
 		final String unknownKey = String.valueOf(System.currentTimeMillis());
 		assertSame(cut.catchAllInjector(), cut.get(unknownKey));
 	}	
+
+	/**
+	 * The extended numeric types must be indexed as numbers, unless the index has been built with legacy identifiers.
+	 */
+	@Test
+	public void extendedNumericTypes() {
+		for (final XSDDatatype type : FieldInjectorRegistry.EXTENDED_NUMERIC_TYPES) {
+			assertSame(cut.numericFieldInjector, cut.get(type.getURI()));
+			assertSame(FieldInjectorRegistry.LEGACY.catchAllInjector(), FieldInjectorRegistry.LEGACY.get(type.getURI()));
+		}
+		
+		assertSame(FieldInjectorRegistry.INSTANCE, FieldInjectorRegistry.of(false));
+		assertSame(FieldInjectorRegistry.LEGACY, FieldInjectorRegistry.of(true));
+	}
 }
\ No newline at end of file
@@ -0,0 +1,145 @@
+package org.gazzax.labs.solrdf.graph.standalone;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.BooleanClause.Occur;
+import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.PrefixQuery;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.RegexpQuery;
+import org.gazzax.labs.solrdf.Field;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.hp.hpl.jena.graph.NodeFactory;
+import com.hp.hpl.jena.graph.Triple;
+import com.hp.hpl.jena.sparql.core.BasicPattern;
+import com.hp.hpl.jena.sparql.core.Var;
+import com.hp.hpl.jena.sparql.expr.Expr;
+import com.hp.hpl.jena.sparql.expr.ExprList;
+import com.hp.hpl.jena.sparql.util.ExprUtils;
+
+/**
+ * Test case for {@link FilterTranslator}.
+ *
+ * @author Andrea Gazzarini
+ * @since 1.1
+ */
+public class FilterTranslatorTestCase {
+	private FilterTranslator cut;
+
+	private final Var o = Var.alloc("o");
+
+	/**
+	 * Setup fixture for this test case.
+	 */
+	@Before
+	public void setUp() {
+		cut = new FilterTranslator(null, true);
+	}
+
+	/**
+	 * STRSTARTS must be translated in a prefix query on the object field.
+	 */
+	@Test
+	public void strStarts() {
+		assertEquals(
+				new PrefixQuery(new Term(Field.O, "\"Ro\\\"me")),
+				cut.translate(expr("STRSTARTS(?o, \"Ro\\\"me\")"), o));
+	}
+
+	/**
+	 * STRSTARTS(STR(?o)) must match both literals and URIs.
+	 */
+	@Test
+	public void strStartsOfStr() {
+		final BooleanQuery expected = new BooleanQuery.Builder()
+				.add(new PrefixQuery(new Term(Field.O, "\"http://example")), Occur.SHOULD)
+				.add(new PrefixQuery(new Term(Field.O, "<http://example")), Occur.SHOULD)
+				.build();
+
+		assertEquals(expected, cut.translate(expr("STRSTARTS(STR(?o), \"http://example\")"), o));
+	}
+
+	/**
+	 * langMatches must be translated in a case-insensitive query that includes sub-tags.
+	 */
+	@Test
+	public void langMatches() {
+		final Query query = cut.translate(expr("langMatches(lang(?o), \"en\")"), o);
+
+		assertEquals(new RegexpQuery(new Term(Field.LANG, "[eE][nN](-.*)?")), query);
+	}
+
+	/**
+	 * A conjunction must be translated even if just one side can be translated.
+	 * A disjunction requires both sides.
+	 */
+	@Test
+	public void logicalOperators() {
+		final Query strStarts = cut.translate(expr("STRSTARTS(?o, \"a\")"), o);
+
+		assertEquals(strStarts, cut.translate(expr("STRSTARTS(?o, \"a\") && REGEX(?o, \"b\")"), o));
+		assertNull(cut.translate(expr("STRSTARTS(?o, \"a\") || REGEX(?o, \"b\")"), o));
+
+		final Query or = cut.translate(expr("STRSTARTS(?o, \"a\") || STRSTARTS(?o, \"b\")"), o);
+		assertTrue(or instanceof BooleanQuery);
+		assertEquals(2, ((BooleanQuery) or).clauses().size());
+	}
+
+	/**
+	 * Expressions that refer to other variables (or that are not supported) must not be translated.
+	 */
+	@Test
+	public void notTranslatable() {
+		assertNull(cut.translate(expr("STRSTARTS(?other, \"a\")"), o));
+		assertNull(cut.translate(expr("REGEX(?o, \"a\")"), o));
+		assertNull(cut.translate(expr("?o != 10"), o));
+		assertNull(cut.translate(expr("?o > ?other"), o));
+		assertNull(cut.translate(expr("langMatches(lang(?o), \"\")"), o));
+	}
+
+	/**
+	 * On indexes built with legacy identifiers numeric comparisons must not be translated.
+	 */
+	@Test
+	public void noNumericComparisonsOnLegacyIndexes() {
+		cut = new FilterTranslator(null, false);
+
+		assertNull(cut.translate(expr("?o < 5"), o));
+		assertNull(cut.translate(expr("10 >= ?o"), o));
+	}
+
+	/**
+	 * Constraints must be associated with those triple patterns that have the filtered variable in object position.
+	 */
+	@Test
+	public void constraints() {
+		final BasicPattern pattern = new BasicPattern();
+		pattern.add(Triple.create(Var.alloc("s"), NodeFactory.createURI("http://example.org/name"), o));
+		pattern.add(Triple.create(o, NodeFactory.createURI("http://example.org/p"), Var.alloc("x")));
+
+		final List<List<Query>> constraints = cut.constraints(pattern, new ExprList(expr("STRSTARTS(?o, \"a\")")));
+
+		assertEquals(2, constraints.size());
+		assertEquals(1, constraints.get(0).size());
+		assertTrue(constraints.get(1).isEmpty());
+
+		assertNull(cut.constraints(pattern, new ExprList(expr("REGEX(?o, \"a\")"))));
+	}
+
+	/**
+	 * Parses the given SPARQL expression.
+	 *
+	 * @param expression the expression.
+	 * @return the {@link Expr} corresponding to the given expression.
+	 */
+	private Expr expr(final String expression) {
+		return ExprUtils.parse(expression);
+	}
+}
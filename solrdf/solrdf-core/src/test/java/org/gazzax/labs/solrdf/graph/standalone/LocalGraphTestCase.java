@@ -0,0 +1,130 @@
+package org.gazzax.labs.solrdf.graph.standalone;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.apache.lucene.analysis.core.KeywordAnalyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.DoubleField;
+import org.apache.lucene.document.Field.Store;
+import org.apache.lucene.document.NumericDocValuesField;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.store.RAMDirectory;
+import org.gazzax.labs.solrdf.Field;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Test case for the object ordering support of {@link LocalGraph}.
+ *
+ * @author Andrea Gazzarini
+ * @since 1.1
+ */
+public class LocalGraphTestCase {
+	private IndexWriter writer;
+	private DirectoryReader reader;
+
+	/**
+	 * Setup fixture for this test case.
+	 *
+	 * @throws Exception never, otherwise the test fails.
+	 */
+	@Before
+	public void setUp() throws Exception {
+		writer = new IndexWriter(new RAMDirectory(), new IndexWriterConfig(new KeywordAnalyzer()));
+	}
+
+	/**
+	 * Shutdown fixture for this test case.
+	 *
+	 * @throws Exception never, otherwise the test fails.
+	 */
+	@After
+	public void tearDown() throws Exception {
+		if (reader != null) {
+			reader.close();
+		}
+		writer.close();
+	}
+
+	/**
+	 * A field with docValues in every segment can be used for ordering.
+	 *
+	 * @throws Exception never, otherwise the test fails.
+	 */
+	@Test
+	public void docValuesInAllSegments() throws Exception {
+		writer.addDocument(triple(1.5d, true));
+		writer.commit();
+		writer.addDocument(triple(2.5d, true));
+		writer.commit();
+
+		assertTrue(LocalGraph.hasDocValues(open(2), Field.NUMERIC_OBJECT));
+	}
+
+	/**
+	 * A segment written before docValues were enabled prevents ordering by that field.
+	 *
+	 * @throws Exception never, otherwise the test fails.
+	 */
+	@Test
+	public void segmentWithoutDocValues() throws Exception {
+		writer.addDocument(triple(1.5d, false));
+		writer.commit();
+		writer.addDocument(triple(2.5d, true));
+		writer.commit();
+
+		assertFalse(LocalGraph.hasDocValues(open(2), Field.NUMERIC_OBJECT));
+	}
+
+	/**
+	 * A segment without the field at all doesn't count.
+	 *
+	 * @throws Exception never, otherwise the test fails.
+	 */
+	@Test
+	public void segmentWithoutField() throws Exception {
+		final Document plain = new Document();
+		plain.add(new StringField(Field.O, "\"Rome\"", Store.NO));
+		writer.addDocument(plain);
+		writer.commit();
+		writer.addDocument(triple(2.5d, true));
+		writer.commit();
+
+		assertTrue(LocalGraph.hasDocValues(open(2), Field.NUMERIC_OBJECT));
+	}
+
+	/**
+	 * Opens a reader on the index and checks its number of segments.
+	 *
+	 * @param segments the expected number of segments.
+	 * @return the index reader.
+	 * @throws Exception never, otherwise the test fails.
+	 */
+	private DirectoryReader open(final int segments) throws Exception {
+		reader = DirectoryReader.open(writer.getDirectory());
+		assertEquals(segments, reader.leaves().size());
+		return reader;
+	}
+
+	/**
+	 * Builds a document with a numeric object.
+	 *
+	 * @param value the object value.
+	 * @param docValues true if the object has docValues.
+	 * @return a document with the given numeric object.
+	 */
+	private Document triple(final double value, final boolean docValues) {
+		final Document document = new Document();
+		document.add(new DoubleField(Field.NUMERIC_OBJECT, value, Store.NO));
+		if (docValues) {
+			document.add(new NumericDocValuesField(Field.NUMERIC_OBJECT, Double.doubleToLongBits(value)));
+		}
+		return document;
+	}
+}
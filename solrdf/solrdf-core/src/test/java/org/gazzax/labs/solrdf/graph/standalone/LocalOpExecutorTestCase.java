@@ -0,0 +1,113 @@
+package org.gazzax.labs.solrdf.graph.standalone;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import com.hp.hpl.jena.query.QueryFactory;
+import com.hp.hpl.jena.sparql.algebra.Algebra;
+import com.hp.hpl.jena.sparql.algebra.Op;
+import com.hp.hpl.jena.sparql.algebra.op.OpDistinct;
+import com.hp.hpl.jena.sparql.algebra.op.OpGroup;
+import com.hp.hpl.jena.sparql.algebra.op.OpOrder;
+import com.hp.hpl.jena.sparql.algebra.op.OpSlice;
+
+/**
+ * Test case for {@link LocalOpExecutor}.
+ *
+ * @author Andrea Gazzarini
+ * @since 1.1
+ */
+public class LocalOpExecutorTestCase {
+	private static final String PREFIX = "PREFIX ex: <http://example.org/> ";
+
+	/**
+	 * A (projected) single triple pattern can be sliced by the index.
+	 */
+	@Test
+	public void singlePattern() {
+		assertEquals("?s", LocalOpExecutor.singlePattern(op("SELECT * WHERE { ?s ex:p ?o }")).getSubject().toString());
+		assertEquals("?s", LocalOpExecutor.singlePattern(op("SELECT ?s WHERE { ?s ex:p ?o }")).getSubject().toString());
+		assertEquals("?s", LocalOpExecutor.singlePattern(sliced("SELECT ?s WHERE { ?s ex:p ?o } LIMIT 10 OFFSET 100")).getSubject().toString());
+	}
+
+	/**
+	 * Joins, ordering and repeated variables prevent the index from slicing the solutions.
+	 */
+	@Test
+	public void notASinglePattern() {
+		assertNull(LocalOpExecutor.singlePattern(op("SELECT * WHERE { ?s ex:p ?o . ?o ex:q ?x }")));
+		assertNull(LocalOpExecutor.singlePattern(sliced("SELECT ?s WHERE { ?s ex:p ?o } ORDER BY ?o LIMIT 10")));
+		assertNull(LocalOpExecutor.singlePattern(sliced("SELECT DISTINCT ?s WHERE { ?s ex:p ?o } LIMIT 10")));
+		assertNull(LocalOpExecutor.singlePattern(op("SELECT * WHERE { ?s ex:p ?s }")));
+		assertNull(LocalOpExecutor.singlePattern(op("SELECT * WHERE { ?s ex:p ?o FILTER(?o > 1) }")));
+	}
+
+	/**
+	 * ORDER BY on the object variable can be translated in an index order, regardless of the direction.
+	 */
+	@Test
+	public void objectOrder() {
+		for (final String query : new String[] {
+				"SELECT * WHERE { ?s ex:price ?price } ORDER BY ?price",
+				"SELECT * WHERE { ?s ex:price ?price } ORDER BY DESC(?price)" }) {
+			final OpOrder op = (OpOrder) op(query);
+			assertTrue(LocalOpExecutor.isObjectOrder(LocalOpExecutor.singlePattern(op.getSubOp()), op.getConditions()));
+		}
+	}
+
+	/**
+	 * ORDER BY on anything but the object variable is left to Jena.
+	 */
+	@Test
+	public void notAnObjectOrder() {
+		for (final String query : new String[] {
+				"SELECT * WHERE { ?s ex:price ?price } ORDER BY ?s",
+				"SELECT * WHERE { ?s ex:price ?price } ORDER BY ?price ?s",
+				"SELECT * WHERE { ?s ex:price ?price } ORDER BY (?price * 2)" }) {
+			final OpOrder op = (OpOrder) op(query);
+			assertFalse(LocalOpExecutor.isObjectOrder(LocalOpExecutor.singlePattern(op.getSubOp()), op.getConditions()));
+		}
+	}
+
+	/**
+	 * A DISTINCT projection of a pattern member is a GROUP BY that member, which is answered by the index.
+	 */
+	@Test
+	public void distinctAsGroup() {
+		for (final String query : new String[] {
+				"SELECT DISTINCT ?p WHERE { ?s ?p ?o }",
+				"SELECT DISTINCT ?class WHERE { ?s a ?class }",
+				"SELECT DISTINCT ?g WHERE { GRAPH ?g { ?s ?p ?o } }" }) {
+			final OpGroup group = LocalOpExecutor.asGroup((OpDistinct) op(query));
+			assertTrue(query, group.getAggregators().isEmpty());
+			assertTrue(query, AggregateEvaluator.isSupported(group));
+		}
+
+		assertNull(LocalOpExecutor.asGroup((OpDistinct) op("SELECT DISTINCT ?s ?p WHERE { ?s ?p ?o }")));
+		assertFalse(AggregateEvaluator.isSupported(LocalOpExecutor.asGroup((OpDistinct) op("SELECT DISTINCT ?s WHERE { ?s ex:p ?o . ?o ex:q ?x }"))));
+	}
+
+	/**
+	 * Compiles a given query.
+	 *
+	 * @param query the query.
+	 * @return the algebra of the given query.
+	 */
+	private Op op(final String query) {
+		return Algebra.compile(QueryFactory.create(PREFIX + query));
+	}
+
+	/**
+	 * Compiles a given query with a LIMIT / OFFSET and returns the operation that is sliced.
+	 *
+	 * @param query the query.
+	 * @return the operation that is sliced.
+	 */
+	private Op sliced(final String query) {
+		return ((OpSlice) op(query)).getSubOp();
+	}
+}
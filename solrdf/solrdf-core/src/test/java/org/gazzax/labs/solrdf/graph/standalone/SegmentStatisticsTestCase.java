@@ -0,0 +1,200 @@
+package org.gazzax.labs.solrdf.graph.standalone;
+
+import static org.junit.Assert.assertEquals;
+
+import org.apache.lucene.analysis.core.KeywordAnalyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field.Store;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.store.RAMDirectory;
+import org.gazzax.labs.solrdf.Field;
+import org.gazzax.labs.solrdf.graph.GraphStatistics;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Test case for {@link SegmentStatistics}.
+ *
+ * @author Andrea Gazzarini
+ * @since 1.1
+ */
+public class SegmentStatisticsTestCase {
+	private IndexWriter writer;
+	private DirectoryReader reader;
+
+	/**
+	 * Setup fixture for this test case.
+	 *
+	 * @throws Exception never, otherwise the test fails.
+	 */
+	@Before
+	public void setUp() throws Exception {
+		writer = new IndexWriter(new RAMDirectory(), new IndexWriterConfig(new KeywordAnalyzer()));
+
+		// First segment
+		writer.addDocument(triple("s1", "p1", "o1", "g1"));
+		writer.addDocument(triple("s1", "p1", "o2", "g1"));
+		writer.addDocument(triple("s2", "p2", "o1", "g2"));
+		writer.commit();
+
+		// Second segment, with a subject and an object already in the first one
+		writer.addDocument(triple("s1", "p2", "o3", "g1"));
+		writer.addDocument(triple("s3", "p1", "o1", "g2"));
+		writer.addDocument(triple("s4", "p3", "o4", "g2"));
+		writer.commit();
+	}
+
+	/**
+	 * Shutdown fixture for this test case.
+	 *
+	 * @throws Exception never, otherwise the test fails.
+	 */
+	@After
+	public void tearDown() throws Exception {
+		if (reader != null) {
+			reader.close();
+		}
+		writer.close();
+	}
+
+	/**
+	 * The merged statistics of all segments are the statistics of the whole index.
+	 *
+	 * @throws Exception never, otherwise the test fails.
+	 */
+	@Test
+	public void mergedSegments() throws Exception {
+		reader = DirectoryReader.open(writer.getDirectory());
+		assertEquals(2, reader.leaves().size());
+
+		final GraphStatistics statistics = merge(reader);
+		assertEquals(6, statistics.triples());
+		assertEquals(4, statistics.distinctSubjects());
+		assertEquals(4, statistics.distinctObjects());
+
+		assertEquals(3, statistics.predicates().get("p1").triples());
+		assertEquals(2, statistics.predicates().get("p1").distinctSubjects());
+		assertEquals(2, statistics.predicates().get("p1").distinctObjects());
+		assertEquals(2, statistics.predicates().get("p2").distinctSubjects());
+		assertEquals(1, statistics.predicates().get("p3").triples());
+
+		assertEquals(Long.valueOf(3), statistics.graphs().get("g1"));
+		assertEquals(Long.valueOf(3), statistics.graphs().get("g2"));
+	}
+
+	/**
+	 * Merging doesn't change the statistics of a segment, so they can be reused.
+	 *
+	 * @throws Exception never, otherwise the test fails.
+	 */
+	@Test
+	public void segmentsAreReusable() throws Exception {
+		reader = DirectoryReader.open(writer.getDirectory());
+
+		final SegmentStatistics first = SegmentStatistics.compute(reader.leaves().get(0).reader());
+		final SegmentStatistics second = SegmentStatistics.compute(reader.leaves().get(1).reader());
+		for (int i = 0; i < 2; i++) {
+			final SegmentStatistics total = new SegmentStatistics(0);
+			total.add(first);
+			total.add(second);
+			assertEquals(4, total.graphStatistics().distinctSubjects());
+		}
+
+		assertEquals(2, first.graphStatistics().distinctSubjects());
+		assertEquals(3, second.graphStatistics().distinctSubjects());
+	}
+
+	/**
+	 * Beyond small cardinalities, distinct values are estimates; merging still doesn't change the segment statistics.
+	 *
+	 * @throws Exception never, otherwise the test fails.
+	 */
+	@Test
+	public void largeCardinalities() throws Exception {
+		writer.deleteAll();
+		for (int i = 0; i < 30000; i++) {
+			writer.addDocument(triple("s" + i, "p1", "o" + (i % 100), "g1"));
+		}
+		writer.commit();
+		for (int i = 20000; i < 50000; i++) {
+			writer.addDocument(triple("s" + i, "p1", "o" + (i % 100), "g1"));
+		}
+		writer.commit();
+		reader = DirectoryReader.open(writer.getDirectory());
+		assertEquals(2, reader.leaves().size());
+
+		final SegmentStatistics first = SegmentStatistics.compute(reader.leaves().get(0).reader());
+		final SegmentStatistics second = SegmentStatistics.compute(reader.leaves().get(1).reader());
+		final long firstSubjects = first.graphStatistics().distinctSubjects();
+		for (int i = 0; i < 2; i++) {
+			final SegmentStatistics total = new SegmentStatistics(0);
+			total.add(first);
+			total.add(second);
+
+			final GraphStatistics statistics = total.graphStatistics();
+			assertEquals(60000, statistics.triples());
+			assertEquals(50000, statistics.distinctSubjects(), 50000 * 0.03);
+			assertEquals(50000, statistics.predicates().get("p1").distinctSubjects(), 50000 * 0.06);
+			assertEquals(100, statistics.distinctObjects());
+		}
+		assertEquals(firstSubjects, first.graphStatistics().distinctSubjects());
+		assertEquals(30000, firstSubjects, 30000 * 0.03);
+	}
+
+	/**
+	 * Deleted triples are not counted.
+	 *
+	 * @throws Exception never, otherwise the test fails.
+	 */
+	@Test
+	public void deletions() throws Exception {
+		writer.deleteDocuments(new Term(Field.S, "s4"));
+		writer.commit();
+		reader = DirectoryReader.open(writer.getDirectory());
+
+		final GraphStatistics statistics = merge(reader);
+		assertEquals(5, statistics.triples());
+		assertEquals(3, statistics.distinctSubjects());
+		assertEquals(null, statistics.predicates().get("p3"));
+		assertEquals(1, SegmentStatistics.compute(reader.leaves().get(1).reader()).deletedDocs);
+	}
+
+	/**
+	 * Computes and merges the statistics of all segments of a given reader.
+	 *
+	 * @param reader the index reader.
+	 * @return the statistics of the whole index.
+	 * @throws Exception never, otherwise the test fails.
+	 */
+	private GraphStatistics merge(final DirectoryReader reader) throws Exception {
+		final SegmentStatistics total = new SegmentStatistics(0);
+		for (final LeafReaderContext leaf : reader.leaves()) {
+			total.add(SegmentStatistics.compute(leaf.reader()));
+		}
+		return total.graphStatistics();
+	}
+
+	/**
+	 * Builds the document of a triple.
+	 *
+	 * @param s the subject.
+	 * @param p the predicate.
+	 * @param o the object.
+	 * @param c the graph.
+	 * @return the document of the given triple.
+	 */
+	private Document triple(final String s, final String p, final String o, final String c) {
+		final Document document = new Document();
+		document.add(new StringField(Field.S, s, Store.NO));
+		document.add(new StringField(Field.P, p, Store.NO));
+		document.add(new StringField(Field.O, o, Store.NO));
+		document.add(new StringField(Field.C, c, Store.NO));
+		return document;
+	}
+}
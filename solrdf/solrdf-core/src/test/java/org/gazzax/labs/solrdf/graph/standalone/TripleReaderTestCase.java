@@ -0,0 +1,73 @@
+package org.gazzax.labs.solrdf.graph.standalone;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import org.apache.solr.schema.IndexSchema;
+import org.apache.solr.schema.SchemaField;
+import org.apache.solr.schema.StrField;
+import org.gazzax.labs.solrdf.Field;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Test case for {@link TripleReader}.
+ *
+ * @author Andrea Gazzarini
+ * @since 1.1
+ */
+public class TripleReaderTestCase {
+	// See org.apache.solr.schema.FieldProperties (not visible here)
+	private static final int DOC_VALUES = 0x8000;
+
+	private IndexSchema schema;
+
+	/**
+	 * Setup fixture for this test case.
+	 */
+	@Before
+	public void setUp() {
+		schema = mock(IndexSchema.class);
+	}
+
+	/**
+	 * Triples are decoded from docValues if the schema declares all the docValues copies.
+	 */
+	@Test
+	public void schemaWithDocValues() {
+		for (final String name : TripleReader.DOCVALUES_FIELDS) {
+			declare(name, true);
+		}
+
+		assertTrue(TripleReader.hasDocValues(schema));
+	}
+
+	/**
+	 * An older schema (without the docValues copies, or with a copy that has no docValues) falls back to stored fields.
+	 */
+	@Test
+	public void schemaWithoutDocValues() {
+		assertFalse(TripleReader.hasDocValues(schema));
+
+		declare(Field.S_DV, true);
+		declare(Field.P_DV, true);
+		assertFalse(TripleReader.hasDocValues(schema));
+
+		declare(Field.O_DV, false);
+		assertFalse(TripleReader.hasDocValues(schema));
+	}
+
+	/**
+	 * Declares a field in the schema.
+	 *
+	 * @param name the field name.
+	 * @param docValues true if the field has docValues.
+	 */
+	private void declare(final String name, final boolean docValues) {
+		final SchemaField field = new SchemaField(name, new StrField(), docValues ? DOC_VALUES : 0, null);
+		when(schema.getFieldOrNull(name)).thenReturn(field);
+		when(schema.getField(name)).thenReturn(field);
+	}
+}
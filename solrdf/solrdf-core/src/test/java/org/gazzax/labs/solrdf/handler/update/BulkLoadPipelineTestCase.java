@@ -0,0 +1,310 @@
+package org.gazzax.labs.solrdf.handler.update;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.apache.jena.riot.Lang;
+import org.apache.jena.riot.RDFLanguages;
+import org.apache.jena.riot.system.StreamRDF;
+import org.apache.jena.riot.thrift.BinRDF;
+import org.apache.lucene.index.MultiReader;
+import org.apache.solr.common.SolrException;
+import org.apache.solr.common.SolrException.ErrorCode;
+import org.apache.solr.common.params.ModifiableSolrParams;
+import org.apache.solr.handler.UpdateRequestHandler;
+import org.apache.solr.request.SolrQueryRequest;
+import org.apache.solr.schema.IndexSchema;
+import org.apache.solr.search.SolrIndexSearcher;
+import org.apache.solr.update.AddUpdateCommand;
+import org.apache.solr.update.processor.UpdateRequestProcessor;
+import org.gazzax.labs.solrdf.Field;
+import org.gazzax.labs.solrdf.Names;
+import org.gazzax.labs.solrdf.handler.update.DuplicateFilter.Verdict;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import com.hp.hpl.jena.datatypes.xsd.XSDDatatype;
+import com.hp.hpl.jena.graph.NodeFactory;
+import com.hp.hpl.jena.graph.Triple;
+import com.hp.hpl.jena.sparql.core.Quad;
+
+/**
+ * Test case for {@link BulkLoadPipeline}.
+ *
+ * @author Andrea Gazzarini
+ * @since 1.1
+ */
+public class BulkLoadPipelineTestCase {
+	private BulkLoadPipeline cut;
+	private IngestScheduler scheduler;
+	private SolrQueryRequest request;
+	private UpdateRequestProcessor processor;
+
+	private final Set<String> ids = Collections.synchronizedSet(new HashSet<String>());
+	private final Set<String> graphs = Collections.synchronizedSet(new HashSet<String>());
+
+	/**
+	 * Setup fixture for this test case.
+	 *
+	 * @throws Exception never, otherwise the test fails.
+	 */
+	@Before
+	public void setUp() throws Exception {
+		scheduler = new IngestScheduler("test", 4, 8, 1000);
+		request = mock(SolrQueryRequest.class);
+		when(request.getSchema()).thenReturn(mock(IndexSchema.class));
+		final SolrIndexSearcher searcher = mock(SolrIndexSearcher.class);
+		when(searcher.getTopReaderContext()).thenReturn(new MultiReader().getContext());
+		when(request.getSearcher()).thenReturn(searcher);
+		processor = mock(UpdateRequestProcessor.class);
+
+		doAnswer(new Answer<Void>() {
+			@Override
+			public Void answer(final InvocationOnMock invocation) throws Throwable {
+				final AddUpdateCommand command = (AddUpdateCommand) invocation.getArguments()[0];
+				ids.add((String) command.solrDoc.getFieldValue(Field.ID));
+				graphs.add((String) command.solrDoc.getFieldValue(Field.C));
+				return null;
+			}
+		}).when(processor).processAdd(any(AddUpdateCommand.class));
+
+		final ModifiableSolrParams parameters = new ModifiableSolrParams();
+		parameters.set(Names.BULK_WORKERS_PARAMETER_NAME, 3);
+		parameters.set(Names.BULK_BATCH_SIZE_PARAMETER_NAME, 7);
+		parameters.set(Names.BULK_QUEUE_CAPACITY_PARAMETER_NAME, 1);
+
+		cut = new BulkLoadPipeline(scheduler, parameters);
+	}
+
+	/**
+	 * Shutdown fixture for this test case.
+	 */
+	@After
+	public void tearDown() {
+		scheduler.shutdown();
+	}
+
+	/**
+	 * All parsed triples must be submitted to the update processor, within the target graph.
+	 *
+	 * @throws Exception never, otherwise the test fails.
+	 */
+	@Test
+	public void triples() throws Exception {
+		final int howManyTriples = 1000;
+		final StringBuilder payload = new StringBuilder();
+		for (int i = 0; i < howManyTriples; i++) {
+			payload.append("<http://example.org/s").append(i).append("> <http://example.org/p> \"").append(i).append("\" .\n");
+		}
+
+		cut.load(
+				request,
+				new ByteArrayInputStream(payload.toString().getBytes("UTF-8")),
+				Lang.NTRIPLES,
+				NodeFactory.createURI("http://example.org/g"),
+				processor);
+
+		assertEquals(howManyTriples, ids.size());
+		assertEquals(Collections.singleton("<http://example.org/g>"), graphs);
+		assertEquals(1L, scheduler.completedLoads.get());
+		assertEquals((long) howManyTriples, scheduler.loadedTriples.get());
+		assertEquals(4, scheduler.slots.availablePermits());
+	}
+
+	/**
+	 * Quads without a graph must be loaded in the default graph.
+	 *
+	 * @throws Exception never, otherwise the test fails.
+	 */
+	@Test
+	public void quads() throws Exception {
+		final String payload =
+				"<http://example.org/s> <http://example.org/p> <http://example.org/o> <http://example.org/g> .\n"
+				+ "<http://example.org/s> <http://example.org/p> <http://example.org/o> .\n";
+
+		cut.load(request, new ByteArrayInputStream(payload.getBytes("UTF-8")), Lang.NQUADS, null, processor);
+
+		assertEquals(2, ids.size());
+		assertEquals(new HashSet<String>(Arrays.asList("<http://example.org/g>", "_")), graphs);
+	}
+
+	/**
+	 * Triples and quads encoded in RDF Thrift must be loaded like any other RDF format.
+	 *
+	 * @throws Exception never, otherwise the test fails.
+	 */
+	@Test
+	public void thrift() throws Exception {
+		final ByteArrayOutputStream out = new ByteArrayOutputStream();
+		final StreamRDF writer = BinRDF.streamToOutputStream(out);
+		writer.start();
+		writer.triple(Triple.create(
+				NodeFactory.createURI("http://example.org/s"),
+				NodeFactory.createURI("http://example.org/p"),
+				NodeFactory.createLiteral("1", XSDDatatype.XSDinteger)));
+		writer.quad(Quad.create(
+				NodeFactory.createURI("http://example.org/g"),
+				NodeFactory.createURI("http://example.org/s"),
+				NodeFactory.createURI("http://example.org/p"),
+				NodeFactory.createLiteral("Rome", "it", false)));
+		writer.finish();
+
+		cut.load(request, new ByteArrayInputStream(out.toByteArray()), RDFLanguages.THRIFT, null, processor);
+
+		assertEquals(2, ids.size());
+		assertEquals(new HashSet<String>(Arrays.asList("<http://example.org/g>", "_")), graphs);
+	}
+
+	/**
+	 * A local file must be loaded in chunks; blank nodes labels are scoped to the whole file.
+	 *
+	 * @throws Exception never, otherwise the test fails.
+	 */
+	@Test
+	public void chunkedFile() throws Exception {
+		final File file = File.createTempFile("bulk", ".nt");
+		final Set<String> subjects = Collections.synchronizedSet(new HashSet<String>());
+		doAnswer(new Answer<Void>() {
+			@Override
+			public Void answer(final InvocationOnMock invocation) throws Throwable {
+				final AddUpdateCommand command = (AddUpdateCommand) invocation.getArguments()[0];
+				ids.add((String) command.solrDoc.getFieldValue(Field.ID));
+				subjects.add((String) command.solrDoc.getFieldValue(Field.S));
+				return null;
+			}
+		}).when(processor).processAdd(any(AddUpdateCommand.class));
+
+		try {
+			final int howManyTriples = 500;
+			final Writer writer = new OutputStreamWriter(new FileOutputStream(file), "UTF-8");
+			for (int i = 0; i < howManyTriples; i++) {
+				writer.write("_:b1 <http://example.org/p> \"" + i + "\" .\n");
+			}
+			writer.close();
+
+			final ModifiableSolrParams parameters = new ModifiableSolrParams();
+			parameters.set(Names.BULK_CHUNK_SIZE_PARAMETER_NAME, 1024);
+			new BulkLoadPipeline(scheduler, parameters).load(request, file, Lang.NTRIPLES, null, processor);
+
+			assertEquals(howManyTriples, ids.size());
+			assertEquals(1, subjects.size());
+			assertEquals(4, scheduler.slots.availablePermits());
+		} finally {
+			file.delete();
+		}
+	}
+
+	/**
+	 * In append-only mode, documents are added without overwrite and duplicates are skipped.
+	 *
+	 * @throws Exception never, otherwise the test fails.
+	 */
+	@Test
+	public void appendOnly() throws Exception {
+		final Set<Boolean> overwrites = Collections.synchronizedSet(new HashSet<Boolean>());
+		doAnswer(new Answer<Void>() {
+			@Override
+			public Void answer(final InvocationOnMock invocation) throws Throwable {
+				final AddUpdateCommand command = (AddUpdateCommand) invocation.getArguments()[0];
+				assertTrue(ids.add((String) command.solrDoc.getFieldValue(Field.ID)));
+				overwrites.add(command.overwrite);
+				return null;
+			}
+		}).when(processor).processAdd(any(AddUpdateCommand.class));
+
+		final DuplicateFilter filter = mock(DuplicateFilter.class);
+		when(filter.check(any(String.class))).thenAnswer(new Answer<Verdict>() {
+			final Set<String> seen = new HashSet<String>();
+
+			@Override
+			public Verdict answer(final InvocationOnMock invocation) throws Throwable {
+				return seen.add((String) invocation.getArguments()[0]) ? Verdict.APPEND : Verdict.SKIP;
+			}
+		});
+
+		final ModifiableSolrParams parameters = new ModifiableSolrParams();
+		parameters.set(UpdateRequestHandler.OVERWRITE, false);
+		parameters.set(Names.BULK_WORKERS_PARAMETER_NAME, 2);
+		parameters.set(Names.BULK_BATCH_SIZE_PARAMETER_NAME, 7);
+		cut = new BulkLoadPipeline(scheduler, parameters) {
+			@Override
+			DuplicateFilter duplicateFilter(final SolrQueryRequest request) {
+				return filter;
+			}
+		};
+
+		final int howManyTriples = 100;
+		final StringBuilder payload = new StringBuilder();
+		for (int i = 0; i < howManyTriples; i++) {
+			payload.append("<http://example.org/s").append(i).append("> <http://example.org/p> \"").append(i).append("\" .\n");
+			payload.append("<http://example.org/s").append(i % 10).append("> <http://example.org/p> \"").append(i % 10).append("\" .\n");
+		}
+
+		cut.load(request, new ByteArrayInputStream(payload.toString().getBytes("UTF-8")), Lang.NTRIPLES, null, processor);
+
+		assertEquals(howManyTriples, ids.size());
+		assertEquals(Collections.singleton(false), overwrites);
+		assertEquals((long) howManyTriples, scheduler.loadedTriples.get());
+	}
+
+	/**
+	 * A parse failure must be reported to the caller.
+	 *
+	 * @throws Exception never, otherwise the test fails.
+	 */
+	@Test
+	public void parseFailure() throws Exception {
+		final String payload = "<http://example.org/s> <http://example.org/p> .\n";
+		try {
+			cut.load(request, new ByteArrayInputStream(payload.getBytes("UTF-8")), Lang.NTRIPLES, null, processor);
+			fail();
+		} catch (final SolrException expected) {
+			assertEquals(ErrorCode.SERVER_ERROR.code, expected.code());
+			assertTrue(ids.isEmpty());
+			assertEquals(4, scheduler.slots.availablePermits());
+		}
+	}
+
+	/**
+	 * An early (worker) failure must stop the load, instead of submitting the rest of the payload.
+	 *
+	 * @throws Exception never, otherwise the test fails.
+	 */
+	@Test
+	public void earlyFailureStopsTheLoad() throws Exception {
+		final int howManyTriples = 20000;
+		final StringBuilder payload = new StringBuilder();
+		payload.append("<http://example.org/s> <http://example.org/p> \"NaN\"^^<http://www.w3.org/2001/XMLSchema#int> .\n");
+		for (int i = 0; i < howManyTriples; i++) {
+			payload.append("<http://example.org/s").append(i).append("> <http://example.org/p> \"").append(i).append("\" .\n");
+		}
+
+		try {
+			cut.load(request, new ByteArrayInputStream(payload.toString().getBytes("UTF-8")), Lang.NTRIPLES, null, processor);
+			fail();
+		} catch (final SolrException expected) {
+			assertEquals(ErrorCode.SERVER_ERROR.code, expected.code());
+			assertTrue(ids.size() < howManyTriples / 2);
+			assertEquals(4, scheduler.slots.availablePermits());
+		}
+	}
+}
\ No newline at end of file
@@ -0,0 +1,247 @@
+package org.gazzax.labs.solrdf.handler.update;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.File;
+import java.io.FileOutputStream;
+
+import org.apache.lucene.analysis.core.KeywordAnalyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field.Store;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.RAMDirectory;
+import org.apache.lucene.util.BytesRef;
+import org.apache.solr.update.VersionInfo;
+import org.gazzax.labs.solrdf.Field;
+import org.gazzax.labs.solrdf.handler.update.DuplicateFilter.Verdict;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.hash.BloomFilter;
+import com.google.common.hash.Funnels;
+
+/**
+ * Test case for {@link DuplicateFilter}.
+ *
+ * @author Andrea Gazzarini
+ * @since 1.1
+ */
+public class DuplicateFilterTestCase {
+	private VersionInfo versions;
+
+	/**
+	 * Setup fixture for this test case.
+	 */
+	@Before
+	public void setUp() {
+		versions = mock(VersionInfo.class);
+	}
+
+	/**
+	 * New identifiers are appended without any lookup.
+	 */
+	@Test
+	public void newIdentifiers() {
+		final DuplicateFilter cut = new DuplicateFilter(newBloomFilter(), versions, null);
+
+		for (int i = 0; i < 1000; i++) {
+			assertEquals(Verdict.APPEND, cut.check("id" + i));
+		}
+		verify(versions, never()).lookupVersion(any(BytesRef.class));
+	}
+
+	/**
+	 * Identifiers found in the filter are looked up: existing documents are skipped, the others appended.
+	 */
+	@Test
+	public void positiveIdentifiers() {
+		final DuplicateFilter cut = new DuplicateFilter(newBloomFilter(), versions, null);
+		when(versions.lookupVersion(new BytesRef("indexed"))).thenReturn(1L);
+		when(versions.lookupVersion(new BytesRef("deleted"))).thenReturn(-1L);
+
+		assertEquals(Verdict.APPEND, cut.check("indexed"));
+		assertEquals(Verdict.APPEND, cut.check("deleted"));
+		assertEquals(Verdict.APPEND, cut.check("falsePositive"));
+
+		assertEquals(Verdict.SKIP, cut.check("indexed"));
+		assertEquals(Verdict.APPEND, cut.check("deleted"));
+		assertEquals(Verdict.APPEND, cut.check("falsePositive"));
+	}
+
+	/**
+	 * Without versions, identifiers found in the filter are added with overwrite.
+	 */
+	@Test
+	public void withoutVersions() {
+		final DuplicateFilter cut = new DuplicateFilter(newBloomFilter(), null, null);
+
+		assertEquals(Verdict.APPEND, cut.check("id"));
+		assertEquals(Verdict.OVERWRITE, cut.check("id"));
+	}
+
+	/**
+	 * A persistent filter survives across loads, with the segments it knows; a corrupted one is not loaded.
+	 *
+	 * @throws Exception never, otherwise the test fails.
+	 */
+	@Test
+	public void persistence() throws Exception {
+		final File file = File.createTempFile("solrdf", DuplicateFilter.FILE_NAME);
+		final Directory directory = new RAMDirectory();
+		try {
+			final IndexWriter writer = new IndexWriter(directory, new IndexWriterConfig(new KeywordAnalyzer()));
+			writer.addDocument(document("indexed"));
+			writer.close();
+
+			final DuplicateFilter cut = new DuplicateFilter(newBloomFilter(), null, file);
+			final DirectoryReader reader = DirectoryReader.open(directory);
+			cut.sync(reader);
+			reader.close();
+			cut.check("id");
+			cut.save();
+
+			final DuplicateFilter loaded = DuplicateFilter.load(file, null);
+			assertNotNull(loaded);
+			assertEquals(cut.segments(), loaded.segments());
+			assertEquals(Verdict.OVERWRITE, loaded.check("id"));
+			assertEquals(Verdict.OVERWRITE, loaded.check("indexed"));
+
+			final FileOutputStream out = new FileOutputStream(file);
+			out.write(new byte[] { 1, 2, 3 });
+			out.close();
+			assertNull(DuplicateFilter.load(file, null));
+		} finally {
+			file.delete();
+		}
+	}
+
+	/**
+	 * Documents written outside the filter are added to it, by reading the segments it doesn't know yet.
+	 *
+	 * @throws Exception never, otherwise the test fails.
+	 */
+	@Test
+	public void sync() throws Exception {
+		final Directory directory = new RAMDirectory();
+		final IndexWriter writer = new IndexWriter(directory, new IndexWriterConfig(new KeywordAnalyzer()));
+		writer.addDocument(document("first"));
+		writer.commit();
+
+		final DuplicateFilter cut = new DuplicateFilter(newBloomFilter(), null, null);
+		DirectoryReader reader = DirectoryReader.open(directory);
+		cut.sync(reader);
+		reader.close();
+		assertEquals(1, cut.segments().size());
+
+		writer.addDocument(document("second"));
+		writer.commit();
+		reader = DirectoryReader.open(directory);
+		cut.sync(reader);
+		reader.close();
+		assertEquals(2, cut.segments().size());
+
+		assertEquals(Verdict.OVERWRITE, cut.check("first"));
+		assertEquals(Verdict.OVERWRITE, cut.check("second"));
+		assertEquals(Verdict.APPEND, cut.check("third"));
+
+		// A merged segment is a new segment
+		writer.forceMerge(1);
+		writer.close();
+		reader = DirectoryReader.open(directory);
+		cut.sync(reader);
+		reader.close();
+		assertEquals(1, cut.segments().size());
+	}
+
+	/**
+	 * A request-scoped filter knows the indexed documents, so a triple already in the index is never appended.
+	 *
+	 * @throws Exception never, otherwise the test fails.
+	 */
+	@Test
+	public void requestScopedFilterKnowsTheIndex() throws Exception {
+		final Directory directory = new RAMDirectory();
+		final IndexWriter writer = new IndexWriter(directory, new IndexWriterConfig(new KeywordAnalyzer()));
+		writer.addDocument(document("indexed"));
+		writer.close();
+		when(versions.lookupVersion(new BytesRef("indexed"))).thenReturn(1L);
+
+		final DirectoryReader reader = DirectoryReader.open(directory);
+		final DuplicateFilter cut = DuplicateFilter.requestScoped(reader, versions, 1000, 0.001);
+		reader.close();
+
+		assertEquals(1, cut.segments().size());
+		assertEquals(Verdict.SKIP, cut.check("indexed"));
+		assertEquals(Verdict.APPEND, cut.check("new"));
+	}
+
+	/**
+	 * A filter can be saved while it is being checked.
+	 *
+	 * @throws Exception never, otherwise the test fails.
+	 */
+	@Test
+	public void saveDoesNotBlockChecks() throws Exception {
+		final File file = File.createTempFile("solrdf", DuplicateFilter.FILE_NAME);
+		try {
+			final DuplicateFilter cut = new DuplicateFilter(newBloomFilter(), null, file);
+			final Thread saver = new Thread() {
+				@Override
+				public void run() {
+					try {
+						for (int i = 0; i < 20; i++) {
+							cut.save();
+						}
+					} catch (final Exception exception) {
+						throw new RuntimeException(exception);
+					}
+				}
+			};
+			saver.start();
+			for (int i = 0; i < 5000; i++) {
+				assertEquals(Verdict.APPEND, cut.check("id" + i));
+			}
+			saver.join();
+			cut.save();
+
+			final DuplicateFilter loaded = DuplicateFilter.load(file, null);
+			for (int i = 0; i < 5000; i++) {
+				assertEquals(Verdict.OVERWRITE, loaded.check("id" + i));
+			}
+		} finally {
+			file.delete();
+		}
+	}
+
+	/**
+	 * Builds a document with a given identifier.
+	 *
+	 * @param id the document identifier.
+	 * @return a document with the given identifier.
+	 */
+	private Document document(final String id) {
+		final Document document = new Document();
+		document.add(new StringField(Field.ID, id, Store.YES));
+		return document;
+	}
+
+	/**
+	 * Builds a new Bloom filter.
+	 *
+	 * @return a new Bloom filter.
+	 */
+	private BloomFilter<CharSequence> newBloomFilter() {
+		return BloomFilter.create(Funnels.stringFunnel(), 10000, 0.001);
+	}
+}
@@ -0,0 +1,168 @@
+package org.gazzax.labs.solrdf.handler.update;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileChannel;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Test case for {@link FileChunks}.
+ *
+ * @author Andrea Gazzarini
+ * @since 1.1
+ */
+public class FileChunksTestCase {
+	private File file;
+	private RandomAccessFile randomAccessFile;
+	private FileChannel channel;
+
+	private final String content = "line1\nline22\nline333\n\nline55555";
+
+	/**
+	 * Setup fixture for this test case.
+	 *
+	 * @throws Exception never, otherwise the test fails.
+	 */
+	@Before
+	public void setUp() throws Exception {
+		file = File.createTempFile("chunks", ".nt");
+		final FileOutputStream out = new FileOutputStream(file);
+		out.write(content.getBytes("UTF-8"));
+		out.close();
+
+		randomAccessFile = new RandomAccessFile(file, "r");
+		channel = randomAccessFile.getChannel();
+	}
+
+	/**
+	 * Shutdown fixture for this test case.
+	 *
+	 * @throws Exception never, otherwise the test fails.
+	 */
+	@After
+	public void tearDown() throws Exception {
+		randomAccessFile.close();
+		file.delete();
+	}
+
+	/**
+	 * Chunks must end at line boundaries and must cover the whole file.
+	 *
+	 * @throws Exception never, otherwise the test fails.
+	 */
+	@Test
+	public void split() throws Exception {
+		final List<long[]> chunks = FileChunks.split(channel, 3);
+
+		final StringBuilder builder = new StringBuilder();
+		for (final long[] chunk : chunks) {
+			final String text = read(FileChunks.open(channel, chunk));
+			if (chunk[1] < content.length()) {
+				assertEquals('\n', text.charAt(text.length() - 1));
+			}
+			builder.append(text);
+		}
+
+		assertEquals(4, chunks.size());
+		assertEquals(content, builder.toString());
+	}
+
+	/**
+	 * A chunk size greater than the file size produces just one chunk.
+	 *
+	 * @throws Exception never, otherwise the test fails.
+	 */
+	@Test
+	public void oneChunk() throws Exception {
+		final List<long[]> chunks = FileChunks.split(channel, 1024);
+
+		assertEquals(1, chunks.size());
+		assertEquals(content, read(FileChunks.open(channel, chunks.get(0))));
+	}
+
+	/**
+	 * A chunk that would exceed the maximum size once extended to the end of its line is cut at its last line.
+	 *
+	 * @throws Exception never, otherwise the test fails.
+	 */
+	@Test
+	public void extendedChunkOverTheMaximumSize() throws Exception {
+		final List<long[]> chunks = FileChunks.split(channel, 3, 9);
+
+		assertEquals(5, chunks.size());
+		assertEquals(21, chunks.get(3)[0]);
+		assertEquals(22, chunks.get(3)[1]);
+		assertEquals(content, readAll(chunks, 9));
+	}
+
+	/**
+	 * A chunk size greater than the maximum size is capped, and no chunk exceeds the maximum size.
+	 *
+	 * @throws Exception never, otherwise the test fails.
+	 */
+	@Test
+	public void chunkSizeOverTheMaximumSize() throws Exception {
+		final List<long[]> chunks = FileChunks.split(channel, 1024, 16);
+
+		assertEquals(3, chunks.size());
+		assertEquals(content, readAll(chunks, 16));
+	}
+
+	/**
+	 * A line longer than the maximum size cannot be loaded.
+	 *
+	 * @throws Exception never, otherwise the test fails.
+	 */
+	@Test(expected = IOException.class)
+	public void lineLongerThanTheMaximumSize() throws Exception {
+		FileChunks.split(channel, 3, 4);
+	}
+
+	/**
+	 * Reads all the given chunks, checking that none of them exceeds a given size and that all of them end at line boundaries.
+	 *
+	 * @param chunks the chunks.
+	 * @param maxChunkSize the maximum chunk size.
+	 * @return the content of all chunks.
+	 * @throws Exception never, otherwise the test fails.
+	 */
+	private String readAll(final List<long[]> chunks, final long maxChunkSize) throws Exception {
+		final StringBuilder builder = new StringBuilder();
+		for (final long[] chunk : chunks) {
+			assertTrue(chunk[1] - chunk[0] <= maxChunkSize);
+			final String text = read(FileChunks.open(channel, chunk));
+			if (chunk[1] < content.length()) {
+				assertEquals('\n', text.charAt(text.length() - 1));
+			}
+			builder.append(text);
+		}
+		return builder.toString();
+	}
+
+	/**
+	 * Reads the whole content of a given stream.
+	 *
+	 * @param stream the stream.
+	 * @return the content of the given stream.
+	 * @throws Exception never, otherwise the test fails.
+	 */
+	private String read(final InputStream stream) throws Exception {
+		final byte[] buffer = new byte[stream.available()];
+		int offset = 0;
+		int read;
+		while ((read = stream.read(buffer, offset, buffer.length - offset)) > 0) {
+			offset += read;
+		}
+		return new String(buffer, 0, offset, "UTF-8");
+	}
+}
@@ -0,0 +1,82 @@
+package org.gazzax.labs.solrdf.handler.update;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import org.apache.solr.common.SolrException;
+import org.apache.solr.common.SolrException.ErrorCode;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Test case for {@link IngestScheduler}.
+ *
+ * @author Andrea Gazzarini
+ * @since 1.1
+ */
+public class IngestSchedulerTestCase {
+	private IngestScheduler cut;
+
+	/**
+	 * Setup fixture for this test case.
+	 */
+	@Before
+	public void setUp() {
+		cut = new IngestScheduler("test", 4, 0, 10);
+	}
+
+	/**
+	 * Shutdown fixture for this test case.
+	 */
+	@After
+	public void tearDown() {
+		cut.shutdown();
+	}
+
+	/**
+	 * A load cannot have more workers than the pool size (minus the parser).
+	 */
+	@Test
+	public void workersAreBounded() {
+		final IngestScheduler.Lease lease = cut.admit(100);
+		assertEquals(3, lease.workers);
+		assertEquals(0, cut.slots.availablePermits());
+
+		lease.release(10);
+		assertEquals(4, cut.slots.availablePermits());
+		assertEquals(10L, cut.loadedTriples.get());
+	}
+
+	/**
+	 * Loads are admitted as long as there are enough free slots.
+	 */
+	@Test
+	public void concurrentLoads() {
+		final IngestScheduler.Lease first = cut.admit(1);
+		final IngestScheduler.Lease second = cut.admit(1);
+		assertEquals(2, cut.runningLoads.get());
+
+		first.release(0);
+		second.release(0);
+		assertEquals(0, cut.runningLoads.get());
+		assertEquals(2L, cut.completedLoads.get());
+	}
+
+	/**
+	 * A load that cannot be admitted must be rejected with a 503.
+	 */
+	@Test
+	public void rejection() {
+		final IngestScheduler.Lease lease = cut.admit(3);
+		try {
+			cut.admit(1);
+			fail();
+		} catch (final SolrException expected) {
+			assertEquals(ErrorCode.SERVICE_UNAVAILABLE.code, expected.code());
+			assertEquals(1L, cut.rejectedLoads.get());
+		} finally {
+			lease.release(0);
+		}
+	}
+}
@@ -2,11 +2,15 @@ package org.gazzax.labs.solrdf.handler.update;
 
 import static org.gazzax.labs.solrdf.TestUtility.randomString;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
+import java.io.StringReader;
+
 import org.apache.solr.common.SolrException;
 import org.apache.solr.common.SolrException.ErrorCode;
 import org.apache.solr.common.params.CommonParams;
@@ -15,11 +19,16 @@ import org.apache.solr.common.util.ContentStream;
 import org.apache.solr.request.SolrQueryRequest;
 import org.apache.solr.response.SolrQueryResponse;
 import org.apache.solr.update.processor.UpdateRequestProcessor;
+import org.gazzax.labs.solrdf.Names;
+import org.gazzax.labs.solrdf.graph.cloud.CloudDatasetGraph;
+import org.gazzax.labs.solrdf.graph.standalone.LocalDatasetGraph;
 import org.junit.Before;
 import org.junit.Ignore;
 import org.junit.Test;
 
 import com.hp.hpl.jena.query.QueryParseException;
+import com.hp.hpl.jena.sparql.core.DatasetGraph;
+import com.hp.hpl.jena.sparql.util.Context;
 
 /**
  * Test case for {@link Sparql11UpdateRdfDataLoader}.
@@ -84,4 +93,59 @@ public class Sparql11UpdateRdfDataLoaderTestCase {
 			}					
 		}
 	}
-}
\ No newline at end of file
+	
+	/**
+	 * Updates are streamed only on local datasets, which read from the searcher that was open when the request started.
+	 */
+	@Test
+	public void streamingOnLocalDatasets() {
+		parameters.set(Names.UPDATE_BATCH_SIZE_PARAMETER_NAME, 10);
+		final LocalDatasetGraph dataset = mock(LocalDatasetGraph.class);
+		when(dataset.getContext()).thenReturn(new Context());
+		
+		cut.enableStreaming(dataset, parameters);
+		
+		assertEquals(10, dataset.getContext().get(StreamingUpdateEngine.BATCH_SIZE));
+	}
+	
+	/**
+	 * SolrCloud datasets read from the live collection, where the changes of the same request could become visible:
+	 * bindings are collected before applying any change (i.e. the default engine).
+	 */
+	@Test
+	public void noStreamingInCloudMode() {
+		final CloudDatasetGraph dataset = mock(CloudDatasetGraph.class);
+		when(dataset.getContext()).thenReturn(new Context());
+		
+		cut.enableStreaming(dataset, parameters);
+		
+		assertFalse(dataset.getContext().isDefined(StreamingUpdateEngine.BATCH_SIZE));
+	}
+	
+	/**
+	 * The dataset is closed (i.e. buffered changes are flushed) even if the update fails.
+	 * 
+	 * @throws Exception never, otherwise the test fails.
+	 */
+	@Test
+	public void datasetIsClosedOnFailure() throws Exception {
+		final LocalDatasetGraph dataset = mock(LocalDatasetGraph.class);
+		when(dataset.getContext()).thenReturn(new Context());
+		when(stream.getReader()).thenReturn(new StringReader("INVALID UPDATE"));
+		
+		cut = new Sparql11UpdateRdfDataLoader() {
+			@Override
+			DatasetGraph datasetGraph(final SolrQueryRequest request, final SolrQueryResponse response) {
+				return dataset;
+			}
+		};
+		
+		try {
+			cut.load(request, response, stream, processor);
+			fail();
+		} catch (final SolrException expected) {
+			assertEquals(ErrorCode.BAD_REQUEST.code, expected.code());
+		}
+		verify(dataset).close();
+	}
+}
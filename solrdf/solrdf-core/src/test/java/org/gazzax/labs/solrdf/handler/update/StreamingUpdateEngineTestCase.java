@@ -0,0 +1,149 @@
+package org.gazzax.labs.solrdf.handler.update;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.hp.hpl.jena.graph.NodeFactory;
+import com.hp.hpl.jena.graph.Triple;
+import com.hp.hpl.jena.sparql.core.DatasetGraph;
+import com.hp.hpl.jena.sparql.core.DatasetGraphFactory;
+import com.hp.hpl.jena.sparql.core.DatasetGraphWrapper;
+import com.hp.hpl.jena.sparql.core.Quad;
+import com.hp.hpl.jena.sparql.core.Var;
+import com.hp.hpl.jena.update.UpdateAction;
+
+/**
+ * Test case for {@link StreamingUpdateEngine}.
+ *
+ * @author Andrea Gazzarini
+ * @since 1.1
+ */
+public class StreamingUpdateEngineTestCase {
+	private static final String PREFIX = "PREFIX ex: <http://example.org/> ";
+	private static final int HOW_MANY_PRODUCTS = 5;
+
+	private final List<String> changes = new ArrayList<String>();
+	private DatasetGraph dataset;
+
+	/**
+	 * Setup fixture for this test case.
+	 */
+	@Before
+	public void setUp() {
+		final DatasetGraph memory = DatasetGraphFactory.createMem();
+		for (int i = 0; i < HOW_MANY_PRODUCTS; i++) {
+			memory.getDefaultGraph().add(Triple.create(
+					NodeFactory.createURI("http://example.org/product" + i),
+					NodeFactory.createURI("http://example.org/tag"),
+					NodeFactory.createLiteral("old")));
+		}
+
+		// Changes are recorded and not applied, like SolRDF graphs that read from the request searcher.
+		dataset = new DatasetGraphWrapper(memory) {
+			@Override
+			public void add(final Quad quad) {
+				changes.add("+" + quad.getSubject().getLocalName() + "=" + quad.getObject().getLiteralLexicalForm());
+			}
+
+			@Override
+			public void delete(final Quad quad) {
+				changes.add("-" + quad.getSubject().getLocalName() + "=" + quad.getObject().getLiteralLexicalForm());
+			}
+		};
+		StreamingUpdateEngine.enable(dataset, 2);
+	}
+
+	/**
+	 * If DELETE and INSERT templates don't overlap, changes are applied one batch at a time.
+	 */
+	@Test
+	public void disjointTemplatesAreAppliedInBatches() {
+		UpdateAction.parseExecute(
+				PREFIX + "DELETE { ?p ex:tag ?t } INSERT { ?p ex:label \"new\" } WHERE { ?p ex:tag ?t }",
+				dataset);
+
+		assertEquals(HOW_MANY_PRODUCTS * 2, changes.size());
+		assertTrue(changes.get(0).startsWith("-"));
+		assertTrue(changes.get(1).startsWith("-"));
+		assertTrue(changes.get(2).startsWith("+"));
+		assertTrue(changes.get(3).startsWith("+"));
+		assertTrue(changes.get(4).startsWith("-"));
+	}
+
+	/**
+	 * If DELETE and INSERT templates overlap, all deletes must be applied before any insert.
+	 */
+	@Test
+	public void overlappingTemplatesDeleteFirst() {
+		UpdateAction.parseExecute(
+				PREFIX + "DELETE { ?p ex:tag ?t } INSERT { ?p ex:tag \"new\" } WHERE { ?p ex:tag ?t }",
+				dataset);
+
+		assertEquals(HOW_MANY_PRODUCTS * 2, changes.size());
+		for (int i = 0; i < HOW_MANY_PRODUCTS; i++) {
+			assertTrue(changes.get(i).endsWith("=old") && changes.get(i).startsWith("-"));
+			assertTrue(changes.get(HOW_MANY_PRODUCTS + i).endsWith("=new") && changes.get(HOW_MANY_PRODUCTS + i).startsWith("+"));
+		}
+	}
+
+	/**
+	 * DELETE WHERE must delete all matching triples.
+	 */
+	@Test
+	public void deleteWhere() {
+		UpdateAction.parseExecute(PREFIX + "DELETE WHERE { ?p ex:tag \"old\" }", dataset);
+
+		assertEquals(HOW_MANY_PRODUCTS, changes.size());
+	}
+
+	/**
+	 * Templates may overlap only if all their members are compatible.
+	 */
+	@Test
+	public void mayOverlap() {
+		final Quad delete = Quad.create(
+				Quad.defaultGraphNodeGenerated,
+				Var.alloc("p"),
+				NodeFactory.createURI("http://example.org/tag"),
+				Var.alloc("t"));
+		final Quad insertSamePredicate = Quad.create(
+				Quad.defaultGraphNodeGenerated,
+				Var.alloc("p"),
+				NodeFactory.createURI("http://example.org/tag"),
+				NodeFactory.createLiteral("new"));
+		final Quad insertOtherPredicate = Quad.create(
+				Quad.defaultGraphNodeGenerated,
+				Var.alloc("p"),
+				NodeFactory.createURI("http://example.org/label"),
+				NodeFactory.createLiteral("new"));
+		final Quad insertBlankSubject = Quad.create(
+				Quad.defaultGraphNodeGenerated,
+				NodeFactory.createAnon(),
+				NodeFactory.createURI("http://example.org/tag"),
+				NodeFactory.createLiteral("new"));
+
+		assertTrue(StreamingUpdateEngine.mayOverlap(list(delete), list(insertSamePredicate)));
+		assertFalse(StreamingUpdateEngine.mayOverlap(list(delete), list(insertOtherPredicate)));
+		assertFalse(StreamingUpdateEngine.mayOverlap(list(delete), list(insertBlankSubject)));
+		assertFalse(StreamingUpdateEngine.mayOverlap(null, list(insertSamePredicate)));
+	}
+
+	/**
+	 * Returns a list with the given quad.
+	 *
+	 * @param quad the quad.
+	 * @return a list with the given quad.
+	 */
+	private List<Quad> list(final Quad quad) {
+		final List<Quad> result = new ArrayList<Quad>();
+		result.add(quad);
+		return result;
+	}
+}
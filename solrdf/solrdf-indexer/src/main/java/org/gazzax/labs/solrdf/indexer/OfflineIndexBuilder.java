@@ -0,0 +1,523 @@
+package org.gazzax.labs.solrdf.indexer;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.apache.jena.riot.Lang;
+import org.apache.jena.riot.RDFLanguages;
+import org.apache.jena.riot.lang.LabelToNode;
+import org.apache.jena.riot.lang.LangNQuads;
+import org.apache.jena.riot.lang.LangNTriples;
+import org.apache.jena.riot.lang.LangRIOT;
+import org.apache.jena.riot.system.ParserProfile;
+import org.apache.jena.riot.system.RiotLib;
+import org.apache.jena.riot.system.StreamRDFBase;
+import org.apache.jena.riot.tokens.TokenizerFactory;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.IndexWriterConfig.OpenMode;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.FSDirectory;
+import org.apache.solr.common.SolrInputDocument;
+import org.apache.solr.common.cloud.CompositeIdRouter;
+import org.apache.solr.common.cloud.DocRouter;
+import org.apache.solr.core.SolrConfig;
+import org.apache.solr.core.SolrResourceLoader;
+import org.apache.solr.schema.IndexSchema;
+import org.apache.solr.schema.IndexSchemaFactory;
+import org.gazzax.labs.solrdf.Field;
+import org.gazzax.labs.solrdf.handler.update.FileChunks;
+import org.gazzax.labs.solrdf.graph.standalone.TripleDocumentFactory;
+import org.gazzax.labs.solrdf.log.Log;
+import org.gazzax.labs.solrdf.log.MessageCatalog;
+import org.gazzax.labs.solrdf.log.MessageFactory;
+import org.slf4j.LoggerFactory;
+
+import com.hp.hpl.jena.graph.Node;
+import com.hp.hpl.jena.graph.NodeFactory;
+import com.hp.hpl.jena.graph.Triple;
+import com.hp.hpl.jena.sparql.core.Quad;
+
+/**
+ * Builds a SolRDF index directly from N-Triples / N-Quads files, without going through Solr
+ * (i.e. update chain, transaction log and merges of a live core).
+ *
+ * <ul>
+ * 	<li>N parser threads read the files in (memory-mapped) chunks (see {@link FileChunks}) and build the documents
+ * 	exactly like the store does (see {@link TripleDocumentFactory});</li>
+ * 	<li>each document is routed by identifier to a partition, which is written by its own {@link IndexWriter}
+ * 	in sorted segments (see {@link PartitionWriter});</li>
+ * 	<li>partitions of the same shard are finally merged (as segments, without re-indexing) in the shard index.</li>
+ * </ul>
+ *
+ * The output is <code>&lt;output&gt;/index</code> with a single shard, otherwise <code>&lt;output&gt;/shardN/index</code>,
+ * where documents are placed like the compositeId router does for a collection with the same number of shards.
+ * Each index can be installed as the <code>data/index</code> directory of a (stopped) core, or merged into a
+ * running core with the CoreAdmin MERGEINDEXES action.
+ * Documents always have the current identifiers: an index must not be merged into a core built with the legacy ones
+ * (see {@link org.gazzax.labs.solrdf.graph.SolRDFGraph#hasLegacyIds}), which has to be rebuilt instead.
+ *
+ * Usage:
+ *
+ * <pre>
+ * java -jar solrdf-indexer-1.1-jar-with-dependencies.jar -conf &lt;core instance dir&gt; -out &lt;output dir&gt;
+ * 	[-parsers N] [-shards N] [-writers N (per shard)] [-segment N (documents)] [-graph &lt;uri&gt;] [-no-overwrite] file ...
+ * </pre>
+ *
+ * @author Andrea Gazzarini
+ * @since 1.1
+ */
+public class OfflineIndexBuilder {
+	static final Log LOGGER = new Log(LoggerFactory.getLogger(OfflineIndexBuilder.class));
+
+	static final int DEFAULT_PARSERS = Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+	static final int DEFAULT_SEGMENT_SIZE = 100000;
+	static final int BATCH_SIZE = 1000;
+	static final int QUEUE_CAPACITY = 16;
+	static final long CHUNK_SIZE = 64 * 1024 * 1024;
+
+	final IndexSchema schema;
+	final File output;
+	final int parsers;
+	final int shards;
+	final int writersPerShard;
+	final int segmentSize;
+	final boolean overwrite;
+
+	final DocRouter router = new CompositeIdRouter();
+	final List<DocRouter.Range> ranges;
+
+	/**
+	 * Builds a new index builder.
+	 *
+	 * @param schema the Solr schema of the target core.
+	 * @param output the output directory.
+	 * @param parsers the number of parser threads.
+	 * @param shards the number of shards.
+	 * @param writersPerShard the number of writer threads (i.e. partitions) of each shard.
+	 * @param segmentSize the number of documents of each (sorted) segment.
+	 * @param overwrite true if documents with the same identifier have to be replaced (like Solr does).
+	 */
+	public OfflineIndexBuilder(
+			final IndexSchema schema,
+			final File output,
+			final int parsers,
+			final int shards,
+			final int writersPerShard,
+			final int segmentSize,
+			final boolean overwrite) {
+		this.schema = schema;
+		this.output = output;
+		this.parsers = Math.max(1, parsers);
+		this.shards = Math.max(1, shards);
+		this.writersPerShard = Math.max(1, writersPerShard);
+		this.segmentSize = Math.max(1, segmentSize);
+		this.overwrite = overwrite;
+		this.ranges = router.partitionRange(this.shards, router.fullRange());
+	}
+
+	/**
+	 * Indexes the given files.
+	 *
+	 * @param files the N-Triples or N-Quads files.
+	 * @param targetGraph the graph where triples will be indexed, null in case of default graph. Ignored for quads.
+	 * @return the number of indexed documents.
+	 * @throws Exception in case of failure.
+	 */
+	public long build(final List<File> files, final Node targetGraph) throws Exception {
+		final long start = System.currentTimeMillis();
+
+		final List<Chunk> chunks = new ArrayList<Chunk>();
+		final List<RandomAccessFile> openFiles = new ArrayList<RandomAccessFile>();
+
+		final PartitionWriter [] writers = new PartitionWriter[shards * writersPerShard];
+		final AtomicLong clock = new AtomicLong(System.currentTimeMillis() << 20);
+		for (int shard = 0; shard < shards; shard++) {
+			for (int i = 0; i < writersPerShard; i++) {
+				writers[shard * writersPerShard + i] = new PartitionWriter(
+						schema,
+						partitionDirectory(shard, i),
+						segmentSize,
+						overwrite,
+						clock,
+						QUEUE_CAPACITY);
+			}
+		}
+
+		final ExecutorService executor = Executors.newFixedThreadPool(parsers + writers.length);
+		try {
+			for (final File file : files) {
+				final Lang lang = RDFLanguages.filenameToLang(file.getName());
+				if (!RDFLanguages.sameLang(lang, Lang.NTRIPLES) && !RDFLanguages.sameLang(lang, Lang.NQUADS)) {
+					throw new IllegalArgumentException(MessageFactory.createMessage(MessageCatalog._00135_OFFLINE_UNSUPPORTED_FILE, file));
+				}
+
+				final RandomAccessFile openFile = new RandomAccessFile(file, "r");
+				openFiles.add(openFile);
+
+				// Blank node labels are scoped to the file, not to the chunk
+				final UUID seed = UUID.randomUUID();
+				for (final long [] chunk : FileChunks.split(openFile.getChannel(), CHUNK_SIZE)) {
+					chunks.add(new Chunk(openFile.getChannel(), chunk, lang, seed));
+				}
+			}
+
+			final List<Future<?>> partitions = new ArrayList<Future<?>>(writers.length);
+			for (final PartitionWriter writer : writers) {
+				partitions.add(executor.submit(writer));
+			}
+
+			final Throwable failure = parse(executor, chunks, writers, targetGraph);
+
+			for (final PartitionWriter writer : writers) {
+				writer.close();
+			}
+
+			for (final Future<?> partition : partitions) {
+				partition.get();
+			}
+
+			checkFailure(failure);
+			for (final PartitionWriter writer : writers) {
+				checkFailure(writer.failure());
+			}
+		} finally {
+			executor.shutdownNow();
+			for (final RandomAccessFile openFile : openFiles) {
+				openFile.close();
+			}
+		}
+
+		long count = 0;
+		for (final PartitionWriter writer : writers) {
+			count += writer.count();
+		}
+
+		if (writersPerShard > 1) {
+			for (int shard = 0; shard < shards; shard++) {
+				merge(shard);
+			}
+		}
+
+		LOGGER.info(MessageCatalog._00133_OFFLINE_INDEX_BUILT, output, count, System.currentTimeMillis() - start, parsers, shards, writersPerShard);
+		return count;
+	}
+
+	/**
+	 * Parses the given chunks, routing the resulting documents to the partition writers.
+	 *
+	 * @param executor the executor that runs the parsers.
+	 * @param chunks the chunks of all the input files.
+	 * @param writers the partition writers.
+	 * @param targetGraph the graph where triples will be indexed, null in case of default graph. Ignored for quads.
+	 * @return the first parsing failure, null if everything went fine.
+	 * @throws InterruptedException if the current thread is interrupted while waiting for the parsers.
+	 */
+	Throwable parse(
+			final ExecutorService executor,
+			final List<Chunk> chunks,
+			final PartitionWriter [] writers,
+			final Node targetGraph) throws InterruptedException {
+		final AtomicInteger nextChunk = new AtomicInteger();
+		final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+		final String graphName = TripleDocumentFactory.graphName(targetGraph);
+
+		final List<Future<?>> stages = new ArrayList<Future<?>>(parsers);
+		for (int i = 0; i < parsers; i++) {
+			stages.add(executor.submit(new Runnable() {
+				@Override
+				public void run() {
+					final TripleDocumentFactory factory = new TripleDocumentFactory(schema);
+					final List<List<SolrInputDocument>> batches = new ArrayList<List<SolrInputDocument>>(writers.length);
+					for (int partition = 0; partition < writers.length; partition++) {
+						batches.add(new ArrayList<SolrInputDocument>(BATCH_SIZE));
+					}
+
+					try {
+						int index;
+						while ((index = nextChunk.getAndIncrement()) < chunks.size() && failure.get() == null) {
+							final Chunk chunk = chunks.get(index);
+							final ParserProfile profile = RiotLib.profile(chunk.lang, null);
+							profile.setLabelToNode(LabelToNode.createScopeByDocumentHash(chunk.seed));
+
+							final StreamRDFBase sink = new StreamRDFBase() {
+								@Override
+								public void triple(final Triple triple) {
+									add(factory.document(graphName, triple));
+								}
+
+								@Override
+								public void quad(final Quad quad) {
+									add(factory.document(
+											quad.isDefaultGraph() ? graphName : TripleDocumentFactory.graphName(quad.getGraph()),
+											quad.asTriple()));
+								}
+
+								void add(final SolrInputDocument document) {
+									final int partition = partition((String) document.getFieldValue(Field.ID));
+									final List<SolrInputDocument> batch = batches.get(partition);
+									batch.add(document);
+									if (batch.size() == BATCH_SIZE) {
+										put(writers[partition], batch);
+										batches.set(partition, new ArrayList<SolrInputDocument>(BATCH_SIZE));
+									}
+								}
+							};
+
+							final LangRIOT parser = RDFLanguages.sameLang(chunk.lang, Lang.NQUADS)
+									? new LangNQuads(TokenizerFactory.makeTokenizerUTF8(FileChunks.open(chunk.channel, chunk.offsets)), profile, sink)
+									: new LangNTriples(TokenizerFactory.makeTokenizerUTF8(FileChunks.open(chunk.channel, chunk.offsets)), profile, sink);
+							parser.parse();
+						}
+
+						for (int partition = 0; partition < writers.length; partition++) {
+							if (!batches.get(partition).isEmpty()) {
+								put(writers[partition], batches.get(partition));
+							}
+						}
+					} catch (final Throwable throwable) {
+						failure.compareAndSet(null, throwable);
+					}
+				}
+			}));
+		}
+
+		for (final Future<?> stage : stages) {
+			try {
+				stage.get();
+			} catch (final Exception exception) {
+				failure.compareAndSet(null, exception);
+			}
+		}
+		return failure.get();
+	}
+
+	/**
+	 * Returns the partition of the document with a given identifier.
+	 * The shard is chosen like the compositeId router does, then the partition within the shard is a hash of the identifier.
+	 *
+	 * @param id the document identifier.
+	 * @return the partition of the document with the given identifier.
+	 */
+	int partition(final String id) {
+		int shard = 0;
+		if (shards > 1) {
+			final int hash = ((CompositeIdRouter) router).sliceHash(id, null, null, null);
+			while (!ranges.get(shard).includes(hash)) {
+				shard++;
+			}
+		}
+		return shard * writersPerShard + (writersPerShard > 1 ? (id.hashCode() & Integer.MAX_VALUE) % writersPerShard : 0);
+	}
+
+	/**
+	 * Returns the index directory of a given shard.
+	 *
+	 * @param shard the shard (0-based).
+	 * @return the index directory of the given shard.
+	 */
+	File indexDirectory(final int shard) {
+		return new File(shards > 1 ? new File(output, "shard" + (shard + 1)) : output, "index");
+	}
+
+	/**
+	 * Returns the directory of a given partition.
+	 * With a single writer per shard, that is directly the shard index.
+	 *
+	 * @param shard the shard (0-based).
+	 * @param writer the writer within the shard (0-based).
+	 * @return the directory of the given partition.
+	 */
+	File partitionDirectory(final int shard, final int writer) {
+		return writersPerShard > 1
+				? new File(new File(indexDirectory(shard).getParentFile(), "partitions"), "partition" + (writer + 1))
+				: indexDirectory(shard);
+	}
+
+	/**
+	 * Merges (i.e. copies the segments of) the partitions of a given shard in the shard index and removes them.
+	 *
+	 * @param shard the shard (0-based).
+	 * @throws IOException in case of I/O failure.
+	 */
+	void merge(final int shard) throws IOException {
+		final Directory [] partitions = new Directory[writersPerShard];
+		for (int i = 0; i < writersPerShard; i++) {
+			partitions[i] = FSDirectory.open(partitionDirectory(shard, i).toPath());
+		}
+
+		final File index = indexDirectory(shard);
+		final Directory directory = FSDirectory.open(index.toPath());
+		final IndexWriter writer = new IndexWriter(directory, new IndexWriterConfig(schema.getIndexAnalyzer()).setOpenMode(OpenMode.CREATE));
+		try {
+			writer.addIndexes(partitions);
+			writer.commit();
+		} finally {
+			writer.close();
+			directory.close();
+			for (final Directory partition : partitions) {
+				partition.close();
+			}
+		}
+
+		delete(partitionDirectory(shard, 0).getParentFile());
+		LOGGER.info(MessageCatalog._00134_OFFLINE_PARTITION_MERGED, writersPerShard, index);
+	}
+
+	/**
+	 * Enqueues a batch of documents in a given partition writer.
+	 *
+	 * @param writer the partition writer.
+	 * @param batch the batch.
+	 */
+	static void put(final PartitionWriter writer, final List<SolrInputDocument> batch) {
+		try {
+			writer.put(batch);
+		} catch (final InterruptedException exception) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException(exception);
+		}
+	}
+
+	/**
+	 * Rethrows a given failure, if any.
+	 *
+	 * @param failure the failure, null if there's no failure.
+	 * @throws Exception the given failure.
+	 */
+	static void checkFailure(final Throwable failure) throws Exception {
+		if (failure instanceof Exception) {
+			throw (Exception) failure;
+		} else if (failure != null) {
+			throw new IllegalStateException(failure);
+		}
+	}
+
+	/**
+	 * Deletes a given file or directory (recursively).
+	 *
+	 * @param file the file or directory.
+	 */
+	static void delete(final File file) {
+		final File [] children = file.listFiles();
+		if (children != null) {
+			for (final File child : children) {
+				delete(child);
+			}
+		}
+		file.delete();
+	}
+
+	/**
+	 * Loads the schema of a given core.
+	 *
+	 * @param instanceDir the instance directory of the core (i.e. the one that contains conf/solrconfig.xml and conf/schema.xml).
+	 * @return the schema of the given core.
+	 * @throws Exception in case the configuration cannot be loaded.
+	 */
+	public static IndexSchema schema(final File instanceDir) throws Exception {
+		final Properties properties = new Properties();
+		properties.setProperty("solr.data.dir", System.getProperty("java.io.tmpdir"));
+		properties.setProperty("solr.core.name", instanceDir.getName());
+
+		final SolrResourceLoader loader = new SolrResourceLoader(instanceDir.getAbsolutePath(), OfflineIndexBuilder.class.getClassLoader(), properties);
+		return IndexSchemaFactory.buildIndexSchema(IndexSchema.DEFAULT_SCHEMA_FILE, new SolrConfig(loader, SolrConfig.DEFAULT_CONF_FILE, null));
+	}
+
+	/**
+	 * A chunk of an input file.
+	 *
+	 * @author Andrea Gazzarini
+	 * @since 1.1
+	 */
+	static class Chunk {
+		final FileChannel channel;
+		final long [] offsets;
+		final Lang lang;
+		final UUID seed;
+
+		/**
+		 * Builds a new chunk.
+		 *
+		 * @param channel the channel of the file.
+		 * @param offsets the chunk, as [start, end) offsets.
+		 * @param lang the RDF language of the file.
+		 * @param seed the scope of the blank node labels (i.e. the file).
+		 */
+		Chunk(final FileChannel channel, final long [] offsets, final Lang lang, final UUID seed) {
+			this.channel = channel;
+			this.offsets = offsets;
+			this.lang = lang;
+			this.seed = seed;
+		}
+	}
+
+	/**
+	 * Command line entry point.
+	 *
+	 * @param args the command line arguments (see the class documentation).
+	 * @throws Exception in case of failure.
+	 */
+	public static void main(final String [] args) throws Exception {
+		File instanceDir = null;
+		File output = null;
+		int parsers = DEFAULT_PARSERS;
+		int shards = 1;
+		int writers = 1;
+		int segmentSize = DEFAULT_SEGMENT_SIZE;
+		Node targetGraph = null;
+		boolean overwrite = true;
+		final List<File> files = new ArrayList<File>();
+
+		for (int i = 0; i < args.length; i++) {
+			switch (args[i]) {
+			case "-conf":
+				instanceDir = new File(args[++i]);
+				break;
+			case "-out":
+				output = new File(args[++i]);
+				break;
+			case "-parsers":
+				parsers = Integer.parseInt(args[++i]);
+				break;
+			case "-shards":
+				shards = Integer.parseInt(args[++i]);
+				break;
+			case "-writers":
+				writers = Integer.parseInt(args[++i]);
+				break;
+			case "-segment":
+				segmentSize = Integer.parseInt(args[++i]);
+				break;
+			case "-graph":
+				targetGraph = NodeFactory.createURI(args[++i]);
+				break;
+			case "-no-overwrite":
+				overwrite = false;
+				break;
+			default:
+				files.add(new File(args[i]));
+			}
+		}
+
+		if (instanceDir == null || output == null || files.isEmpty()) {
+			System.err.println(MessageCatalog._00136_OFFLINE_USAGE);
+			System.exit(1);
+		}
+
+		new OfflineIndexBuilder(schema(instanceDir), output, parsers, shards, writers, segmentSize, overwrite)
+			.build(files, targetGraph);
+	}
+}
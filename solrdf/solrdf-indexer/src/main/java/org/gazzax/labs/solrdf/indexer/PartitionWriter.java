@@ -0,0 +1,301 @@
+package org.gazzax.labs.solrdf.indexer;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.IndexWriterConfig.OpenMode;
+import org.apache.lucene.index.MergePolicy;
+import org.apache.lucene.index.SortingMergePolicy;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.index.TieredMergePolicy;
+import org.apache.lucene.search.Sort;
+import org.apache.lucene.search.SortField;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.FSDirectory;
+import org.apache.solr.common.SolrInputDocument;
+import org.apache.solr.schema.IndexSchema;
+import org.apache.solr.schema.SchemaField;
+import org.apache.solr.update.DocumentBuilder;
+import org.apache.solr.update.VersionInfo;
+import org.gazzax.labs.solrdf.Field;
+
+/**
+ * Writes the documents of a partition (i.e. a disjoint subset of document identifiers) in a dedicated index.
+ *
+ * Documents are buffered and written in sorted (subject, predicate, object, graph) segments of (at most) a given size;
+ * when the schema has the docValues copies of the subject and predicate, merged segments keep that order, too
+ * (see {@link SortingMergePolicy}).
+ * Since all copies of a triple have the same identifier, they all end up in the same partition, where they are
+ * deduplicated: adjacent in the same segment, by identifier (i.e. like Solr does on overwrite) across segments.
+ *
+ * Each instance is fed by (many) parsers through a bounded queue and it is run by a dedicated thread.
+ *
+ * @author Andrea Gazzarini
+ * @since 1.1
+ */
+class PartitionWriter implements Runnable {
+	static final Comparator<SolrInputDocument> TRIPLE_ORDER = new Comparator<SolrInputDocument>() {
+		final String [] fields = { Field.S, Field.P, Field.O, Field.C };
+
+		@Override
+		public int compare(final SolrInputDocument first, final SolrInputDocument second) {
+			for (final String field : fields) {
+				final int result = compareCodePoints((String) first.getFieldValue(field), (String) second.getFieldValue(field));
+				if (result != 0) {
+					return result;
+				}
+			}
+			return 0;
+		}
+	};
+
+	/**
+	 * Compares two strings by code point, which is the UTF-8 byte order of the (s_dv, p_dv) sort of merged segments.
+	 * String.compareTo compares UTF-16 chars instead, and that puts supplementary characters before U+E000..U+FFFF.
+	 *
+	 * @param first the first string.
+	 * @param second the second string.
+	 * @return a negative integer, zero, or a positive integer as the first string is less than, equal to, or greater than the second.
+	 */
+	static int compareCodePoints(final String first, final String second) {
+		final int length = Math.min(first.length(), second.length());
+		for (int i = 0; i < length; i++) {
+			char a = first.charAt(i);
+			char b = second.charAt(i);
+			if (a != b) {
+				// Surrogates (i.e. supplementary code points) are moved after any other char
+				if (a >= Character.MIN_SURROGATE && b >= Character.MIN_SURROGATE) {
+					a = shiftSurrogates(a);
+					b = shiftSurrogates(b);
+				}
+				return a - b;
+			}
+		}
+		return first.length() - second.length();
+	}
+
+	/**
+	 * Moves the surrogate chars (U+D800..U+DFFF) after the other chars of the upper range (U+E000..U+FFFF).
+	 *
+	 * @param ch a char not lower than U+D800.
+	 * @return the position of the given char in code point order.
+	 */
+	private static char shiftSurrogates(final char ch) {
+		return (char) (ch > Character.MAX_SURROGATE ? ch - 0x800 : ch + 0x2000);
+	}
+
+	final IndexSchema schema;
+	final File directory;
+	final int segmentSize;
+	final boolean overwrite;
+	final AtomicLong clock;
+	final BlockingQueue<List<SolrInputDocument>> queue;
+
+	// End-of-stream marker (compared by identity)
+	final List<SolrInputDocument> noMoreDocuments = new ArrayList<SolrInputDocument>(0);
+
+	private final List<SolrInputDocument> segment;
+	private volatile Throwable failure;
+	private long count;
+
+	/**
+	 * Builds a new partition writer.
+	 *
+	 * @param schema the Solr schema.
+	 * @param directory the index directory of this partition.
+	 * @param segmentSize the number of documents of each (sorted) segment.
+	 * @param overwrite true if documents with the same identifier have to be replaced across segments.
+	 * @param clock the source of document versions, shared by all partitions.
+	 * @param queueCapacity the capacity of the incoming queue, in batches.
+	 */
+	PartitionWriter(
+			final IndexSchema schema,
+			final File directory,
+			final int segmentSize,
+			final boolean overwrite,
+			final AtomicLong clock,
+			final int queueCapacity) {
+		this.schema = schema;
+		this.directory = directory;
+		this.segmentSize = segmentSize;
+		this.overwrite = overwrite;
+		this.clock = clock;
+		this.queue = new ArrayBlockingQueue<List<SolrInputDocument>>(queueCapacity);
+		this.segment = new ArrayList<SolrInputDocument>(segmentSize);
+	}
+
+	/**
+	 * Enqueues a batch of documents.
+	 * Once this writer failed, batches are discarded, so that parsers never block on it.
+	 *
+	 * @param batch the batch.
+	 * @throws InterruptedException if the current thread is interrupted while waiting.
+	 */
+	void put(final List<SolrInputDocument> batch) throws InterruptedException {
+		if (failure == null) {
+			queue.put(batch);
+		}
+	}
+
+	/**
+	 * Signals that no more documents will be enqueued.
+	 *
+	 * @throws InterruptedException if the current thread is interrupted while waiting.
+	 */
+	void close() throws InterruptedException {
+		queue.put(noMoreDocuments);
+	}
+
+	@Override
+	public void run() {
+		try {
+			final Directory index = FSDirectory.open(directory.toPath());
+			final SegmentWriter writer = new SegmentWriter(index, config());
+			try {
+				List<SolrInputDocument> batch;
+				while ((batch = queue.take()) != noMoreDocuments) {
+					for (final SolrInputDocument document : batch) {
+						segment.add(document);
+						if (segment.size() == segmentSize) {
+							write(writer);
+						}
+					}
+				}
+				write(writer);
+				writer.commit();
+			} finally {
+				writer.close();
+				index.close();
+			}
+		} catch (final Throwable throwable) {
+			failure = throwable;
+			drain();
+		}
+	}
+
+	/**
+	 * Discards the incoming batches (of a failed writer) until the end of the stream, so that parsers never block.
+	 */
+	void drain() {
+		try {
+			while (queue.take() != noMoreDocuments) {
+				// Nothing to be done here
+			}
+		} catch (final InterruptedException exception) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * Sorts and writes the buffered documents in a new segment.
+	 * Deduplicated batches are smaller than the segment size, so the segment is closed by an explicit flush; the 
+	 * index is committed once, at the end of {@link #run()}.
+	 *
+	 * @param writer the index writer.
+	 * @throws IOException in case of I/O failure.
+	 */
+	void write(final SegmentWriter writer) throws IOException {
+		Collections.sort(segment, TRIPLE_ORDER);
+
+		SolrInputDocument previous = null;
+		for (final SolrInputDocument document : segment) {
+			if (previous != null && TRIPLE_ORDER.compare(previous, document) == 0) {
+				continue;
+			}
+			previous = document;
+
+			if (schema.getFieldOrNull(VersionInfo.VERSION_FIELD) != null) {
+				document.setField(VersionInfo.VERSION_FIELD, clock.incrementAndGet());
+			}
+
+			if (overwrite) {
+				writer.updateDocument(new Term(Field.ID, (String) document.getFieldValue(Field.ID)), DocumentBuilder.toDocument(document, schema));
+			} else {
+				writer.addDocument(DocumentBuilder.toDocument(document, schema));
+			}
+			count++;
+		}
+
+		if (!segment.isEmpty()) {
+			writer.flushSegment();
+		}
+		segment.clear();
+	}
+
+	/**
+	 * An {@link IndexWriter} that can close the segment of the buffered documents without committing the index.
+	 * 
+	 * @author Andrea Gazzarini
+	 * @since 1.1
+	 */
+	static class SegmentWriter extends IndexWriter {
+		/**
+		 * Builds a new writer on a given directory.
+		 * 
+		 * @param directory the index directory.
+		 * @param config the writer configuration.
+		 * @throws IOException in case of I/O failure.
+		 */
+		SegmentWriter(final Directory directory, final IndexWriterConfig config) throws IOException {
+			super(directory, config);
+		}
+		
+		/**
+		 * Flushes the buffered documents (and deletes) in a new segment.
+		 * 
+		 * @throws IOException in case of I/O failure.
+		 */
+		void flushSegment() throws IOException {
+			flush(true, true);
+		}
+	}
+
+	/**
+	 * Returns the configuration of the index writer.
+	 * Automatic flushes are driven only by the number of buffered documents, which is the segment size, so they never 
+	 * split a batch: smaller (i.e. deduplicated) batches are flushed at the end of {@link #write(SegmentWriter)}.
+	 *
+	 * @return the configuration of the index writer.
+	 */
+	IndexWriterConfig config() {
+		final MergePolicy mergePolicy = new TieredMergePolicy();
+		final SchemaField subject = schema.getFieldOrNull(Field.S_DV);
+		final SchemaField predicate = schema.getFieldOrNull(Field.P_DV);
+		return new IndexWriterConfig(schema.getIndexAnalyzer())
+				.setOpenMode(OpenMode.CREATE)
+				.setMaxBufferedDocs(Math.max(2, segmentSize))
+				.setRAMBufferSizeMB(IndexWriterConfig.DISABLE_AUTO_FLUSH)
+				.setMergePolicy(subject != null && subject.hasDocValues() && predicate != null && predicate.hasDocValues()
+						? new SortingMergePolicy(mergePolicy, new Sort(
+								new SortField(Field.S_DV, SortField.Type.STRING),
+								new SortField(Field.P_DV, SortField.Type.STRING)))
+						: mergePolicy);
+	}
+
+	/**
+	 * Returns the failure of this writer, if any.
+	 *
+	 * @return the failure of this writer, null if it didn't fail.
+	 */
+	Throwable failure() {
+		return failure;
+	}
+
+	/**
+	 * Returns the number of documents written so far.
+	 *
+	 * @return the number of documents written so far.
+	 */
+	long count() {
+		return count;
+	}
+}
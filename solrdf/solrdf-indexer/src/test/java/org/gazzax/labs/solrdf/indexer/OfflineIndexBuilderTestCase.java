@@ -0,0 +1,139 @@
+package org.gazzax.labs.solrdf.indexer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.FSDirectory;
+import org.apache.solr.schema.IndexSchema;
+import org.gazzax.labs.solrdf.Field;
+import org.gazzax.labs.solrdf.graph.SolRDFGraph;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.hp.hpl.jena.graph.NodeFactory;
+import com.hp.hpl.jena.graph.Triple;
+
+/**
+ * Test case for {@link OfflineIndexBuilder}.
+ *
+ * @author Andrea Gazzarini
+ * @since 1.1
+ */
+public class OfflineIndexBuilderTestCase {
+	private static IndexSchema schema;
+
+	private File output;
+	private File dump;
+
+	/**
+	 * Loads the schema shipped with the store.
+	 *
+	 * @throws Exception hopefully never, otherwise the test fails.
+	 */
+	@BeforeClass
+	public static void loadSchema() throws Exception {
+		schema = OfflineIndexBuilder.schema(new File("../solrdf-core/src/solr-home/store"));
+	}
+
+	/**
+	 * Setup fixture for this test case.
+	 *
+	 * @throws Exception hopefully never, otherwise the test fails.
+	 */
+	@Before
+	public void setUp() throws Exception {
+		output = File.createTempFile("solrdf-index", "");
+		output.delete();
+
+		dump = File.createTempFile("solrdf-dump", ".nt");
+		final Writer writer = new OutputStreamWriter(new FileOutputStream(dump), StandardCharsets.UTF_8);
+		try {
+			for (int i = 0; i < 100; i++) {
+				writer.write("<http://example.org/s" + i + "> <http://example.org/p> \"" + i + "\"^^<http://www.w3.org/2001/XMLSchema#int> .\n");
+				writer.write("<http://example.org/s" + i + "> <http://www.w3.org/2000/01/rdf-schema#label> \"Label " + i + "\"@en .\n");
+			}
+			// Duplicates
+			for (int i = 0; i < 10; i++) {
+				writer.write("<http://example.org/s" + i + "> <http://example.org/p> \"" + i + "\"^^<http://www.w3.org/2001/XMLSchema#int> .\n");
+			}
+		} finally {
+			writer.close();
+		}
+	}
+
+	/**
+	 * Shutdown procedure for this test case.
+	 */
+	@After
+	public void tearDown() {
+		OfflineIndexBuilder.delete(output);
+		dump.delete();
+	}
+
+	/**
+	 * A single shard is written in output/index, once, whatever the number of writers and segments.
+	 *
+	 * @throws Exception hopefully never, otherwise the test fails.
+	 */
+	@Test
+	public void singleShard() throws Exception {
+		new OfflineIndexBuilder(schema, output, 2, 1, 3, 16, true).build(Arrays.asList(dump), null);
+
+		assertFalse(new File(output, "partitions").exists());
+
+		final Directory directory = FSDirectory.open(new File(output, "index").toPath());
+		final DirectoryReader reader = DirectoryReader.open(directory);
+		try {
+			assertEquals(200, reader.numDocs());
+
+			final String id = SolRDFGraph.documentId(
+					SolRDFGraph.UNNAMED_GRAPH_PLACEHOLDER,
+					Triple.create(
+							NodeFactory.createURI("http://example.org/s1"),
+							NodeFactory.createURI("http://www.w3.org/2000/01/rdf-schema#label"),
+							NodeFactory.createLiteral("Label 1", "en", false)),
+					SolRDFGraph.hasSubjectRouting(schema));
+			assertEquals(1, reader.docFreq(new Term(Field.ID, id)));
+		} finally {
+			reader.close();
+			directory.close();
+		}
+	}
+
+	/**
+	 * Each shard gets a disjoint subset of the documents.
+	 *
+	 * @throws Exception hopefully never, otherwise the test fails.
+	 */
+	@Test
+	public void shards() throws Exception {
+		new OfflineIndexBuilder(schema, output, 2, 2, 1, 1000, true).build(Arrays.asList(dump), null);
+
+		int total = 0;
+		for (int shard = 1; shard <= 2; shard++) {
+			final Directory directory = FSDirectory.open(new File(new File(output, "shard" + shard), "index").toPath());
+			final DirectoryReader reader = DirectoryReader.open(directory);
+			try {
+				assertTrue(reader.numDocs() > 0);
+				total += reader.numDocs();
+			} finally {
+				reader.close();
+				directory.close();
+			}
+		}
+		assertEquals(200, total);
+	}
+}
@@ -0,0 +1,49 @@
+package org.gazzax.labs.solrdf.indexer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.charset.StandardCharsets;
+
+import org.apache.lucene.util.BytesRef;
+import org.junit.Test;
+
+/**
+ * Test case for {@link PartitionWriter}.
+ *
+ * @author Andrea Gazzarini
+ * @since 1.1
+ */
+public class PartitionWriterTestCase {
+	/**
+	 * Strings must be compared like their UTF-8 bytes, even when UTF-16 compares them the other way around.
+	 */
+	@Test
+	public void codePointOrder() {
+		final String [][] pairs = {
+				{ "a", "b" },
+				{ "ab", "abc" },
+				{ "\uFB01", "\uD83D\uDE00" },
+				{ "x\uFFFD", "x\uD800\uDC00" },
+				{ "\u00E9", "\uD7FF" },
+				{ "\uD800\uDC00", "\uD83D\uDE00" }
+		};
+
+		for (final String [] pair : pairs) {
+			assertTrue(utf8(pair[0]).compareTo(utf8(pair[1])) < 0);
+			assertTrue(PartitionWriter.compareCodePoints(pair[0], pair[1]) < 0);
+			assertTrue(PartitionWriter.compareCodePoints(pair[1], pair[0]) > 0);
+			assertEquals(0, PartitionWriter.compareCodePoints(pair[0], new String(pair[0])));
+		}
+	}
+
+	/**
+	 * Returns the UTF-8 bytes of a given string.
+	 *
+	 * @param value the string.
+	 * @return the UTF-8 bytes of the given string.
+	 */
+	private BytesRef utf8(final String value) {
+		return new BytesRef(value.getBytes(StandardCharsets.UTF_8));
+	}
+}